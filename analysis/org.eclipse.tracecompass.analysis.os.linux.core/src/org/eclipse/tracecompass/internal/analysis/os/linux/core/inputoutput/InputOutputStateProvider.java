@@ -151,7 +151,13 @@ public class InputOutputStateProvider extends AbstractTmfStateProvider {
                 }
             }
             if (handler != null) {
-                handler.handleEvent(ss, event);
+                /* Send the intervals completed by this event all at once */
+                ss.startBatch();
+                try {
+                    handler.handleEvent(ss, event);
+                } finally {
+                    ss.commitBatch();
+                }
             }
         } catch (TimeRangeException | StateValueTypeException | AttributeNotFoundException e) {
             Activator.getDefault().logError("Exception while building the IO state system", e); //$NON-NLS-1$
@@ -12,7 +12,10 @@
 
 package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
@@ -46,6 +49,7 @@ import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * This is the state change input plugin for the state system which handles the
@@ -87,6 +91,9 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
      */
     private static final int VERSION = 29;
 
+    /** Event name suffix that matches all the names with a prefix */
+    private static final String WILDCARD = "*"; //$NON-NLS-1$
+
     // ------------------------------------------------------------------------
     // Fields
     // ------------------------------------------------------------------------
@@ -173,6 +180,43 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
         return new KernelStateProvider(this.getTrace(), fLayout);
     }
 
+    /**
+     * The kernel states are mostly set from the events' own fields. Around the
+     * start of a partition, the states that are derived from a previous state
+     * the partition did not see (for example, a thread scheduled in while it
+     * was in a system call) may be approximated until that thread's next
+     * event.
+     */
+    @Override
+    public boolean supportsPartitionedBuild() {
+        return true;
+    }
+
+    /**
+     * The event handlers only keep their state in the state system.
+     */
+    @Override
+    public boolean supportsResumedBuild() {
+        return true;
+    }
+
+    /**
+     * Each handler declares the payload fields it reads, and the system call
+     * handlers only need the event names.
+     */
+    @Override
+    public @Nullable Map<String, Set<String>> getEventFields() {
+        Map<String, Set<String>> eventFields = new HashMap<>();
+        for (Map.Entry<String, KernelEventHandler> entry : fEventNames.entrySet()) {
+            eventFields.put(entry.getKey(), entry.getValue().getEventFields());
+        }
+        for (String prefix : ImmutableSet.of(fLayout.eventSyscallEntryPrefix(), fLayout.eventCompatSyscallEntryPrefix(),
+                fLayout.eventSyscallExitPrefix(), fLayout.eventCompatSyscallExitPrefix())) {
+            eventFields.put(prefix + WILDCARD, Collections.emptySet());
+        }
+        return eventFields;
+    }
+
     @Override
     protected void eventHandle(@Nullable ITmfEvent event) {
         if (event == null) {
@@ -196,7 +240,13 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                 }
             }
             if (handler != null) {
-                handler.handleEvent(ss, event);
+                /* Send the intervals completed by this event all at once */
+                ss.startBatch();
+                try {
+                    handler.handleEvent(ss, event);
+                } finally {
+                    ss.commitBatch();
+                }
             }
 
         } catch (AttributeNotFoundException ae) {
@@ -9,6 +9,8 @@
 
 package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.handlers;
 
+import java.util.Set;
+
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.Attributes;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
@@ -16,6 +18,8 @@ import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundExc
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Handles a CPU frequency change event
  *
@@ -68,4 +72,8 @@ public class CpuFrequencyHandler extends KernelEventHandler {
         ss.updateOngoingState(maxVal, quark);
     }
 
+    @Override
+    public Set<String> getEventFields() {
+        return ImmutableSet.of(CPU_ID_FIELD, CPU_STATE);
+    }
 }
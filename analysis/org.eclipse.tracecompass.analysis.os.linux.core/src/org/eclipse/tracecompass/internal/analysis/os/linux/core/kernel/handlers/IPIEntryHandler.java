@@ -9,6 +9,8 @@
 
 package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.handlers;
 
+import java.util.Set;
+
 import org.eclipse.tracecompass.analysis.os.linux.core.kernel.StateValues;
 import org.eclipse.tracecompass.analysis.os.linux.core.model.ProcessStatus;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
@@ -17,6 +19,8 @@ import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * IPI Entry Handler
  *
@@ -65,4 +69,8 @@ public class IPIEntryHandler extends KernelEventHandler {
         ss.modifyAttribute(timestamp, cpu, aggregateQuark);
     }
 
+    @Override
+    public Set<String> getEventFields() {
+        return ImmutableSet.of(getLayout().fieldIPIVector());
+    }
 }
@@ -9,12 +9,16 @@
 
 package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.handlers;
 
+import java.util.Set;
+
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.Attributes;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * IPI Exit Handler
  *
@@ -56,4 +60,9 @@ public class IPIExitHandler extends KernelEventHandler {
         Integer prevCpu = KernelEventHandlerUtils.getCpuForIrq(ss, irqId);
         ss.modifyAttribute(timestamp, prevCpu, aggregateQuark);
     }
+
+    @Override
+    public Set<String> getEventFields() {
+        return ImmutableSet.of(getLayout().fieldIPIVector());
+    }
 }
@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.handlers;
 
+import java.util.Set;
+
 import org.eclipse.tracecompass.analysis.os.linux.core.kernel.StateValues;
 import org.eclipse.tracecompass.analysis.os.linux.core.model.ProcessStatus;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
@@ -20,6 +22,8 @@ import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Irq Entry Handler
  */
@@ -66,4 +70,8 @@ public class IrqEntryHandler extends KernelEventHandler {
         ss.modifyAttribute(timestamp, cpu, aggregateQuark);
     }
 
+    @Override
+    public Set<String> getEventFields() {
+        return ImmutableSet.of(getLayout().fieldIrq());
+    }
 }
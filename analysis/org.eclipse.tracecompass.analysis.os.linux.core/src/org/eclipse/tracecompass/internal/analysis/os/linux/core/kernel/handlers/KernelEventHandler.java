@@ -12,6 +12,9 @@
 
 package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.handlers;
 
+import java.util.Collections;
+import java.util.Set;
+
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
@@ -55,4 +58,15 @@ public abstract class KernelEventHandler {
      */
     public abstract void handleEvent(ITmfStateSystemBuilder ss, ITmfEvent event) throws AttributeNotFoundException;
 
+    /**
+     * Get the payload fields of the events that this handler reads. The other
+     * fields do not need to be decoded.
+     *
+     * @return the names of the fields, empty if the handler only needs the
+     *         event itself
+     */
+    public Set<String> getEventFields() {
+        return Collections.emptySet();
+    }
+
 }
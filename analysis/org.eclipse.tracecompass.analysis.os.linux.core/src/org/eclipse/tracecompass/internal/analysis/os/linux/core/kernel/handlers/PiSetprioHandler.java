@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.handlers;
 
+import java.util.Set;
+
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.Attributes;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
@@ -19,6 +21,8 @@ import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundExc
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Set Prio handler
  */
@@ -50,4 +54,9 @@ public class PiSetprioHandler extends KernelEventHandler {
         int quark = ss.getQuarkRelativeAndAdd(updateThreadNode, Attributes.PRIO);
         ss.modifyAttribute(KernelEventHandlerUtils.getTimestamp(event), prio, quark);
     }
+
+    @Override
+    public Set<String> getEventFields() {
+        return ImmutableSet.of(getLayout().fieldTid(), getLayout().fieldNewPrio());
+    }
 }
@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.handlers;
 
+import java.util.Set;
+
 import org.eclipse.tracecompass.analysis.os.linux.core.model.ProcessStatus;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.Attributes;
@@ -23,6 +25,8 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Fork Handler
  */
@@ -103,4 +107,10 @@ public class ProcessForkHandler extends KernelEventHandler {
         }
 
     }
+
+    @Override
+    public Set<String> getEventFields() {
+        return ImmutableSet.of(getLayout().fieldChildComm(), getLayout().fieldParentTid(), getLayout().fieldChildTid(),
+                getLayout().fieldChildPid());
+    }
 }
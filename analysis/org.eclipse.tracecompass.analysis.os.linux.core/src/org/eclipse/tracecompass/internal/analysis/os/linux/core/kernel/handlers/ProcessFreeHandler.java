@@ -12,12 +12,16 @@
 
 package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.handlers;
 
+import java.util.Set;
+
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.Attributes;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Process free event handler
  */
@@ -50,4 +54,9 @@ public class ProcessFreeHandler extends KernelEventHandler {
         int quark = ss.getQuarkRelativeAndAdd(KernelEventHandlerUtils.getNodeThreads(ss), threadAttributeName);
         ss.removeAttribute(KernelEventHandlerUtils.getTimestamp(event), quark);
     }
+
+    @Override
+    public Set<String> getEventFields() {
+        return ImmutableSet.of(getLayout().fieldTid());
+    }
 }
@@ -9,6 +9,8 @@
 
 package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.handlers;
 
+import java.util.Set;
+
 import org.eclipse.tracecompass.analysis.os.linux.core.model.ProcessStatus;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.Attributes;
@@ -16,6 +18,8 @@ import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Handler for task migration events. Normally moves a (non-running) process
  * from one run queue to another.
@@ -64,4 +68,8 @@ public class SchedMigrateTaskHandler extends KernelEventHandler {
         ss.modifyAttribute(t, destCpu.intValue(), quark);
     }
 
+    @Override
+    public Set<String> getEventFields() {
+        return ImmutableSet.of(getLayout().fieldTid(), getLayout().fieldDestCpu());
+    }
 }
@@ -14,6 +14,8 @@ package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.handlers
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.Set;
+
 import org.eclipse.tracecompass.analysis.os.linux.core.kernel.StateValues;
 import org.eclipse.tracecompass.analysis.os.linux.core.model.ProcessStatus;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
@@ -25,6 +27,8 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Scheduler switch event handler
  */
@@ -166,4 +170,9 @@ public class SchedSwitchHandler extends KernelEventHandler {
         ss.modifyAttribute(timestamp, processName, quark);
     }
 
+    @Override
+    public Set<String> getEventFields() {
+        return ImmutableSet.of(getLayout().fieldPrevComm(), getLayout().fieldPrevTid(), getLayout().fieldPrevState(),
+                getLayout().fieldPrevPrio(), getLayout().fieldNextComm(), getLayout().fieldNextTid(), getLayout().fieldNextPrio());
+    }
 }
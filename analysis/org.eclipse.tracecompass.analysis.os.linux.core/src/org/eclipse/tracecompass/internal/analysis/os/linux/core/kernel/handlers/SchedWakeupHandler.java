@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.handlers;
 
+import java.util.Set;
+
 import org.eclipse.tracecompass.analysis.os.linux.core.model.ProcessStatus;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.Attributes;
@@ -20,6 +22,8 @@ import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundExc
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Waking/wakeup handler.
  *
@@ -80,4 +84,9 @@ public class SchedWakeupHandler extends KernelEventHandler {
             ss.modifyAttribute(timestamp, prio, quark);
         }
     }
+
+    @Override
+    public Set<String> getEventFields() {
+        return ImmutableSet.of(getLayout().fieldTid(), getLayout().fieldPrio(), getLayout().fieldTargetCpu());
+    }
 }
@@ -14,6 +14,8 @@ package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.handlers
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.Set;
+
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernel.LinuxValues;
 import org.eclipse.tracecompass.analysis.os.linux.core.model.ProcessStatus;
@@ -25,6 +27,8 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * LTTng Specific state dump event handler
  */
@@ -119,4 +123,9 @@ public class StateDumpHandler extends KernelEventHandler {
             ss.modifyAttribute(timestamp, name, quark);
         }
     }
+
+    @Override
+    public Set<String> getEventFields() {
+        return ImmutableSet.of("tid", "pid", "ppid", "status", "name", "cpu"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+    }
 }
@@ -371,12 +371,14 @@ public class ThreadStatusDataProvider extends AbstractTmfTraceDataProvider imple
         Collection<Integer> stateAndSyscallQuarks = addSyscall(selectedIdsToQuarks.values(), ss);
         Collection<Long> times = getTimes(ss, filter);
         try {
-            /* Do the actual query */
-            for (ITmfStateInterval interval : ss.query2D(stateAndSyscallQuarks, times)) {
-                if (monitor != null && monitor.isCanceled()) {
-                    return new TmfModelResponse<>(null, ITmfResponse.Status.CANCELLED, CommonStatusMessage.TASK_CANCELLED);
+            /* Do the actual query, the intervals may be sent by several threads */
+            ss.parallelQuery2D(stateAndSyscallQuarks, times, interval -> {
+                synchronized (intervals) {
+                    intervals.put(interval.getAttribute(), interval);
                 }
-                intervals.put(interval.getAttribute(), interval);
+            }, monitor);
+            if (monitor != null && monitor.isCanceled()) {
+                return new TmfModelResponse<>(null, ITmfResponse.Status.CANCELLED, CommonStatusMessage.TASK_CANCELLED);
             }
         } catch (TimeRangeException | StateSystemDisposedException e) {
             return new TmfModelResponse<>(null, ITmfResponse.Status.FAILED, String.valueOf(e.getMessage()));
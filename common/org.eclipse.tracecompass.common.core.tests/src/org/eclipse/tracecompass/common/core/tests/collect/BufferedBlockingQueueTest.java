@@ -154,6 +154,24 @@ public class BufferedBlockingQueueTest {
         assertEquals(string, sb.toString());
     }
 
+    /**
+     * Test inserting a collection of elements that requires more than one input
+     * buffer at once.
+     */
+    @Test
+    public void testPutAll() {
+        String string = testString.substring(0, 222);
+        charQueue.putAll(Chars.asList(string.toCharArray()));
+        assertEquals(string.length(), charQueue.size());
+        charQueue.flushInputBuffer();
+
+        StringBuilder sb = new StringBuilder();
+        while (!charQueue.isEmpty()) {
+            sb.append(charQueue.take());
+        }
+        assertEquals(string, sb.toString());
+    }
+
     /**
      * Test insertion of elements that will require more than one input buffer.
      */
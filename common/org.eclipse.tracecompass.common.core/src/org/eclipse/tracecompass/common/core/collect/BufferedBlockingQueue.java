@@ -15,6 +15,7 @@ package org.eclipse.tracecompass.common.core.collect;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.Collection;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -122,6 +123,38 @@ public class BufferedBlockingQueue<T> implements Iterable<T> {
         }
     }
 
+    /**
+     * Put all the elements of a collection at the tail of the queue, in
+     * iteration order. This is equivalent to calling {@link #put} for each
+     * element, but the input lock is only taken once.
+     * <p>
+     * This method will block the caller if the output buffer is full, waiting
+     * for space to become available.
+     *
+     * @param elements
+     *            The elements to insert
+     * @since 3.1
+     */
+    public void putAll(Collection<? extends T> elements) {
+        fInputLock.lock();
+        try {
+            int added = 0;
+            for (T element : elements) {
+                fInputBuffer.add(element);
+                added++;
+                fInputBufferSize++;
+                if (fInputBufferSize >= fChunkSize) {
+                    fSize.addAndGet(added);
+                    added = 0;
+                    this.flushInputBuffer();
+                }
+            }
+            fSize.addAndGet(added);
+        } finally {
+            fInputLock.unlock();
+        }
+    }
+
     /**
      * Flush the current input buffer, disregarding the expected buffer size
      * limit.
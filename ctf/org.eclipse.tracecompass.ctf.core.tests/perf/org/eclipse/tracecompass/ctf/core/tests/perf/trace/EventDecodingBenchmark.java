@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.perf.trace;
+
+import static org.junit.Assert.fail;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructDecoder;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Benchmark of the decoding of the events of a trace, with the specialized
+ * struct decoders and with the generic decoding by the declarations.
+ */
+public class EventDecodingBenchmark {
+
+    private static final String TEST_SUITE_NAME = "CTF Event Decoding Benchmark";
+    private static final String TEST_ID = "org.eclipse.linuxtools#" + TEST_SUITE_NAME;
+    private static final int LOOP_COUNT = 100;
+
+    /**
+     * Use the specialized decoders again
+     */
+    @After
+    public void tearDown() {
+        StructDecoder.setEnabled(true);
+    }
+
+    /**
+     * Benchmark decoding the trace "kernel" with the specialized decoders
+     */
+    @Test
+    public void testKernelSpecialized() {
+        decodeTrace(CtfTestTrace.KERNEL, "kernel-specialized", true);
+    }
+
+    /**
+     * Benchmark decoding the trace "kernel" with the generic decoding
+     */
+    @Test
+    public void testKernelGeneric() {
+        decodeTrace(CtfTestTrace.KERNEL, "kernel-generic", false);
+    }
+
+    /**
+     * Benchmark decoding a UST trace with the specialized decoders
+     */
+    @Test
+    public void testUstSpecialized() {
+        decodeTrace(CtfTestTrace.CONTEXT_SWITCHES_UST, "ust-specialized", true);
+    }
+
+    /**
+     * Benchmark decoding a UST trace with the generic decoding
+     */
+    @Test
+    public void testUstGeneric() {
+        decodeTrace(CtfTestTrace.CONTEXT_SWITCHES_UST, "ust-generic", false);
+    }
+
+    private static void decodeTrace(CtfTestTrace testTrace, String testName, boolean specialized) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
+        perf.tagAsSummary(pm, TEST_SUITE_NAME + ':' + testName, Dimension.CPU_TIME);
+
+        StructDecoder.setEnabled(specialized);
+        for (int loop = 0; loop < LOOP_COUNT; loop++) {
+            pm.start();
+            try {
+                CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+                try (CTFTraceReader traceReader = new CTFTraceReader(trace);) {
+
+                    while (traceReader.hasMoreEvents()) {
+                        IEventDefinition ed = traceReader.getCurrentEventDef();
+                        /* Use the decoded payload */
+                        ed.getFields();
+                        traceReader.advance();
+                    }
+                }
+            } catch (CTFException e) {
+                fail("Test failed at iteration " + loop + ':' + e.getMessage());
+            }
+            pm.stop();
+        }
+        pm.commit();
+    }
+}
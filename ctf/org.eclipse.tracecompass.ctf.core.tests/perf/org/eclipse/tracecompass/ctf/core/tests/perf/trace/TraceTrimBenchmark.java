@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.perf.trace;
+
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTraceWriter;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.junit.Test;
+
+/**
+ * Benchmark of the trimming of a multi-stream trace with the
+ * {@link CTFTraceWriter}, keeping the whole trace, where all the packets are
+ * copied as is, or keeping a window in the middle of the trace, where the
+ * packets at the boundaries are rewritten.
+ */
+public class TraceTrimBenchmark {
+
+    private static final String TEST_SUITE_NAME = "CTF Trace Trim Benchmark";
+    private static final String TEST_ID = "org.eclipse.linuxtools#" + TEST_SUITE_NAME;
+    private static final int LOOP_COUNT = 25;
+
+    /**
+     * Benchmark trimming the trace "kernel" to its whole time range
+     */
+    @Test
+    public void testKernelWholeTrace() {
+        trimTrace(CtfTestTrace.KERNEL, "kernel-whole", 0.0, 1.0);
+    }
+
+    /**
+     * Benchmark trimming the trace "kernel" to the middle third of its time
+     * range
+     */
+    @Test
+    public void testKernelWindow() {
+        trimTrace(CtfTestTrace.KERNEL, "kernel-window", 1.0 / 3, 2.0 / 3);
+    }
+
+    private static void trimTrace(CtfTestTrace testTrace, String testName, double startRatio, double endRatio) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
+        perf.tagAsSummary(pm, TEST_SUITE_NAME + ':' + testName, Dimension.CPU_TIME);
+
+        for (int loop = 0; loop < LOOP_COUNT; loop++) {
+            File outDir = null;
+            try {
+                CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+                long start;
+                long end;
+                try (CTFTraceReader traceReader = new CTFTraceReader(trace);) {
+                    start = trace.timestampCyclesToNanos(traceReader.getStartTime());
+                    end = trace.timestampCyclesToNanos(traceReader.getEndTime());
+                }
+                long duration = end - start;
+                outDir = Files.createTempDirectory("traceTrim").toFile();
+                String outTrace = outDir.getAbsolutePath() + File.separator + testName;
+
+                pm.start();
+                CTFTraceWriter writer = new CTFTraceWriter(trace);
+                writer.copyPackets(start + (long) (duration * startRatio), start + (long) (duration * endRatio), outTrace);
+                pm.stop();
+
+            } catch (CTFException | IOException e) {
+                fail("Test failed at iteration " + loop + ':' + e.getMessage());
+            } finally {
+                if (outDir != null) {
+                    deleteAll(outDir);
+                }
+            }
+        }
+        pm.commit();
+    }
+
+    private static void deleteAll(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -14,7 +14,9 @@ package org.eclipse.tracecompass.ctf.core.tests.trace;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.nio.ByteBuffer;
 import java.util.Collections;
@@ -25,19 +27,29 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.CTFStrings;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
 import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.trace.CTFProjection;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.SequenceDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.trace.DecodedPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.trace.FieldProjection;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Unit tests for ctf packet reader: this tests creation and reading.
  *
@@ -226,4 +238,164 @@ public class CTFPacketReaderTest {
         assertFalse(cpr.hasMoreEvents());
     }
 
+    /**
+     * Test a packet read with a projection, the fields that are not projected
+     * are skipped
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testPacketWithProjection() throws CTFException {
+        byte[] bytes = { (byte) 0x00, (byte) 0x01, (byte) 0x00, (byte) 0x61, (byte) 0x62, (byte) 0x00, (byte) 0x05,
+                (byte) 0x01, (byte) 0xff, (byte) 0xff, (byte) 0x00, (byte) 0xa5 };
+        StructDeclaration eventHeaderDeclaration = new StructDeclaration(8);
+        eventHeaderDeclaration.addField("timestamp", IntegerDeclaration.INT_8_DECL);
+        final EventDeclaration eventDec = new EventDeclaration();
+        eventDec.setName("Hello");
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("field1", IntegerDeclaration.UINT_16L_DECL);
+        fields.addField("name", StringDeclaration.getStringDeclaration());
+        fields.addField("field2", IntegerDeclaration.UINT_8_DECL);
+        eventDec.setFields(fields);
+        List<@Nullable IEventDeclaration> declarations = Collections.singletonList(eventDec);
+        CTFTrace trace = new CTFTrace();
+
+        /* Only decode field2 */
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, EMPTY_STRUCT.createDefinition(null, ILexicalScope.TRACE, new BitBuffer()), bytes.length, 0, 0);
+        CTFPacketReader cpr = new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, eventHeaderDeclaration, null, null, trace);
+        cpr.setProjection(new FieldProjection(new CTFProjection(ImmutableMap.of("Hello", ImmutableSet.of("field2")))));
+        EventDefinition event = cpr.readNextEvent();
+        assertEquals(0L, event.getTimestamp());
+        assertEquals(Collections.singletonList("field2"), event.getFields().getFieldNames());
+        assertNull(event.getFields().getDefinition("field1"));
+        assertEquals(5L, ((IntegerDefinition) event.getFields().getDefinition("field2")).getValue());
+        event = cpr.readNextEvent();
+        assertEquals(1L, event.getTimestamp());
+        assertEquals(0xa5, ((IntegerDefinition) event.getFields().getDefinition("field2")).getValue());
+        assertFalse(cpr.hasMoreEvents());
+
+        /* The events that are not projected are still read, without fields */
+        cpr = new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, eventHeaderDeclaration, null, null, trace);
+        cpr.setProjection(new FieldProjection(new CTFProjection(ImmutableMap.of("Other", ImmutableSet.of(CTFProjection.ALL_FIELDS)))));
+        event = cpr.readNextEvent();
+        assertEquals(0L, event.getTimestamp());
+        assertTrue(event.getFields().getFieldNames().isEmpty());
+        event = cpr.readNextEvent();
+        assertEquals(1L, event.getTimestamp());
+        assertTrue(event.getFields().getFieldNames().isEmpty());
+        assertFalse(cpr.hasMoreEvents());
+    }
+
+    /**
+     * Test that the length of a sequence is decoded even if it is not part of
+     * the projection
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testProjectionWithSequence() throws CTFException {
+        byte[] bytes = { (byte) 0x00, (byte) 0x02, (byte) 0x0a, (byte) 0x0b, (byte) 0x34, (byte) 0x12, (byte) 0x07 };
+        StructDeclaration eventHeaderDeclaration = new StructDeclaration(8);
+        eventHeaderDeclaration.addField("timestamp", IntegerDeclaration.INT_8_DECL);
+        final EventDeclaration eventDec = new EventDeclaration();
+        eventDec.setName("Hello");
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("len", IntegerDeclaration.UINT_8_DECL);
+        fields.addField("seq", new SequenceDeclaration("len", IntegerDeclaration.UINT_8_DECL));
+        fields.addField("skipped", IntegerDeclaration.UINT_16L_DECL);
+        fields.addField("value", IntegerDeclaration.UINT_8_DECL);
+        eventDec.setFields(fields);
+        List<@Nullable IEventDeclaration> declarations = Collections.singletonList(eventDec);
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, EMPTY_STRUCT.createDefinition(null, ILexicalScope.TRACE, new BitBuffer()), bytes.length, 0, 0);
+        CTFPacketReader cpr = new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, eventHeaderDeclaration, null, null, new CTFTrace());
+        cpr.setProjection(new FieldProjection(new CTFProjection(ImmutableMap.of("Hel*", ImmutableSet.of("value")))));
+        EventDefinition event = cpr.readNextEvent();
+        assertEquals(ImmutableList.of("len", "seq", "value"), event.getFields().getFieldNames());
+        assertEquals(2L, ((IntegerDefinition) event.getFields().getDefinition("len")).getValue());
+        assertEquals(7L, ((IntegerDefinition) event.getFields().getDefinition("value")).getValue());
+        assertFalse(cpr.hasMoreEvents());
+    }
+
+    /**
+     * Test that the fields of a projection match the fields of the metadata
+     * that are escaped with a leading underscore
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testProjectionWithUnderscore() throws CTFException {
+        byte[] bytes = { (byte) 0x00, (byte) 0x34, (byte) 0x12, (byte) 0x07 };
+        StructDeclaration eventHeaderDeclaration = new StructDeclaration(8);
+        eventHeaderDeclaration.addField("timestamp", IntegerDeclaration.INT_8_DECL);
+        final EventDeclaration eventDec = new EventDeclaration();
+        eventDec.setName("Hello");
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("_skipped", IntegerDeclaration.UINT_16L_DECL);
+        fields.addField("_value", IntegerDeclaration.UINT_8_DECL);
+        eventDec.setFields(fields);
+        List<@Nullable IEventDeclaration> declarations = Collections.singletonList(eventDec);
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, EMPTY_STRUCT.createDefinition(null, ILexicalScope.TRACE, new BitBuffer()), bytes.length, 0, 0);
+        CTFPacketReader cpr = new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, eventHeaderDeclaration, null, null, new CTFTrace());
+        cpr.setProjection(new FieldProjection(new CTFProjection(ImmutableMap.of("Hello", ImmutableSet.of("value")))));
+        EventDefinition event = cpr.readNextEvent();
+        assertEquals(Collections.singletonList("_value"), event.getFields().getFieldNames());
+        assertEquals(7L, ((IntegerDefinition) event.getFields().getDefinition("_value")).getValue());
+        assertFalse(cpr.hasMoreEvents());
+    }
+
+    /**
+     * Test that a packet decoded ahead returns the same events as the packet
+     * reader, including those after the maximum number of events decoded
+     * ahead, and fails like it when the packet is truncated
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testDecodedPacket() throws CTFException {
+        byte[] bytes = { (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x01, (byte) 0xff, (byte) 0xff, (byte) 0xa5 };
+        StructDeclaration eventHeaderDeclaration = new StructDeclaration(8);
+        eventHeaderDeclaration.addField("timestamp", IntegerDeclaration.INT_8_DECL);
+        final EventDeclaration eventDec = new EventDeclaration();
+        eventDec.setName("Hello");
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("field1", IntegerDeclaration.UINT_16L_DECL);
+        fields.addField("field2", IntegerDeclaration.UINT_8_DECL);
+        eventDec.setFields(fields);
+        List<@Nullable IEventDeclaration> declarations = Collections.singletonList(eventDec);
+        CTFTrace trace = new CTFTrace();
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, EMPTY_STRUCT.createDefinition(null, ILexicalScope.TRACE, new BitBuffer()), 8, 0, 0);
+
+        CTFPacketReader cpr = new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, eventHeaderDeclaration, null, null, trace);
+        /* Only the first event is decoded ahead */
+        DecodedPacketReader decoded = DecodedPacketReader.decode(new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, eventHeaderDeclaration, null, null, trace), 1);
+        assertEquals(packetContext, decoded.getCurrentPacket());
+        assertEquals(cpr.getCPU(), decoded.getCPU());
+        while (cpr.hasMoreEvents()) {
+            assertTrue(decoded.hasMoreEvents());
+            EventDefinition expected = cpr.readNextEvent();
+            IEventDefinition event = decoded.readNextEvent();
+            assertEquals(expected.getTimestamp(), event.getTimestamp());
+            assertEquals(expected.getFields().toString(), event.getFields().toString());
+            assertEquals(cpr.getCurrentPacketEventHeader().toString(), decoded.getCurrentPacketEventHeader().toString());
+        }
+        assertFalse(decoded.hasMoreEvents());
+        assertEquals(cpr.getEventIds(), decoded.getEventIds());
+
+        /* The packet is longer than the data: the third event fails */
+        ICTFPacketDescriptor truncatedContext = new StreamInputPacketIndexEntry(0, EMPTY_STRUCT.createDefinition(null, ILexicalScope.TRACE, new BitBuffer()), 12, 0, 0);
+        decoded = DecodedPacketReader.decode(new CTFPacketReader(createBitBuffer(bytes), truncatedContext, declarations, eventHeaderDeclaration, null, null, trace), Integer.MAX_VALUE);
+        assertEquals(0L, decoded.readNextEvent().getTimestamp());
+        assertEquals(1L, decoded.readNextEvent().getTimestamp());
+        assertTrue(decoded.hasMoreEvents());
+        try {
+            decoded.readNextEvent();
+            fail();
+        } catch (CTFException e) {
+            /* Expected, like the packet reader */
+        }
+    }
 }
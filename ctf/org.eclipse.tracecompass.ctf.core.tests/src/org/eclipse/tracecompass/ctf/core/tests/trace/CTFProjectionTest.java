@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.eclipse.tracecompass.ctf.core.trace.CTFProjection;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Test the {@link CTFProjection} class
+ */
+public class CTFProjectionTest {
+
+    private static final CTFProjection FIXTURE = new CTFProjection(ImmutableMap.of(
+            "sched_switch", ImmutableSet.of("prev_tid", "next_tid"),
+            "syscall_entry_*", Collections.emptySet(),
+            "syscall_entry_open", ImmutableSet.of("filename"),
+            "irq_*", ImmutableSet.of(CTFProjection.ALL_FIELDS)));
+
+    /**
+     * Test the events and prefixes of the projection
+     */
+    @Test
+    public void testIncludesEvent() {
+        assertTrue(FIXTURE.includesEvent("sched_switch"));
+        assertTrue(FIXTURE.includesEvent("syscall_entry_read"));
+        assertTrue(FIXTURE.includesEvent("irq_handler_entry"));
+        assertFalse(FIXTURE.includesEvent("sched_switch_other"));
+        assertFalse(FIXTURE.includesEvent("syscall_exit_read"));
+        assertNull(FIXTURE.getFields("sched_wakeup"));
+    }
+
+    /**
+     * Test the fields of the projection
+     */
+    @Test
+    public void testIncludesField() {
+        assertTrue(FIXTURE.includesField("sched_switch", "prev_tid"));
+        assertFalse(FIXTURE.includesField("sched_switch", "prev_prio"));
+        assertFalse(FIXTURE.includesField("syscall_entry_read", "fd"));
+        assertTrue(FIXTURE.includesField("syscall_entry_open", "filename"));
+        assertTrue(FIXTURE.includesField("irq_handler_entry", "irq"));
+        assertEquals(ImmutableSet.of(CTFProjection.ALL_FIELDS), FIXTURE.getFields("irq_softirq_entry"));
+        assertFalse(FIXTURE.includesField("sched_wakeup", "tid"));
+    }
+
+    /**
+     * Test the union of two projections
+     */
+    @Test
+    public void testUnion() {
+        CTFProjection other = new CTFProjection(ImmutableMap.of(
+                "sched_switch", ImmutableSet.of("prev_state"),
+                "sched_wakeup", ImmutableSet.of(CTFProjection.ALL_FIELDS)));
+        CTFProjection union = FIXTURE.union(other);
+        assertEquals(ImmutableSet.of("prev_tid", "next_tid", "prev_state"), union.getFields("sched_switch"));
+        assertTrue(union.includesField("sched_wakeup", "tid"));
+        assertTrue(union.includesEvent("syscall_entry_read"));
+        assertEquals(union, other.union(FIXTURE));
+        assertEquals(union.hashCode(), other.union(FIXTURE).hashCode());
+        assertFalse(union.equals(FIXTURE));
+    }
+}
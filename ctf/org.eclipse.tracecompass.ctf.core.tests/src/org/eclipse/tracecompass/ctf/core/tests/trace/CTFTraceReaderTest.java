@@ -298,6 +298,44 @@ public class CTFTraceReaderTest {
         assertTrue(result);
     }
 
+    /**
+     * Test that the pipelined mode reads the same events, in the same order,
+     * including after a seek
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testPipelined() throws CTFException {
+        CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+        try (CTFTraceReader pipelined = new CTFTraceReader(trace);) {
+            pipelined.setPipelined(true);
+            assertTrue(pipelined.isPipelined());
+            try (CTFTraceReader copy = pipelined.copyFrom();) {
+                assertTrue(copy.isPipelined());
+            }
+            assertSameEvents(fixture, pipelined);
+
+            long middle = (fixture.getTrace().timestampNanoToCycles(fixture.getStartTime()) + fixture.getTrace().timestampNanoToCycles(fixture.getEndTime())) / 2;
+            assertEquals(fixture.seek(middle), pipelined.seek(middle));
+            assertSameEvents(fixture, pipelined);
+        }
+    }
+
+    private static void assertSameEvents(CTFTraceReader expected, CTFTraceReader actual) throws CTFException {
+        while (expected.hasMoreEvents()) {
+            assertTrue(actual.hasMoreEvents());
+            IEventDefinition expectedEvent = expected.getCurrentEventDef();
+            IEventDefinition event = actual.getCurrentEventDef();
+            assertEquals(expectedEvent.getTimestamp(), event.getTimestamp());
+            assertEquals(expectedEvent.getDeclaration().getName(), event.getDeclaration().getName());
+            assertEquals(expectedEvent.getCPU(), event.getCPU());
+            expected.advance();
+            actual.advance();
+        }
+        assertFalse(actual.hasMoreEvents());
+    }
+
     /**
      * @return
      */
@@ -25,7 +25,9 @@ import java.util.List;
 
 import org.eclipse.core.runtime.URIUtil;
 import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
@@ -119,6 +121,13 @@ public class CTFTraceWriterTest {
                             STREAM1_FIRST_EVENT_TIME,
                             STREAM1_LAST_EVENT_TIME);
 
+        addParams(params, "STREAM0_FIRST_PACKET_TO_LAST_EVENT",
+                            STREAM0_FIRST_PACKET_TIME,
+                            STREAM0_LAST_EVENT_TIME,
+                            -1,
+                            STREAM0_FIRST_EVENT_TIME,
+                            STREAM0_LAST_EVENT_TIME);
+
         addParams(params, "BOTH_STREAMS_SEVERAL_PACKETS",
                 STREAM1_FIFTH_PACKET_TIME,
                 STREAM1_TENTH_PACKET_TIME,
@@ -182,9 +191,11 @@ public class CTFTraceWriterTest {
                 assertTrue("metadata", metadata.exists());
 
                 CTFTrace outTrace = new CTFTrace(traceName);
+                long offset = outTrace.getClock().getClockOffset();
                 int count = 0;
                 Long start = null;
                 long end = 0;
+                long packetEnd = 0;
                 try (CTFTraceReader reader = new CTFTraceReader(outTrace)) {
                     while(reader.hasMoreEvents()) {
                         count++;
@@ -193,9 +204,19 @@ public class CTFTraceWriterTest {
                         if (start == null) {
                             start = reader.getStartTime();
                         }
+                        // the packets that are trimmed end at their last kept event
+                        packetEnd = ((IntegerDefinition) def.getPacketContext().getDefinition(CTFStrings.TIMESTAMP_END)).getValue();
+                        assertTrue("packet end after its events", packetEnd >= end);
+                        if (fEndTime != Long.MAX_VALUE) {
+                            assertTrue("packet end in range", offset + packetEnd <= fEndTime);
+                        }
                         reader.advance();
                     }
-                    end = outTrace.getClock().getClockOffset() + end;
+                    end = offset + end;
+                }
+
+                if (fNbEvents > 0 && fLastEventTime == fEndTime) {
+                    assertEquals("last packet end", fLastEventTime, offset + packetEnd);
                 }
 
                 if (fFirstEventTime >= 0) {
@@ -204,7 +225,9 @@ public class CTFTraceWriterTest {
                 if (fLastEventTime >= 0) {
                     assertEquals("last event time", fLastEventTime, end);
                 }
-                assertEquals(toString(), fNbEvents, count);
+                if (fNbEvents >= 0) {
+                    assertEquals(toString(), fNbEvents, count);
+                }
 
                 if (fNbEvents == 0) {
                     assertFalse("channel0", getChannelFile(traceName, 0).exists());
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.internal.ctf.core.trace.FileChannelPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the pool of the file channels of the stream files,
+ * {@link FileChannelPool}.
+ */
+public class FileChannelPoolTest {
+
+    private static final int NB_FILES = 4;
+
+    private File fDirectory;
+    private final File[] fFiles = new File[NB_FILES];
+
+    /**
+     * Create the files, each filled with its number
+     *
+     * @throws IOException
+     *             if the files cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        fDirectory = Files.createTempDirectory("channelPool").toFile();
+        for (int i = 0; i < NB_FILES; i++) {
+            fFiles[i] = new File(fDirectory, "channel0_" + i);
+            byte[] content = new byte[64];
+            content[10] = (byte) i;
+            Files.write(fFiles[i].toPath(), content);
+        }
+    }
+
+    /**
+     * Delete the files
+     */
+    @After
+    public void tearDown() {
+        for (File file : fFiles) {
+            file.delete();
+        }
+        fDirectory.delete();
+    }
+
+    /**
+     * Test that the number of open channels is bounded, and that the mapped
+     * buffers are still valid once their channel is closed
+     *
+     * @throws IOException
+     *             won't happen
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testBounded() throws IOException, CTFException {
+        FileChannelPool pool = new FileChannelPool(2);
+        ByteBuffer[] buffers = new ByteBuffer[NB_FILES];
+        for (int i = 0; i < NB_FILES; i++) {
+            pool.register(fFiles[i]);
+            buffers[i] = pool.map(fFiles[i], 8, 8);
+            assertEquals(Math.min(i + 1, 2), pool.getOpenFiles());
+        }
+        for (int i = 0; i < NB_FILES; i++) {
+            assertEquals(i, buffers[i].get(2));
+        }
+        /* A closed channel is opened again */
+        assertEquals(0, pool.map(fFiles[0], 10, 1).get(0));
+        assertEquals(2, pool.getOpenFiles());
+
+        for (int i = 0; i < NB_FILES; i++) {
+            pool.unregister(fFiles[i]);
+        }
+        assertEquals(0, pool.getOpenFiles());
+    }
+
+    /**
+     * Test that the channel of a file without readers is closed once it is
+     * mapped
+     *
+     * @throws IOException
+     *             won't happen
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testNoReader() throws IOException, CTFException {
+        FileChannelPool pool = new FileChannelPool(2);
+        assertEquals(1, pool.map(fFiles[1], 10, 1).get(0));
+        assertEquals(0, pool.getOpenFiles());
+
+        pool.register(fFiles[1]);
+        pool.map(fFiles[1], 0, 16);
+        assertEquals(1, pool.getOpenFiles());
+        pool.unregister(fFiles[1]);
+        pool.unregister(fFiles[1]);
+        assertEquals(0, pool.getOpenFiles());
+    }
+}
@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.CTFClock;
+import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDefinition;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
+import org.eclipse.tracecompass.ctf.core.trace.Metadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Test the traces with CTF 2 JSON metadata
+ */
+public class JsonMetadataTest {
+
+    private static final String RS = "\u001e";
+
+    private static final String U8 = "{\"type\": \"fixed-length-unsigned-integer\", \"length\": 8, \"byte-order\": \"little-endian\", \"alignment\": 8}";
+    private static final String U32 = "{\"type\": \"fixed-length-unsigned-integer\", \"length\": 32, \"byte-order\": \"little-endian\", \"alignment\": 8";
+    private static final String U64 = "{\"type\": \"fixed-length-unsigned-integer\", \"length\": 64, \"byte-order\": \"little-endian\", \"alignment\": 8";
+
+    private static final String METADATA = RS + "{\"type\": \"preamble\", \"version\": 2}\n"
+            + RS + "{\"type\": \"field-class-alias\", \"name\": \"u8\", \"field-class\": " + U8 + "}\n"
+            + RS + "{\"type\": \"trace-class\", \"environment\": {\"domain\": \"ust\", \"tracer_major\": 2},"
+            + " \"packet-header-field-class\": {\"type\": \"structure\", \"member-classes\": ["
+            + "{\"name\": \"the_magic\", \"field-class\": " + U32 + ", \"roles\": [\"packet-magic-number\"]}},"
+            + "{\"name\": \"the_stream\", \"field-class\": " + U64 + ", \"roles\": [\"data-stream-class-id\"]}}]}}\n"
+            + RS + "{\"type\": \"clock-class\", \"id\": \"monotonic\", \"frequency\": 1000000000,"
+            + " \"offset-from-origin\": {\"seconds\": 2, \"cycles\": 5}, \"description\": \"Monotonic Clock\"}\n"
+            + RS + "{\"type\": \"data-stream-class\", \"default-clock-class-id\": \"monotonic\","
+            + " \"packet-context-field-class\": {\"type\": \"structure\", \"member-classes\": ["
+            + "{\"name\": \"total\", \"field-class\": " + U64 + ", \"roles\": [\"packet-total-length\"]}},"
+            + "{\"name\": \"content\", \"field-class\": " + U64 + ", \"roles\": [\"packet-content-length\"]}},"
+            + "{\"name\": \"begin\", \"field-class\": " + U64 + ", \"roles\": [\"default-clock-timestamp\"]}},"
+            + "{\"name\": \"end\", \"field-class\": " + U64 + ", \"roles\": [\"packet-end-default-clock-timestamp\"]}}]},"
+            + " \"event-record-header-field-class\": {\"type\": \"structure\", \"minimum-alignment\": 8, \"member-classes\": ["
+            + "{\"name\": \"type\", \"field-class\": {\"type\": \"fixed-length-unsigned-integer\", \"length\": 8, \"byte-order\": \"little-endian\", \"roles\": [\"event-record-class-id\"]}},"
+            + "{\"name\": \"v\", \"field-class\": {\"type\": \"variant\", \"selector-field-location\": {\"origin\": \"event-record-header\", \"path\": [\"type\"]}, \"options\": ["
+            + "{\"name\": \"compact\", \"selector-field-ranges\": [[0, 30]], \"field-class\": {\"type\": \"structure\", \"member-classes\": ["
+            + "{\"name\": \"ts\", \"field-class\": " + U64 + ", \"roles\": [\"default-clock-timestamp\"]}}]}},"
+            + "{\"name\": \"extended\", \"selector-field-ranges\": [[31, 31]], \"field-class\": {\"type\": \"structure\", \"member-classes\": ["
+            + "{\"name\": \"ext_id\", \"field-class\": " + U32 + ", \"roles\": [\"event-record-class-id\"]}},"
+            + "{\"name\": \"ts\", \"field-class\": " + U64 + ", \"roles\": [\"default-clock-timestamp\"]}}]}}]}}]}}\n"
+            + RS + "{\"type\": \"event-record-class\", \"id\": 0, \"name\": \"test:value\","
+            + " \"attributes\": {\"lttng.org,2009\": {\"log-level\": 13}},"
+            + " \"payload-field-class\": {\"type\": \"structure\", \"member-classes\": ["
+            + "{\"name\": \"value\", \"field-class\": {\"type\": \"fixed-length-signed-integer\", \"length\": 32, \"byte-order\": \"little-endian\", \"alignment\": 8}}]}}\n"
+            + RS + "{\"type\": \"event-record-class\", \"id\": 1, \"name\": \"test:message\", \"unknown\": null,"
+            + " \"payload-field-class\": {\"type\": \"structure\", \"member-classes\": ["
+            + "{\"name\": \"len\", \"field-class\": \"u8\"},"
+            + "{\"name\": \"data\", \"field-class\": {\"type\": \"dynamic-length-array\", \"length-field-location\": {\"origin\": \"event-record-payload\", \"path\": [\"len\"]}, \"element-field-class\": \"u8\"}},"
+            + "{\"name\": \"msg\", \"field-class\": {\"type\": \"null-terminated-string\"}}]}}\n";
+
+    private static final int MAGIC = 0xC1FC1FC1;
+    private static final int PACKET_SIZE = 256;
+    private static final long FIRST_TIMESTAMP = 1000;
+    private static final int NB_EVENTS = 6;
+
+    private File fDirectory;
+
+    /**
+     * Create the trace
+     *
+     * @throws IOException
+     *             if the trace cannot be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        fDirectory = Files.createTempDirectory("jsonMetadata").toFile();
+        Files.write(new File(fDirectory, "metadata").toPath(), METADATA.getBytes(StandardCharsets.UTF_8));
+
+        ByteBuffer data = ByteBuffer.allocate(PACKET_SIZE);
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(MAGIC);
+        data.putLong(0);
+        data.putLong(PACKET_SIZE * 8);
+        int contentSizePosition = data.position();
+        data.putLong(0);
+        data.putLong(FIRST_TIMESTAMP);
+        data.putLong(FIRST_TIMESTAMP + NB_EVENTS - 1);
+        for (int i = 0; i < NB_EVENTS; i++) {
+            int id = i % 2;
+            data.put((byte) id);
+            data.putLong(FIRST_TIMESTAMP + i);
+            if (id == 0) {
+                data.putInt(-i);
+            } else {
+                data.put((byte) 2);
+                data.put((byte) i);
+                data.put((byte) (i + 1));
+                data.put(("msg" + i).getBytes(StandardCharsets.UTF_8));
+                data.put((byte) 0);
+            }
+        }
+        data.putLong(contentSizePosition, data.position() * 8L);
+        data.rewind();
+        try (FileOutputStream fos = new FileOutputStream(new File(fDirectory, "channel_0"))) {
+            fos.getChannel().write(data);
+        }
+    }
+
+    /**
+     * Delete the trace
+     */
+    @After
+    public void tearDown() {
+        for (File file : fDirectory.listFiles()) {
+            file.delete();
+        }
+        fDirectory.delete();
+    }
+
+    /**
+     * Test the declarations of the trace
+     *
+     * @throws CTFException
+     *             if the trace cannot be read
+     */
+    @Test
+    public void testDeclarations() throws CTFException {
+        assertTrue(Metadata.preValidate(fDirectory.getAbsolutePath()));
+        CTFTrace trace = new CTFTrace(fDirectory);
+        assertEquals(2, trace.getMajor());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, trace.getByteOrder());
+        assertEquals("\"ust\"", trace.getEnvironment().get("domain"));
+        assertEquals("2", trace.getEnvironment().get("tracer_major"));
+        assertTrue(trace.getPacketHeader().hasField("magic"));
+        assertTrue(trace.getPacketHeader().hasField("stream_id"));
+
+        CTFClock clock = trace.getClock();
+        assertNotNull(clock);
+        assertEquals("monotonic", clock.getName());
+        assertEquals(2000000005L, clock.getClockOffset());
+        assertEquals("Monotonic Clock", clock.getProperty("description"));
+
+        assertEquals(1, trace.nbStreams());
+        ICTFStream stream = trace.getStream(0L);
+        assertNotNull(stream);
+        assertTrue(stream.getPacketContextDecl().hasField("timestamp_begin"));
+        assertTrue(stream.getPacketContextDecl().hasField("timestamp_end"));
+        assertTrue(stream.getPacketContextDecl().hasField("content_size"));
+        assertTrue(stream.getPacketContextDecl().hasField("packet_size"));
+
+        IEventDeclaration value = stream.getEventDeclaration(0);
+        assertEquals("test:value", value.getName());
+        assertEquals(13, value.getLogLevel());
+        assertTrue(value.getFields().hasField("value"));
+        IEventDeclaration message = stream.getEventDeclaration(1);
+        assertEquals("test:message", message.getName());
+        assertEquals(ImmutableList.of("len", "data", "msg"), ImmutableList.copyOf(message.getFields().getFieldsList()));
+    }
+
+    /**
+     * Test reading the events of the trace
+     *
+     * @throws CTFException
+     *             if the trace cannot be read
+     */
+    @Test
+    public void testRead() throws CTFException {
+        CTFTrace trace = new CTFTrace(fDirectory);
+        try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+            for (int i = 0; i < NB_EVENTS; i++) {
+                IEventDefinition event = reader.getCurrentEventDef();
+                assertNotNull(event);
+                assertEquals(FIRST_TIMESTAMP + i, event.getTimestamp());
+                if (i % 2 == 0) {
+                    assertEquals("test:value", event.getDeclaration().getName());
+                    assertEquals(-i, ((IntegerDefinition) event.getFields().getDefinition("value")).getValue());
+                } else {
+                    assertEquals("test:message", event.getDeclaration().getName());
+                    assertEquals("msg" + i, ((StringDefinition) event.getFields().getDefinition("msg")).getValue());
+                }
+                reader.advance();
+            }
+            assertFalse(reader.hasMoreEvents());
+        }
+    }
+
+    /**
+     * Test that a trace opened again gets the declarations of the cached
+     * metadata, with its own streams and event declarations
+     *
+     * @throws CTFException
+     *             if the trace cannot be read
+     */
+    @Test
+    public void testCachedMetadata() throws CTFException {
+        CTFTrace first = new CTFTrace(fDirectory);
+        CTFTrace second = new CTFTrace(fDirectory);
+        IEventDeclaration firstEvent = first.getStream(0L).getEventDeclaration(1);
+        IEventDeclaration secondEvent = second.getStream(0L).getEventDeclaration(1);
+        assertNotSame(firstEvent, secondEvent);
+        assertEquals(firstEvent.getName(), secondEvent.getName());
+        assertSame(firstEvent.getFields(), secondEvent.getFields());
+        assertSame(second, secondEvent.getStream().getTrace());
+        assertEquals(first.getEnvironment(), second.getEnvironment());
+        try (CTFTraceReader reader = new CTFTraceReader(second)) {
+            assertEquals(FIRST_TIMESTAMP, reader.getCurrentEventDef().getTimestamp());
+        }
+    }
+
+    /**
+     * Test that traces sharing the declarations of the cached metadata can be
+     * read concurrently
+     *
+     * @throws Exception
+     *             if the traces cannot be read
+     */
+    @Test
+    public void testCachedMetadataConcurrentRead() throws Exception {
+        CTFTrace first = new CTFTrace(fDirectory);
+        CTFTrace second = new CTFTrace(fDirectory);
+        assertSame(first.getStream(0L).getEventDeclaration(1).getFields(), second.getStream(0L).getEventDeclaration(1).getFields());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Long> firstCount = executor.submit(() -> readMessages(first));
+            Future<Long> secondCount = executor.submit(() -> readMessages(second));
+            assertEquals(NB_EVENTS / 2, firstCount.get().longValue());
+            assertEquals(NB_EVENTS / 2, secondCount.get().longValue());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long readMessages(CTFTrace trace) throws CTFException {
+        long count = 0;
+        try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+            while (reader.hasMoreEvents()) {
+                IEventDefinition event = reader.getCurrentEventDef();
+                assertNotNull(event);
+                if ("test:message".equals(event.getDeclaration().getName())) {
+                    long i = event.getTimestamp() - FIRST_TIMESTAMP;
+                    assertEquals("msg" + i, ((StringDefinition) event.getFields().getDefinition("msg")).getValue());
+                    count++;
+                }
+                reader.advance();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Test that the fragments of the metadata can be parsed after the metadata
+     * file, even if the metadata is cached
+     *
+     * @throws CTFException
+     *             if the metadata cannot be parsed
+     */
+    @Test
+    public void testFragmentAfterFile() throws CTFException {
+        /* Cache the metadata */
+        new CTFTrace(fDirectory);
+
+        final File directory = fDirectory;
+        CTFTrace trace = new CTFTrace() {
+            @Override
+            public File getTraceDirectory() {
+                return directory;
+            }
+        };
+        Metadata metadata = new Metadata(trace);
+        metadata.parseFile();
+        metadata.parseTextFragment(RS + "{\"type\": \"event-record-class\", \"id\": 2, \"name\": \"test:other\","
+                + " \"payload-field-class\": {\"type\": \"structure\", \"member-classes\": ["
+                + "{\"name\": \"other\", \"field-class\": \"u8\"}]}}\n");
+        IEventDeclaration event = trace.getStream(0L).getEventDeclaration(2);
+        assertNotNull(event);
+        assertEquals("test:other", event.getName());
+    }
+
+    /**
+     * Test that the metadata of an unsupported version is rejected
+     *
+     * @throws IOException
+     *             if the metadata cannot be written
+     * @throws CTFException
+     *             expected
+     */
+    @Test(expected = CTFException.class)
+    public void testUnsupportedVersion() throws IOException, CTFException {
+        String metadata = METADATA.replace("\"version\": 2", "\"version\": 3");
+        Files.write(new File(fDirectory, "metadata").toPath(), metadata.getBytes(StandardCharsets.UTF_8));
+        new CTFTrace(fDirectory);
+    }
+}
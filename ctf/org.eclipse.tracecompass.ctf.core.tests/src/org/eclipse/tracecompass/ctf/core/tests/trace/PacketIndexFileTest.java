@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.AbstractMap;
+import java.util.BitSet;
+
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.trace.PacketIndexFile;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Test the file that stores the packet index of a stream file,
+ * {@link PacketIndexFile}.
+ */
+public class PacketIndexFileTest {
+
+    private File fDirectory;
+    private File fStreamFile;
+    private File fIndexFile;
+
+    /**
+     * Create the stream file
+     *
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        fDirectory = Files.createTempDirectory("packetIndex").toFile();
+        fStreamFile = new File(fDirectory, "channel0_0");
+        Files.write(fStreamFile.toPath(), new byte[1024]);
+        fIndexFile = new File(fDirectory, "index/channel0_0.packets");
+    }
+
+    /**
+     * Delete the files
+     */
+    @After
+    public void tearDown() {
+        fIndexFile.delete();
+        fIndexFile.getParentFile().delete();
+        fStreamFile.delete();
+        fDirectory.delete();
+    }
+
+    /**
+     * Test that the entries read back are the ones that were written
+     *
+     * @throws IOException
+     *             won't happen
+     */
+    @Test
+    public void testReadWrite() throws IOException {
+        StreamInputPacketIndex index = new StreamInputPacketIndex();
+        index.append(new StreamInputPacketIndexEntry(0, 4096, 4000, 256, 100, 200, 0, "CPU0", 0,
+                ImmutableMap.of("timestamp_begin", 100L, "timestamp_end", 200L, "cpu_id", 0L)));
+        index.append(new StreamInputPacketIndexEntry(4096, 4096, 4096, 4352, 200, 300, 3, null, -1,
+                ImmutableMap.of("frequency", 1.5, "device", "eth0", "mode", new AbstractMap.SimpleImmutableEntry<>("fast", 2L))));
+        BitSet eventIds = new BitSet();
+        eventIds.set(3);
+        eventIds.set(70);
+        index.setEventIds(0, eventIds);
+        PacketIndexFile.write(fIndexFile, fStreamFile, index);
+
+        StreamInputPacketIndex entries = new StreamInputPacketIndex();
+        assertTrue(PacketIndexFile.read(fIndexFile, fStreamFile, entries));
+        assertEquals(index.size(), entries.size());
+        assertEquals(eventIds, entries.getEventIds(0));
+        assertTrue(entries.hasAllEventIds());
+        for (int i = 0; i < index.size(); i++) {
+            ICTFPacketDescriptor expected = index.getElement(i);
+            ICTFPacketDescriptor actual = entries.getElement(i);
+            assertEquals(expected.getOffsetBits(), actual.getOffsetBits());
+            assertEquals(expected.getOffsetBytes(), actual.getOffsetBytes());
+            assertEquals(expected.getPacketSizeBits(), actual.getPacketSizeBits());
+            assertEquals(expected.getContentSizeBits(), actual.getContentSizeBits());
+            assertEquals(expected.getPayloadStartBits(), actual.getPayloadStartBits());
+            assertEquals(expected.getTimestampBegin(), actual.getTimestampBegin());
+            assertEquals(expected.getTimestampEnd(), actual.getTimestampEnd());
+            assertEquals(expected.getLostEvents(), actual.getLostEvents());
+            assertEquals(expected.getTarget(), actual.getTarget());
+            assertEquals(expected.getTargetId(), actual.getTargetId());
+            assertEquals(expected.getAttributes(), actual.getAttributes());
+        }
+    }
+
+    /**
+     * Test that the index is not used once the stream file changed
+     *
+     * @throws IOException
+     *             won't happen
+     */
+    @Test
+    public void testStale() throws IOException {
+        assertFalse(PacketIndexFile.read(fIndexFile, fStreamFile, new StreamInputPacketIndex()));
+
+        StreamInputPacketIndex index = new StreamInputPacketIndex();
+        index.append(new StreamInputPacketIndexEntry(0, 8192, 8192, 0, 100, 200, 0, "CPU0", 0, ImmutableMap.of()));
+        PacketIndexFile.write(fIndexFile, fStreamFile, index);
+        assertTrue(PacketIndexFile.read(fIndexFile, fStreamFile, new StreamInputPacketIndex()));
+
+        Files.write(fStreamFile.toPath(), new byte[2048]);
+        assertFalse(PacketIndexFile.read(fIndexFile, fStreamFile, new StreamInputPacketIndex()));
+    }
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Test that the packets outside of the range to read, or without the events
+ * to read, are skipped.
+ */
+public class PacketSkippingTest {
+
+    private static final String RS = "\u001e";
+
+    private static final String U32 = "{\"type\": \"fixed-length-unsigned-integer\", \"length\": 32, \"byte-order\": \"little-endian\", \"alignment\": 8";
+    private static final String U64 = "{\"type\": \"fixed-length-unsigned-integer\", \"length\": 64, \"byte-order\": \"little-endian\", \"alignment\": 8";
+    private static final String PAYLOAD = " \"payload-field-class\": {\"type\": \"structure\", \"member-classes\": ["
+            + "{\"name\": \"value\", \"field-class\": " + U32 + "}}]}}\n";
+
+    private static final String METADATA = RS + "{\"type\": \"preamble\", \"version\": 2}\n"
+            + RS + "{\"type\": \"trace-class\","
+            + " \"packet-header-field-class\": {\"type\": \"structure\", \"member-classes\": ["
+            + "{\"name\": \"magic\", \"field-class\": " + U32 + ", \"roles\": [\"packet-magic-number\"]}}]}}\n"
+            + RS + "{\"type\": \"clock-class\", \"id\": \"monotonic\", \"frequency\": 1000000000}\n"
+            + RS + "{\"type\": \"data-stream-class\", \"default-clock-class-id\": \"monotonic\","
+            + " \"packet-context-field-class\": {\"type\": \"structure\", \"member-classes\": ["
+            + "{\"name\": \"total\", \"field-class\": " + U64 + ", \"roles\": [\"packet-total-length\"]}},"
+            + "{\"name\": \"content\", \"field-class\": " + U64 + ", \"roles\": [\"packet-content-length\"]}},"
+            + "{\"name\": \"begin\", \"field-class\": " + U64 + ", \"roles\": [\"default-clock-timestamp\"]}},"
+            + "{\"name\": \"end\", \"field-class\": " + U64 + ", \"roles\": [\"packet-end-default-clock-timestamp\"]}}]},"
+            + " \"event-record-header-field-class\": {\"type\": \"structure\", \"member-classes\": ["
+            + "{\"name\": \"type\", \"field-class\": " + U32 + ", \"roles\": [\"event-record-class-id\"]}},"
+            + "{\"name\": \"ts\", \"field-class\": " + U64 + ", \"roles\": [\"default-clock-timestamp\"]}}]}}\n"
+            + RS + "{\"type\": \"event-record-class\", \"id\": 0, \"name\": \"sched_wakeup\"," + PAYLOAD
+            + RS + "{\"type\": \"event-record-class\", \"id\": 1, \"name\": \"sched_switch\"," + PAYLOAD;
+
+    private static final int MAGIC = 0xC1FC1FC1;
+    private static final int PACKET_SIZE = 128;
+    private static final int NB_PACKETS = 4;
+    private static final int NB_EVENTS_PER_PACKET = 4;
+    private static final long FIRST_TIMESTAMP = 1000;
+    private static final long PACKET_DURATION = 10;
+
+    private File fDirectory;
+
+    /**
+     * Create the trace. The events of the even packets are all sched_wakeup,
+     * the events of the odd packets are all sched_switch.
+     *
+     * @throws IOException
+     *             if the trace cannot be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        fDirectory = Files.createTempDirectory("packetSkipping").toFile();
+        Files.write(new File(fDirectory, "metadata").toPath(), METADATA.getBytes(StandardCharsets.UTF_8));
+
+        ByteBuffer data = ByteBuffer.allocate(PACKET_SIZE * NB_PACKETS);
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        for (int packet = 0; packet < NB_PACKETS; packet++) {
+            int packetStart = packet * PACKET_SIZE;
+            long begin = getTimestamp(packet, 0);
+            data.position(packetStart);
+            data.putInt(MAGIC);
+            data.putLong(PACKET_SIZE * 8);
+            int contentSizePosition = data.position();
+            data.putLong(0);
+            data.putLong(begin);
+            data.putLong(getTimestamp(packet, NB_EVENTS_PER_PACKET - 1));
+            for (int i = 0; i < NB_EVENTS_PER_PACKET; i++) {
+                data.putInt(packet % 2);
+                data.putLong(getTimestamp(packet, i));
+                data.putInt(i);
+            }
+            data.putLong(contentSizePosition, (data.position() - packetStart) * 8L);
+        }
+        data.rewind();
+        try (FileOutputStream fos = new FileOutputStream(new File(fDirectory, "channel_0"))) {
+            fos.getChannel().write(data);
+        }
+    }
+
+    /**
+     * Delete the trace
+     */
+    @After
+    public void tearDown() {
+        deleteAll(fDirectory);
+    }
+
+    private static void deleteAll(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static long getTimestamp(int packet, int event) {
+        return FIRST_TIMESTAMP + packet * PACKET_DURATION + event;
+    }
+
+    private static List<IEventDefinition> readAll(CTFTraceReader reader) throws CTFException {
+        List<IEventDefinition> events = new ArrayList<>();
+        while (reader.hasMoreEvents()) {
+            IEventDefinition event = reader.getCurrentEventDef();
+            assertNotNull(event);
+            events.add(event);
+            reader.advance();
+        }
+        return events;
+    }
+
+    /**
+     * Test that the packets that end before the range, or begin after it, are
+     * not read
+     *
+     * @throws CTFException
+     *             if the trace cannot be read
+     */
+    @Test
+    public void testReadRange() throws CTFException {
+        CTFTrace trace = new CTFTrace(fDirectory);
+        try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+            reader.setReadRange(getTimestamp(1, 2), getTimestamp(2, 1));
+            reader.seek(0);
+            List<IEventDefinition> events = readAll(reader);
+            /* The events of the packets that overlap the range are all read */
+            assertEquals(NB_EVENTS_PER_PACKET * 2, events.size());
+            assertEquals(getTimestamp(1, 0), events.get(0).getTimestamp());
+            assertEquals(getTimestamp(2, NB_EVENTS_PER_PACKET - 1), events.get(events.size() - 1).getTimestamp());
+        }
+    }
+
+    /**
+     * Test that the packets are not skipped when their events are not known
+     * yet, and are once the trace was read completely
+     *
+     * @throws CTFException
+     *             if the trace cannot be read
+     */
+    @Test
+    public void testEventFilter() throws CTFException {
+        CTFTrace trace = new CTFTrace(fDirectory);
+        try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+            reader.setEventFilter(ImmutableSet.of("sched_switch"));
+            assertEquals(NB_PACKETS * NB_EVENTS_PER_PACKET, readAll(reader).size());
+
+            reader.seek(0);
+            List<IEventDefinition> events = readAll(reader);
+            assertEquals(NB_PACKETS * NB_EVENTS_PER_PACKET / 2, events.size());
+            for (IEventDefinition event : events) {
+                assertEquals("sched_switch", event.getDeclaration().getName());
+            }
+
+            reader.setEventFilter(null);
+            reader.seek(0);
+            assertEquals(NB_PACKETS * NB_EVENTS_PER_PACKET, readAll(reader).size());
+        }
+    }
+
+    /**
+     * Test that the events of the packets are kept in the packet index file,
+     * when they are read by a pipelined reader, and used by the next readers
+     * of the trace
+     *
+     * @throws CTFException
+     *             if the trace cannot be read
+     */
+    @Test
+    public void testEventFilterFromIndexFile() throws CTFException {
+        File indexDirectory = new File(fDirectory, "index");
+        CTFTrace trace = new CTFTrace(fDirectory);
+        trace.setPacketIndexDirectory(indexDirectory);
+        try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+            reader.setPipelined(true);
+            readAll(reader);
+        }
+
+        CTFTrace other = new CTFTrace(fDirectory);
+        other.setPacketIndexDirectory(indexDirectory);
+        try (CTFTraceReader reader = new CTFTraceReader(other)) {
+            reader.setEventFilter(ImmutableSet.of("sched_wakeup"));
+            reader.setReadRange(getTimestamp(1, 0), Long.MAX_VALUE);
+            reader.seek(getTimestamp(1, 0));
+            List<IEventDefinition> events = readAll(reader);
+            List<Long> timestamps = new ArrayList<>();
+            for (IEventDefinition event : events) {
+                assertEquals("sched_wakeup", event.getDeclaration().getName());
+                timestamps.add(event.getTimestamp());
+            }
+            assertEquals(ImmutableList.of(getTimestamp(2, 0), getTimestamp(2, 1), getTimestamp(2, 2), getTimestamp(2, 3)), timestamps);
+            assertFalse(reader.hasMoreEvents());
+        }
+    }
+}
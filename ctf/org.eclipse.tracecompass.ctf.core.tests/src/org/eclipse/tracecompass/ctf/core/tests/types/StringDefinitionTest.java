@@ -13,8 +13,10 @@ package org.eclipse.tracecompass.ctf.core.tests.types;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
@@ -109,4 +111,42 @@ public class StringDefinitionTest {
         String result = fixture.toString();
         assertNotNull(result);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test that the strings read from a buffer are decoded when they are
+     * read, and that the short strings that are repeated are shared
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testDecodeOnRead() throws CTFException {
+        StringDeclaration stringDec = StringDeclaration.getStringDeclaration(Encoding.UTF8);
+        byte[] bytes = "sched_switch\0sched_switch\0\u00e9t\u00e9\0".getBytes(StandardCharsets.ISO_8859_1);
+        BitBuffer bb = new BitBuffer(ByteBuffer.wrap(bytes));
+        StringDefinition first = stringDec.createDefinition(null, "first", bb);
+        assertEquals(13 * Byte.SIZE, bb.position());
+        StringDefinition second = stringDec.createDefinition(null, "second", bb);
+        StringDefinition third = stringDec.createDefinition(null, "third", bb);
+        assertEquals(bytes.length * Byte.SIZE, bb.position());
+
+        assertEquals(12, first.size());
+        assertEquals("sched_switch", first.getValue());
+        assertSame(first.getValue(), second.getValue());
+        assertEquals("\u00e9t\u00e9", third.getValue());
+        assertEquals(3, third.size());
+    }
+
+    /**
+     * Test reading a string that is not terminated
+     *
+     * @throws CTFException
+     *             expected
+     */
+    @Test(expected = CTFException.class)
+    public void testNotTerminated() throws CTFException {
+        StringDeclaration stringDec = StringDeclaration.getStringDeclaration(Encoding.UTF8);
+        BitBuffer bb = new BitBuffer(ByteBuffer.wrap(new byte[] { 'a', 'b' }));
+        stringDec.createDefinition(null, "field", bb);
+    }
+}
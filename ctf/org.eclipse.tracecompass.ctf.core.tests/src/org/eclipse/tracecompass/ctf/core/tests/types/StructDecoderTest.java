@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.AbstractArrayDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.ArrayDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructDecoder;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test that the {@link StructDecoder} decodes the structs like their
+ * declarations do.
+ */
+public class StructDecoderTest {
+
+    private static final String FIELD = "field";
+
+    /**
+     * Enable the specialized decoders again
+     */
+    @After
+    public void tearDown() {
+        StructDecoder.setEnabled(true);
+    }
+
+    /**
+     * Test a struct with integers of many sizes and byte orders, bit fields,
+     * an enum, a byte array and a string
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testMixedFields() throws CTFException {
+        StructDeclaration declaration = new StructDeclaration(8);
+        declaration.addField("a", IntegerDeclaration.UINT_8_DECL);
+        declaration.addField("b", IntegerDeclaration.createDeclaration(32, false, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 32));
+        declaration.addField("c", IntegerDeclaration.createDeclaration(5, true, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 1));
+        declaration.addField("d", IntegerDeclaration.createDeclaration(3, false, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 1));
+        declaration.addField("e", IntegerDeclaration.createDeclaration(64, true, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 64));
+        declaration.addField("f", IntegerDeclaration.createDeclaration(64, false, 16, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 8));
+        declaration.addField("g", IntegerDeclaration.createDeclaration(40, true, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 8));
+        EnumDeclaration enumDeclaration = new EnumDeclaration(IntegerDeclaration.createDeclaration(16, false, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 16));
+        enumDeclaration.add(0, 100, "low");
+        enumDeclaration.add(101, 65535, "high");
+        declaration.addField("h", enumDeclaration);
+        declaration.addField("i", new ArrayDeclaration(5, IntegerDeclaration.UINT_8_DECL));
+        declaration.addField("j", StringDeclaration.getStringDeclaration(Encoding.UTF8));
+        declaration.addField("k", IntegerDeclaration.INT_32B_DECL);
+
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 37 + 11);
+        }
+        /* The null-terminated string, when the struct starts at 0 or 64 */
+        bytes[45] = 'h';
+        bytes[46] = 'i';
+        bytes[47] = 0;
+        bytes[53] = 'h';
+        bytes[54] = 'o';
+        bytes[55] = 0;
+        assertSameDecoding(declaration, bytes, 0);
+        /* Aligned on 64 bits by the struct */
+        assertSameDecoding(declaration, bytes, 8);
+    }
+
+    /**
+     * Test a struct that starts with a field that has no fixed size
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testNoFixedPrefix() throws CTFException {
+        StructDeclaration declaration = new StructDeclaration(8);
+        declaration.addField("s", StringDeclaration.getStringDeclaration(Encoding.UTF8));
+        declaration.addField("i", IntegerDeclaration.INT_32B_DECL);
+        assertNull(StructDecoder.compile(new String[] { "s", "i" }, new IDeclaration[] { StringDeclaration.getStringDeclaration(Encoding.UTF8), IntegerDeclaration.INT_32B_DECL }));
+        assertSameDecoding(declaration, new byte[] { 'a', 'b', 0, 0, 1, 2, 3, 4 }, 0);
+    }
+
+    /**
+     * Test that reading a struct beyond the end of the buffer fails
+     */
+    @Test(expected = CTFException.class)
+    public void testUnderflow() throws CTFException {
+        StructDeclaration declaration = new StructDeclaration(8);
+        declaration.addField("a", IntegerDeclaration.INT_32B_DECL);
+        declaration.addField("b", IntegerDeclaration.INT_32B_DECL);
+        declaration.createDefinition(null, FIELD, new BitBuffer(ByteBuffer.wrap(new byte[6])));
+    }
+
+    private static void assertSameDecoding(StructDeclaration declaration, byte[] bytes, long position) throws CTFException {
+        StructDecoder.setEnabled(false);
+        BitBuffer input = new BitBuffer(ByteBuffer.wrap(bytes));
+        input.position(position);
+        StructDefinition expected = declaration.createDefinition(null, FIELD, input);
+        long expectedPosition = input.position();
+
+        StructDecoder.setEnabled(true);
+        input = new BitBuffer(ByteBuffer.wrap(bytes));
+        input.position(position);
+        StructDefinition actual = declaration.createDefinition(null, FIELD, input);
+        assertEquals(expectedPosition, input.position());
+        assertEquals(ByteOrder.BIG_ENDIAN, input.getByteOrder());
+
+        for (String name : declaration.getFieldsList()) {
+            IDefinition expectedField = expected.getDefinition(name);
+            IDefinition actualField = actual.getDefinition(name);
+            assertNotNull(actualField);
+            assertEquals(name, expectedField.getClass(), actualField.getClass());
+            if (expectedField instanceof AbstractArrayDefinition) {
+                assertEquals(name, ((AbstractArrayDefinition) expectedField).getDefinitions().toString(),
+                        ((AbstractArrayDefinition) actualField).getDefinitions().toString());
+            } else {
+                assertEquals(name, expectedField.toString(), actualField.toString());
+            }
+        }
+    }
+}
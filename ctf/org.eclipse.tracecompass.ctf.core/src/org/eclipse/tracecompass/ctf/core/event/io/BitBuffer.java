@@ -15,6 +15,8 @@
 
 package org.eclipse.tracecompass.ctf.core.event.io;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -149,6 +151,15 @@ public final class BitBuffer {
         if (length > BIT_LONG) {
             throw new CTFException("Cannot read a long longer than 64 bits. Rquested: " + length); //$NON-NLS-1$
         }
+        if (length == BIT_LONG && (fPosition & (BIT_CHAR - 1)) == 0 && canRead(BIT_LONG)) {
+            /*
+             * Fast read of a byte-aligned quad word, with java.nio.ByteBuffer's
+             * native methods
+             */
+            long retVal = fBuffer.getLong((int) (fPosition / BIT_CHAR));
+            fPosition += BIT_LONG;
+            return retVal;
+        }
         if (length > BIT_INT) {
             final int highShift = length - BIT_INT;
             long a = getInt();
@@ -191,6 +202,58 @@ public final class BitBuffer {
         fPosition += dst.length * BIT_CHAR;
     }
 
+    /**
+     * Relative <i>get</i> method for a view of the next bytes of this buffer.
+     *
+     * <p>
+     * The bytes are not copied, the returned buffer shares its content with
+     * this buffer. Its position is zero and its limit is the number of bytes.
+     * Like {@link #get(byte[])}, this method only supports reads aligned to 8
+     * bits.
+     *
+     * @param length
+     *            the number of bytes
+     * @return the read-only view of the bytes
+     * @throws CTFException
+     *             If there are fewer than length bytes remaining in this
+     *             buffer
+     * @since 3.0
+     */
+    public @NonNull ByteBuffer slice(int length) throws CTFException {
+        long lengthBits = (long) length * BIT_CHAR;
+        if (length < 0 || fPosition + lengthBits > fBitCapacity) {
+            throw new CTFException("Cannot read the bytes, " + //$NON-NLS-1$
+                    "the buffer does not have enough remaining space. " + //$NON-NLS-1$
+                    "Requested:" + lengthBits + " Available:" + (fBitCapacity - fPosition)); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        int start = (int) (fPosition / BIT_CHAR);
+        ByteBuffer view = fBuffer.asReadOnlyBuffer();
+        view.limit(start + length);
+        view.position(start);
+        fPosition += lengthBits;
+        return checkNotNull(view.slice());
+    }
+
+    /**
+     * Get the number of bytes from the current position to the next null
+     * byte, without moving the position. This method only supports reads
+     * aligned to 8 bits.
+     *
+     * @return the number of bytes before the null byte, or -1 if there is no
+     *         null byte before the end of the buffer
+     * @since 3.0
+     */
+    public int indexOfNull() {
+        int start = (int) (fPosition / BIT_CHAR);
+        int end = (int) (fBitCapacity / BIT_CHAR);
+        for (int i = start; i < end; i++) {
+            if (fBuffer.get(i) == 0) {
+                return i - start;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Relative <i>get</i> method for reading integer of <i>length</i> bits.
      *
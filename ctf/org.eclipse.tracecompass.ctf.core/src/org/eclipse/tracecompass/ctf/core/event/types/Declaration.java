@@ -68,4 +68,33 @@ public abstract class Declaration implements IDeclaration {
         pos = (pos + mask) & ~mask;
         input.position(pos);
     }
+
+    /**
+     * Get whether a field of this declaration can be skipped with
+     * {@link #skip(BitBuffer)}. Only the fields whose size does not depend on
+     * other fields can be skipped.
+     *
+     * @return true if the fields of this declaration can be skipped
+     * @since 3.0
+     */
+    public boolean canSkip() {
+        return false;
+    }
+
+    /**
+     * Move the buffer position after a field of this declaration, without
+     * reading its value or creating its definition.
+     *
+     * @param input
+     *            The bitbuffer that is being read
+     * @throws CTFException
+     *             Happens when there is an out of bounds exception
+     * @throws UnsupportedOperationException
+     *             If the fields of this declaration cannot be skipped, see
+     *             {@link #canSkip()}
+     * @since 3.0
+     */
+    public void skip(BitBuffer input) throws CTFException {
+        throw new UnsupportedOperationException("Cannot skip a field of declaration " + this); //$NON-NLS-1$
+    }
 }
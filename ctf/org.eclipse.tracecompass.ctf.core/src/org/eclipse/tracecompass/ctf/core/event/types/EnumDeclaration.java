@@ -201,6 +201,23 @@ public final class EnumDeclaration extends Declaration implements ISimpleDatatyp
         return new EnumDefinition(this, definitionScope, fieldName, value);
     }
 
+    /**
+     * @since 3.0
+     */
+    @Override
+    public boolean canSkip() {
+        return true;
+    }
+
+    /**
+     * @since 3.0
+     */
+    @Override
+    public void skip(BitBuffer input) throws CTFException {
+        alignRead(input);
+        getContainerType().skip(input);
+    }
+
     /**
      * Add a value. Do not overlap, this is <em><strong>not</strong></em> an
      * interval tree.
@@ -121,6 +121,23 @@ public final class FloatDeclaration extends Declaration implements ISimpleDataty
         return new FloatDefinition(this, definitionScope, fieldName, value);
     }
 
+    /**
+     * @since 3.0
+     */
+    @Override
+    public boolean canSkip() {
+        return true;
+    }
+
+    /**
+     * @since 3.0
+     */
+    @Override
+    public void skip(BitBuffer input) throws CTFException {
+        alignRead(input);
+        input.position(input.position() + getExponent() + getMantissa());
+    }
+
     @Override
     public String toString() {
         /* Only used for debugging */
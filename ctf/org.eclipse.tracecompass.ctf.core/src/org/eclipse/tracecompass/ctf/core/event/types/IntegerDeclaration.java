@@ -359,6 +359,23 @@ public final class IntegerDeclaration extends Declaration implements ISimpleData
         return new IntegerDefinition(this, definitionScope, fieldName, value);
     }
 
+    /**
+     * @since 3.0
+     */
+    @Override
+    public boolean canSkip() {
+        return true;
+    }
+
+    /**
+     * @since 3.0
+     */
+    @Override
+    public void skip(BitBuffer input) throws CTFException {
+        alignRead(input);
+        input.position(input.position() + fLength);
+    }
+
     @Override
     public String toString() {
         return "[declaration] integer[length:" + fLength + (fSigned ? " " : " un") + "signed" + " base:" + fBase + " byteOrder:" + fByteOrder + " encoding:" + fEncoding + " alignment:" + fAlignment + "  clock:" + fClock + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$
@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.ctf.core.event.types;
 
+import java.nio.ByteBuffer;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
@@ -123,21 +125,43 @@ public class StringDeclaration extends Declaration {
     @Override
     public StringDefinition createDefinition(@Nullable IDefinitionScope definitionScope,
             String fieldName, BitBuffer input) throws CTFException {
-        String value = read(input);
-        return new StringDefinition(this, definitionScope, fieldName, value);
-    }
-
-    private String read(BitBuffer input) throws CTFException {
         /* Offset the buffer position wrt the current alignment */
         alignRead(input);
 
-        StringBuilder sb = new StringBuilder();
-        char c = (char) input.get(BITS_PER_BYTE, false);
-        while (c != 0) {
-            sb.append(c);
-            c = (char) input.get(BITS_PER_BYTE, false);
+        /*
+         * The bytes are decoded when the value is read, most strings are
+         * never read
+         */
+        ByteBuffer bytes = input.slice(getLength(input));
+        /* Skip the null character */
+        input.position(input.position() + BITS_PER_BYTE);
+        return new StringDefinition(this, definitionScope, fieldName, bytes);
+    }
+
+    private static int getLength(BitBuffer input) throws CTFException {
+        int length = input.indexOfNull();
+        if (length < 0) {
+            throw new CTFException("Cannot read the string, there is no null character before the end of the buffer"); //$NON-NLS-1$
         }
-        return sb.toString();
+        return length;
+    }
+
+    /**
+     * @since 3.0
+     */
+    @Override
+    public boolean canSkip() {
+        return true;
+    }
+
+    /**
+     * @since 3.0
+     */
+    @Override
+    public void skip(BitBuffer input) throws CTFException {
+        alignRead(input);
+        /* Skip up to the null character, included */
+        input.position(input.position() + (getLength(input) + 1L) * BITS_PER_BYTE);
     }
 
     @Override
@@ -12,8 +12,11 @@
 
 package org.eclipse.tracecompass.ctf.core.event.types;
 
+import java.nio.ByteBuffer;
+
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StringCache;
 
 /**
  * A CTF string definition (similar to a C null-terminated byte array).
@@ -31,7 +34,14 @@ public final class StringDefinition extends Definition {
     // Attributes
     // ------------------------------------------------------------------------
 
-    private final String fString;
+    private volatile String fString;
+
+    /**
+     * The bytes of the string in the packet, until it is decoded
+     */
+    private ByteBuffer fBytes;
+
+    private final int fLength;
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -53,6 +63,32 @@ public final class StringDefinition extends Definition {
             IDefinitionScope definitionScope, @NonNull String fieldName, String value) {
         super(declaration, definitionScope, fieldName);
         fString = value;
+        fBytes = null;
+        fLength = value.length();
+    }
+
+    /**
+     * Constructor of a string that is decoded from its bytes the first time
+     * its value is read. The bytes are not copied, the buffer must not be
+     * modified.
+     *
+     * @param declaration
+     *            the parent declaration
+     * @param definitionScope
+     *            the parent scope
+     * @param fieldName
+     *            the field name
+     * @param bytes
+     *            The bytes of the string, from the position to the limit of
+     *            the buffer, without the terminating null byte
+     * @since 3.0
+     */
+    public StringDefinition(@NonNull StringDeclaration declaration,
+            IDefinitionScope definitionScope, @NonNull String fieldName, @NonNull ByteBuffer bytes) {
+        super(declaration, definitionScope, fieldName);
+        fString = null;
+        fBytes = bytes;
+        fLength = bytes.remaining();
     }
 
     // ------------------------------------------------------------------------
@@ -70,12 +106,27 @@ public final class StringDefinition extends Definition {
      * @return the string
      */
     public String getValue() {
-        return fString;
+        String value = fString;
+        if (value == null) {
+            value = decode();
+        }
+        return value;
+    }
+
+    private synchronized String decode() {
+        String value = fString;
+        if (value == null) {
+            value = StringCache.decode(fBytes);
+            fString = value;
+            /* Do not keep the packet in memory */
+            fBytes = null;
+        }
+        return value;
     }
 
     @Override
     public long size() {
-        return fString.length();
+        return fLength;
     }
 
     // ------------------------------------------------------------------------
@@ -12,6 +12,7 @@
 
 package org.eclipse.tracecompass.ctf.core.event.types;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -24,6 +25,7 @@ import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
 import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
 import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructDecoder;
 
 /**
  * A CTF structure declaration.
@@ -57,6 +59,14 @@ public class StructDeclaration extends Declaration {
     /** maximum bit alignment */
     private long fMaxAlign;
 
+    /**
+     * Decoder of the fixed-size fields, compiled the first time the struct is
+     * read. The declaration can be read by several threads, the decoder is
+     * published by the volatile write of the compiled flag.
+     */
+    private @Nullable StructDecoder fDecoder;
+    private volatile boolean fDecoderCompiled;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -209,9 +219,15 @@ public class StructDeclaration extends Declaration {
         fFieldNames = names;
         fFields = fields;
         fMaxAlign = Math.max(fMaxAlign, declaration.getAlignment());
+        fDecoderCompiled = false;
     }
 
-    private void fillStruct(@NonNull BitBuffer input, final IDefinition[] myFields, StructDefinition structDefinition) throws CTFException {
+    private void fillStruct(@NonNull BitBuffer input, final Definition[] myFields, StructDefinition structDefinition) throws CTFException {
+        StructDecoder decoder = getDecoder();
+        if (decoder != null && StructDecoder.isEnabled()) {
+            decoder.decode(input, myFields, structDefinition);
+            return;
+        }
         final @NonNull String[] fieldNames = fFieldNames;
         final @NonNull IDeclaration[] fields = fFields;
         for (int i = 0; i < fields.length; i++) {
@@ -220,6 +236,14 @@ public class StructDeclaration extends Declaration {
         }
     }
 
+    private @Nullable StructDecoder getDecoder() {
+        if (!fDecoderCompiled) {
+            fDecoder = StructDecoder.compile(fFieldNames, fFields);
+            fDecoderCompiled = true;
+        }
+        return fDecoder;
+    }
+
     /**
      * Special constructor for fields
      *
@@ -253,6 +277,91 @@ public class StructDeclaration extends Declaration {
         return structDefinition;
     }
 
+    /**
+     * Special constructor for fields that only decodes some of them. The
+     * fields that are not decoded are skipped and are not part of the
+     * returned definition.
+     *
+     * @param eventHeaderDef
+     *            the event header, used for scopes
+     * @param definitionScope
+     *            the definition scope, in this case, the trace
+     * @param fields
+     *            event fields
+     * @param input
+     *            the input {@link BitBuffer}
+     * @param fieldMask
+     *            for each field of this struct, in order, whether it should be
+     *            decoded. The fields that are not decoded must be skippable,
+     *            see {@link Declaration#canSkip()}. A null mask decodes all
+     *            the fields.
+     * @return the fields definition
+     * @throws CTFException
+     *             something went wrong
+     * @since 3.0
+     */
+    public StructDefinition createFieldDefinition(ICompositeDefinition eventHeaderDef, IDefinitionScope definitionScope, ILexicalScope fields, @NonNull BitBuffer input, boolean @Nullable [] fieldMask) throws CTFException {
+        if (fieldMask == null) {
+            return createFieldDefinition(eventHeaderDef, definitionScope, fields, input);
+        }
+        if (fieldMask.length != fFields.length) {
+            throw new IllegalArgumentException("The field mask does not match the fields of " + this); //$NON-NLS-1$
+        }
+        alignRead(input);
+        List<@NonNull String> keptNames = new ArrayList<>();
+        for (int i = 0; i < fFieldNames.length; i++) {
+            if (fieldMask[i]) {
+                keptNames.add(fFieldNames[i]);
+            }
+        }
+        final Definition[] myFields = new Definition[keptNames.size()];
+        IDefinitionScope merged = definitionScope;
+        if (eventHeaderDef != null) {
+            merged = new InternalDef(definitionScope, eventHeaderDef);
+        }
+        StructDefinition structDefinition = new StructDefinition(this, merged,
+                fields, fields.getName(), keptNames, myFields);
+        if (merged instanceof InternalDef) {
+            InternalDef internalDef = (InternalDef) merged;
+            internalDef.setDefinition(structDefinition);
+        }
+        final @NonNull String[] fieldNames = fFieldNames;
+        final @NonNull IDeclaration[] declarations = fFields;
+        int index = 0;
+        for (int i = 0; i < declarations.length; i++) {
+            if (fieldMask[i]) {
+                myFields[index++] = declarations[i].createDefinition(structDefinition, fieldNames[i], input);
+            } else {
+                ((Declaration) declarations[i]).skip(input);
+            }
+        }
+        return structDefinition;
+    }
+
+    /**
+     * @since 3.0
+     */
+    @Override
+    public boolean canSkip() {
+        for (IDeclaration field : fFields) {
+            if (!(field instanceof Declaration) || !((Declaration) field).canSkip()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @since 3.0
+     */
+    @Override
+    public void skip(BitBuffer input) throws CTFException {
+        alignRead(input);
+        for (IDeclaration field : fFields) {
+            ((Declaration) field).skip(input);
+        }
+    }
+
     private static final Pattern EVENT_HEADER = Pattern.compile(ILexicalScope.EVENT_HEADER.getPath().replaceAll("\\.", "\\\\.") + "\\."); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
 
     static class InternalDef implements IDefinitionScope {
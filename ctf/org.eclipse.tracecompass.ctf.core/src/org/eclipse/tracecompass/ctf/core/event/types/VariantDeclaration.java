@@ -128,12 +128,14 @@ public class VariantDeclaration extends Declaration {
             throw new CTFException("Undefined enum selector for variant " + //$NON-NLS-1$
                     definitionScope.getScopePath().getPath());
         }
-        fDeclarationToPopulate = fFields.get(varFieldName);
-        if (fDeclarationToPopulate == null) {
+        /* Use a local variable, the declaration may be read concurrently */
+        IDeclaration declarationToPopulate = fFields.get(varFieldName);
+        fDeclarationToPopulate = declarationToPopulate;
+        if (declarationToPopulate == null) {
             throw new CTFException("Unknown enum selector for variant " + //$NON-NLS-1$
                     definitionScope.getScopePath().getPath());
         }
-        Definition fieldValue = fDeclarationToPopulate.createDefinition(definitionScope, fieldName, input);
+        Definition fieldValue = declarationToPopulate.createDefinition(definitionScope, fieldName, input);
         return new VariantDefinition(this, definitionScope, tagDef, varFieldName, fieldName, fieldValue);
     }
 
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.trace;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The fields of the events that a reader needs. The payload fields of the
+ * other events are skipped instead of being decoded, when their declaration
+ * allows it. The events themselves are still read, so that the ranks of the
+ * events do not depend on the projection, but their payload only contains the
+ * requested fields.
+ * <p>
+ * The events are identified by name. A name ending with <code>*</code> is a
+ * prefix that matches all the events starting with it. The fields are the
+ * names of the top-level fields of the event payload, or
+ * {@link #ALL_FIELDS} to decode the whole payload. The leading underscore of
+ * a field name in the metadata can be omitted, as it is in the TMF events.
+ *
+ * @since 3.0
+ */
+@NonNullByDefault
+public final class CTFProjection {
+
+    /**
+     * Field name, or event name suffix, that matches all the names
+     */
+    public static final String ALL_FIELDS = "*"; //$NON-NLS-1$
+
+    private final Map<String, Set<String>> fEventFields;
+    private final Map<String, Set<String>> fPrefixFields;
+
+    /**
+     * Constructor
+     *
+     * @param eventFields
+     *            The fields to decode, per event name or event name prefix
+     */
+    public CTFProjection(Map<String, ? extends Collection<String>> eventFields) {
+        Map<String, Set<String>> events = new HashMap<>();
+        Map<String, Set<String>> prefixes = new HashMap<>();
+        for (Entry<String, ? extends Collection<String>> entry : eventFields.entrySet()) {
+            String name = entry.getKey();
+            if (name.endsWith(ALL_FIELDS)) {
+                add(prefixes, name.substring(0, name.length() - ALL_FIELDS.length()), entry.getValue());
+            } else {
+                add(events, name, entry.getValue());
+            }
+        }
+        fEventFields = copyOf(events);
+        fPrefixFields = copyOf(prefixes);
+    }
+
+    private static void add(Map<String, Set<String>> map, String name, Collection<String> fields) {
+        Set<String> set = map.get(name);
+        if (set == null) {
+            set = new HashSet<>();
+            map.put(name, set);
+        }
+        if (fields.contains(ALL_FIELDS)) {
+            set.clear();
+            set.add(ALL_FIELDS);
+        } else if (!set.contains(ALL_FIELDS)) {
+            set.addAll(fields);
+        }
+    }
+
+    private static Map<String, Set<String>> copyOf(Map<String, Set<String>> map) {
+        ImmutableMap.Builder<String, Set<String>> builder = ImmutableMap.builder();
+        for (Entry<String, Set<String>> entry : map.entrySet()) {
+            builder.put(entry.getKey(), ImmutableSet.copyOf(entry.getValue()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Get the fields that are needed for an event
+     *
+     * @param eventName
+     *            The name of the event
+     * @return The names of the needed fields, containing {@link #ALL_FIELDS}
+     *         if all of them are needed, or null if the event is not part of
+     *         the projection
+     */
+    public @Nullable Set<String> getFields(String eventName) {
+        Set<String> fields = fEventFields.get(eventName);
+        Set<String> result = fields;
+        for (Entry<String, Set<String>> entry : fPrefixFields.entrySet()) {
+            if (eventName.startsWith(entry.getKey())) {
+                if (result == null) {
+                    result = entry.getValue();
+                } else {
+                    Set<String> union = new HashSet<>(result);
+                    union.addAll(entry.getValue());
+                    result = union;
+                }
+            }
+        }
+        if (result != null && result.contains(ALL_FIELDS)) {
+            return ImmutableSet.of(ALL_FIELDS);
+        }
+        return result;
+    }
+
+    /**
+     * Get whether an event is part of the projection
+     *
+     * @param eventName
+     *            The name of the event
+     * @return true if some of its fields, or none of its fields but the event
+     *         itself, are needed
+     */
+    public boolean includesEvent(String eventName) {
+        return getFields(eventName) != null;
+    }
+
+    /**
+     * Get whether a field of an event is part of the projection
+     *
+     * @param eventName
+     *            The name of the event
+     * @param fieldName
+     *            The name of the top-level payload field
+     * @return true if the field must be decoded
+     */
+    public boolean includesField(String eventName, String fieldName) {
+        Set<String> fields = getFields(eventName);
+        return fields != null && (fields.contains(ALL_FIELDS) || fields.contains(fieldName));
+    }
+
+    /**
+     * Get the union of this projection and another one, which decodes the
+     * fields needed by either of them
+     *
+     * @param other
+     *            The other projection
+     * @return The union of both projections
+     */
+    public CTFProjection union(CTFProjection other) {
+        Map<String, Collection<String>> fields = new HashMap<>();
+        for (CTFProjection projection : new CTFProjection[] { this, other }) {
+            for (Entry<String, Set<String>> entry : projection.fEventFields.entrySet()) {
+                addUnion(fields, entry.getKey(), entry.getValue());
+            }
+            for (Entry<String, Set<String>> entry : projection.fPrefixFields.entrySet()) {
+                addUnion(fields, entry.getKey() + ALL_FIELDS, entry.getValue());
+            }
+        }
+        return new CTFProjection(fields);
+    }
+
+    private static void addUnion(Map<String, Collection<String>> map, String name, Set<String> fields) {
+        Collection<String> set = map.get(name);
+        if (set == null) {
+            set = new HashSet<>();
+            map.put(name, set);
+        }
+        set.addAll(fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return fEventFields.hashCode() * 31 + fPrefixFields.hashCode();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        CTFProjection other = (CTFProjection) obj;
+        return fEventFields.equals(other.fEventFields) && fPrefixFields.equals(other.fPrefixFields);
+    }
+
+    @Override
+    public String toString() {
+        /* Only for debugging */
+        return "CTFProjection [events=" + fEventFields + ", prefixes=" + fPrefixFields + ']'; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
@@ -15,9 +15,7 @@ package org.eclipse.tracecompass.ctf.core.trace;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
-import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
 import java.util.UUID;
 
 import org.eclipse.core.runtime.IStatus;
@@ -34,7 +32,8 @@ import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
-import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
+import org.eclipse.tracecompass.internal.ctf.core.trace.FileChannelPool;
+import org.eclipse.tracecompass.internal.ctf.core.trace.PacketIndexFile;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
@@ -53,6 +52,8 @@ public class CTFStreamInput implements IDefinitionScope {
 
     private static final int MAP_SIZE = 4096;
 
+    private static final String INDEX_FILE_SUFFIX = ".packets"; //$NON-NLS-1$
+
     /**
      * The associated Stream
      */
@@ -92,6 +93,18 @@ public class CTFStreamInput implements IDefinitionScope {
 
     private boolean fUUIDMismatchWarning = false;
 
+    /**
+     * Whether the packet index file was read, and whether it is up to date
+     */
+    private boolean fIndexFileRead = false;
+    private boolean fIndexFileWritten = false;
+
+    /**
+     * Whether the packet index file has the ids of the events of all the
+     * packets
+     */
+    private boolean fEventIdsWritten = false;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -223,6 +236,9 @@ public class CTFStreamInput implements IDefinitionScope {
      *             If there was a problem reading the packed header
      */
     public boolean addPacketHeaderIndex() throws CTFException {
+        if (!fIndexFileRead) {
+            readIndexFile();
+        }
         long currentPosBits = 0L;
         if (!fIndex.isEmpty()) {
             ICTFPacketDescriptor pos = fIndex.lastElement();
@@ -234,9 +250,92 @@ public class CTFStreamInput implements IDefinitionScope {
         if (currentPosBits < getStreamSizeBits()) {
             return fIndex.append(createPacketIndexEntry(currentPosBits));
         }
+        writeIndexFile();
         return false;
     }
 
+    private @Nullable File getIndexFile() {
+        File directory = getStream().getTrace().getPacketIndexDirectory();
+        if (directory == null) {
+            return null;
+        }
+        return new File(directory, fFileName + INDEX_FILE_SUFFIX);
+    }
+
+    /**
+     * Fill the empty packet index from the packet index file, if there is one
+     * for the current stream file.
+     */
+    private synchronized void readIndexFile() {
+        if (fIndexFileRead) {
+            return;
+        }
+        fIndexFileRead = true;
+        File indexFile = getIndexFile();
+        if (indexFile == null || !fIndex.isEmpty()) {
+            return;
+        }
+        try {
+            if (!PacketIndexFile.read(indexFile, fFile, fIndex)) {
+                return;
+            }
+            for (int i = 0; i < fIndex.size(); i++) {
+                fLostSoFar += fIndex.getElement(i).getLostEvents();
+            }
+            setTimestampEnd(fIndex.lastElement().getTimestampEnd());
+            fIndexFileWritten = true;
+            fEventIdsWritten = fIndex.hasAllEventIds();
+        } catch (IOException e) {
+            Activator.log(IStatus.WARNING, "Failed to read the packet index file " + indexFile + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Write the packet index to the packet index file, once the whole stream
+     * file is indexed.
+     */
+    private synchronized void writeIndexFile() {
+        if (fIndexFileWritten) {
+            return;
+        }
+        fIndexFileWritten = true;
+        fEventIdsWritten = fIndex.hasAllEventIds();
+        saveIndexFile();
+    }
+
+    /**
+     * Set the ids of the events of a packet, once it was read completely. The
+     * packet index file is written again once the ids of all the packets are
+     * known.
+     *
+     * @param packetIndex
+     *            The index of the packet
+     * @param eventIds
+     *            The ids of the events of the packet
+     */
+    synchronized void setPacketEventIds(int packetIndex, BitSet eventIds) {
+        if (fIndex.getEventIds(packetIndex) != null) {
+            return;
+        }
+        fIndex.setEventIds(packetIndex, eventIds);
+        if (fIndexFileWritten && !fEventIdsWritten && fIndex.hasAllEventIds()) {
+            fEventIdsWritten = true;
+            saveIndexFile();
+        }
+    }
+
+    private void saveIndexFile() {
+        File indexFile = getIndexFile();
+        if (indexFile == null || fIndex.isEmpty()) {
+            return;
+        }
+        try {
+            PacketIndexFile.write(indexFile, fFile, fIndex);
+        } catch (IOException e) {
+            Activator.log(IStatus.WARNING, "Failed to write the packet index file " + indexFile + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
     private long getStreamSizeBits() {
         return fFile.length() * Byte.SIZE;
     }
@@ -244,57 +343,68 @@ public class CTFStreamInput implements IDefinitionScope {
     private ICTFPacketDescriptor createPacketIndexEntry(long dataOffsetbits)
             throws CTFException {
 
-        try (FileChannel fc = FileChannel.open(fFile.toPath(), StandardOpenOption.READ)) {
-            if (fc == null) {
-                throw new IOException("Failed to create FileChannel"); //$NON-NLS-1$
-            }
-            BitBuffer bitBuffer = createBitBufferForPacketHeader(fc, dataOffsetbits);
-            /*
-             * Read the trace packet header if it exists.
-             */
-            parseTracePacketHeader(bitBuffer);
-
-            /*
-             * Read the stream packet context if it exists.
-             */
-            long size = fc.size();
-            ICTFPacketDescriptor packetIndex = parsePacketContext(dataOffsetbits, size, bitBuffer);
-
-            /* Basic validation */
-            if (packetIndex.getContentSizeBits() > packetIndex.getPacketSizeBits()) {
-                throw new CTFException("Content size > packet size"); //$NON-NLS-1$
-            }
+        BitBuffer bitBuffer = createBitBufferForPacketHeader(dataOffsetbits);
+        /*
+         * Read the trace packet header if it exists.
+         */
+        parseTracePacketHeader(bitBuffer);
+
+        /*
+         * Read the stream packet context if it exists.
+         */
+        long size = fFile.length();
+        ICTFPacketDescriptor packetIndex = parsePacketContext(dataOffsetbits, size, bitBuffer);
+
+        /* Basic validation */
+        if (packetIndex.getContentSizeBits() > packetIndex.getPacketSizeBits()) {
+            throw new CTFException("Content size > packet size"); //$NON-NLS-1$
+        }
+
+        if (packetIndex.getPacketSizeBits() > ((size * Byte.SIZE - packetIndex.getOffsetBits()))) {
+            throw new CTFException("Not enough data remaining in the file for the size of this packet"); //$NON-NLS-1$
+        }
+        return packetIndex;
+    }
 
-            if (packetIndex.getPacketSizeBits() > ((size * Byte.SIZE - packetIndex.getOffsetBits()))) {
-                throw new CTFException("Not enough data remaining in the file for the size of this packet"); //$NON-NLS-1$
+    /**
+     * Get the definition of the stream packet context of a packet. It is read
+     * again from the stream file if the index entry does not have it, like
+     * the entries read from the packet index file.
+     *
+     * @param entry
+     *            the index entry of the packet
+     * @return the definition of the stream packet context
+     * @throws CTFException
+     *             If the packet context cannot be read
+     */
+    StructDefinition getPacketContextDef(ICTFPacketDescriptor entry) throws CTFException {
+        if (entry instanceof StreamInputPacketIndexEntry) {
+            StructDefinition streamPacketContextDef = ((StreamInputPacketIndexEntry) entry).getStreamPacketContextDef();
+            if (streamPacketContextDef != null) {
+                return streamPacketContextDef;
             }
-            return packetIndex;
-        } catch (IOException e) {
-            throw new CTFException("Failed to create packet index entry", e); //$NON-NLS-1$
         }
+        BitBuffer bitBuffer = createBitBufferForPacketHeader(entry.getOffsetBits());
+        parseTracePacketHeader(bitBuffer);
+        return fStreamPacketContextDecl.createDefinition(this, ILexicalScope.STREAM_PACKET_CONTEXT, bitBuffer);
     }
 
-    private BitBuffer createBitBufferForPacketHeader(FileChannel fc, long dataOffsetbits) throws CTFException, IOException {
+    private BitBuffer createBitBufferForPacketHeader(long dataOffsetbits) throws CTFException {
         /*
          * create a packet bit buffer to read the packet header
          */
         int maximumSize = fStreamPacketContextDecl.getMaximumSize() + fTracePacketHeaderDecl.getMaximumSize();
-        BitBuffer bitBuffer = new BitBuffer(createPacketBitBuffer(fc, dataOffsetbits/Byte.SIZE, maximumSize));
+        BitBuffer bitBuffer = new BitBuffer(createPacketBitBuffer(dataOffsetbits / Byte.SIZE, maximumSize));
         bitBuffer.setByteOrder(getStream().getTrace().getByteOrder());
         return bitBuffer;
     }
 
-    private static ByteBuffer getByteBufferAt(FileChannel fc, long position, long size) throws CTFException, IOException {
-        return SafeMappedByteBuffer.map(fc, MapMode.READ_ONLY, position, size);
-    }
-
-    private static ByteBuffer createPacketBitBuffer(FileChannel fc,
-            long packetOffsetBytes, long maxSize) throws CTFException, IOException {
+    private ByteBuffer createPacketBitBuffer(long packetOffsetBytes, long maxSize) throws CTFException {
         /*
          * If there is less data remaining than what we want to map, reduce the
          * map size.
          */
-        long remain = fc.size() - packetOffsetBytes;
+        long remain = fFile.length() - packetOffsetBytes;
         /*
          * Initial size, it is the minimum of the the file size and the maximum
          * possible size of the
@@ -305,10 +415,11 @@ public class CTFStreamInput implements IDefinitionScope {
         }
 
         /*
-         * Map the packet.
+         * Map the packet, with the channel of the file that is shared with
+         * the readers.
          */
         try {
-            return getByteBufferAt(fc, packetOffsetBytes, mapSize);
+            return FileChannelPool.getInstance().map(fFile, packetOffsetBytes, mapSize);
         } catch (IllegalArgumentException | IOException e) {
             throw new CTFException(e);
         }
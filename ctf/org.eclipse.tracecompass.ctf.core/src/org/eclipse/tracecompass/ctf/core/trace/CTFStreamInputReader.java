@@ -15,10 +15,10 @@ package org.eclipse.tracecompass.ctf.core.trace;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
-import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -30,9 +30,13 @@ import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
 import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
-import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.trace.DecodedPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.trace.FieldProjection;
+import org.eclipse.tracecompass.internal.ctf.core.trace.FileChannelPool;
 import org.eclipse.tracecompass.internal.ctf.core.trace.NullPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.trace.PacketPrefetcher;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
 
 /**
  * A CTF trace event reader. Reads the events of a trace file.
@@ -57,7 +61,11 @@ public class CTFStreamInputReader implements AutoCloseable {
 
     private final CTFStreamInput fStreamInput;
 
-    private final @Nullable FileChannel fFileChannel;
+    /**
+     * Whether the reader is closed and unregistered from the pool of file
+     * channels
+     */
+    private boolean fClosed = false;
 
     /**
      * The packet reader used to read packets from this trace file.
@@ -82,6 +90,30 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     private boolean fLive = false;
 
+    /**
+     * The payload fields to decode, null to decode all of them
+     */
+    private @Nullable FieldProjection fProjection = null;
+
+    /**
+     * The packets decoded ahead in pipelined mode, null when the packets are
+     * decoded by the reading thread
+     */
+    private @Nullable PacketPrefetcher fPrefetcher = null;
+
+    /**
+     * The range of the timestamps to read, the packets outside of it are
+     * skipped
+     */
+    private long fRangeStart = Long.MIN_VALUE;
+    private long fRangeEnd = Long.MAX_VALUE;
+
+    /**
+     * The ids of the events to read, the packets known to have none of them
+     * are skipped. Null to read all the packets.
+     */
+    private @Nullable BitSet fEventFilter = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -96,11 +128,7 @@ public class CTFStreamInputReader implements AutoCloseable {
     public CTFStreamInputReader(CTFStreamInput streamInput) throws CTFException {
         fStreamInput = streamInput;
         fFile = fStreamInput.getFile();
-        try {
-            fFileChannel = FileChannel.open(fFile.toPath(), StandardOpenOption.READ);
-        } catch (IOException e) {
-            throw new CTFIOException(e);
-        }
+        FileChannelPool.getInstance().register(fFile);
         try {
             /*
              * Get the iterator on the packet index.
@@ -140,7 +168,9 @@ public class CTFStreamInputReader implements AutoCloseable {
             bitBuffer.position(packet.getPayloadStartBits());
             IDeclaration eventHeaderDeclaration = getStreamInput().getStream().getEventHeaderDeclaration();
             CTFTrace trace = getStreamInput().getStream().getTrace();
-            ctfPacketReader = new CTFPacketReader(bitBuffer, packet, getEventDeclarations(), eventHeaderDeclaration, getStreamEventContextDecl(), trace.getPacketHeaderDef(), trace);
+            CTFPacketReader packetReader = new CTFPacketReader(bitBuffer, packet, getEventDeclarations(), eventHeaderDeclaration, getStreamEventContextDecl(), trace.getPacketHeaderDef(), trace);
+            packetReader.setProjection(fProjection);
+            ctfPacketReader = packetReader;
         }
         return ctfPacketReader;
     }
@@ -160,14 +190,14 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     public ByteBuffer getByteBufferAt(long position, long size) throws CTFException {
         try {
-            return SafeMappedByteBuffer.map(fFileChannel, MapMode.READ_ONLY, position / BITS_PER_BYTE, (size + BITS_PER_BYTE - 1) / BITS_PER_BYTE);
+            return FileChannelPool.getInstance().map(fFile, position / BITS_PER_BYTE, (size + BITS_PER_BYTE - 1) / BITS_PER_BYTE);
         } catch (IOException e) {
             throw new CTFIOException(e.getMessage(), e);
         }
     }
 
     /**
-     * Dispose the StreamInputReader, closes the file channel and its packet
+     * Dispose the StreamInputReader, releases the file channel and its packet
      * reader
      *
      * @throws IOException
@@ -175,8 +205,13 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     @Override
     public void close() throws IOException {
-        if (fFileChannel != null) {
-            fFileChannel.close();
+        PacketPrefetcher prefetcher = fPrefetcher;
+        if (prefetcher != null) {
+            prefetcher.clear();
+        }
+        if (!fClosed) {
+            fClosed = true;
+            FileChannelPool.getInstance().unregister(fFile);
         }
         fPacketReader = NullPacketReader.INSTANCE;
     }
@@ -196,6 +231,87 @@ public class CTFStreamInputReader implements AutoCloseable {
         return fCurrentEvent;
     }
 
+    /**
+     * Set the payload fields to decode for the next events that are read.
+     * The other fields are skipped when their declaration allows it, and are
+     * not part of the event definitions.
+     *
+     * @param projection
+     *            The fields to decode, or null to decode all the fields
+     * @since 3.0
+     */
+    public void setProjection(@Nullable CTFProjection projection) {
+        FieldProjection fieldProjection = (projection == null ? null : new FieldProjection(projection));
+        fProjection = fieldProjection;
+        IPacketReader packetReader = fPacketReader;
+        if (packetReader instanceof CTFPacketReader) {
+            ((CTFPacketReader) packetReader).setProjection(fieldProjection);
+        }
+        /* The packets decoded ahead use the previous projection */
+        PacketPrefetcher prefetcher = fPrefetcher;
+        if (prefetcher != null) {
+            prefetcher.clear();
+        }
+    }
+
+    /**
+     * Get the payload fields that are decoded
+     *
+     * @return The fields that are decoded, or null if all the fields are
+     *         decoded
+     * @since 3.0
+     */
+    public @Nullable CTFProjection getProjection() {
+        FieldProjection projection = fProjection;
+        return (projection == null ? null : projection.getProjection());
+    }
+
+    /**
+     * Set the range of the timestamps to read. From the next packet that is
+     * read, the packets that end before the range are skipped, and the stream
+     * ends at the first packet that begins after the range. The events of the
+     * packets that overlap the range are all read. The range is not applied
+     * when the trace is read live.
+     *
+     * @param start
+     *            The start of the range, in cycles
+     * @param end
+     *            The end of the range, in cycles
+     * @since 3.0
+     */
+    public void setReadRange(long start, long end) {
+        fRangeStart = start;
+        fRangeEnd = end;
+    }
+
+    /**
+     * Set the events to read. From the next packet that is read, the packets
+     * that are known to contain none of these events are skipped. The ids of
+     * the events of a packet are known once it was read completely, or from
+     * the packet index file. The other events of the packets that are read are
+     * all read, as well as the lost events.
+     *
+     * @param eventNames
+     *            The names of the events to read, or null to read all the
+     *            packets
+     * @since 3.0
+     */
+    public void setEventFilter(@Nullable Set<String> eventNames) {
+        if (eventNames == null) {
+            fEventFilter = null;
+            return;
+        }
+        BitSet filter = new BitSet();
+        List<@Nullable IEventDeclaration> declarations = getEventDeclarations();
+        for (int i = 0; i < declarations.size(); i++) {
+            IEventDeclaration declaration = declarations.get(i);
+            if (declaration != null && eventNames.contains(declaration.getName())) {
+                filter.set(i);
+            }
+        }
+        fEventFilter = filter;
+    }
+
     /**
      * Gets the name of the stream (it's an id and a number)
      *
@@ -259,6 +375,48 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     public void setLive(boolean live) {
         fLive = live;
+        PacketPrefetcher prefetcher = fPrefetcher;
+        if (live && prefetcher != null) {
+            prefetcher.clear();
+        }
+    }
+
+    /**
+     * Set whether the packets that follow the current one are decoded ahead,
+     * by a pool of threads owned by the caller, usually the trace reader. The
+     * events that are read are the same in both modes. The packets are not
+     * decoded ahead when the trace is read live, or once the pool is shut
+     * down.
+     * <p>
+     * In pipelined mode, the projection of {@link #setProjection} applies from
+     * the next packet that is not decoded yet.
+     *
+     * @param executor
+     *            The pool of threads that decodes the packets ahead, or null
+     *            to decode the packets when they are read
+     * @since 3.0
+     */
+    public void setPipelined(@Nullable ExecutorService executor) {
+        PacketPrefetcher prefetcher = fPrefetcher;
+        if (prefetcher != null) {
+            prefetcher.clear();
+            fPrefetcher = null;
+        }
+        if (executor != null) {
+            prefetcher = new PacketPrefetcher(executor);
+            fPrefetcher = prefetcher;
+            prefetch(prefetcher);
+        }
+    }
+
+    /**
+     * Get whether the packets are decoded ahead
+     *
+     * @return true if the packets are decoded ahead
+     * @since 3.0
+     */
+    public boolean isPipelined() {
+        return fPrefetcher != null;
     }
 
     /**
@@ -302,6 +460,7 @@ public class CTFStreamInputReader implements AutoCloseable {
                 }
                 break;
             }
+            indexEventIds(fPacketReader);
             goToNextPacket();
         }
 
@@ -323,21 +482,130 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             if an error occurs
      */
     private void goToNextPacket() throws CTFException {
-        fPacketIndex++;
-        // did we already index the packet?
-        while (getPacketSize() < (fPacketIndex + 1)) {
-            // go to the next packet if there is one, index it at the same time
-            if (fStreamInput.addPacketHeaderIndex()) {
-                fPacketIndex = getPacketSize() - 1;
-            } else {
-                fPacketReader = NullPacketReader.INSTANCE;
-                return;
+        int next = getNextPacketIndex(fPacketIndex + 1);
+        if (next < 0) {
+            fPacketIndex++;
+            fPacketReader = NullPacketReader.INSTANCE;
+            return;
+        }
+        fPacketIndex = next;
+        ICTFPacketDescriptor packet = getPacket();
+        PacketPrefetcher prefetcher = fPrefetcher;
+        if (prefetcher == null || fLive || packet == null) {
+            fPacketReader = getCurrentPacketReader(packet);
+            return;
+        }
+        IPacketReader packetReader = prefetcher.take(fPacketIndex);
+        fPacketReader = (packetReader != null) ? packetReader : getCurrentPacketReader(packet);
+        prefetch(prefetcher);
+    }
+
+    /**
+     * Start decoding the packets that follow the current one, up to the
+     * maximum number of packets decoded ahead. The packets are indexed by the
+     * reading thread. If a packet cannot be indexed or mapped, it is not
+     * decoded ahead, and the error is reported when the reader gets to it.
+     */
+    private void prefetch(PacketPrefetcher prefetcher) {
+        if (fLive) {
+            return;
+        }
+        int next = Math.max(fPacketIndex, prefetcher.getLastIndex()) + 1;
+        try {
+            while (prefetcher.size() < PacketPrefetcher.DEPTH) {
+                next = getNextPacketIndex(next);
+                if (next < 0) {
+                    return;
+                }
+                IPacketReader packetReader = getCurrentPacketReader(fStreamInput.getIndex().getElement(next));
+                if (!(packetReader instanceof CTFPacketReader)) {
+                    return;
+                }
+                if (!prefetcher.submit(next, (CTFPacketReader) packetReader)) {
+                    return;
+                }
+                next++;
             }
+        } catch (CTFException e) {
+            /* The error will be reported when the packet is read */
+        }
+    }
 
+    /**
+     * Get the index of the next packet to read, from a given packet. The
+     * packets are indexed as needed, and the packets that are skipped are not
+     * read.
+     *
+     * @param from
+     *            The index of the first packet that could be read
+     * @return The index of the packet, or -1 if there are no more packets to
+     *         read
+     * @throws CTFException
+     *             If a packet cannot be indexed
+     */
+    private int getNextPacketIndex(int from) throws CTFException {
+        int index = from;
+        while (true) {
+            // did we already index the packet?
+            while (getPacketSize() < (index + 1)) {
+                // go to the next packet if there is one, index it at the same time
+                if (fStreamInput.addPacketHeaderIndex()) {
+                    index = getPacketSize() - 1;
+                } else {
+                    return -1;
+                }
+            }
+            ICTFPacketDescriptor packet = fStreamInput.getIndex().getElement(index);
+            if (fLive) {
+                return index;
+            }
+            if (packet.getTimestampBegin() > fRangeEnd) {
+                return -1;
+            }
+            if (!isSkipped(index, packet)) {
+                return index;
+            }
+            index++;
         }
-        ICTFPacketDescriptor packet = getPacket();
-        fPacketReader = getCurrentPacketReader(packet);
+    }
+
+    /**
+     * Whether a packet is skipped, because it ends before the range to read,
+     * or because it is known to contain none of the events to read. The
+     * packets with lost events are not skipped because of their events.
+     */
+    private boolean isSkipped(int index, ICTFPacketDescriptor packet) {
+        if (packet.getTimestampEnd() < fRangeStart) {
+            return true;
+        }
+        BitSet filter = fEventFilter;
+        if (filter == null || packet.getLostEvents() != 0) {
+            return false;
+        }
+        BitSet eventIds = fStreamInput.getIndex().getEventIds(index);
+        return eventIds != null && !eventIds.intersects(filter);
+    }
 
+    /**
+     * Keep the ids of the events of a packet that was read completely, so
+     * that it can be skipped when its events are not read.
+     */
+    private void indexEventIds(IPacketReader packetReader) {
+        if (fLive || packetReader.hasMoreEvents()) {
+            return;
+        }
+        BitSet eventIds = null;
+        if (packetReader instanceof CTFPacketReader) {
+            eventIds = ((CTFPacketReader) packetReader).getEventIds();
+        } else if (packetReader instanceof DecodedPacketReader) {
+            eventIds = ((DecodedPacketReader) packetReader).getEventIds();
+        }
+        if (eventIds != null) {
+            int index = fStreamInput.getIndex().indexOf(packetReader.getCurrentPacket());
+            if (index >= 0) {
+                fStreamInput.setPacketEventIds(index, eventIds);
+            }
+        }
     }
 
     /**
@@ -360,6 +628,7 @@ public class CTFStreamInputReader implements AutoCloseable {
     public long seek(long timestamp) throws CTFException {
         long offset = 0;
 
+        indexUpTo(timestamp);
         gotoPacket(timestamp);
 
         /*
@@ -398,6 +667,27 @@ public class CTFStreamInputReader implements AutoCloseable {
         return offset;
     }
 
+    /**
+     * Index the packets of the stream until the one that ends after a
+     * timestamp, by reading only their headers, so that a seek does not map
+     * and read the packets before it.
+     *
+     * @param timestamp
+     *            the time to seek
+     */
+    private void indexUpTo(long timestamp) {
+        StreamInputPacketIndex index = fStreamInput.getIndex();
+        try {
+            while (index.isEmpty() || index.lastElement().getTimestampEnd() < timestamp) {
+                if (!fStreamInput.addPacketHeaderIndex()) {
+                    return;
+                }
+            }
+        } catch (CTFException e) {
+            /* The error is reported when the packet is read */
+        }
+    }
+
     /**
      * @param timestamp
      *            the time to seek
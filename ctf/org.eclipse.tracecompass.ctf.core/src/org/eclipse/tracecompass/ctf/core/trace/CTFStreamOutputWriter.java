@@ -105,7 +105,7 @@ public class CTFStreamOutputWriter {
             StreamInputPacketIndex index = streamInput.getIndex();
             int count = 0;
             long initialLost = 0;
-            for (int i = 0; i < index.size(); i++) {
+            for (int i = Math.max(0, index.search(startTime)); i < index.size(); i++) {
                 ICTFPacketDescriptor entry = index.getElement(i);
                 /*
                  * Entire packet is contained
@@ -116,11 +116,11 @@ public class CTFStreamOutputWriter {
                     initialLost = (long) entry.getAttributes().getOrDefault(CTFStrings.EVENTS_DISCARDED, 0L);
                 }
                 if (startTime <= packetStart && endTime >= packetEnd) {
-                    // MUCH faster
-                    fStreamPacketOutputWriter.writePacket(entry, fc, initialLost);
+                    // MUCH faster, the events are transferred without being decoded
+                    fStreamPacketOutputWriter.writePacket(entry, source, fc, initialLost);
                     count++;
                 } else if (startTime <= packetEnd && endTime >= packetStart) {
-                    fStreamPacketOutputWriter.writePacket(entry, startTime, endTime, initialLost, fc);
+                    fStreamPacketOutputWriter.writePacket(entry, startTime, endTime, initialLost, source, fc);
                     count++;
                 } else if (entry.getTimestampBegin() > endTime) {
                     break;
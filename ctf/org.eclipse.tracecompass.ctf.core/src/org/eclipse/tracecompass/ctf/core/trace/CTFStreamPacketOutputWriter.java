@@ -11,15 +11,15 @@
  *******************************************************************************/
 package org.eclipse.tracecompass.ctf.core.trace;
 
-import java.io.File;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.CTFStrings;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
@@ -36,7 +36,6 @@ import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
 import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFPacketReader;
-import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
 
 /**
  * CTF trace packet writer.
@@ -99,35 +98,38 @@ public class CTFStreamPacketOutputWriter {
      * @since 3.0
      */
     public void writePacket(ICTFPacketDescriptor entry, FileChannel output, long initialLost) throws IOException, CTFException {
-        long startOffsetBits = entry.getPayloadStartBits();
-        long endOffsetBits = entry.getContentSizeBits();
-        StructDefinition context = null;
-        File file = fStreamInput.getFile();
-        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ);) {
-            ByteBuffer bb = SafeMappedByteBuffer.map(fc, FileChannel.MapMode.READ_ONLY, entry.getOffsetBytes(), (long) Math.ceil(entry.getContentSizeBits() / (double) Byte.SIZE));
-            BitBuffer bbInput = new BitBuffer(bb);
-            bbInput.position(entry.getPayloadStartBits());
-            ICTFStream stream = fStreamInput.getStream();
-            CTFTrace trace = stream.getTrace();
-            CTFPacketReader currentPacketReader = new CTFPacketReader(
-                    bbInput,
-                    entry,
-                    stream.getEventDeclarations(),
-                    stream.getEventHeaderDeclaration(),
-                    stream.getEventContextDecl(),
-                    trace.getPacketHeaderDef(),
-                    trace);
-            if (entry instanceof StreamInputPacketIndexEntry) {
-                context = ((StreamInputPacketIndexEntry) entry).getStreamPacketContextDef();
-            }
-            if (context == null) {
-                return;
-            }
-            ICompositeDefinition tracePacketHeader = currentPacketReader.getTracePacketHeader();
-            writeCustomPacket(entry, fc, output, startOffsetBits, endOffsetBits, context, tracePacketHeader, entry.getTimestampBegin(), initialLost);
+        try (FileChannel source = FileChannel.open(fStreamInput.getFile().toPath(), StandardOpenOption.READ);) {
+            writePacket(entry, source, output, initialLost);
         }
     }
 
+    /**
+     * Writes a stream packet to the output file channel based on the packet
+     * descriptor information. The events of the packet are not decoded, they
+     * are transferred from the source file channel to the output without
+     * being copied to the heap when the platform allows it.
+     *
+     * @param entry
+     *            the packet descriptor
+     * @param source
+     *            the file channel of the stream file of the packet
+     * @param output
+     *            the file channel to write to
+     * @param initialLost
+     *            the offset initial lost events as the field is cumulative
+     *
+     * @throws IOException
+     *             if a reading or writing error occurs
+     * @throws CTFException
+     *             ctf reading error
+     * @since 3.0
+     */
+    public void writePacket(ICTFPacketDescriptor entry, FileChannel source, FileChannel output, long initialLost) throws IOException, CTFException {
+        StructDefinition context = fStreamInput.getPacketContextDef(entry);
+        ICompositeDefinition tracePacketHeader = fStreamInput.getStream().getTrace().getPacketHeaderDef();
+        writeCustomPacket(entry, source, output, entry.getPayloadStartBits(), entry.getContentSizeBits(), context, tracePacketHeader, entry.getTimestampBegin(), null, initialLost);
+    }
+
     /**
      * Make a packet and write it to the fileChannel
      *
@@ -148,98 +150,151 @@ public class CTFStreamPacketOutputWriter {
      * @since 3.0
      */
     public void writePacket(ICTFPacketDescriptor entry, long startTime, long endTime, long initialLost, FileChannel output) throws IOException, CTFException {
+        try (FileChannel source = FileChannel.open(fStreamInput.getFile().toPath(), StandardOpenOption.READ);) {
+            writePacket(entry, startTime, endTime, initialLost, source, output);
+        }
+    }
+
+    /**
+     * Make a packet with the events of a packet that are in a time range, and
+     * write it to the fileChannel. The timestamps and the sizes of the packet
+     * context are updated for the events that are kept.
+     *
+     * @param entry
+     *            the reference packet descriptor
+     * @param startTime
+     *            startTime of the packet
+     * @param endTime
+     *            endTime of the packet
+     * @param initialLost
+     *            Initial quantity of lost events
+     * @param source
+     *            the file channel of the stream file of the packet
+     * @param output
+     *            the file channel to write to
+     * @throws IOException
+     *             if a reading or writing error occurs
+     * @throws CTFException
+     *             ctf reading error
+     * @since 3.0
+     */
+    public void writePacket(ICTFPacketDescriptor entry, long startTime, long endTime, long initialLost, FileChannel source, FileChannel output) throws IOException, CTFException {
         if (entry.getTimestampBegin() > endTime || entry.getTimestampEnd() < startTime || startTime > endTime) {
             throw new IllegalStateException();
         }
         long startOffsetBits = entry.getPayloadStartBits();
         long endOffsetBits = entry.getContentSizeBits();
-        StructDefinition context = null;
-        File file = fStreamInput.getFile();
-        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ);) {
-            ByteBuffer bb = SafeMappedByteBuffer.map(fc, FileChannel.MapMode.READ_ONLY, entry.getOffsetBytes(), (long) Math.ceil(entry.getContentSizeBits() / (double) Byte.SIZE));
-            BitBuffer bbInput = new BitBuffer(bb);
-            bbInput.position(entry.getPayloadStartBits());
-            ICTFStream stream = fStreamInput.getStream();
-            CTFTrace trace = stream.getTrace();
-            CTFPacketReader currentPacketReader = new CTFPacketReader(
-                    bbInput,
-                    entry,
-                    stream.getEventDeclarations(),
-                    stream.getEventHeaderDeclaration(),
-                    stream.getEventContextDecl(),
-                    trace.getPacketHeaderDef(),
-                    trace);
-            long lastLargeTimestamp = entry.getTimestampBegin();
-            if (entry instanceof StreamInputPacketIndexEntry) {
-                context = ((StreamInputPacketIndexEntry) entry).getStreamPacketContextDef();
-            }
-            if (context == null) {
-                return;
-            }
-            boolean startIsSet = false;
-            while (currentPacketReader.hasMoreEvents()) {
+        ByteBuffer bb = SafeMappedByteBuffer.map(source, FileChannel.MapMode.READ_ONLY, entry.getOffsetBytes(), bitsToBytes(entry.getContentSizeBits()));
+        BitBuffer bbInput = new BitBuffer(bb);
+        bbInput.position(entry.getPayloadStartBits());
+        ICTFStream stream = fStreamInput.getStream();
+        CTFTrace trace = stream.getTrace();
+        CTFPacketReader currentPacketReader = new CTFPacketReader(
+                bbInput,
+                entry,
+                stream.getEventDeclarations(),
+                stream.getEventHeaderDeclaration(),
+                stream.getEventContextDecl(),
+                trace.getPacketHeaderDef(),
+                trace);
+        long lastLargeTimestamp = entry.getTimestampBegin();
+        long lastTimestamp = entry.getTimestampBegin();
+        Long truncatedEnd = null;
+        StructDefinition context = fStreamInput.getPacketContextDef(entry);
+        boolean startIsSet = false;
+        while (currentPacketReader.hasMoreEvents()) {
 
-                IEventDefinition event = currentPacketReader.readNextEvent();
-                long timestampInCycles = event.getTimestamp();
-                if (!startIsSet) {
-                    // handle "P" and "I" framed timestamps. overwrite the timestamp if there is one
-                    // before the trim
-                    ICompositeDefinition eventHeader = event.getEventHeader();
-                    Definition def = null;
-                    if(eventHeader != null) {
-                        def = eventHeader.getDefinition(CTFStrings.TIMESTAMP);
-                    }
-                    if (def == null && eventHeader instanceof StructDefinition) {
-                        StructDefinition structDefinition = (StructDefinition) eventHeader;
-                        def = structDefinition.lookupDefinition(CTFStrings.TIMESTAMP);
-                    }
-                    Definition definition = ((StreamInputPacketIndexEntry) entry).getStreamPacketContextDef().getDefinition(CTFStrings.TIMESTAMP_BEGIN);
-                    if (definition != null && def != null && def.size() == definition.size()) {
-                        lastLargeTimestamp = timestampInCycles;
-                    }
+            IEventDefinition event = currentPacketReader.readNextEvent();
+            long timestampInCycles = event.getTimestamp();
+            if (!startIsSet) {
+                // handle "P" and "I" framed timestamps. overwrite the timestamp if there is one
+                // before the trim
+                ICompositeDefinition eventHeader = event.getEventHeader();
+                Definition def = null;
+                if(eventHeader != null) {
+                    def = eventHeader.getDefinition(CTFStrings.TIMESTAMP);
                 }
-                if (timestampInCycles >= startTime && !startIsSet) {
-                    startOffsetBits = currentPacketReader.getLocation();
-                    startIsSet = true;
+                if (def == null && eventHeader instanceof StructDefinition) {
+                    StructDefinition structDefinition = (StructDefinition) eventHeader;
+                    def = structDefinition.lookupDefinition(CTFStrings.TIMESTAMP);
                 }
-                if (timestampInCycles > endTime) {
-                    endOffsetBits = currentPacketReader.getLocation();
-                    break;
+                Definition definition = context.getDefinition(CTFStrings.TIMESTAMP_BEGIN);
+                if (definition != null && def != null && def.size() == definition.size()) {
+                    lastLargeTimestamp = timestampInCycles;
                 }
             }
-            if (startOffsetBits >= endOffsetBits) {
-                return;
+            if (timestampInCycles >= startTime && !startIsSet) {
+                startOffsetBits = currentPacketReader.getLocation();
+                startIsSet = true;
             }
-            ICompositeDefinition tracePacketHeader = currentPacketReader.getTracePacketHeader();
-            writeCustomPacket(entry, fc, output, startOffsetBits, endOffsetBits, context, tracePacketHeader, lastLargeTimestamp, initialLost);
+            if (timestampInCycles > endTime) {
+                endOffsetBits = currentPacketReader.getLocation();
+                // the packet now ends at the last event that is kept
+                truncatedEnd = lastTimestamp;
+                break;
+            }
+            lastTimestamp = timestampInCycles;
+        }
+        if (truncatedEnd == null && entry.getTimestampEnd() > endTime) {
+            // the range ends after the last event but before the packet end
+            truncatedEnd = lastTimestamp;
+        }
+        if (startOffsetBits >= endOffsetBits) {
+            return;
         }
+        ICompositeDefinition tracePacketHeader = currentPacketReader.getTracePacketHeader();
+        writeCustomPacket(entry, source, output, startOffsetBits, endOffsetBits, context, tracePacketHeader, lastLargeTimestamp, truncatedEnd, initialLost);
     }
 
     private static void writeCustomPacket(ICTFPacketDescriptor entry, FileChannel source, FileChannel output, long startOffsetBits, long endOffsetBits, StructDefinition packetContext, ICompositeDefinition tracePacketHeader, long startTime,
-            long initialLost)
+            @Nullable Long endTime, long initialLost)
             throws IOException, CTFException {
-        ByteBuffer inBuffer = SafeMappedByteBuffer.map(source, MapMode.READ_ONLY, entry.getOffsetBytes(), bitsToBytes(entry.getContentSizeBits()));
         int headerSize = (int) (tracePacketHeader == null ? 0 : tracePacketHeader.size());
         int packetSize = (int) (headerSize + packetContext.size() + endOffsetBits - startOffsetBits);
-        byte[] toWrite = new byte[(int) bitsToBytes(packetSize)];
-        ByteBuffer buffer = ByteBuffer.wrap(toWrite);
-        byte[] header = new byte[(int) bitsToBytes(headerSize)];
-        byte[] body = new byte[(int) bitsToBytes(endOffsetBits - startOffsetBits)];
-        inBuffer.get(header);
-        inBuffer.position((int) bitsToBytes(startOffsetBits));
-        inBuffer.get(body);
-        buffer.put(header);
-        writeContext(startTime, packetContext, packetSize, initialLost, buffer);
-        buffer.position((int) bitsToBytes(headerSize + packetContext.size()));
-        buffer.put(body);
-        output.write(ByteBuffer.wrap(toWrite));
+        /* Only the packet header and context are copied to the heap */
+        ByteBuffer buffer = ByteBuffer.allocate((int) bitsToBytes(headerSize + packetContext.size()));
+        buffer.limit((int) bitsToBytes(headerSize));
+        readFully(source, buffer, entry.getOffsetBytes());
+        buffer.limit(buffer.capacity());
+        writeContext(startTime, endTime, packetContext, packetSize, initialLost, buffer);
+        buffer.rewind();
+        while (buffer.hasRemaining()) {
+            output.write(buffer);
+        }
+        transferFully(source, entry.getOffsetBytes() + bitsToBytes(startOffsetBits), bitsToBytes(endOffsetBits - startOffsetBits), output);
+    }
+
+    private static void readFully(FileChannel source, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = source.read(buffer, offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of stream file at " + offset); //$NON-NLS-1$
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Transfer bytes from a file channel to another, the platform may do it
+     * without copying them to the user space.
+     */
+    private static void transferFully(FileChannel source, long position, long count, FileChannel output) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long nb = source.transferTo(position + transferred, count - transferred, output);
+            if (nb <= 0) {
+                throw new EOFException("Unexpected end of stream file at " + (position + transferred)); //$NON-NLS-1$
+            }
+            transferred += nb;
+        }
     }
 
     private static long bitsToBytes(long bits) {
         return (long) Math.ceil(bits / (double) Byte.SIZE);
     }
 
-    private static void writeContext(long startTime, StructDefinition context, int newPacketSize, long initialLost, @NonNull ByteBuffer buffer) throws CTFException {
+    private static void writeContext(long startTime, @Nullable Long endTime, StructDefinition context, int newPacketSize, long initialLost, @NonNull ByteBuffer buffer) throws CTFException {
         BitBuffer bb = new BitBuffer(buffer);
         bb.position(buffer.position() * Byte.SIZE);
         for (String field : context.getFieldNames()) {
@@ -256,6 +311,8 @@ public class CTFStreamPacketOutputWriter {
                     bb.putLong(size, newPacketSize);
                 } else if (field.equals(CTFStrings.TIMESTAMP_BEGIN)) {
                     bb.putLong(size, startTime);
+                } else if (field.equals(CTFStrings.TIMESTAMP_END) && endTime != null) {
+                    bb.putLong(size, endTime);
                 } else if (field.equals(CTFStrings.EVENTS_DISCARDED)) {
                     bb.putLong(size, simpleDef.getIntegerValue() - initialLost);
                 } else {
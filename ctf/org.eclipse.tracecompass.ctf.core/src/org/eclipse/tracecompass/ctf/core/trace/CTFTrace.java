@@ -147,6 +147,11 @@ public class CTFTrace implements IDefinitionScope {
 
     private boolean fUUIDMismatchWarning = false;
 
+    /**
+     * Directory where the packet indexes of the stream files are stored
+     */
+    private File fPacketIndexDirectory = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -184,8 +189,11 @@ public class CTFTrace implements IDefinitionScope {
             throw new CTFException("Path must be a valid directory"); //$NON-NLS-1$
         }
 
-        /* Open and parse the metadata file */
-        metadata.parseFile();
+        /*
+         * Open and parse the metadata file, no fragments can follow since the
+         * metadata object is not kept
+         */
+        metadata.parseFile(true);
 
         init(path);
     }
@@ -430,6 +438,32 @@ public class CTFTrace implements IDefinitionScope {
         return (fPath != null) ? fPath.getPath() : ""; //$NON-NLS-1$
     }
 
+    /**
+     * Get the directory where the packet indexes of the stream files are
+     * stored
+     *
+     * @return the directory, or null if the packet indexes are not stored
+     * @since 3.0
+     */
+    public File getPacketIndexDirectory() {
+        return fPacketIndexDirectory;
+    }
+
+    /**
+     * Set the directory where the packet indexes of the stream files are
+     * stored. The index of a stream file is written there once the whole file
+     * is indexed, and read back instead of reading every packet header the
+     * next time the trace is opened, as long as the stream file did not
+     * change. This must be set before the trace is read.
+     *
+     * @param directory
+     *            the directory, or null to not store the packet indexes
+     * @since 3.0
+     */
+    public void setPacketIndexDirectory(File directory) {
+        fPacketIndexDirectory = directory;
+    }
+
     // ------------------------------------------------------------------------
     // Operations
     // ------------------------------------------------------------------------
@@ -707,6 +741,15 @@ public class CTFTrace implements IDefinitionScope {
         return fClocks.get(name);
     }
 
+    /**
+     * Gets the clocks of the trace
+     *
+     * @return the clocks, by name
+     */
+    Map<String, CTFClock> getClocks() {
+        return Collections.unmodifiableMap(fClocks);
+    }
+
     /**
      * gets the clock if there is only one. (this is 100% of the use cases as of
      * June 2012)
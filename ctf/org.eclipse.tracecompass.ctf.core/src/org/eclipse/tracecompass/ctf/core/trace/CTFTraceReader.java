@@ -22,11 +22,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
+import org.eclipse.tracecompass.internal.ctf.core.trace.PacketPrefetcher;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputReaderTimestampComparator;
 
 /**
@@ -42,6 +44,8 @@ public class CTFTraceReader implements AutoCloseable {
 
     private static final int MIN_PRIO_SIZE = 16;
 
+    private static final String PIPELINED_PROPERTY = "org.eclipse.tracecompass.ctf.core.pipelinedReading"; //$NON-NLS-1$
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -81,6 +85,28 @@ public class CTFTraceReader implements AutoCloseable {
      */
     private boolean fClosed = false;
 
+    /**
+     * The payload fields to decode, null to decode all of them
+     */
+    private CTFProjection fProjection = null;
+
+    /**
+     * The pool of threads that decodes the packets of the streams ahead, null
+     * when the packets are decoded as they are read
+     */
+    private ExecutorService fDecoder = null;
+
+    /**
+     * The range of the timestamps to read, in cycles
+     */
+    private long fRangeStart = Long.MIN_VALUE;
+    private long fRangeEnd = Long.MAX_VALUE;
+
+    /**
+     * The names of the events to read, null to read all the packets
+     */
+    private Set<String> fEventFilter = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -116,6 +142,9 @@ public class CTFTraceReader implements AutoCloseable {
             fStartTime = fTrace.timestampCyclesToNanos(checkNotNull(getTopStream().getCurrentEvent()).getTimestamp());
             setEndTime(fStartTime);
         }
+        if (Boolean.getBoolean(PIPELINED_PROPERTY)) {
+            setPipelined(true);
+        }
     }
 
     /**
@@ -131,6 +160,10 @@ public class CTFTraceReader implements AutoCloseable {
         newReader = new CTFTraceReader(fTrace);
         newReader.fStartTime = fStartTime;
         newReader.fEndTime = fEndTime;
+        newReader.setProjection(fProjection);
+        newReader.setPipelined(isPipelined());
+        newReader.setReadRange(fRangeStart, fRangeEnd);
+        newReader.setEventFilter(fEventFilter);
         return newReader;
     }
 
@@ -152,6 +185,7 @@ public class CTFTraceReader implements AutoCloseable {
             fStreamInputReaders.clear();
         }
         fPrio.clear();
+        shutdownDecoder();
         fClosed = true;
     }
 
@@ -251,6 +285,10 @@ public class CTFTraceReader implements AutoCloseable {
                 try (CTFStreamInputReader streamInputReader = new CTFStreamInputReader(checkNotNull(streamInput))) {
                     if (!fStreamInputReaders.contains(streamInputReader)) {
                         CTFStreamInputReader streamInputReaderToAdd = new CTFStreamInputReader(checkNotNull(streamInput));
+                        streamInputReaderToAdd.setProjection(fProjection);
+                        streamInputReaderToAdd.setPipelined(fDecoder);
+                        streamInputReaderToAdd.setReadRange(fRangeStart, fRangeEnd);
+                        streamInputReaderToAdd.setEventFilter(fEventFilter);
                         streamInputReaderToAdd.readNextEvent();
                         fStreamInputReaders.add(streamInputReaderToAdd);
                         readers.add(streamInputReaderToAdd);
@@ -535,6 +573,159 @@ public class CTFTraceReader implements AutoCloseable {
         }
     }
 
+    /**
+     * Set the payload fields to decode for the next events that are read, in
+     * all the streams of the trace. The other fields are skipped when their
+     * declaration allows it.
+     *
+     * @param projection
+     *            The fields to decode, or null to decode all the fields
+     * @since 3.0
+     */
+    public void setProjection(CTFProjection projection) {
+        fProjection = projection;
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                reader.setProjection(projection);
+            }
+        }
+    }
+
+    /**
+     * Get the payload fields that are decoded
+     *
+     * @return The fields that are decoded, or null if all the fields are
+     *         decoded
+     * @since 3.0
+     */
+    public CTFProjection getProjection() {
+        return fProjection;
+    }
+
+    /**
+     * Set whether the packets of the streams are decoded ahead, by a pool of
+     * threads, while this reader merges the events of the streams. The events
+     * are read in the same order, and have the same locations, in both modes.
+     * The pipelined mode is faster for long sequential reads of traces with
+     * many streams, but decodes packets that are not read when seeking often.
+     * It can also be enabled by default with the
+     * <code>org.eclipse.tracecompass.ctf.core.pipelinedReading</code> system
+     * property. The threads are owned by this reader, they stop when they are
+     * idle and are shut down when the reader is closed.
+     *
+     * @param pipelined
+     *            true to decode the packets ahead
+     * @since 3.0
+     */
+    public void setPipelined(boolean pipelined) {
+        if (pipelined == isPipelined() || (pipelined && fClosed)) {
+            return;
+        }
+        ExecutorService decoder = pipelined ? PacketPrefetcher.createExecutor("CTF Packet Decoder") : null; //$NON-NLS-1$
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                reader.setPipelined(decoder);
+            }
+        }
+        shutdownDecoder();
+        fDecoder = decoder;
+    }
+
+    private void shutdownDecoder() {
+        ExecutorService decoder = fDecoder;
+        if (decoder != null) {
+            decoder.shutdown();
+            fDecoder = null;
+        }
+    }
+
+    /**
+     * Get whether the packets of the streams are decoded ahead
+     *
+     * @return true if the packets are decoded ahead
+     * @since 3.0
+     */
+    public boolean isPipelined() {
+        return fDecoder != null;
+    }
+
+    /**
+     * Set the range of the timestamps to read, in all the streams of the
+     * trace. The packets of the streams that end before the range are
+     * skipped, and a stream ends at its first packet that begins after the
+     * range, so the events just outside of the range may still be read. The
+     * range applies from the next packet that is read in each stream, and not
+     * when the trace is read live.
+     *
+     * @param start
+     *            The start of the range, in cycles
+     * @param end
+     *            The end of the range, in cycles
+     * @since 3.0
+     */
+    public void setReadRange(long start, long end) {
+        fRangeStart = start;
+        fRangeEnd = end;
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                reader.setReadRange(start, end);
+            }
+        }
+    }
+
+    /**
+     * Get the start of the range of the timestamps to read
+     *
+     * @return The start of the range, in cycles
+     * @since 3.0
+     */
+    public long getReadRangeStart() {
+        return fRangeStart;
+    }
+
+    /**
+     * Get the end of the range of the timestamps to read
+     *
+     * @return The end of the range, in cycles
+     * @since 3.0
+     */
+    public long getReadRangeEnd() {
+        return fRangeEnd;
+    }
+
+    /**
+     * Set the events to read, in all the streams of the trace. The packets
+     * that are known to contain none of these events are skipped, the other
+     * events of the packets that are read are all read. The events of a packet
+     * are known once it was read completely, or from the packet index file, so
+     * a first read of the whole trace is not faster. This changes the events
+     * that are read, so the ranks of the events are not known when it is set.
+     *
+     * @param eventNames
+     *            The names of the events to read, or null to read all the
+     *            packets
+     * @since 3.0
+     */
+    public void setEventFilter(Set<String> eventNames) {
+        fEventFilter = eventNames;
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                reader.setEventFilter(eventNames);
+            }
+        }
+    }
+
+    /**
+     * Get the names of the events to read
+     *
+     * @return The names of the events to read, or null if all the packets are
+     *         read
+     * @since 3.0
+     */
+    public Set<String> getEventFilter() {
+        return fEventFilter;
+    }
+
     /**
      * Get if the trace is to read live or not
      *
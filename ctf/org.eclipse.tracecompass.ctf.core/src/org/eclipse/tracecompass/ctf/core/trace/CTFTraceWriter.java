@@ -16,7 +16,13 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -98,14 +104,56 @@ public class CTFTraceWriter {
                 throw new CTFIOException("Error copying metadata: " + e.toString(), e); //$NON-NLS-1$
             }
 
-            // Copy packets
+            // Copy packets, the stream files are independent
+            List<CTFStreamOutputWriter> writers = new ArrayList<>();
             for (ICTFStream stream : trace.getStreams()) {
                 Set<CTFStreamInput> inputs = stream.getStreamInputs();
                 for (CTFStreamInput s : inputs) {
-                    CTFStreamOutputWriter streamOutputwriter = new CTFStreamOutputWriter(checkNotNull(s), out);
-                    streamOutputwriter.copyPackets(adjustedStart, adjustedEnd);
+                    writers.add(new CTFStreamOutputWriter(checkNotNull(s), out));
                 }
             }
+            copyPackets(writers, adjustedStart, adjustedEnd);
+        }
+    }
+
+    /**
+     * Copy the packets of the stream files, with one thread per stream file up
+     * to the number of processors
+     */
+    private static void copyPackets(List<CTFStreamOutputWriter> writers, long startTime, long endTime) throws CTFException {
+        if (writers.size() <= 1) {
+            for (CTFStreamOutputWriter writer : writers) {
+                writer.copyPackets(startTime, endTime);
+            }
+            return;
+        }
+        int nbThreads = Math.min(writers.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads, r -> new Thread(r, "CTF Trace Writer")); //$NON-NLS-1$
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (CTFStreamOutputWriter writer : writers) {
+                futures.add(executor.submit(() -> {
+                    writer.copyPackets(startTime, endTime);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CTFIOException("Interrupted while copying packets", e); //$NON-NLS-1$
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CTFException) {
+                throw (CTFException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CTFIOException("Error copying packets", (Exception) cause); //$NON-NLS-1$
+        } finally {
+            executor.shutdownNow();
         }
     }
 }
@@ -27,8 +27,10 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.UUID;
 
@@ -44,6 +46,7 @@ import org.eclipse.tracecompass.ctf.parser.CTFParser;
 import org.eclipse.tracecompass.ctf.parser.CTFParser.parse_return;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.CtfAntlrException;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.IOStructGen;
+import org.eclipse.tracecompass.internal.ctf.core.event.metadata.JsonMetadataParser;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.ParseException;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
 
@@ -94,6 +97,8 @@ public class Metadata {
 
     private IOStructGen fTreeParser;
 
+    private JsonMetadataParser fJsonParser;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -148,23 +153,47 @@ public class Metadata {
      *             If there was a problem parsing the metadata
      */
     public void parseFile() throws CTFException {
+        parseFile(false);
+    }
+
+    /**
+     * Parse the metadata file, or populate the trace from the cached
+     * declarations of the same metadata. A trace populated from the cache has
+     * no parser, so no fragments can be parsed after it.
+     *
+     * @param useCache
+     *            true to use the metadata cache
+     * @throws CTFException
+     *             If there was a problem parsing the metadata
+     */
+    void parseFile(boolean useCache) throws CTFException {
 
         /*
-         * Reader. It will contain a StringReader if we are using packet-based metadata
-         * and it will contain a FileReader if we have text-based metadata.
+         * The text is read from the metadata packets if we are using
+         * packet-based metadata, or from the file if we have text-based
+         * metadata.
          */
 
         File metadataFile = new File(getMetadataPath());
         ByteOrder byteOrder = CTFTrace.startsWithMagicNumber(metadataFile, Utils.TSDL_MAGIC);
         fDetectedByteOrder = byteOrder;
         try (FileInputStream fis = new FileInputStream(metadataFile);
-                FileChannel metadataFileChannel = fis.getChannel();
-                /* Check if metadata is packet-based, if not it is text based */
-                Reader metadataTextInput = ( byteOrder!= null ? readBinaryMetaData(metadataFileChannel) : new FileReader(metadataFile));) {
-
-            readMetaDataText(metadataTextInput);
+                FileChannel metadataFileChannel = fis.getChannel();) {
+            /* Check if metadata is packet-based, if not it is text based */
+            String metadataText = (byteOrder != null ? readBinaryMetaData(metadataFileChannel) : new String(Files.readAllBytes(metadataFile.toPath()), StandardCharsets.UTF_8));
+
+            /* Traces with the same metadata get the same declarations */
+            String key = useCache ? MetadataCache.getKey(metadataText) : null;
+            if (key != null && MetadataCache.apply(key, fTrace)) {
+                checkByteOrder();
+                return;
+            }
+            readMetaDataText(metadataText);
+            if (key != null) {
+                MetadataCache.put(key, fTrace);
+            }
 
-        } catch (FileNotFoundException e) {
+        } catch (FileNotFoundException | NoSuchFileException e) {
             throw new CTFException("Cannot find metadata file!", e); //$NON-NLS-1$
         } catch (IOException | ParseException e) {
             throw new CTFException(e);
@@ -176,7 +205,7 @@ public class Metadata {
 
     }
 
-    private Reader readBinaryMetaData(FileChannel metadataFileChannel) throws CTFException {
+    private String readBinaryMetaData(FileChannel metadataFileChannel) throws CTFException {
         /* Create StringBuffer to receive metadata text */
         StringBuffer metadataText = new StringBuffer();
 
@@ -190,8 +219,7 @@ public class Metadata {
                     metadataText);
         }
 
-        /* Wrap the metadata string with a StringReader */
-        return new StringReader(metadataText.toString());
+        return metadataText.toString();
     }
 
     /**
@@ -201,6 +229,7 @@ public class Metadata {
      * <li>For text-only metadata, the file starts with "/* CTF" (without the
      * quotes)</li>
      * <li>For packet-based metadata, the file starts with correct magic number</li>
+     * <li>For JSON metadata (CTF 2), the file starts with a record separator</li>
      * </ul>
      *
      * @param path
@@ -219,7 +248,7 @@ public class Metadata {
             }
             try (BufferedReader br = new BufferedReader(new FileReader(metadataFile))) {
                 String text = br.readLine();
-                return text.startsWith(TEXT_ONLY_METADATA_HEADER_PREFIX);
+                return text.startsWith(TEXT_ONLY_METADATA_HEADER_PREFIX) || JsonMetadataParser.isJson(text);
             } catch (IOException e) {
                 throw new CTFException(e.getMessage(), e);
             }
@@ -238,9 +267,8 @@ public class Metadata {
      *             parsing a TSDL file
      */
     public void parseText(String data) throws CTFException {
-        Reader metadataTextInput = new StringReader(data);
         try {
-            readMetaDataText(metadataTextInput);
+            readMetaDataText(data);
         } catch (IOException | ParseException e) {
             throw new CTFException(e);
         } catch (RecognitionException | RewriteCardinalityException e) {
@@ -249,12 +277,22 @@ public class Metadata {
 
     }
 
-    private void readMetaDataText(Reader metadataTextInput) throws IOException, RecognitionException, ParseException {
-        CommonTree tree = createAST(metadataTextInput);
+    private void readMetaDataText(String metadataText) throws IOException, RecognitionException, ParseException {
+        if (JsonMetadataParser.isJson(metadataText)) {
+            /* CTF 2 metadata */
+            fJsonParser = new JsonMetadataParser(NonNullUtils.checkNotNull(fTrace));
+            fJsonParser.parse(metadataText);
+        } else {
+            CommonTree tree = createAST(new StringReader(metadataText));
+
+            /* Generate IO structures (declarations) */
+            fTreeParser = new IOStructGen(tree, NonNullUtils.checkNotNull(fTrace));
+            fTreeParser.generate();
+        }
+        checkByteOrder();
+    }
 
-        /* Generate IO structures (declarations) */
-        fTreeParser = new IOStructGen(tree, NonNullUtils.checkNotNull(fTrace));
-        fTreeParser.generate();
+    private void checkByteOrder() throws ParseException {
         /* store locally in case of concurrent modification */
         ByteOrder detectedByteOrder = getDetectedByteOrder();
         if (detectedByteOrder != null && fTrace.getByteOrder() != detectedByteOrder) {
@@ -273,9 +311,8 @@ public class Metadata {
      *             parsing a TSDL file
      */
     public void parseTextFragment(String dataFragment) throws CTFException {
-        Reader metadataTextInput = new StringReader(dataFragment);
         try {
-            readMetaDataTextFragment(metadataTextInput);
+            readMetaDataTextFragment(dataFragment);
         } catch (IOException | ParseException e) {
             throw new CTFException(e);
         } catch (RecognitionException | RewriteCardinalityException e) {
@@ -283,8 +320,16 @@ public class Metadata {
         }
     }
 
-    private void readMetaDataTextFragment(Reader metadataTextInput) throws IOException, RecognitionException, ParseException {
-        CommonTree tree = createAST(metadataTextInput);
+    private void readMetaDataTextFragment(String dataFragment) throws IOException, RecognitionException, ParseException {
+        JsonMetadataParser jsonParser = fJsonParser;
+        if (jsonParser != null) {
+            jsonParser.parseFragment(dataFragment);
+            return;
+        }
+        if (fTreeParser == null) {
+            throw new ParseException("The metadata must be parsed before its fragments"); //$NON-NLS-1$
+        }
+        CommonTree tree = createAST(new StringReader(dataFragment));
         fTreeParser.setTree(tree);
         fTreeParser.generateFragment();
     }
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.trace;
+
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.event.CTFClock;
+import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IEventHeaderDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.metadata.ParseException;
+import org.eclipse.tracecompass.internal.ctf.core.trace.CTFStream;
+
+/**
+ * Cache of the declarations parsed from the metadata of the traces, by hash of
+ * their metadata text. A trace that is opened again, or another trace with the
+ * same metadata, is populated from the cache instead of parsing its metadata.
+ * <p>
+ * The declarations of the types are shared between the traces. They are not
+ * modified once the metadata is parsed, except for the decoder that a
+ * {@link StructDeclaration} compiles the first time it is read, which only
+ * depends on its fields and is published safely, so the traces can read them
+ * concurrently. The streams and the event declarations refer to their trace,
+ * so each trace gets its own copies of them.
+ * <p>
+ * Only the traces opened from a directory use the cache, since the trace is
+ * populated without a parser, so no metadata fragments can be parsed after.
+ */
+@NonNullByDefault
+final class MetadataCache {
+
+    /** Number of metadata kept, the least recently used is evicted */
+    private static final int MAX_ENTRIES = 8;
+
+    private static final String HASH_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+
+    private static final Map<String, Snapshot> CACHE = new LinkedHashMap<String, Snapshot>(MAX_ENTRIES, 0.75f, true) {
+        private static final long serialVersionUID = -2858624405404224620L;
+
+        @Override
+        protected boolean removeEldestEntry(@Nullable Entry<String, Snapshot> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private MetadataCache() {
+    }
+
+    /**
+     * Get the key of a metadata text
+     *
+     * @param metadataText
+     *            The metadata text
+     * @return The key, the hash of the text, or null if it cannot be computed
+     */
+    public static @Nullable String getKey(String metadataText) {
+        try {
+            byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(metadataText.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b)); //$NON-NLS-1$
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Populate a trace with the cached declarations of its metadata
+     *
+     * @param key
+     *            The key of the metadata
+     * @param trace
+     *            The trace to populate, which was not populated yet
+     * @return true if the metadata was cached and the trace populated
+     * @throws ParseException
+     *             If the trace could not be populated
+     */
+    public static boolean apply(String key, CTFTrace trace) throws ParseException {
+        Snapshot snapshot;
+        synchronized (CACHE) {
+            snapshot = CACHE.get(key);
+        }
+        if (snapshot == null) {
+            return false;
+        }
+        snapshot.apply(trace);
+        return true;
+    }
+
+    /**
+     * Cache the declarations of a trace that was populated from its metadata
+     *
+     * @param key
+     *            The key of the metadata
+     * @param trace
+     *            The populated trace
+     */
+    public static void put(String key, CTFTrace trace) {
+        Snapshot snapshot = new Snapshot(trace);
+        synchronized (CACHE) {
+            CACHE.put(key, snapshot);
+        }
+    }
+
+    /**
+     * Clear the cache
+     */
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    private static final class Snapshot {
+
+        private final ByteOrder fByteOrder;
+        private final @Nullable UUID fUuid;
+        private final long fMajor;
+        private final long fMinor;
+        private final boolean fVersionSet;
+        private final @Nullable StructDeclaration fPacketHeader;
+        private final Map<String, String> fEnvironment;
+        private final Map<String, CTFClock> fClocks;
+        private final List<StreamSnapshot> fStreams = new ArrayList<>();
+
+        public Snapshot(CTFTrace trace) {
+            fByteOrder = trace.getByteOrder();
+            fUuid = trace.uuidIsSet() ? trace.getUUID() : null;
+            fVersionSet = trace.majorIsSet() && trace.minorIsSet();
+            fMajor = fVersionSet ? trace.getMajor() : 0;
+            fMinor = fVersionSet ? trace.getMinor() : 0;
+            fPacketHeader = trace.packetHeaderIsSet() ? trace.getPacketHeader() : null;
+            fEnvironment = new HashMap<>(trace.getEnvironment());
+            fClocks = new HashMap<>(trace.getClocks());
+            for (ICTFStream stream : trace.getStreams()) {
+                fStreams.add(new StreamSnapshot(stream));
+            }
+        }
+
+        public void apply(CTFTrace trace) throws ParseException {
+            trace.setByteOrder(fByteOrder);
+            UUID uuid = fUuid;
+            if (uuid != null) {
+                trace.setUUID(uuid);
+            }
+            if (fVersionSet) {
+                trace.setMajor(fMajor);
+                trace.setMinor(fMinor);
+            }
+            StructDeclaration packetHeader = fPacketHeader;
+            if (packetHeader != null) {
+                trace.setPacketHeader(packetHeader);
+            }
+            trace.setEnvironment(fEnvironment);
+            for (Entry<String, CTFClock> clock : fClocks.entrySet()) {
+                trace.addClock(clock.getKey(), clock.getValue());
+            }
+            for (StreamSnapshot stream : fStreams) {
+                stream.apply(trace);
+            }
+        }
+    }
+
+    private static final class StreamSnapshot {
+
+        private final long fId;
+        private final boolean fIdSet;
+        private final @Nullable IDeclaration fEventHeader;
+        private final @Nullable StructDeclaration fEventContext;
+        private final @Nullable StructDeclaration fPacketContext;
+        /* Copies without stream, the events would keep their trace */
+        private final List<IEventDeclaration> fEvents = new ArrayList<>();
+
+        public StreamSnapshot(ICTFStream stream) {
+            fId = stream.getId();
+            fIdSet = stream.isIdSet();
+            fEventHeader = stream.getEventHeaderDeclaration();
+            fEventContext = stream.getEventContextDecl();
+            fPacketContext = stream.getPacketContextDecl();
+            for (IEventDeclaration event : stream.getEventDeclarations()) {
+                if (event != null) {
+                    fEvents.add(copy(event, null));
+                }
+            }
+        }
+
+        public void apply(CTFTrace trace) throws ParseException {
+            CTFStream stream = new CTFStream(trace);
+            if (fIdSet) {
+                stream.setId(fId);
+            }
+            IDeclaration eventHeader = fEventHeader;
+            if (eventHeader instanceof IEventHeaderDeclaration) {
+                stream.setEventHeader((IEventHeaderDeclaration) eventHeader);
+            } else if (eventHeader instanceof StructDeclaration) {
+                stream.setEventHeader((StructDeclaration) eventHeader);
+            }
+            StructDeclaration eventContext = fEventContext;
+            if (eventContext != null) {
+                stream.setEventContext(eventContext);
+            }
+            StructDeclaration packetContext = fPacketContext;
+            if (packetContext != null) {
+                stream.setPacketContext(packetContext);
+            }
+            trace.addStream(stream);
+            for (IEventDeclaration event : fEvents) {
+                stream.addEvent(copy(event, stream));
+            }
+        }
+
+        private static EventDeclaration copy(IEventDeclaration event, @Nullable CTFStream stream) {
+            EventDeclaration copy = new EventDeclaration();
+            copy.setName(event.getName());
+            Long id = event.getId();
+            if (id != null && id != IEventDeclaration.UNSET_EVENT_ID) {
+                copy.setId(id);
+            }
+            if (stream != null) {
+                copy.setStream(stream);
+            }
+            StructDeclaration context = event.getContext();
+            if (context != null) {
+                copy.setContext(context);
+            }
+            StructDeclaration fields = event.getFields();
+            if (fields != null) {
+                copy.setFields(fields);
+            }
+            copy.setLogLevel(event.getLogLevel());
+            for (String attribute : event.getCustomAttributes()) {
+                String value = event.getCustomAttribute(attribute);
+                if (value != null) {
+                    copy.setCustomAttribute(attribute, value);
+                }
+            }
+            copy.addCallsites(event.getCallsites());
+            return copy;
+        }
+    }
+}
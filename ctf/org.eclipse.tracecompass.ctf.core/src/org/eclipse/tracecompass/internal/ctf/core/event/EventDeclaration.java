@@ -120,11 +120,40 @@ public class EventDeclaration implements IEventDeclaration {
      */
     public EventDefinition createDefinition(StructDeclaration streamEventContextDecl, ICTFPacketDescriptor packetDescriptor, ICompositeDefinition packetContext, ICompositeDefinition eventHeaderDef, @NonNull BitBuffer input, long prevTimestamp)
             throws CTFException {
+        return createDefinition(streamEventContextDecl, packetDescriptor, packetContext, eventHeaderDef, input, prevTimestamp, null);
+    }
+
+    /**
+     * Creates an instance of EventDefinition corresponding to this
+     * declaration, only decoding some of the payload fields.
+     *
+     * @param streamEventContextDecl
+     *            event context
+     * @param packetDescriptor
+     *            current packet
+     * @param packetContext
+     *            packet context
+     * @param eventHeaderDef
+     *            The event header definition
+     * @param input
+     *            the bitbuffer input source
+     * @param prevTimestamp
+     *            The timestamp when the event was taken
+     * @param fieldMask
+     *            for each payload field, whether it should be decoded, or
+     *            null to decode all of them
+     * @return A new EventDefinition.
+     * @throws CTFException
+     *             As a bitbuffer is used to read, it could have wrapped
+     *             IOExceptions.
+     */
+    public EventDefinition createDefinition(StructDeclaration streamEventContextDecl, ICTFPacketDescriptor packetDescriptor, ICompositeDefinition packetContext, ICompositeDefinition eventHeaderDef, @NonNull BitBuffer input, long prevTimestamp,
+            boolean @Nullable [] fieldMask) throws CTFException {
         final CTFStream stream = fStream;
         final CTFTrace trace = stream == null ? null : stream.getTrace();
         StructDefinition streamEventContext = streamEventContextDecl != null ? streamEventContextDecl.createDefinition(trace, ILexicalScope.STREAM_EVENT_CONTEXT, input) : null;
         StructDefinition eventContext = fContext != null ? fContext.createFieldDefinition(eventHeaderDef, trace, ILexicalScope.CONTEXT, input) : null;
-        StructDefinition eventPayload = fFields != null ? fFields.createFieldDefinition(eventHeaderDef, trace, ILexicalScope.FIELDS, input) : null;
+        StructDefinition eventPayload = fFields != null ? fFields.createFieldDefinition(eventHeaderDef, trace, ILexicalScope.FIELDS, input, fieldMask) : null;
         long timestamp = calculateTimestamp(eventHeaderDef, prevTimestamp, eventPayload, eventContext);
 
         int cpu = (int) packetDescriptor.getTargetId();
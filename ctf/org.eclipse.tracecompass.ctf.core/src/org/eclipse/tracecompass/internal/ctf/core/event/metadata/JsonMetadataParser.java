@@ -0,0 +1,750 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.metadata;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
+import org.eclipse.tracecompass.ctf.core.event.CTFClock;
+import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.FloatDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.VariantDeclaration;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.internal.ctf.core.Activator;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.ArrayDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.SequenceDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.trace.CTFStream;
+import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Parser of the CTF 2 metadata, a sequence of JSON fragments that are each
+ * preceded by a record separator (0x1E). It populates the trace with the same
+ * declarations as {@link IOStructGen} does for the TSDL metadata of CTF 1, so
+ * the rest of the library reads both versions of the format the same way.
+ * <p>
+ * The fragments are tokenized with a streaming JSON reader, without building
+ * a generic tree of the whole metadata. Each fragment is small and its members
+ * may come in any order, so a fragment is read into plain maps and lists
+ * before it is converted.
+ * <p>
+ * The members of the field classes that have a role are named like the
+ * corresponding fields of CTF 1 (<code>stream_id</code>,
+ * <code>timestamp_begin</code>, ...), which are the names looked up by the
+ * readers. Variants select their option with an enumeration, like in CTF 1,
+ * so an integer selector is converted to an enumeration of the names of the
+ * options. Variable-length integers and optional fields are not supported.
+ */
+@NonNullByDefault
+public class JsonMetadataParser {
+
+    /** Record separator, before each fragment */
+    private static final char RECORD_SEPARATOR = '\u001e';
+
+    private static final String TYPE = "type"; //$NON-NLS-1$
+    private static final String ID = "id"; //$NON-NLS-1$
+    private static final String NAME = "name"; //$NON-NLS-1$
+    private static final String ROLES = "roles"; //$NON-NLS-1$
+    private static final String PATH = "path"; //$NON-NLS-1$
+    private static final String LENGTH = "length"; //$NON-NLS-1$
+    private static final String ALIGNMENT = "alignment"; //$NON-NLS-1$
+    private static final String BYTE_ORDER = "byte-order"; //$NON-NLS-1$
+    private static final String FIELD_CLASS = "field-class"; //$NON-NLS-1$
+
+    /* Fragments */
+    private static final String PREAMBLE = "preamble"; //$NON-NLS-1$
+    private static final String TRACE_CLASS = "trace-class"; //$NON-NLS-1$
+    private static final String CLOCK_CLASS = "clock-class"; //$NON-NLS-1$
+    private static final String DATA_STREAM_CLASS = "data-stream-class"; //$NON-NLS-1$
+    private static final String EVENT_RECORD_CLASS = "event-record-class"; //$NON-NLS-1$
+    private static final String FIELD_CLASS_ALIAS = "field-class-alias"; //$NON-NLS-1$
+
+    /* Field classes */
+    private static final String FIXED_LENGTH_BIT_ARRAY = "fixed-length-bit-array"; //$NON-NLS-1$
+    private static final String FIXED_LENGTH_BOOLEAN = "fixed-length-boolean"; //$NON-NLS-1$
+    private static final String FIXED_LENGTH_UNSIGNED_INTEGER = "fixed-length-unsigned-integer"; //$NON-NLS-1$
+    private static final String FIXED_LENGTH_SIGNED_INTEGER = "fixed-length-signed-integer"; //$NON-NLS-1$
+    private static final String FIXED_LENGTH_FLOATING_POINT_NUMBER = "fixed-length-floating-point-number"; //$NON-NLS-1$
+    private static final String NULL_TERMINATED_STRING = "null-terminated-string"; //$NON-NLS-1$
+    private static final String STATIC_LENGTH_STRING = "static-length-string"; //$NON-NLS-1$
+    private static final String DYNAMIC_LENGTH_STRING = "dynamic-length-string"; //$NON-NLS-1$
+    private static final String STATIC_LENGTH_BLOB = "static-length-blob"; //$NON-NLS-1$
+    private static final String DYNAMIC_LENGTH_BLOB = "dynamic-length-blob"; //$NON-NLS-1$
+    private static final String STRUCTURE = "structure"; //$NON-NLS-1$
+    private static final String STATIC_LENGTH_ARRAY = "static-length-array"; //$NON-NLS-1$
+    private static final String DYNAMIC_LENGTH_ARRAY = "dynamic-length-array"; //$NON-NLS-1$
+    private static final String VARIANT = "variant"; //$NON-NLS-1$
+
+    /* Roles, and the names of the matching CTF 1 fields */
+    private static final Map<String, String> ROLE_NAMES = new HashMap<>();
+    private static final String DEFAULT_CLOCK_TIMESTAMP = "default-clock-timestamp"; //$NON-NLS-1$
+
+    static {
+        ROLE_NAMES.put("packet-magic-number", "magic"); //$NON-NLS-1$ //$NON-NLS-2$
+        ROLE_NAMES.put("metadata-stream-uuid", MetadataStrings.UUID_STRING); //$NON-NLS-1$
+        ROLE_NAMES.put("data-stream-class-id", MetadataStrings.STREAM_ID); //$NON-NLS-1$
+        ROLE_NAMES.put("data-stream-id", "stream_instance_id"); //$NON-NLS-1$ //$NON-NLS-2$
+        ROLE_NAMES.put("packet-total-length", CTFStrings.PACKET_SIZE); //$NON-NLS-1$
+        ROLE_NAMES.put("packet-content-length", CTFStrings.CONTENT_SIZE); //$NON-NLS-1$
+        ROLE_NAMES.put("packet-end-default-clock-timestamp", CTFStrings.TIMESTAMP_END); //$NON-NLS-1$
+        ROLE_NAMES.put("discarded-event-record-counter-snapshot", CTFStrings.EVENTS_DISCARDED); //$NON-NLS-1$
+        ROLE_NAMES.put("packet-sequence-number", "packet_seq_num"); //$NON-NLS-1$ //$NON-NLS-2$
+        ROLE_NAMES.put("event-record-class-id", MetadataStrings.ID); //$NON-NLS-1$
+    }
+
+    private static final int CTF_MAJOR = 2;
+    private static final int FLOAT_32_EXPONENT = 8;
+    private static final int FLOAT_32_MANTISSA = 24;
+    private static final int FLOAT_64_EXPONENT = 11;
+    private static final int FLOAT_64_MANTISSA = 53;
+    private static final int UUID_LENGTH = 16;
+    private static final int BASE_10 = 10;
+
+    private final CTFTrace fTrace;
+    private final Map<String, Object> fAliases = new HashMap<>();
+    private final Map<String, String> fClockNames = new HashMap<>();
+    private final Map<Long, CTFStream> fStreams = new HashMap<>();
+    private final Map<Long, String> fStreamClocks = new HashMap<>();
+    /** Members renamed after their role, by their name in the field locations */
+    private final Map<String, String> fRenamedMembers = new HashMap<>();
+    private boolean fHasStreamId = false;
+    private boolean fHasPreamble = false;
+    private boolean fHasTraceClass = false;
+
+    /** The clock of the timestamps of the field class being converted */
+    private String fCurrentClock = ""; //$NON-NLS-1$
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            The trace to populate
+     */
+    public JsonMetadataParser(CTFTrace trace) {
+        fTrace = trace;
+    }
+
+    /**
+     * Check if a metadata text is CTF 2 JSON metadata, which starts with a
+     * record separator
+     *
+     * @param text
+     *            The metadata text
+     * @return true if the text is JSON metadata
+     */
+    public static boolean isJson(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            /* The record separator is a whitespace for Java */
+            if (c == RECORD_SEPARATOR) {
+                return true;
+            }
+            if (!Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse the JSON metadata and populate the trace
+     *
+     * @param text
+     *            The metadata text
+     * @throws ParseException
+     *             If the metadata is invalid or not supported
+     */
+    public void parse(String text) throws ParseException {
+        parseFragments(text);
+        if (!fHasTraceClass) {
+            throw new ParseException("Missing trace class"); //$NON-NLS-1$
+        }
+        if (!fTrace.byteOrderIsSet()) {
+            fTrace.setByteOrder(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Parse more fragments of the metadata of a trace that was already
+     * populated by {@link #parse(String)}, for live traces
+     *
+     * @param text
+     *            The new metadata fragments
+     * @throws ParseException
+     *             If the metadata is invalid or not supported
+     */
+    public void parseFragment(String text) throws ParseException {
+        if (!fHasTraceClass) {
+            throw new ParseException("You need to run parse first"); //$NON-NLS-1$
+        }
+        parseFragments(text);
+    }
+
+    private void parseFragments(String text) throws ParseException {
+        for (String fragment : text.split(String.valueOf(RECORD_SEPARATOR))) {
+            if (fragment.trim().isEmpty()) {
+                continue;
+            }
+            Map<String, Object> object = asMap(read(fragment), "fragment"); //$NON-NLS-1$
+            String type = getString(object, TYPE);
+            if (!fHasPreamble && !PREAMBLE.equals(type)) {
+                throw new ParseException("The first metadata fragment must be a preamble"); //$NON-NLS-1$
+            }
+            switch (type) {
+            case PREAMBLE:
+                if (fHasPreamble) {
+                    throw new ParseException("Only one preamble is allowed"); //$NON-NLS-1$
+                }
+                parsePreamble(object);
+                fHasPreamble = true;
+                break;
+            case TRACE_CLASS:
+                if (fHasTraceClass) {
+                    throw new ParseException("Only one trace class is allowed"); //$NON-NLS-1$
+                }
+                parseTraceClass(object);
+                fHasTraceClass = true;
+                break;
+            case CLOCK_CLASS:
+                parseClockClass(object);
+                break;
+            case DATA_STREAM_CLASS:
+                parseDataStreamClass(object);
+                break;
+            case EVENT_RECORD_CLASS:
+                parseEventRecordClass(object);
+                break;
+            case FIELD_CLASS_ALIAS:
+                fAliases.put(getString(object, NAME), get(object, FIELD_CLASS));
+                break;
+            default:
+                Activator.log(IStatus.WARNING, "Unknown metadata fragment type " + type); //$NON-NLS-1$
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Fragments
+    // ------------------------------------------------------------------------
+
+    private void parsePreamble(Map<String, Object> preamble) throws ParseException {
+        long version = getLong(preamble, "version", 0); //$NON-NLS-1$
+        if (version != CTF_MAJOR) {
+            throw new ParseException("Unsupported CTF version " + version); //$NON-NLS-1$
+        }
+        fTrace.setMajor(CTF_MAJOR);
+        fTrace.setMinor(0);
+        List<Object> uuid = getList(preamble, MetadataStrings.UUID_STRING);
+        if (uuid != null) {
+            if (uuid.size() != UUID_LENGTH) {
+                throw new ParseException("Invalid UUID"); //$NON-NLS-1$
+            }
+            byte[] bytes = new byte[UUID_LENGTH];
+            for (int i = 0; i < UUID_LENGTH; i++) {
+                bytes[i] = (byte) asLong(uuid.get(i), MetadataStrings.UUID_STRING);
+            }
+            fTrace.setUUID(Utils.makeUUID(bytes));
+        }
+    }
+
+    private void parseTraceClass(Map<String, Object> traceClass) throws ParseException {
+        Object packetHeader = traceClass.get("packet-header-field-class"); //$NON-NLS-1$
+        if (packetHeader != null) {
+            StructDeclaration packetHeaderDecl = parseStruct(packetHeader, false);
+            fHasStreamId = packetHeaderDecl.hasField(MetadataStrings.STREAM_ID);
+            fTrace.setPacketHeader(packetHeaderDecl);
+        }
+        Map<String, Object> environment = getMap(traceClass, "environment"); //$NON-NLS-1$
+        if (environment != null) {
+            Map<String, String> values = new HashMap<>();
+            for (Entry<String, Object> entry : environment.entrySet()) {
+                Object value = entry.getValue();
+                /* Quoted like the string values of the TSDL environment */
+                values.put(entry.getKey(), value instanceof String ? '"' + (String) value + '"' : String.valueOf(value));
+            }
+            fTrace.setEnvironment(values);
+        }
+    }
+
+    private void parseClockClass(Map<String, Object> clockClass) throws ParseException {
+        Object id = clockClass.containsKey(ID) ? get(clockClass, ID) : get(clockClass, NAME);
+        String name = clockClass.containsKey(NAME) ? getString(clockClass, NAME) : String.valueOf(id);
+        long frequency = getLong(clockClass, "frequency", 0); //$NON-NLS-1$
+        if (frequency <= 0) {
+            throw new ParseException("Invalid clock frequency " + frequency); //$NON-NLS-1$
+        }
+        Map<String, Object> offset = getMap(clockClass, "offset-from-origin"); //$NON-NLS-1$
+        if (offset == null) {
+            offset = getMap(clockClass, "offset"); //$NON-NLS-1$
+        }
+        long offsetCycles = 0;
+        if (offset != null) {
+            offsetCycles = getLong(offset, "seconds", 0) * frequency + getLong(offset, "cycles", 0); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        CTFClock clock = new CTFClock();
+        clock.addAttribute(NAME, name);
+        clock.addAttribute("freq", frequency); //$NON-NLS-1$
+        clock.addAttribute("offset", offsetCycles); //$NON-NLS-1$
+        if (clockClass.containsKey("precision")) { //$NON-NLS-1$
+            clock.addAttribute("precision", getLong(clockClass, "precision", 0)); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (clockClass.containsKey("description")) { //$NON-NLS-1$
+            clock.addAttribute("description", getString(clockClass, "description")); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        fClockNames.put(String.valueOf(id), name);
+        fTrace.addClock(name, clock);
+    }
+
+    private void parseDataStreamClass(Map<String, Object> streamClass) throws ParseException {
+        long id = getLong(streamClass, ID, 0);
+        if (fStreams.containsKey(id)) {
+            throw new ParseException("Stream id already exists"); //$NON-NLS-1$
+        }
+        CTFStream stream = new CTFStream(fTrace);
+        if (fHasStreamId) {
+            stream.setId(id);
+        }
+        String clock = ""; //$NON-NLS-1$
+        Object clockId = streamClass.containsKey("default-clock-class-id") ? //$NON-NLS-1$
+                streamClass.get("default-clock-class-id") : streamClass.get("default-clock-class-name"); //$NON-NLS-1$ //$NON-NLS-2$
+        if (clockId != null) {
+            String clockName = fClockNames.get(String.valueOf(clockId));
+            if (clockName == null) {
+                throw new ParseException("Undefined clock class " + clockId); //$NON-NLS-1$
+            }
+            clock = clockName;
+        }
+        fCurrentClock = clock;
+        Object packetContext = streamClass.get("packet-context-field-class"); //$NON-NLS-1$
+        if (packetContext != null) {
+            stream.setPacketContext(parseStruct(packetContext, true));
+        }
+        Object eventHeader = streamClass.get("event-record-header-field-class"); //$NON-NLS-1$
+        if (eventHeader != null) {
+            stream.setEventHeader(parseStruct(eventHeader, false));
+        }
+        Object eventContext = streamClass.get("event-record-common-context-field-class"); //$NON-NLS-1$
+        if (eventContext != null) {
+            stream.setEventContext(parseStruct(eventContext, false));
+        }
+        fTrace.addStream(stream);
+        fStreams.put(id, stream);
+        fStreamClocks.put(id, clock);
+    }
+
+    private void parseEventRecordClass(Map<String, Object> eventClass) throws ParseException {
+        long streamId = getLong(eventClass, "data-stream-class-id", 0); //$NON-NLS-1$
+        CTFStream stream = fStreams.get(streamId);
+        if (stream == null) {
+            throw new ParseException("Event specified stream with ID " + streamId + ". But no stream with that ID was defined"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        long id = getLong(eventClass, ID, 0);
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            throw new ParseException("Unsupported event id : " + id); //$NON-NLS-1$
+        }
+        EventDeclaration event = new EventDeclaration();
+        event.setName(getString(eventClass, NAME));
+        event.setId(id);
+        event.setStream(stream);
+        String clock = fStreamClocks.get(streamId);
+        fCurrentClock = clock == null ? "" : clock; //$NON-NLS-1$
+        Object context = eventClass.get("specific-context-field-class"); //$NON-NLS-1$
+        if (context != null) {
+            event.setContext(parseStruct(context, false));
+        }
+        Object payload = eventClass.get("payload-field-class"); //$NON-NLS-1$
+        if (payload != null) {
+            event.setFields(parseStruct(payload, false));
+        }
+        Map<String, Object> attributes = getMap(eventClass, "attributes"); //$NON-NLS-1$
+        Map<String, Object> lttng = attributes == null ? null : getMap(attributes, "lttng.org,2009"); //$NON-NLS-1$
+        if (lttng != null) {
+            if (lttng.containsKey("log-level")) { //$NON-NLS-1$
+                event.setLogLevel(getLong(lttng, "log-level", 0)); //$NON-NLS-1$
+            }
+            if (lttng.containsKey("emf-uri")) { //$NON-NLS-1$
+                event.setCustomAttribute("model.emf.uri", getString(lttng, "emf-uri")); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        stream.addEvent(event);
+    }
+
+    // ------------------------------------------------------------------------
+    // Field classes
+    // ------------------------------------------------------------------------
+
+    private StructDeclaration parseStruct(Object fieldClass, boolean packetContext) throws ParseException {
+        IDeclaration declaration = parseFieldClass(fieldClass, packetContext);
+        if (!(declaration instanceof StructDeclaration)) {
+            throw new ParseException("Expected a structure field class"); //$NON-NLS-1$
+        }
+        return (StructDeclaration) declaration;
+    }
+
+    private IDeclaration parseFieldClass(Object fieldClassOrAlias, boolean packetContext) throws ParseException {
+        Object resolved = fieldClassOrAlias;
+        if (resolved instanceof String) {
+            resolved = fAliases.get(resolved);
+            if (resolved == null) {
+                throw new ParseException("Undefined field class alias " + fieldClassOrAlias); //$NON-NLS-1$
+            }
+        }
+        Map<String, Object> fieldClass = asMap(resolved, FIELD_CLASS);
+        String type = getString(fieldClass, TYPE);
+        switch (type) {
+        case FIXED_LENGTH_BIT_ARRAY:
+        case FIXED_LENGTH_BOOLEAN:
+        case FIXED_LENGTH_UNSIGNED_INTEGER:
+            return parseInteger(fieldClass, false);
+        case FIXED_LENGTH_SIGNED_INTEGER:
+            return parseInteger(fieldClass, true);
+        case FIXED_LENGTH_FLOATING_POINT_NUMBER:
+            return parseFloat(fieldClass);
+        case NULL_TERMINATED_STRING:
+            return StringDeclaration.getStringDeclaration(Encoding.UTF8);
+        case STATIC_LENGTH_STRING:
+            return new ArrayDeclaration(getLength(fieldClass), IntegerDeclaration.createDeclaration(Byte.SIZE, false, BASE_10, fTrace.getByteOrder(), Encoding.UTF8, "", Byte.SIZE)); //$NON-NLS-1$
+        case DYNAMIC_LENGTH_STRING:
+            return new SequenceDeclaration(getLengthName(fieldClass), IntegerDeclaration.createDeclaration(Byte.SIZE, false, BASE_10, fTrace.getByteOrder(), Encoding.UTF8, "", Byte.SIZE)); //$NON-NLS-1$
+        case STATIC_LENGTH_BLOB:
+            return new ArrayDeclaration(getLength(fieldClass), IntegerDeclaration.UINT_8_DECL);
+        case DYNAMIC_LENGTH_BLOB:
+            return new SequenceDeclaration(getLengthName(fieldClass), IntegerDeclaration.UINT_8_DECL);
+        case STRUCTURE:
+            return parseStructure(fieldClass, packetContext);
+        case STATIC_LENGTH_ARRAY:
+            return new ArrayDeclaration(getLength(fieldClass), parseFieldClass(get(fieldClass, "element-field-class"), packetContext)); //$NON-NLS-1$
+        case DYNAMIC_LENGTH_ARRAY:
+            return new SequenceDeclaration(getLengthName(fieldClass), parseFieldClass(get(fieldClass, "element-field-class"), packetContext)); //$NON-NLS-1$
+        case VARIANT:
+            return parseVariant(fieldClass, packetContext);
+        default:
+            throw new ParseException("Unsupported field class " + type); //$NON-NLS-1$
+        }
+    }
+
+    private IDeclaration parseInteger(Map<String, Object> fieldClass, boolean signed) throws ParseException {
+        int length = (int) getLong(fieldClass, LENGTH, 0);
+        if (length <= 0 || length > Long.SIZE) {
+            throw new ParseException("Invalid integer length " + length); //$NON-NLS-1$
+        }
+        int base = (int) getLong(fieldClass, "preferred-display-base", BASE_10); //$NON-NLS-1$
+        String clock = hasRole(fieldClass, DEFAULT_CLOCK_TIMESTAMP) || hasRole(fieldClass, "packet-end-default-clock-timestamp") ? fCurrentClock : ""; //$NON-NLS-1$ //$NON-NLS-2$
+        IntegerDeclaration integer = IntegerDeclaration.createDeclaration(length, signed, base,
+                parseByteOrder(fieldClass), Encoding.NONE, clock, getLong(fieldClass, ALIGNMENT, 1));
+        Map<String, Object> mappings = getMap(fieldClass, "mappings"); //$NON-NLS-1$
+        if (mappings == null) {
+            return integer;
+        }
+        EnumDeclaration enumeration = new EnumDeclaration(integer);
+        for (Entry<String, Object> mapping : mappings.entrySet()) {
+            addRanges(enumeration, mapping.getKey(), mapping.getValue());
+        }
+        return enumeration;
+    }
+
+    private FloatDeclaration parseFloat(Map<String, Object> fieldClass) throws ParseException {
+        long length = getLong(fieldClass, LENGTH, 0);
+        ByteOrder byteOrder = parseByteOrder(fieldClass);
+        long alignment = getLong(fieldClass, ALIGNMENT, 1);
+        if (length == Integer.SIZE) {
+            return new FloatDeclaration(FLOAT_32_EXPONENT, FLOAT_32_MANTISSA, byteOrder, alignment);
+        }
+        if (length == Long.SIZE) {
+            return new FloatDeclaration(FLOAT_64_EXPONENT, FLOAT_64_MANTISSA, byteOrder, alignment);
+        }
+        throw new ParseException("Unsupported floating point number length " + length); //$NON-NLS-1$
+    }
+
+    private StructDeclaration parseStructure(Map<String, Object> fieldClass, boolean packetContext) throws ParseException {
+        /* Keep the members until the variants had a chance to update their selector */
+        Map<String, IDeclaration> members = new LinkedHashMap<>();
+        List<Object> memberClasses = getList(fieldClass, "member-classes"); //$NON-NLS-1$
+        if (memberClasses != null) {
+            for (Object memberClass : memberClasses) {
+                Map<String, Object> member = asMap(memberClass, "member class"); //$NON-NLS-1$
+                Object memberFieldClass = get(member, FIELD_CLASS);
+                String originalName = getString(member, NAME);
+                String name = getMemberName(originalName, memberFieldClass, packetContext);
+                if (!name.equals(originalName)) {
+                    fRenamedMembers.put(originalName, name);
+                }
+                IDeclaration declaration = parseFieldClass(memberFieldClass, packetContext);
+                if (declaration instanceof VariantDeclaration) {
+                    updateSelector(members, (VariantDeclaration) declaration, memberFieldClass);
+                }
+                members.put(name, declaration);
+            }
+        }
+        StructDeclaration struct = new StructDeclaration(getLong(fieldClass, "minimum-alignment", 1)); //$NON-NLS-1$
+        for (Entry<String, IDeclaration> member : members.entrySet()) {
+            struct.addField(member.getKey(), member.getValue());
+        }
+        return struct;
+    }
+
+    private VariantDeclaration parseVariant(Map<String, Object> fieldClass, boolean packetContext) throws ParseException {
+        VariantDeclaration variant = new VariantDeclaration();
+        variant.setTag(getLocationName(get(fieldClass, "selector-field-location"))); //$NON-NLS-1$
+        List<Object> options = getList(fieldClass, "options"); //$NON-NLS-1$
+        if (options == null) {
+            throw new ParseException("Variant without options"); //$NON-NLS-1$
+        }
+        for (Object optionObject : options) {
+            Map<String, Object> option = asMap(optionObject, "option"); //$NON-NLS-1$
+            variant.addField(getString(option, NAME), parseFieldClass(get(option, FIELD_CLASS), packetContext));
+        }
+        return variant;
+    }
+
+    /**
+     * Variants are selected by the label of an enumeration, so a selector that
+     * is a plain integer of the same structure becomes an enumeration of the
+     * names of the options, with their ranges.
+     */
+    private static void updateSelector(Map<String, IDeclaration> members, VariantDeclaration variant, Object fieldClass) throws ParseException {
+        IDeclaration selector = members.get(variant.getTag());
+        if (!(selector instanceof IntegerDeclaration) || !(fieldClass instanceof Map)) {
+            return;
+        }
+        EnumDeclaration enumeration = new EnumDeclaration((IntegerDeclaration) selector);
+        List<Object> options = getList(asMap(fieldClass, FIELD_CLASS), "options"); //$NON-NLS-1$
+        if (options == null) {
+            return;
+        }
+        for (Object optionObject : options) {
+            Map<String, Object> option = asMap(optionObject, "option"); //$NON-NLS-1$
+            addRanges(enumeration, getString(option, NAME), get(option, "selector-field-ranges")); //$NON-NLS-1$
+        }
+        members.put(variant.getTag(), enumeration);
+    }
+
+    private static void addRanges(EnumDeclaration enumeration, String label, Object ranges) throws ParseException {
+        for (Object rangeObject : asList(ranges, "ranges")) { //$NON-NLS-1$
+            List<Object> range = asList(rangeObject, "range"); //$NON-NLS-1$
+            if (range.size() != 2) {
+                throw new ParseException("Invalid range for " + label); //$NON-NLS-1$
+            }
+            if (!enumeration.add(asLong(range.get(0), label), asLong(range.get(1), label), label)) {
+                throw new ParseException("Invalid or duplicate range for " + label); //$NON-NLS-1$
+            }
+        }
+    }
+
+    private static String getMemberName(String name, Object fieldClass, boolean packetContext) {
+        if (!(fieldClass instanceof Map)) {
+            return name;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>) fieldClass;
+        if (hasRole(map, DEFAULT_CLOCK_TIMESTAMP)) {
+            return packetContext ? CTFStrings.TIMESTAMP_BEGIN : CTFStrings.TIMESTAMP;
+        }
+        for (Entry<String, String> role : ROLE_NAMES.entrySet()) {
+            if (hasRole(map, role.getKey())) {
+                return role.getValue();
+            }
+        }
+        return name;
+    }
+
+    private static boolean hasRole(Map<String, Object> fieldClass, String role) {
+        Object roles = fieldClass.get(ROLES);
+        return roles instanceof List && ((List<?>) roles).contains(role);
+    }
+
+    private ByteOrder parseByteOrder(Map<String, Object> fieldClass) throws ParseException {
+        Object value = fieldClass.get(BYTE_ORDER);
+        ByteOrder byteOrder;
+        if (value == null) {
+            return fTrace.byteOrderIsSet() ? fTrace.getByteOrder() : ByteOrder.nativeOrder();
+        } else if ("big-endian".equals(value) || MetadataStrings.BE.equals(value)) { //$NON-NLS-1$
+            byteOrder = ByteOrder.BIG_ENDIAN;
+        } else if ("little-endian".equals(value) || MetadataStrings.LE.equals(value)) { //$NON-NLS-1$
+            byteOrder = ByteOrder.LITTLE_ENDIAN;
+        } else {
+            throw new ParseException("Invalid byte order " + value); //$NON-NLS-1$
+        }
+        /* The first byte order is the one of the trace, used for its checks */
+        if (!fTrace.byteOrderIsSet()) {
+            fTrace.setByteOrder(byteOrder);
+        }
+        return byteOrder;
+    }
+
+    private static int getLength(Map<String, Object> fieldClass) throws ParseException {
+        long length = getLong(fieldClass, LENGTH, -1);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new ParseException("Invalid length " + length); //$NON-NLS-1$
+        }
+        return (int) length;
+    }
+
+    private String getLengthName(Map<String, Object> fieldClass) throws ParseException {
+        return getLocationName(get(fieldClass, "length-field-location")); //$NON-NLS-1$
+    }
+
+    /**
+     * The fields are looked up by name in their scope, like in CTF 1, so only
+     * the last element of a field location is kept.
+     */
+    private String getLocationName(Object location) throws ParseException {
+        Object path = location instanceof Map ? get(asMap(location, PATH), PATH) : location;
+        List<Object> elements = asList(path, PATH);
+        if (elements.isEmpty()) {
+            throw new ParseException("Empty field location"); //$NON-NLS-1$
+        }
+        Object name = elements.get(elements.size() - 1);
+        if (!(name instanceof String)) {
+            throw new ParseException("Invalid field location " + location); //$NON-NLS-1$
+        }
+        String renamed = fRenamedMembers.get(name);
+        return renamed != null ? renamed : (String) name;
+    }
+
+    // ------------------------------------------------------------------------
+    // JSON
+    // ------------------------------------------------------------------------
+
+    private static Object read(String fragment) throws ParseException {
+        try (JsonReader reader = new JsonReader(new StringReader(fragment))) {
+            Object value = readValue(reader);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new ParseException("Unexpected content after the metadata fragment"); //$NON-NLS-1$
+            }
+            return value;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new ParseException("Invalid JSON metadata fragment", e); //$NON-NLS-1$
+        }
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+        case BEGIN_OBJECT:
+            Map<String, Object> object = new LinkedHashMap<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                /* A null member is the same as an absent one */
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else {
+                    object.put(name, readValue(reader));
+                }
+            }
+            reader.endObject();
+            return object;
+        case BEGIN_ARRAY:
+            List<Object> array = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                array.add(readValue(reader));
+            }
+            reader.endArray();
+            return array;
+        case NUMBER:
+            return parseNumber(reader.nextString());
+        case BOOLEAN:
+            return reader.nextBoolean();
+        case STRING:
+            return reader.nextString();
+        default:
+            throw new MalformedJsonException("Unexpected " + reader.peek() + " at " + reader.getPath()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Integers are kept as longs, the unsigned 64-bit values wrapping like
+     * the values of the TSDL metadata.
+     */
+    private static Object parseNumber(String number) {
+        if (number.indexOf('.') >= 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0) {
+            return Double.parseDouble(number);
+        }
+        if (number.startsWith("-")) { //$NON-NLS-1$
+            return Long.parseLong(number);
+        }
+        return Long.parseUnsignedLong(number);
+    }
+
+    private static Object get(Map<String, Object> object, String key) throws ParseException {
+        Object value = object.get(key);
+        if (value == null) {
+            throw new ParseException("Missing " + key); //$NON-NLS-1$
+        }
+        return value;
+    }
+
+    private static String getString(Map<String, Object> object, String key) throws ParseException {
+        Object value = get(object, key);
+        if (!(value instanceof String)) {
+            throw new ParseException(key + " must be a string"); //$NON-NLS-1$
+        }
+        return (String) value;
+    }
+
+    private static long getLong(Map<String, Object> object, String key, long defaultValue) throws ParseException {
+        Object value = object.get(key);
+        return value == null ? defaultValue : asLong(value, key);
+    }
+
+    private static @Nullable Map<String, Object> getMap(Map<String, Object> object, String key) throws ParseException {
+        Object value = object.get(key);
+        return value == null ? null : asMap(value, key);
+    }
+
+    private static @Nullable List<Object> getList(Map<String, Object> object, String key) throws ParseException {
+        Object value = object.get(key);
+        return value == null ? null : asList(value, key);
+    }
+
+    private static long asLong(Object value, String key) throws ParseException {
+        if (!(value instanceof Long)) {
+            throw new ParseException(key + " must be an integer"); //$NON-NLS-1$
+        }
+        return (Long) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value, String key) throws ParseException {
+        if (!(value instanceof Map)) {
+            throw new ParseException(key + " must be an object"); //$NON-NLS-1$
+        }
+        return (Map<String, Object>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> asList(Object value, String key) throws ParseException {
+        if (!(value instanceof List)) {
+            throw new ParseException(key + " must be an array"); //$NON-NLS-1$
+        }
+        return (List<Object>) value;
+    }
+}
@@ -13,6 +13,8 @@
 package org.eclipse.tracecompass.internal.ctf.core.event.types;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -21,10 +23,10 @@ import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
 import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
 import org.eclipse.tracecompass.ctf.core.event.types.AbstractArrayDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.CompoundDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.Declaration;
 import org.eclipse.tracecompass.ctf.core.event.types.Definition;
 import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
 
@@ -57,7 +59,7 @@ public final class ArrayDeclaration extends CompoundDeclaration {
      *
      * TODO: investigate performance
      */
-    private final transient ArrayListMultimap<String, String> fChildrenNames = ArrayListMultimap.create();
+    private final transient Map<String, List<String>> fChildrenNames = new ConcurrentHashMap<>();
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -103,18 +105,31 @@ public final class ArrayDeclaration extends CompoundDeclaration {
             @NonNull String fieldName, BitBuffer input) throws CTFException {
         alignRead(input);
         if (isAlignedBytes()) {
-            byte[] data = new byte[fLength];
-            if (input.getByteBuffer().remaining() < fLength) {
-                throw new CTFException("Buffer underflow"); //$NON-NLS-1$
-            }
-            input.get(data);
-
-            return new ByteArrayDefinition(this, definitionScope, fieldName, data);
+            /* A view of the bytes, they are not copied */
+            return new ByteArrayDefinition(this, definitionScope, fieldName, input.slice(fLength));
         }
         @NonNull List<@NonNull Definition> definitions = read(input, definitionScope, fieldName);
         return new ArrayDefinition(this, definitionScope, fieldName, definitions);
     }
 
+    @Override
+    public boolean canSkip() {
+        return (fElemType instanceof Declaration) && ((Declaration) fElemType).canSkip();
+    }
+
+    @Override
+    public void skip(BitBuffer input) throws CTFException {
+        alignRead(input);
+        if (isAlignedBytes()) {
+            input.position(input.position() + (long) fLength * Byte.SIZE);
+            return;
+        }
+        Declaration elemType = (Declaration) fElemType;
+        for (int i = 0; i < fLength; i++) {
+            elemType.skip(input);
+        }
+    }
+
     @Override
     public String toString() {
         /* Only used for debugging */
@@ -123,12 +138,13 @@ public final class ArrayDeclaration extends CompoundDeclaration {
 
     private @NonNull List<@NonNull Definition> read(@NonNull BitBuffer input, @Nullable IDefinitionScope definitionScope, String fieldName) throws CTFException {
         Builder<@NonNull Definition> definitions = new ImmutableList.Builder<>();
-        if (!fChildrenNames.containsKey(fieldName)) {
+        List<String> elemNames = fChildrenNames.computeIfAbsent(fieldName, name -> {
+            Builder<String> names = new ImmutableList.Builder<>();
             for (int i = 0; i < fLength; i++) {
-                fChildrenNames.put(fieldName, fieldName + '[' + i + ']');
+                names.add(name + '[' + i + ']');
             }
-        }
-        List<String> elemNames = fChildrenNames.get(fieldName);
+            return names.build();
+        });
         for (int i = 0; i < fLength; i++) {
             String name = elemNames.get(i);
             if (name == null) {
@@ -12,7 +12,10 @@
 
 package org.eclipse.tracecompass.internal.ctf.core.event.types;
 
-import java.util.Arrays;
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -35,7 +38,15 @@ import com.google.common.collect.ImmutableList;
 @NonNullByDefault
 public final class ByteArrayDefinition extends AbstractArrayDefinition {
 
-    private final byte[] fContent;
+    private volatile byte @Nullable [] fContent;
+
+    /**
+     * The bytes in the packet, from index 0 to the limit of the buffer, until
+     * they are copied
+     */
+    private @Nullable ByteBuffer fView;
+
+    private final int fLength;
     private transient @Nullable List<Definition> fDefs;
 
     /**
@@ -57,12 +68,59 @@ public final class ByteArrayDefinition extends AbstractArrayDefinition {
             byte[] content) {
         super(declaration, definitionScope, fieldName);
         fContent = content;
+        fView = null;
+        fLength = content.length;
+    }
 
+    /**
+     * Constructor of a byte array that is a view of the bytes of a packet,
+     * until the bytes are first read. The bytes are only copied then, the
+     * buffer must not be modified.
+     *
+     * @param declaration
+     *            the declaration
+     * @param definitionScope
+     *            the definition scope
+     * @param fieldName
+     *            the field name
+     * @param content
+     *            the content, from index 0 to the limit of the buffer
+     */
+    public ByteArrayDefinition(CompoundDeclaration declaration,
+            @Nullable IDefinitionScope definitionScope,
+            String fieldName,
+            ByteBuffer content) {
+        super(declaration, definitionScope, fieldName);
+        fContent = null;
+        fView = content;
+        fLength = content.limit();
     }
 
     @Override
     public int getLength() {
-        return fContent.length;
+        return fLength;
+    }
+
+    private byte[] getContent() {
+        byte[] content = fContent;
+        if (content == null) {
+            content = copyContent();
+        }
+        return content;
+    }
+
+    private synchronized byte[] copyContent() {
+        byte[] content = fContent;
+        if (content == null) {
+            ByteBuffer bytes = checkNotNull(fView).duplicate();
+            bytes.position(0);
+            content = new byte[fLength];
+            bytes.get(content);
+            fContent = content;
+            /* Do not keep the packet in memory */
+            fView = null;
+        }
+        return content;
     }
 
     @Override
@@ -70,10 +128,11 @@ public final class ByteArrayDefinition extends AbstractArrayDefinition {
         List<Definition> defs = fDefs;
         if (defs == null) {
             ImmutableList.Builder<Definition> builder = new ImmutableList.Builder<>();
-            for (int i = 0; i < fContent.length; i++) {
+            byte[] content = getContent();
+            for (int i = 0; i < getLength(); i++) {
                 IntegerDeclaration charDecl = IntegerDeclaration.UINT_8_DECL;
                 String fieldName = getFieldName() + '[' + i + ']';
-                byte fieldValue = fContent[i];
+                byte fieldValue = content[i];
                 builder.add(new IntegerDefinition(charDecl, getDefinitionScope(), fieldName, fieldValue));
             }
             fDefs = builder.build();
@@ -85,24 +144,28 @@ public final class ByteArrayDefinition extends AbstractArrayDefinition {
 
     @Override
     public String toString() {
+        byte[] content = getContent();
         if (((CompoundDeclaration) getDeclaration()).isString()) {
             /*
              * the string is a byte array and may contain more than the string
              * plus a null char, this will truncate it back to a null char
              */
-            int pos = -1;
-            for (int i = 0; i < fContent.length; i++) {
-                if (fContent[i] == 0) {
+            int pos = getLength();
+            for (int i = 0; i < getLength(); i++) {
+                if (content[i] == 0) {
                     pos = i;
                     break;
                 }
             }
-            byte[] bytes = (pos != -1) ? (Arrays.copyOf(fContent, pos)) : fContent;
-            return new String(bytes);
+            return new String(content, 0, pos);
+        }
+        List<Byte> bytes = new ArrayList<>(getLength());
+        for (int i = 0; i < getLength(); i++) {
+            bytes.add(content[i]);
         }
         StringBuilder b = new StringBuilder();
         b.append('[');
-        Joiner.on(", ").appendTo(b, Arrays.asList(fContent)); //$NON-NLS-1$
+        Joiner.on(", ").appendTo(b, bytes); //$NON-NLS-1$
         b.append(']');
         return b.toString();
     }
@@ -114,6 +177,6 @@ public final class ByteArrayDefinition extends AbstractArrayDefinition {
      * @return the byte
      */
     public byte getByte(int index) {
-        return fContent[index];
+        return getContent()[index];
     }
 }
\ No newline at end of file
@@ -13,8 +13,9 @@ package org.eclipse.tracecompass.internal.ctf.core.event.types;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -28,10 +29,8 @@ import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
-import com.google.common.collect.Multimap;
 
 /**
  * A CTF sequence declaration.
@@ -49,7 +48,11 @@ public class SequenceDeclaration extends CompoundDeclaration {
 
     private final IDeclaration fElemType;
     private final String fLengthName;
-    private final transient Multimap<String, String> fPaths = ArrayListMultimap.create();
+    /**
+     * The paths of the elements, per field name. The lists are replaced by
+     * longer ones when needed, so that they can be read by concurrent readers.
+     */
+    private final transient Map<String, List<String>> fPaths = new ConcurrentHashMap<>();
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -119,16 +122,13 @@ public class SequenceDeclaration extends CompoundDeclaration {
         }
 
         if (isAlignedBytes()) {
-            // Don't create "useless" definitions
-            byte[] data = new byte[(int) length];
-            input.get(data);
-            return new ByteArrayDefinition(this, definitionScope, fieldName, data);
+            // Don't create "useless" definitions, nor copy the bytes
+            return new ByteArrayDefinition(this, definitionScope, fieldName, input.slice((int) length));
         }
-        Collection<String> collection = fPaths.get(fieldName);
-        while (collection.size() < length) {
-            fPaths.put(fieldName, fieldName + '[' + collection.size() + ']');
+        List<String> paths = fPaths.get(fieldName);
+        if (paths == null || paths.size() < length) {
+            paths = fPaths.compute(fieldName, (name, previous) -> extendPaths(name, previous, (int) length));
         }
-        List<String> paths = (List<String>) fPaths.get(fieldName);
         Builder<@NonNull Definition> definitions = new ImmutableList.Builder<>();
         for (int i = 0; i < length; i++) {
             /* We should not have inserted any null values */
@@ -139,6 +139,22 @@ public class SequenceDeclaration extends CompoundDeclaration {
         return new ArrayDefinition(this, definitionScope, fieldName, list);
     }
 
+    private static List<String> extendPaths(String fieldName, @Nullable List<String> paths, int length) {
+        if (paths != null && paths.size() >= length) {
+            return paths;
+        }
+        Builder<String> builder = new ImmutableList.Builder<>();
+        int size = 0;
+        if (paths != null) {
+            builder.addAll(paths);
+            size = paths.size();
+        }
+        for (int i = size; i < length; i++) {
+            builder.add(fieldName + '[' + i + ']');
+        }
+        return builder.build();
+    }
+
     @Override
     public String toString() {
         /* Only used for debugging */
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Cache of the short strings decoded from the traces, so that the values
+ * that are repeated in many events, like process names or function names,
+ * are shared instead of being allocated for each event.
+ * <p>
+ * The cache has a fixed number of slots, selected by the hash of the bytes
+ * of the string. A string replaces the one that was in its slot, so the
+ * memory used is bounded. The slots are read and written without locking,
+ * since a string that is lost by a concurrent write is simply decoded again.
+ * <p>
+ * The bytes are decoded one character per byte, like the strings were
+ * always read from the traces.
+ */
+@NonNullByDefault
+public final class StringCache {
+
+    /** Maximum length of the strings that are cached */
+    private static final int MAX_LENGTH = 64;
+    private static final int NB_SLOTS = 4096;
+
+    private static final @Nullable String[] SLOTS = new String[NB_SLOTS];
+
+    private StringCache() {
+    }
+
+    /**
+     * Decode a string, or get it from the cache
+     *
+     * @param bytes
+     *            The bytes of the string, from its position to its limit,
+     *            without the terminating null byte
+     * @return The string
+     */
+    public static String decode(ByteBuffer bytes) {
+        int start = bytes.position();
+        int length = bytes.remaining();
+        if (length > MAX_LENGTH) {
+            return toString(bytes, start, length);
+        }
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + (bytes.get(i) & 0xff);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (NB_SLOTS - 1);
+        String cached = SLOTS[slot];
+        if (cached != null && matches(cached, bytes, start, length)) {
+            return cached;
+        }
+        String value = toString(bytes, start, length);
+        SLOTS[slot] = value;
+        return value;
+    }
+
+    private static boolean matches(String cached, ByteBuffer bytes, int start, int length) {
+        if (cached.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (cached.charAt(i) != (char) (bytes.get(start + i) & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String toString(ByteBuffer bytes, int start, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (bytes.get(start + i) & 0xff);
+        }
+        return new String(chars);
+    }
+}
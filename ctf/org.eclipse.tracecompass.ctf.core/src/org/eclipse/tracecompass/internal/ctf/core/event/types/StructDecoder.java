@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import java.nio.ByteOrder;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
+import org.eclipse.tracecompass.ctf.core.event.types.Definition;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+
+/**
+ * A decoder specialized for the fields of a struct declaration.
+ * <p>
+ * The fields at the start of a struct that have a fixed size, that is the
+ * integers, the enums and the arrays of aligned bytes, are at the same offset
+ * from the start of the struct in every instance of it. Their offsets are
+ * computed once, so that they are read directly, with a single bounds check
+ * for all of them, instead of going through the alignment and the checks of
+ * each declaration. The fields that follow are decoded by their declaration.
+ * <p>
+ * The specialized decoding can be disabled with the
+ * <code>org.eclipse.tracecompass.ctf.core.genericDecoding</code> system
+ * property, or with {@link #setEnabled(boolean)}, to compare it with the
+ * generic one.
+ */
+@NonNullByDefault
+public final class StructDecoder {
+
+    private static final String GENERIC_DECODING_PROPERTY = "org.eclipse.tracecompass.ctf.core.genericDecoding"; //$NON-NLS-1$
+
+    private static volatile boolean fEnabled = !Boolean.getBoolean(GENERIC_DECODING_PROPERTY);
+
+    private final String[] fFieldNames;
+    private final IDeclaration[] fFields;
+    /** Number of fields of the fixed-size prefix */
+    private final int fPrefixLength;
+    /** Offsets in bits of the prefix fields from the start of the struct */
+    private final long[] fOffsets;
+    /** Size in bits of the prefix */
+    private final int fPrefixSize;
+
+    private StructDecoder(String[] fieldNames, IDeclaration[] fields, int prefixLength, long[] offsets, int prefixSize) {
+        fFieldNames = fieldNames;
+        fFields = fields;
+        fPrefixLength = prefixLength;
+        fOffsets = offsets;
+        fPrefixSize = prefixSize;
+    }
+
+    /**
+     * Get whether the structs are decoded with the specialized decoders
+     *
+     * @return true if the specialized decoders are used
+     */
+    public static boolean isEnabled() {
+        return fEnabled;
+    }
+
+    /**
+     * Enable or disable the specialized decoders. When disabled, the structs
+     * are decoded field by field by their declarations.
+     *
+     * @param enabled
+     *            true to use the specialized decoders
+     */
+    public static void setEnabled(boolean enabled) {
+        fEnabled = enabled;
+    }
+
+    /**
+     * Compile the decoder of the fields of a struct. The start of the struct
+     * must be aligned on the largest alignment of its fields.
+     *
+     * @param fieldNames
+     *            The names of the fields
+     * @param fields
+     *            The declarations of the fields
+     * @return The decoder, or null if the struct does not start with a
+     *         fixed-size field, in which case it cannot be decoded faster
+     *         than by its declaration
+     */
+    public static @Nullable StructDecoder compile(String[] fieldNames, IDeclaration[] fields) {
+        long[] offsets = new long[fields.length];
+        long offset = 0;
+        int prefixLength = 0;
+        while (prefixLength < fields.length) {
+            IDeclaration field = fields[prefixLength];
+            long size = getFixedSize(field);
+            if (size < 0) {
+                break;
+            }
+            long mask = Math.max(field.getAlignment(), 1) - 1;
+            long start = (offset + mask) & ~mask;
+            if (start + size > Integer.MAX_VALUE) {
+                break;
+            }
+            offsets[prefixLength] = start;
+            offset = start + size;
+            prefixLength++;
+        }
+        if (prefixLength == 0) {
+            return null;
+        }
+        return new StructDecoder(fieldNames, fields, prefixLength, offsets, (int) offset);
+    }
+
+    /**
+     * Get the size in bits of a field that is decoded at a precomputed offset
+     *
+     * @return the size, or -1 if the field is decoded by its declaration
+     */
+    private static long getFixedSize(IDeclaration field) {
+        IDeclaration integer = (field instanceof EnumDeclaration) ? ((EnumDeclaration) field).getContainerType() : field;
+        if (integer instanceof IntegerDeclaration) {
+            int length = ((IntegerDeclaration) integer).getLength();
+            return (length <= Long.SIZE) ? length : -1;
+        }
+        if (field instanceof ArrayDeclaration && ((ArrayDeclaration) field).isAlignedBytes()) {
+            return (long) ((ArrayDeclaration) field).getLength() * Byte.SIZE;
+        }
+        return -1;
+    }
+
+    /**
+     * Get the number of fields that are decoded at precomputed offsets
+     *
+     * @return the number of fields of the fixed-size prefix
+     */
+    public int getPrefixLength() {
+        return fPrefixLength;
+    }
+
+    /**
+     * Decode the fields of a struct
+     *
+     * @param input
+     *            The input, positioned at the start of the struct
+     * @param definitions
+     *            The array of the definitions of the fields, to fill
+     * @param definitionScope
+     *            The definition of the struct
+     * @throws CTFException
+     *             If the input cannot be read
+     */
+    public void decode(BitBuffer input, Definition[] definitions, IDefinitionScope definitionScope) throws CTFException {
+        long start = input.position();
+        if (!input.canRead(fPrefixSize)) {
+            throw new CTFException("Cannot read the struct, the buffer does not have enough remaining space. Requested: " + fPrefixSize); //$NON-NLS-1$
+        }
+        ByteOrder byteOrder = input.getByteOrder();
+        try {
+            for (int i = 0; i < fPrefixLength; i++) {
+                input.position(start + fOffsets[i]);
+                definitions[i] = decodeField(input, fFields[i], fFieldNames[i], definitionScope);
+            }
+        } finally {
+            input.setByteOrder(byteOrder);
+        }
+        input.position(start + fPrefixSize);
+        for (int i = fPrefixLength; i < fFields.length; i++) {
+            definitions[i] = fFields[i].createDefinition(definitionScope, fFieldNames[i], input);
+        }
+    }
+
+    private static Definition decodeField(BitBuffer input, IDeclaration field, String fieldName, IDefinitionScope definitionScope) throws CTFException {
+        if (field instanceof IntegerDeclaration) {
+            IntegerDeclaration integer = (IntegerDeclaration) field;
+            return new IntegerDefinition(integer, definitionScope, fieldName, readInteger(input, integer));
+        }
+        if (field instanceof EnumDeclaration) {
+            EnumDeclaration enumeration = (EnumDeclaration) field;
+            IntegerDeclaration container = enumeration.getContainerType();
+            IntegerDefinition value = new IntegerDefinition(container, definitionScope, fieldName, readInteger(input, container));
+            return new EnumDefinition(enumeration, definitionScope, fieldName, value);
+        }
+        ArrayDeclaration array = (ArrayDeclaration) field;
+        return new ByteArrayDefinition(array, definitionScope, fieldName, input.slice(array.getLength()));
+    }
+
+    private static long readInteger(BitBuffer input, IntegerDeclaration integer) throws CTFException {
+        input.setByteOrder(integer.getByteOrder());
+        return input.get(integer.getLength(), integer.isSigned());
+    }
+}
@@ -12,6 +12,7 @@
 
 package org.eclipse.tracecompass.internal.ctf.core.trace;
 
+import java.util.BitSet;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -77,6 +78,11 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
 
     private long fPosition;
 
+    private @Nullable FieldProjection fProjection;
+
+    /** The ids of the events read so far */
+    private final BitSet fEventIds = new BitSet();
+
     /**
      * Constructor
      *
@@ -111,6 +117,17 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
         fTracePacketHeader = packetHeader;
     }
 
+    /**
+     * Set the payload fields to decode. The other fields are skipped when
+     * possible.
+     *
+     * @param projection
+     *            The fields to decode, or null to decode all the fields
+     */
+    public void setProjection(@Nullable FieldProjection projection) {
+        fProjection = projection;
+    }
+
     @Override
     public int getCPU() {
         return (int) fPacketContext.getTargetId();
@@ -187,7 +204,10 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
             throw new CTFIOException("Invalid event id : " + eventID); //$NON-NLS-1$
         }
         EventDeclaration declaration = (EventDeclaration) eventDeclaration;
-        EventDefinition eventDef = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
+        fEventIds.set(eventID);
+        FieldProjection projection = fProjection;
+        boolean[] fieldMask = (projection == null ? null : projection.getFieldMask(declaration));
+        EventDefinition eventDef = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp, fieldMask);
         fLastTimestamp = eventDef.getTimestamp();
         /*
          * Set the event timestamp using the timestamp calculated by updateTimestamp.
@@ -253,6 +273,16 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
         return fPacketContext;
     }
 
+    /**
+     * Get the ids of the events that were read from this packet so far. Once
+     * the packet is read completely, these are the ids of all its events.
+     *
+     * @return the ids of the events, by position in the event declarations
+     */
+    public BitSet getEventIds() {
+        return fEventIds;
+    }
+
     /**
      * Get the location of the currentEvent in the {@link BitBuffer}
      *
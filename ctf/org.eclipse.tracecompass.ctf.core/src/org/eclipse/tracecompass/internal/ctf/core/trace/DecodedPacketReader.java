@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.common.core.NonNullUtils;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.ctf.core.trace.IPacketReader;
+
+/**
+ * Packet reader that returns the events of a packet that were decoded ahead of
+ * time, see {@link #decode(CTFPacketReader, int)}, then the events that
+ * follow, decoded as they are read. It returns the same events, and throws the
+ * same exception if the packet could not be decoded completely, as the packet
+ * reader that decoded it would have.
+ */
+@NonNullByDefault
+public final class DecodedPacketReader implements IPacketReader {
+
+    private final CTFPacketReader fReader;
+    /* The events that are read are released */
+    private final List<@Nullable IEventDefinition> fEvents;
+    private final List<@Nullable ICompositeDefinition> fEventHeaders;
+    private final @Nullable CTFException fError;
+    private int fNext = 0;
+    private @Nullable ICompositeDefinition fEventHeader = null;
+
+    private DecodedPacketReader(CTFPacketReader reader, List<@Nullable IEventDefinition> events, List<@Nullable ICompositeDefinition> eventHeaders, @Nullable CTFException error) {
+        fReader = reader;
+        fEvents = events;
+        fEventHeaders = eventHeaders;
+        fError = error;
+    }
+
+    /**
+     * Decode the first events of a packet
+     *
+     * @param reader
+     *            The reader of the packet, positioned at its first event. The
+     *            returned packet reader reads the rest of the packet with it.
+     * @param maxEvents
+     *            The maximum number of events to decode
+     * @return The packet reader that returns the decoded events
+     */
+    public static DecodedPacketReader decode(CTFPacketReader reader, int maxEvents) {
+        List<@Nullable IEventDefinition> events = new ArrayList<>();
+        List<@Nullable ICompositeDefinition> eventHeaders = new ArrayList<>();
+        CTFException error = null;
+        try {
+            while (events.size() < maxEvents && reader.hasMoreEvents()) {
+                events.add(reader.readNextEvent());
+                eventHeaders.add(reader.getCurrentPacketEventHeader());
+            }
+        } catch (CTFException e) {
+            error = e;
+        }
+        return new DecodedPacketReader(reader, events, eventHeaders, error);
+    }
+
+    /**
+     * Get the ids of all the events of the packet, once it is read completely
+     *
+     * @return the ids of the events, by position in the event declarations,
+     *         or null if the packet could not be decoded completely
+     */
+    public @Nullable BitSet getEventIds() {
+        return (fError == null ? fReader.getEventIds() : null);
+    }
+
+    @Override
+    public int getCPU() {
+        return fReader.getCPU();
+    }
+
+    @Override
+    public boolean hasMoreEvents() {
+        return fNext < fEvents.size() || fError != null || fReader.hasMoreEvents();
+    }
+
+    @Override
+    public IEventDefinition readNextEvent() throws CTFException {
+        if (fNext < fEvents.size()) {
+            fEventHeader = fEventHeaders.set(fNext, null);
+            return NonNullUtils.checkNotNull(fEvents.set(fNext++, null));
+        }
+        CTFException error = fError;
+        if (error != null) {
+            throw error;
+        }
+        /* The rest of the packet was not decoded ahead */
+        IEventDefinition event = fReader.readNextEvent();
+        fEventHeader = fReader.getCurrentPacketEventHeader();
+        return event;
+    }
+
+    @Override
+    public ICTFPacketDescriptor getCurrentPacket() {
+        return fReader.getCurrentPacket();
+    }
+
+    @Override
+    public @Nullable ICompositeDefinition getCurrentPacketEventHeader() {
+        return fEventHeader;
+    }
+}
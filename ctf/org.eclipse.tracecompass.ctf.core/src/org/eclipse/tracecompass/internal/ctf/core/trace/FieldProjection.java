@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
+import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.CompoundDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.Declaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.VariantDeclaration;
+import org.eclipse.tracecompass.ctf.core.trace.CTFProjection;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.SequenceDeclaration;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The payload fields to decode for each event declaration of a
+ * {@link CTFProjection}. The masks are computed the first time an event
+ * declaration is read, and are then cached. The packets of a stream may be
+ * decoded concurrently, so the cache is synchronized.
+ */
+@NonNullByDefault
+public class FieldProjection {
+
+    private static final boolean[] ALL = new boolean[0];
+
+    private final CTFProjection fProjection;
+    private final Map<IEventDeclaration, boolean[]> fMasks = new IdentityHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param projection
+     *            The fields needed by the reader
+     */
+    public FieldProjection(CTFProjection projection) {
+        fProjection = projection;
+    }
+
+    /**
+     * Get the projection
+     *
+     * @return The projection
+     */
+    public CTFProjection getProjection() {
+        return fProjection;
+    }
+
+    /**
+     * Get the mask of the payload fields to decode for an event declaration.
+     * The fields that are not part of the projection are kept if they cannot
+     * be skipped, if they are the timestamp or if they may be the length of a
+     * sequence or the tag of a variant.
+     *
+     * @param declaration
+     *            The event declaration
+     * @return For each payload field, whether it must be decoded, or null if
+     *         all the fields must be decoded
+     */
+    public synchronized boolean @Nullable [] getFieldMask(IEventDeclaration declaration) {
+        boolean[] mask = fMasks.get(declaration);
+        if (mask == null) {
+            mask = computeFieldMask(declaration);
+            fMasks.put(declaration, mask);
+        }
+        return (mask == ALL ? null : mask);
+    }
+
+    private boolean[] computeFieldMask(IEventDeclaration declaration) {
+        StructDeclaration fields = declaration.getFields();
+        if (fields == null) {
+            return ALL;
+        }
+        Set<String> needed = fProjection.getFields(declaration.getName());
+        if (needed == null) {
+            needed = Collections.emptySet();
+        } else if (needed.contains(CTFProjection.ALL_FIELDS)) {
+            return ALL;
+        }
+        Set<String> references = new HashSet<>();
+        collectReferences(fields, references);
+
+        List<String> names = ImmutableList.copyOf(fields.getFieldsList());
+        int i = 0;
+        boolean all = true;
+        boolean[] mask = new boolean[names.size()];
+        for (String name : names) {
+            IDeclaration field = fields.getField(name);
+            mask[i] = isNeeded(needed, name) || CTFStrings.TIMESTAMP.equals(name) || references.contains(name) ||
+                    !(field instanceof Declaration) || !((Declaration) field).canSkip();
+            all &= mask[i];
+            i++;
+        }
+        return (all ? ALL : mask);
+    }
+
+    /**
+     * A field is needed if it is requested by name, or without the leading
+     * underscore that escapes the identifiers in the metadata
+     */
+    private static boolean isNeeded(Set<String> needed, String name) {
+        return needed.contains(name) || (name.startsWith("_") && needed.contains(name.substring(1))); //$NON-NLS-1$
+    }
+
+    /**
+     * Collect the last path component of the names of the fields that the
+     * sequences and variants of a declaration refer to
+     */
+    private static void collectReferences(@Nullable IDeclaration declaration, Set<String> references) {
+        if (declaration instanceof StructDeclaration) {
+            StructDeclaration struct = (StructDeclaration) declaration;
+            for (String name : struct.getFieldsList()) {
+                collectReferences(struct.getField(name), references);
+            }
+        } else if (declaration instanceof VariantDeclaration) {
+            VariantDeclaration variant = (VariantDeclaration) declaration;
+            if (variant.isTagged()) {
+                references.add(lastComponent(variant.getTag()));
+            }
+            for (IDeclaration field : variant.getFields().values()) {
+                collectReferences(field, references);
+            }
+        } else if (declaration instanceof CompoundDeclaration) {
+            if (declaration instanceof SequenceDeclaration) {
+                references.add(lastComponent(((SequenceDeclaration) declaration).getLengthName()));
+            }
+            collectReferences(((CompoundDeclaration) declaration).getElementType(), references);
+        }
+    }
+
+    private static String lastComponent(String path) {
+        return path.substring(path.lastIndexOf('.') + 1);
+    }
+}
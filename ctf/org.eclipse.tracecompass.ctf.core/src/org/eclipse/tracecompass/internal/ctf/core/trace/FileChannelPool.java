@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.internal.ctf.core.Activator;
+import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
+
+/**
+ * Pool of the file channels of the stream files, shared by all the traces.
+ * The number of open channels is bounded, the least recently used channels
+ * are closed when there are too many. The buffers that were mapped from a
+ * channel stay valid once it is closed, so a channel is only kept open to
+ * map the next packets of a file faster.
+ * <p>
+ * The readers of a file register themselves while they read it. The channel
+ * of a file is closed as soon as there are no readers left, so that the file
+ * can be deleted.
+ * <p>
+ * The maximum number of open channels can be set with the
+ * <code>org.eclipse.tracecompass.ctf.core.maxOpenFiles</code> system
+ * property.
+ */
+@NonNullByDefault
+public final class FileChannelPool {
+
+    private static final String MAX_OPEN_FILES_PROPERTY = "org.eclipse.tracecompass.ctf.core.maxOpenFiles"; //$NON-NLS-1$
+    private static final int DEFAULT_MAX_OPEN_FILES = 128;
+
+    private static final FileChannelPool INSTANCE = new FileChannelPool(Math.max(1, Integer.getInteger(MAX_OPEN_FILES_PROPERTY, DEFAULT_MAX_OPEN_FILES)));
+
+    private static final class PooledChannel {
+        /** Number of readers of the file */
+        private int fReaders = 0;
+        /** Number of mappings in progress */
+        private int fUsers = 0;
+        private @Nullable FileChannel fChannel = null;
+    }
+
+    private final int fMaxOpenFiles;
+    /** The channels, in access order */
+    private final Map<File, PooledChannel> fChannels = new LinkedHashMap<>(16, 0.75f, true);
+    private int fOpenFiles = 0;
+
+    /**
+     * Constructor
+     *
+     * @param maxOpenFiles
+     *            The maximum number of channels that are left open
+     */
+    public FileChannelPool(int maxOpenFiles) {
+        fMaxOpenFiles = maxOpenFiles;
+    }
+
+    /**
+     * Get the pool shared by all the traces
+     *
+     * @return the pool
+     */
+    public static FileChannelPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Register a reader of a file. Its channel is kept open, if there are not
+     * too many open channels, until all its readers are unregistered.
+     *
+     * @param file
+     *            The file
+     */
+    public synchronized void register(File file) {
+        fChannels.computeIfAbsent(file, f -> new PooledChannel()).fReaders++;
+    }
+
+    /**
+     * Unregister a reader of a file
+     *
+     * @param file
+     *            The file
+     */
+    public synchronized void unregister(File file) {
+        PooledChannel pooled = fChannels.get(file);
+        if (pooled == null || pooled.fReaders == 0) {
+            return;
+        }
+        pooled.fReaders--;
+        closeIfIdle(file, pooled);
+    }
+
+    /**
+     * Map a region of a file
+     *
+     * @param file
+     *            The file
+     * @param position
+     *            The position of the region in bytes
+     * @param size
+     *            The size of the region in bytes
+     * @return The mapped buffer
+     * @throws IOException
+     *             If the file cannot be opened or mapped
+     * @throws CTFException
+     *             If the region is not in the file
+     */
+    public ByteBuffer map(File file, long position, long size) throws IOException, CTFException {
+        FileChannel channel = acquire(file);
+        try {
+            return SafeMappedByteBuffer.map(channel, MapMode.READ_ONLY, position, size);
+        } finally {
+            release(file);
+        }
+    }
+
+    /**
+     * Get the number of open channels
+     *
+     * @return the number of open channels
+     */
+    public synchronized int getOpenFiles() {
+        return fOpenFiles;
+    }
+
+    private synchronized FileChannel acquire(File file) throws IOException {
+        PooledChannel pooled = fChannels.computeIfAbsent(file, f -> new PooledChannel());
+        FileChannel channel = pooled.fChannel;
+        if (channel == null) {
+            try {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            } catch (IOException e) {
+                closeIfIdle(file, pooled);
+                throw e;
+            }
+            pooled.fChannel = channel;
+            fOpenFiles++;
+        }
+        pooled.fUsers++;
+        closeLeastRecentlyUsed();
+        return channel;
+    }
+
+    private synchronized void release(File file) {
+        PooledChannel pooled = fChannels.get(file);
+        if (pooled == null) {
+            return;
+        }
+        pooled.fUsers--;
+        closeIfIdle(file, pooled);
+        closeLeastRecentlyUsed();
+    }
+
+    private void closeIfIdle(File file, PooledChannel pooled) {
+        if (pooled.fReaders == 0 && pooled.fUsers == 0) {
+            close(pooled);
+            fChannels.remove(file);
+        }
+    }
+
+    private void closeLeastRecentlyUsed() {
+        Iterator<PooledChannel> iterator = fChannels.values().iterator();
+        while (fOpenFiles > fMaxOpenFiles && iterator.hasNext()) {
+            PooledChannel pooled = iterator.next();
+            if (pooled.fUsers == 0) {
+                close(pooled);
+            }
+        }
+    }
+
+    private void close(PooledChannel pooled) {
+        FileChannel channel = pooled.fChannel;
+        if (channel == null) {
+            return;
+        }
+        pooled.fChannel = null;
+        fOpenFiles--;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Activator.log(e.getMessage());
+        }
+    }
+}
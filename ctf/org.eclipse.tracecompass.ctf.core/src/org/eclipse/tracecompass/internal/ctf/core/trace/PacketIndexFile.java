@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * File that stores the packet index of a stream file, so that the packet
+ * headers and contexts do not have to be read again the next time the trace
+ * is opened. The ids of the events of the packets are stored too, when they
+ * are known, so that the packets without the events that are read can be
+ * skipped. The file is read back in a single sequential read. It is only
+ * used if the size and the modification time of the stream file are the same
+ * as when it was written.
+ */
+@NonNullByDefault
+public final class PacketIndexFile {
+
+    private static final int MAGIC = 0x43544649; /* "CTFI" */
+    private static final int VERSION = 2;
+
+    private static final byte LONG_VALUE = 0;
+    private static final byte DOUBLE_VALUE = 1;
+    private static final byte STRING_VALUE = 2;
+    private static final byte ENUM_VALUE = 3;
+
+    private PacketIndexFile() {
+    }
+
+    /**
+     * Read the packet index of a stream file
+     *
+     * @param indexFile
+     *            The file of the packet index
+     * @param streamFile
+     *            The stream file that is indexed
+     * @param index
+     *            The empty packet index to fill
+     * @return true if the index was filled, false if the file does not exist,
+     *         is empty or is not the index of the current stream file
+     * @throws IOException
+     *             If the file cannot be read
+     */
+    public static boolean read(File indexFile, File streamFile, StreamInputPacketIndex index) throws IOException {
+        if (!indexFile.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION ||
+                    in.readLong() != streamFile.length() || in.readLong() != streamFile.lastModified()) {
+                return false;
+            }
+            int size = in.readInt();
+            List<ICTFPacketDescriptor> entries = new ArrayList<>(size);
+            List<@Nullable BitSet> eventIds = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                entries.add(readEntry(in));
+                eventIds.add(readEventIds(in));
+            }
+            index.appendAll(entries);
+            /* The ids are by packet index, which the rejected entries would shift */
+            if (index.size() == size) {
+                for (int i = 0; i < size; i++) {
+                    BitSet ids = eventIds.get(i);
+                    if (ids != null) {
+                        index.setEventIds(i, ids);
+                    }
+                }
+            }
+            return !index.isEmpty();
+        }
+    }
+
+    /**
+     * Write the packet index of a stream file. The file is replaced once it is
+     * completely written, so that an incomplete file is never read.
+     *
+     * @param indexFile
+     *            The file of the packet index
+     * @param streamFile
+     *            The stream file that is indexed
+     * @param index
+     *            The packet index of the stream file
+     * @throws IOException
+     *             If the file cannot be written
+     */
+    public static void write(File indexFile, File streamFile, StreamInputPacketIndex index) throws IOException {
+        File directory = indexFile.getParentFile();
+        if (directory != null) {
+            Files.createDirectories(directory.toPath());
+        }
+        File tempFile = new File(indexFile.getPath() + ".tmp"); //$NON-NLS-1$
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(streamFile.length());
+            out.writeLong(streamFile.lastModified());
+            out.writeInt(index.size());
+            for (int i = 0; i < index.size(); i++) {
+                writeEntry(out, index.getElement(i));
+                writeEventIds(out, index.getEventIds(i));
+            }
+        }
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static ICTFPacketDescriptor readEntry(DataInputStream in) throws IOException {
+        long offsetBits = in.readLong();
+        long packetSizeBits = in.readLong();
+        long contentSizeBits = in.readLong();
+        long payloadStartBits = in.readLong();
+        long timestampBegin = in.readLong();
+        long timestampEnd = in.readLong();
+        long lostEvents = in.readLong();
+        long targetId = in.readLong();
+        String target = in.readBoolean() ? in.readUTF() : null;
+        int nbAttributes = in.readInt();
+        ImmutableMap.Builder<String, Object> attributes = ImmutableMap.builder();
+        for (int i = 0; i < nbAttributes; i++) {
+            String name = in.readUTF();
+            byte type = in.readByte();
+            switch (type) {
+            case LONG_VALUE:
+                attributes.put(name, in.readLong());
+                break;
+            case DOUBLE_VALUE:
+                attributes.put(name, in.readDouble());
+                break;
+            case STRING_VALUE:
+                attributes.put(name, in.readUTF());
+                break;
+            case ENUM_VALUE:
+                String label = in.readUTF();
+                attributes.put(name, new AbstractMap.SimpleImmutableEntry<>(label, in.readLong()));
+                break;
+            default:
+                throw new IOException("Unknown attribute type " + type); //$NON-NLS-1$
+            }
+        }
+        return new StreamInputPacketIndexEntry(offsetBits, packetSizeBits, contentSizeBits, payloadStartBits,
+                timestampBegin, timestampEnd, lostEvents, target, targetId, attributes.build());
+    }
+
+    private static @Nullable BitSet readEventIds(DataInputStream in) throws IOException {
+        int nbWords = in.readInt();
+        if (nbWords < 0) {
+            return null;
+        }
+        long[] words = new long[nbWords];
+        for (int i = 0; i < nbWords; i++) {
+            words[i] = in.readLong();
+        }
+        return BitSet.valueOf(words);
+    }
+
+    private static void writeEventIds(DataOutputStream out, @Nullable BitSet eventIds) throws IOException {
+        if (eventIds == null) {
+            out.writeInt(-1);
+            return;
+        }
+        long[] words = eventIds.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, ICTFPacketDescriptor entry) throws IOException {
+        out.writeLong(entry.getOffsetBits());
+        out.writeLong(entry.getPacketSizeBits());
+        out.writeLong(entry.getContentSizeBits());
+        out.writeLong(entry.getPayloadStartBits());
+        out.writeLong(entry.getTimestampBegin());
+        out.writeLong(entry.getTimestampEnd());
+        out.writeLong(entry.getLostEvents());
+        out.writeLong(entry.getTargetId());
+        String target = entry.getTarget();
+        out.writeBoolean(target != null);
+        if (target != null) {
+            out.writeUTF(target);
+        }
+        Map<String, Object> attributes = entry.getAttributes();
+        out.writeInt(attributes.size());
+        for (Entry<String, Object> attribute : attributes.entrySet()) {
+            out.writeUTF(attribute.getKey());
+            Object value = attribute.getValue();
+            if (value instanceof Long) {
+                out.writeByte(LONG_VALUE);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE_VALUE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof String) {
+                out.writeByte(STRING_VALUE);
+                out.writeUTF((String) value);
+            } else if (value instanceof Entry) {
+                Entry<?, ?> enumValue = (Entry<?, ?>) value;
+                out.writeByte(ENUM_VALUE);
+                out.writeUTF(String.valueOf(enumValue.getKey()));
+                out.writeLong(((Number) enumValue.getValue()).longValue());
+            } else {
+                throw new IOException("Cannot write the attribute " + attribute.getKey() + " of type " + value.getClass().getName()); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.trace.IPacketReader;
+
+/**
+ * The packets of a stream that are decoded ahead of the reader, by the pool of
+ * threads of the trace reader, see {@link #createExecutor(String)}. At most
+ * {@link #DEPTH} packets are decoded ahead for each stream, and at most
+ * {@link #MAX_EVENTS} events of each packet, so that the memory used by the
+ * decoded events is bounded. The rest of a packet is decoded when it is read.
+ * <p>
+ * The packets are identified by their position in the packet index of the
+ * stream. This class is not synchronized, it must only be used by one thread
+ * at a time, like the stream reader that owns it.
+ */
+@NonNullByDefault
+public final class PacketPrefetcher {
+
+    /**
+     * Maximum number of packets decoded ahead for a stream
+     */
+    public static final int DEPTH = 2;
+
+    /**
+     * Maximum number of events decoded ahead in a packet
+     */
+    public static final int MAX_EVENTS = 512;
+
+    /* Time after which the idle decoding threads stop */
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private static final class Prefetch {
+        private final int fIndex;
+        private final Future<DecodedPacketReader> fReader;
+
+        public Prefetch(int index, Future<DecodedPacketReader> reader) {
+            fIndex = index;
+            fReader = reader;
+        }
+    }
+
+    private final ExecutorService fExecutor;
+    private final Deque<Prefetch> fPrefetches = new ArrayDeque<>();
+
+    /**
+     * Constructor
+     *
+     * @param executor
+     *            The pool of threads that decode the packets, owned by the
+     *            trace reader
+     */
+    public PacketPrefetcher(ExecutorService executor) {
+        fExecutor = executor;
+    }
+
+    /**
+     * Create a pool of threads to decode the packets of the streams of a
+     * trace reader. Its threads stop when they are idle, and the owner must
+     * shut it down when it is closed.
+     *
+     * @param name
+     *            The name of the threads, which are numbered
+     * @return The pool of threads
+     */
+    public static ExecutorService createExecutor(String name) {
+        AtomicInteger count = new AtomicInteger();
+        int nbThreads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(nbThreads, nbThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, name + ' ' + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Start decoding a packet
+     *
+     * @param index
+     *            The index of the packet, which must be after the packets that
+     *            are already decoded
+     * @param reader
+     *            The reader of the packet, positioned at its first event
+     * @return true if the packet is decoded ahead, false if the pool of
+     *         threads is shut down
+     */
+    public boolean submit(int index, CTFPacketReader reader) {
+        Prefetch last = fPrefetches.peekLast();
+        if (last != null && last.fIndex >= index) {
+            throw new IllegalArgumentException("Packet " + index + " submitted after packet " + last.fIndex); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        try {
+            fPrefetches.add(new Prefetch(index, fExecutor.submit(() -> DecodedPacketReader.decode(reader, MAX_EVENTS))));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Get the reader of a decoded packet. The packets before it are dropped.
+     * If the packet was not decoded ahead, all the decoded packets are
+     * dropped.
+     *
+     * @param index
+     *            The index of the packet
+     * @return The reader of the decoded packet, or null if it was not decoded
+     *         ahead
+     * @throws CTFException
+     *             If the thread was interrupted while waiting for the packet
+     */
+    public @Nullable IPacketReader take(int index) throws CTFException {
+        Prefetch prefetch = fPrefetches.peekFirst();
+        while (prefetch != null && prefetch.fIndex < index) {
+            prefetch.fReader.cancel(false);
+            fPrefetches.removeFirst();
+            prefetch = fPrefetches.peekFirst();
+        }
+        if (prefetch == null || prefetch.fIndex != index) {
+            clear();
+            return null;
+        }
+        fPrefetches.removeFirst();
+        try {
+            return prefetch.fReader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            clear();
+            throw new CTFException("Interrupted while decoding packet " + index, e); //$NON-NLS-1$
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CTFException("Failed to decode packet " + index, cause); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Get the number of packets that are decoded ahead
+     *
+     * @return The number of packets
+     */
+    public int size() {
+        return fPrefetches.size();
+    }
+
+    /**
+     * Get the index of the last packet that is decoded ahead
+     *
+     * @return The index of the last packet, or -1 if there are none
+     */
+    public int getLastIndex() {
+        Prefetch last = fPrefetches.peekLast();
+        return (last == null ? -1 : last.fIndex);
+    }
+
+    /**
+     * Drop all the packets decoded ahead
+     */
+    public void clear() {
+        for (Prefetch prefetch : fPrefetches) {
+            prefetch.fReader.cancel(false);
+        }
+        fPrefetches.clear();
+    }
+}
@@ -18,13 +18,17 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
 
@@ -46,6 +50,12 @@ public class StreamInputPacketIndex {
      */
     private final List<ICTFPacketDescriptor> fEntries = new ArrayList<>();
 
+    /**
+     * Ids of the events of the packets, by index of the packet. They are only
+     * known for the packets that were read completely.
+     */
+    private final Map<Integer, BitSet> fEventIds = new HashMap<>();
+
     // ------------------------------------------------------------------------
     // Operations
     // ------------------------------------------------------------------------
@@ -207,6 +217,44 @@ public class StreamInputPacketIndex {
         return (indexOf < 0) ? -1 : indexOf;
     }
 
+    /**
+     * Set the ids of the events of a packet, once it was read completely
+     *
+     * @param index
+     *            index of the packet
+     * @param eventIds
+     *            ids of the events of the packet, by position in the event
+     *            declarations of the stream
+     */
+    public synchronized void setEventIds(int index, BitSet eventIds) {
+        if (index >= 0 && index < fEntries.size()) {
+            fEventIds.put(index, (BitSet) eventIds.clone());
+        }
+    }
+
+    /**
+     * Get the ids of the events of a packet
+     *
+     * @param index
+     *            index of the packet
+     * @return the ids of the events of the packet, by position in the event
+     *         declarations of the stream, or null if they are not known
+     */
+    public synchronized @Nullable BitSet getEventIds(int index) {
+        return fEventIds.get(index);
+    }
+
+    /**
+     * Returns {@code true} if the ids of the events of all the packets of
+     * this index are known.
+     *
+     * @return {@code true} if the ids of the events of all the packets are
+     *         known
+     */
+    public synchronized boolean hasAllEventIds() {
+        return !fEntries.isEmpty() && fEventIds.size() == fEntries.size();
+    }
+
     /**
      * Used for search, assumes that the second argument in the comparison is
      * always the key
@@ -210,6 +210,47 @@ public class StreamInputPacketIndexEntry implements ICTFPacketDescriptor {
         fLostEvents = entryToAdd.getLostEvents();
     }
 
+    /**
+     * Constructor of an entry read back from a packet index file. It does not
+     * have the definition of the stream packet context.
+     *
+     * @param offsetBits
+     *            offset in the file for the start of the packet in bits
+     * @param packetSizeBits
+     *            packet size in bits
+     * @param contentSizeBits
+     *            content size in bits
+     * @param payloadStartBits
+     *            end of the packet headers in bits
+     * @param timestampBegin
+     *            begin timestamp
+     * @param timestampEnd
+     *            end timestamp
+     * @param lostEvents
+     *            number of events lost in this packet
+     * @param target
+     *            the traced target
+     * @param targetId
+     *            the id of the traced target
+     * @param attributes
+     *            the values of the stream packet context
+     */
+    public StreamInputPacketIndexEntry(long offsetBits, long packetSizeBits, long contentSizeBits, long payloadStartBits,
+            long timestampBegin, long timestampEnd, long lostEvents, String target, long targetId, @NonNull Map<String, Object> attributes) {
+        fStreamPacketContextDef = null;
+        fEndPacketHeaderBits = payloadStartBits;
+        fAttributes = attributes;
+        fContentSizeBits = contentSizeBits;
+        fPacketSizeBits = packetSizeBits;
+        fTimestampBegin = timestampBegin;
+        fTimestampEnd = timestampEnd;
+        fOffsetBits = offsetBits;
+        fOffsetBytes = offsetBits / Byte.SIZE;
+        fTarget = target;
+        fTargetID = targetId;
+        fLostEvents = lostEvents;
+    }
+
     private static @NonNull Map<String, Object> computeAttributeMap(StructDefinition streamPacketContextDef) {
         Builder<String, Object> attributeBuilder = ImmutableMap.<String, Object> builder();
         for (String field : streamPacketContextDef.getDeclaration().getFieldsList()) {
@@ -406,7 +447,8 @@ public class StreamInputPacketIndexEntry implements ICTFPacketDescriptor {
     /**
      * Get the backing stream packet context
      *
-     * @return the backing context definition
+     * @return the backing context definition, or null if the entry was not
+     *         created from it
      */
     public StructDefinition getStreamPacketContextDef() {
         return fStreamPacketContextDef;
@@ -20,10 +20,14 @@ import java.util.Objects;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.trace.CTFProjection;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 import org.eclipse.tracecompass.tmf.ctf.core.context.CtfLocation;
@@ -247,6 +251,48 @@ public class CtfIterator extends CTFTraceReader
         return seek(new CtfLocationInfo(timestamp, 0));
     }
 
+    @Override
+    public synchronized void setProjection(CTFProjection projection) {
+        if (Objects.equals(projection, getProjection())) {
+            return;
+        }
+        super.setProjection(projection);
+        /*
+         * The current event may miss fields that are now needed, read it again
+         * with the new projection.
+         */
+        CtfLocation location = fCurLocation;
+        fPreviousLocation = null;
+        if (location != null && !location.equals(NULL_LOCATION)) {
+            fCurLocation = NULL_LOCATION;
+            seek(location.getLocationInfo());
+        }
+    }
+
+    /**
+     * Set the time range of the packets to read. The range is widened by a
+     * cycle on each side, so that the conversion of its bounds to cycles does
+     * not skip a packet that overlaps it.
+     *
+     * @param range
+     *            The time range, or null to read all the packets
+     */
+    public synchronized void setReadRange(TmfTimeRange range) {
+        long start = Long.MIN_VALUE;
+        long end = Long.MAX_VALUE;
+        if (range != null) {
+            ITmfTimestamp startTime = range.getStartTime();
+            if (!startTime.equals(TmfTimestamp.BIG_BANG)) {
+                start = fTrace.timestampNanoToCycles(startTime.toNanos()) - 1;
+            }
+            ITmfTimestamp endTime = range.getEndTime();
+            if (!endTime.equals(TmfTimestamp.BIG_CRUNCH)) {
+                end = fTrace.timestampNanoToCycles(endTime.toNanos()) + 1;
+            }
+        }
+        super.setReadRange(start, end);
+    }
+
     @Override
     public synchronized boolean advance() {
         boolean ret = false;
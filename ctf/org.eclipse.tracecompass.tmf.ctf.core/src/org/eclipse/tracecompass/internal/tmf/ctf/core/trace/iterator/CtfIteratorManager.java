@@ -114,6 +114,10 @@ public class CtfIteratorManager {
                      */
                     iter = replaceRandomElement(context);
                 }
+                iter.setProjection(context.getProjection());
+                iter.setPipelined(context.isPipelined());
+                iter.setReadRange(context.getReadRange());
+                iter.setEventFilter(context.getEventTypes());
                 if (context.getLocation() != null) {
                     final CtfLocationInfo location = (CtfLocationInfo) context.getLocation().getLocationInfo();
                     iter.seek(location);
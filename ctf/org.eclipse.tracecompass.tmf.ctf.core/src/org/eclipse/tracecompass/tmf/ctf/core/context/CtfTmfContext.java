@@ -13,8 +13,13 @@
 
 package org.eclipse.tracecompass.tmf.ctf.core.context;
 
+import java.util.Set;
+
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.trace.CTFProjection;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEvent;
@@ -37,6 +42,14 @@ public class CtfTmfContext implements ITmfContext {
 
     private final CtfTmfTrace fTrace;
 
+    private @Nullable CTFProjection fProjection = null;
+
+    private boolean fPipelined = false;
+
+    private @Nullable TmfTimeRange fReadRange = null;
+
+    private @Nullable Set<String> fEventTypes = null;
+
     // -------------------------------------------
     // Constructor
     // -------------------------------------------
@@ -154,6 +167,123 @@ public class CtfTmfContext implements ITmfContext {
         return retVal;
     }
 
+    /**
+     * Gets the payload fields that are decoded when reading with this
+     * context.
+     *
+     * @return The fields that are decoded, or null if all the fields are
+     *         decoded
+     * @since 4.0
+     */
+    public @Nullable CTFProjection getProjection() {
+        return fProjection;
+    }
+
+    /**
+     * Sets the payload fields to decode when reading with this context. The
+     * other fields of the events are skipped when possible.
+     *
+     * @param projection
+     *            The fields to decode, or null to decode all the fields
+     * @since 4.0
+     */
+    public synchronized void setProjection(@Nullable CTFProjection projection) {
+        fProjection = projection;
+        CtfIterator iterator = getIterator();
+        if (iterator != null) {
+            iterator.setProjection(projection);
+        }
+    }
+
+    /**
+     * Gets whether the packets of the trace are decoded ahead when reading
+     * with this context.
+     *
+     * @return true if the packets are decoded ahead
+     * @since 4.0
+     */
+    public boolean isPipelined() {
+        return fPipelined;
+    }
+
+    /**
+     * Sets whether the packets of the trace are decoded ahead, by a pool of
+     * threads, when reading with this context. This is faster for long
+     * sequential reads, and does not change the events that are read.
+     *
+     * @param pipelined
+     *            true to decode the packets ahead
+     * @since 4.0
+     */
+    public synchronized void setPipelined(boolean pipelined) {
+        fPipelined = pipelined;
+        CtfIterator iterator = getIterator();
+        if (iterator != null) {
+            iterator.setPipelined(pipelined);
+        }
+    }
+
+    /**
+     * Gets the time range of the packets that are read with this context.
+     *
+     * @return The time range, or null if all the packets are read
+     * @since 4.0
+     */
+    public @Nullable TmfTimeRange getReadRange() {
+        return fReadRange;
+    }
+
+    /**
+     * Sets the time range of the packets that are read with this context. The
+     * packets of the trace that end before the range are skipped, and the
+     * reading stops at the packets that begin after it. The events of the
+     * packets that overlap the range are all read.
+     *
+     * @param range
+     *            The time range, or null to read all the packets
+     * @since 4.0
+     */
+    public synchronized void setReadRange(@Nullable TmfTimeRange range) {
+        fReadRange = range;
+        CtfIterator iterator = getIterator();
+        if (iterator != null) {
+            iterator.setReadRange(range);
+        }
+    }
+
+    /**
+     * Gets the names of the events that are read with this context.
+     *
+     * @return The names of the events, or null if all the events are read
+     * @since 4.0
+     */
+    public @Nullable Set<String> getEventTypes() {
+        return fEventTypes;
+    }
+
+    /**
+     * Sets the names of the events that are read with this context. The
+     * packets of the trace that are known to have none of these events are
+     * skipped, so the other events may not all be read, and the rank of the
+     * context is not known once it was advanced. This is meant for requests
+     * that ignore the other events, see
+     * {@link ITmfEventRequest#getEventTypes()}.
+     *
+     * @param eventTypes
+     *            The names of the events, or null to read all the events
+     * @since 4.0
+     */
+    public synchronized void setEventTypes(@Nullable Set<String> eventTypes) {
+        fEventTypes = eventTypes;
+        if (eventTypes != null) {
+            setRank(UNKNOWN_RANK);
+        }
+        CtfIterator iterator = getIterator();
+        if (iterator != null) {
+            iterator.setEventFilter(eventTypes);
+        }
+    }
+
     @Override
     public void dispose() {
         fTrace.disposeContext(this);
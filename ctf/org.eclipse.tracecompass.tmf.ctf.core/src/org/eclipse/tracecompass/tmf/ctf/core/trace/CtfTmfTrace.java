@@ -16,6 +16,7 @@ package org.eclipse.tracecompass.tmf.ctf.core.trace;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.io.File;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.file.Path;
@@ -43,6 +44,7 @@ import org.eclipse.tracecompass.ctf.core.event.CTFCallsite;
 import org.eclipse.tracecompass.ctf.core.event.CTFClock;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.trace.CTFProjection;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInput;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
@@ -59,6 +61,8 @@ import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.project.model.ITmfPropertiesProvider;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.synchronization.TimestampTransformFactory;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
@@ -67,6 +71,7 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceKnownSize;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithPreDefinedEvents;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
@@ -134,6 +139,12 @@ public class CtfTmfTrace extends TmfTrace
     private static final int CONFIDENCE = 10;
     private static final int MIN_CONFIDENCE = 1;
 
+    /**
+     * The system property that makes the requests for all the events of a
+     * range decode the packets of the trace ahead
+     */
+    private static final String PIPELINED_REQUESTS_PROPERTY = "org.eclipse.tracecompass.tmf.ctf.core.pipelinedRequests"; //$NON-NLS-1$
+
     /**
      * This is a reduction factor to avoid overflows.
      */
@@ -218,6 +229,8 @@ public class CtfTmfTrace extends TmfTrace
 
         try {
             this.fTrace = new CTFTrace(path);
+            /* Reuse the packet indexes of a previous opening of the trace */
+            fTrace.setPacketIndexDirectory(new File(TmfTraceManager.getSupplementaryFileDir(this)));
             CtfTmfContext ctx;
             /* Set the start and (current) end times for this trace */
             ctx = (CtfTmfContext) seekEvent(0L);
@@ -421,6 +434,41 @@ public class CtfTmfTrace extends TmfTrace
         return context;
     }
 
+    /**
+     * Arm the request, only decoding the fields of the events that the request
+     * needs, see {@link ITmfEventRequest#getEventFields()}. The requests for
+     * all the events of a range decode the packets of the trace ahead only if
+     * the <code>org.eclipse.tracecompass.tmf.ctf.core.pipelinedRequests</code>
+     * system property is set.
+     *
+     * @since 4.0
+     */
+    @Override
+    public synchronized ITmfContext armRequest(final ITmfEventRequest request) {
+        ITmfContext context = super.armRequest(request);
+        Map<String, Set<String>> eventFields = request.getEventFields();
+        if (context instanceof CtfTmfContext && eventFields != null) {
+            ((CtfTmfContext) context).setProjection(new CTFProjection(eventFields));
+        }
+        /* Requests for all the events read the trace sequentially */
+        if (context instanceof CtfTmfContext && request.getNbRequested() == ITmfEventRequest.ALL_DATA && Boolean.getBoolean(PIPELINED_REQUESTS_PROPERTY)) {
+            ((CtfTmfContext) context).setPipelined(true);
+        }
+        /*
+         * The packets outside of the range of the request are not read, unless
+         * the timestamps of the events are transformed
+         */
+        if (context instanceof CtfTmfContext && getTimestampTransform().equals(TimestampTransformFactory.getDefaultTransform())) {
+            ((CtfTmfContext) context).setReadRange(request.getRange());
+        }
+        /* The packets without the events of the request are not read */
+        Set<String> eventTypes = request.getEventTypes();
+        if (context instanceof CtfTmfContext && eventTypes != null && request.getNbRequested() == ITmfEventRequest.ALL_DATA) {
+            ((CtfTmfContext) context).setEventTypes(eventTypes);
+        }
+        return context;
+    }
+
     /**
      * Method readNextEvent.
      *
@@ -452,6 +500,25 @@ public class CtfTmfTrace extends TmfTrace
         return event;
     }
 
+    /**
+     * Read a block of events under a single lock of the trace.
+     *
+     * @since 4.0
+     */
+    @Override
+    public synchronized int getNext(final ITmfContext context, final List<@NonNull ITmfEvent> events, final int maxEvents) {
+        int nbEvents = 0;
+        while (nbEvents < maxEvents) {
+            CtfTmfEvent event = getNext(context);
+            if (event == null) {
+                break;
+            }
+            events.add(event);
+            nbEvents++;
+        }
+        return nbEvents;
+    }
+
     /**
      * Ctf traces have a clock with a unique uuid that will be used to identify the
      * host. Traces with the same clock uuid will be known to have been made on the
@@ -40,6 +40,7 @@ import org.junit.runners.Suite;
 
     org.eclipse.tracecompass.statesystem.core.tests.perf.historytree.HistoryTreeBackendBenchmark.class,
 
+    org.eclipse.tracecompass.tmf.core.tests.perf.experiment.ExperimentMergeBenchmark.class,
     org.eclipse.tracecompass.tmf.core.tests.perf.synchronization.TimestampTransformBenchmark.class,
 
     org.eclipse.tracecompass.tmf.ctf.core.tests.perf.experiment.ExperimentBenchmark.class
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.perf.historytree;
+
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.junit.Test;
+
+/**
+ * Benchmarks building a state system with a threaded history tree back-end,
+ * when the state changes of each event are sent to the back-end one by one,
+ * or in one batch per event.
+ */
+public class HistoryTreeBatchInsertionBenchmark {
+
+    private static final @NonNull String TEST_PREFIX = "org.eclipse.tracecompass#History Tree Batch Insertion#";
+    private static final @NonNull String TEST_BUILDING_ID = "Build: ";
+    private static final @NonNull String SSID = "batch-insertion-benchmark";
+
+    private static final int PROVIDER_VERSION = 1;
+    private static final int QUEUE_SIZE = 10000;
+    private static final long SEED = 5575784704147L;
+    private static final int NB_ATTRIB = 1000;
+    private static final int NB_EVENTS = 500000;
+    private static final int CHANGES_PER_EVENT = 4;
+    private static final int LOOP_COUNT = 10;
+
+    /**
+     * Benchmark inserting the intervals one by one
+     */
+    @Test
+    public void testSingleInsertions() {
+        benchmarkBuild("Single insertions", false);
+    }
+
+    /**
+     * Benchmark inserting the intervals of each event in one batch
+     */
+    @Test
+    public void testBatchInsertions() {
+        benchmarkBuild("Batch insertions", true);
+    }
+
+    private static void benchmarkBuild(@NonNull String name, boolean batch) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pmBuild = perf.createPerformanceMeter(TEST_PREFIX + TEST_BUILDING_ID + name);
+        perf.tagAsSummary(pmBuild, TEST_BUILDING_ID + name, Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            File file = null;
+            try {
+                file = File.createTempFile("tmpBatchInsertion", ".ht");
+                IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(SSID, file, PROVIDER_VERSION, 0, QUEUE_SIZE);
+                ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(backend);
+                int[] quarks = new int[NB_ATTRIB];
+                for (int j = 0; j < NB_ATTRIB; j++) {
+                    quarks[j] = ss.getQuarkAbsoluteAndAdd(String.valueOf(j));
+                }
+                Random randomGenerator = new Random(SEED);
+
+                pmBuild.start();
+                long time = 1;
+                for (int j = 0; j < NB_EVENTS; j++) {
+                    if (batch) {
+                        ss.startBatch();
+                    }
+                    for (int k = 0; k < CHANGES_PER_EVENT; k++) {
+                        ss.modifyAttribute(time, j, quarks[randomGenerator.nextInt(NB_ATTRIB)]);
+                    }
+                    if (batch) {
+                        ss.commitBatch();
+                    }
+                    time += 1 + randomGenerator.nextInt(10);
+                }
+                ss.closeHistory(time);
+                pmBuild.stop();
+                ss.dispose();
+            } catch (IOException e) {
+                fail(e.getMessage());
+            } finally {
+                if (file != null) {
+                    file.delete();
+                }
+            }
+        }
+        pmBuild.commit();
+    }
+}
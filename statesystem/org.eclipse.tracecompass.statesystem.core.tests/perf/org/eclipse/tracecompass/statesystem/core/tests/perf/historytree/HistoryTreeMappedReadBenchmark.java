@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.perf.historytree;
+
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Benchmarks the queries on a finished history tree file, comparing the reads
+ * through the file channel with the reads through a memory mapping of the
+ * file.
+ *
+ * The size of the synthetic history file can be set in bytes with the
+ * <code>org.eclipse.tracecompass.statesystem.benchmark.htSize</code> property,
+ * for instance to 5 GB to benchmark files that need to be mapped in more than
+ * one chunk.
+ */
+public class HistoryTreeMappedReadBenchmark {
+
+    private static final @NonNull String TEST_PREFIX = "org.eclipse.tracecompass#History Tree Reads#";
+    private static final @NonNull String TEST_SINGLE_QUERY_ID = "Single Queries: ";
+    private static final @NonNull String TEST_FULL_QUERY_ID = "Full Queries: ";
+    private static final @NonNull String SSID = "mapped-read-benchmark";
+    private static final String MAPPED_READS_PROPERTY = "org.eclipse.tracecompass.statesystem.htMappedReads";
+    private static final String HT_SIZE_PROPERTY = "org.eclipse.tracecompass.statesystem.benchmark.htSize";
+
+    private static final long DEFAULT_HT_SIZE = 256L * 1024 * 1024;
+    private static final int NB_ATTRIB = 1000;
+    private static final int PROVIDER_VERSION = 1;
+    private static final int QUEUE_SIZE = 10000;
+    private static final long SEED = 5575784704147L;
+    private static final int QUERY_COUNT = 1000;
+    private static final int LOOP_COUNT = 10;
+
+    private static File fHistoryFile;
+    private static long fEndTime;
+
+    /**
+     * Build the synthetic history file used by the benchmarks
+     */
+    @BeforeClass
+    public static void buildHistory() {
+        long targetSize = Long.getLong(HT_SIZE_PROPERTY, DEFAULT_HT_SIZE);
+        try {
+            fHistoryFile = File.createTempFile("tmpMappedReads", ".ht");
+            IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(SSID, fHistoryFile, PROVIDER_VERSION, 0, QUEUE_SIZE);
+            Random randomGenerator = new Random(SEED);
+            long[] starts = new long[NB_ATTRIB];
+            long time = 1;
+            /* Check the file size from time to time until it is big enough */
+            while (fHistoryFile.length() < targetSize) {
+                for (int i = 0; i < 100000; i++) {
+                    int quark = randomGenerator.nextInt(NB_ATTRIB);
+                    backend.insertPastState(starts[quark], time, quark, (int) time);
+                    starts[quark] = time + 1;
+                    time += 2;
+                }
+            }
+            for (int quark = 0; quark < NB_ATTRIB; quark++) {
+                backend.insertPastState(starts[quark], time, quark, (int) time);
+            }
+            backend.finishedBuilding(time);
+            backend.dispose();
+            fEndTime = time;
+            System.out.println("History tree file size: " + FileUtils.byteCountToDisplaySize(fHistoryFile.length()));
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Delete the history file
+     */
+    @AfterClass
+    public static void deleteHistory() {
+        if (fHistoryFile != null) {
+            fHistoryFile.delete();
+        }
+        System.clearProperty(MAPPED_READS_PROPERTY);
+    }
+
+    /**
+     * Benchmark the queries reading the nodes through the file channel
+     */
+    @Test
+    public void testFileChannelReads() {
+        System.clearProperty(MAPPED_READS_PROPERTY);
+        benchmarkQueries("File channel");
+    }
+
+    /**
+     * Benchmark the queries reading the nodes from the memory mapping
+     */
+    @Test
+    public void testMappedReads() {
+        System.setProperty(MAPPED_READS_PROPERTY, Boolean.TRUE.toString());
+        benchmarkQueries("Memory mapped");
+    }
+
+    private static void benchmarkQueries(@NonNull String name) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pmSingleQuery = perf.createPerformanceMeter(TEST_PREFIX + TEST_SINGLE_QUERY_ID + name);
+        perf.tagAsSummary(pmSingleQuery, TEST_SINGLE_QUERY_ID + name, Dimension.CPU_TIME);
+
+        PerformanceMeter pmFullQuery = perf.createPerformanceMeter(TEST_PREFIX + TEST_FULL_QUERY_ID + name);
+        perf.tagAsSummary(pmFullQuery, TEST_FULL_QUERY_ID + name, Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            Random randomGenerator = new Random(SEED + i);
+            /* Reopen the file every time, so that the node cache is cold */
+            IStateHistoryBackend backend = null;
+            try {
+                backend = StateHistoryBackendFactory.createHistoryTreeBackendExistingFile(SSID, fHistoryFile, PROVIDER_VERSION);
+
+                pmSingleQuery.start();
+                for (int j = 0; j < QUERY_COUNT; j++) {
+                    long ts = Math.floorMod(randomGenerator.nextLong(), fEndTime);
+                    backend.doSingularQuery(ts, randomGenerator.nextInt(NB_ATTRIB));
+                }
+                pmSingleQuery.stop();
+
+                List<ITmfStateInterval> stateInfo = new ArrayList<>(Collections.nCopies(NB_ATTRIB, null));
+                pmFullQuery.start();
+                for (int j = 0; j < QUERY_COUNT / 10; j++) {
+                    long ts = Math.floorMod(randomGenerator.nextLong(), fEndTime);
+                    backend.doQuery(stateInfo, ts);
+                }
+                pmFullQuery.stop();
+            } catch (IOException | StateSystemDisposedException e) {
+                fail(e.getMessage());
+            } finally {
+                if (backend != null) {
+                    backend.dispose();
+                }
+            }
+        }
+        pmSingleQuery.commit();
+        pmFullQuery.commit();
+    }
+}
@@ -20,7 +20,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
@@ -212,6 +214,40 @@ public class StateSystem2DTest {
         testDiscrete(iterable, quarks, times, 8);
     }
 
+    /**
+     * Test the parallel 2D query methods, which must send the same intervals
+     * as the 2D query methods.
+     *
+     * @throws AttributeNotFoundException
+     *             if the requested attribute simply did not exist in the system.
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     * @throws TimeRangeException
+     *             If the smallest time is before the state system start time.
+     * @throws IndexOutOfBoundsException
+     *             If the smallest attribute is <0 or if the largest is >= to the
+     *             number of attributes.
+     */
+    @Test
+    public void testParallel2DQuery() throws AttributeNotFoundException,
+            IndexOutOfBoundsException, TimeRangeException, StateSystemDisposedException {
+        ITmfStateSystem ss = fStateSystem;
+        assertNotNull(ss);
+        long end = ss.getCurrentEndTime();
+        int stringQuark = fStateSystem.getQuarkAbsolute(STRING_ATTRIBUTE);
+        int integerQuark = fStateSystem.getQuarkAbsolute(INTEGER_ATTRIBUTE);
+        Collection<Integer> quarks = ImmutableList.of(stringQuark, integerQuark);
+
+        Queue<ITmfStateInterval> intervals = new ConcurrentLinkedQueue<>();
+        ss.parallelQuery2D(quarks, START_TIME, end, intervals::add, null);
+        testContinuous(intervals, quarks, START_TIME, end, 11);
+
+        Collection<Long> times = StateSystemUtils.getTimes(START_TIME, end, 30L);
+        intervals.clear();
+        ss.parallelQuery2D(quarks, times, intervals::add, null);
+        testDiscrete(intervals, quarks, times, 8);
+    }
+
     /**
      * Test index out of bound queries
      *
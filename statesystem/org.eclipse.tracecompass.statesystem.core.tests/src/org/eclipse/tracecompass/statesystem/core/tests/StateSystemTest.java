@@ -14,12 +14,22 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue.Type;
@@ -29,6 +39,8 @@ import org.junit.Test;
 import org.junit.rules.TestRule;
 import org.junit.rules.Timeout;
 
+import com.google.common.collect.Iterables;
+
 /**
  * Test the {@link StateSystem} specific methods
  *
@@ -143,4 +155,149 @@ public class StateSystemTest {
         assertEquals(val, ongoing);
     }
 
+    /**
+     * Test that the values of each type, set as objects or state values, are
+     * kept as is in the ongoing state and in the intervals
+     *
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed
+     */
+    @Test
+    public void testValueTypes() throws StateSystemDisposedException {
+        ITmfStateSystemBuilder ss = new StateSystem(StateHistoryBackendFactory.createInMemoryBackend("Test", 0));
+        int intQuark = ss.getQuarkAbsoluteAndAdd("int");
+        int longQuark = ss.getQuarkAbsoluteAndAdd("long");
+        int doubleQuark = ss.getQuarkAbsoluteAndAdd("double");
+        int stringQuark = ss.getQuarkAbsoluteAndAdd("string");
+
+        ss.modifyAttribute(10, 1000, intQuark);
+        ss.modifyAttribute(10, TmfStateValue.newValueLong(1L << 40), longQuark);
+        ss.modifyAttribute(10, Double.NaN, doubleQuark);
+        ss.modifyAttribute(10, "str", stringQuark);
+        assertEquals(1000, ss.queryOngoing(intQuark));
+        assertEquals(1L << 40, ss.queryOngoing(longQuark));
+        assertEquals(Double.NaN, ss.queryOngoing(doubleQuark));
+        assertEquals("str", ss.queryOngoing(stringQuark));
+
+        /* Equal values, however they are set, do not end the interval */
+        ss.modifyAttribute(20, TmfStateValue.newValueInt(1000), intQuark);
+        ss.modifyAttribute(20, 1L << 40, longQuark);
+        ss.modifyAttribute(20, TmfStateValue.newValueDouble(Double.NaN), doubleQuark);
+        ss.modifyAttribute(20, new String("str"), stringQuark);
+        assertEquals(10, ss.getOngoingStartTime(intQuark));
+        assertEquals(10, ss.getOngoingStartTime(longQuark));
+        assertEquals(10, ss.getOngoingStartTime(doubleQuark));
+        assertEquals(10, ss.getOngoingStartTime(stringQuark));
+
+        ss.modifyAttribute(30, -2.5, doubleQuark);
+        ss.closeHistory(40);
+        ITmfStateInterval interval = ss.querySingleState(25, doubleQuark);
+        assertEquals(10, interval.getStartTime());
+        assertEquals(29, interval.getEndTime());
+        assertEquals(Double.NaN, interval.getValue());
+        assertEquals(-2.5, ss.querySingleState(30, doubleQuark).getValue());
+        assertEquals(1L << 40, ss.querySingleState(40, longQuark).getValue());
+    }
+
+    /**
+     * Test that the intervals completed during a batch are kept by the state
+     * system, that queries see them, and that they reach the back-end when the
+     * history is closed
+     *
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed
+     */
+    @Test
+    public void testBatch() throws StateSystemDisposedException {
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createInMemoryBackend("Test", 0);
+        ITmfStateSystemBuilder ss = new StateSystem(backend);
+        int quark1 = ss.getQuarkAbsoluteAndAdd("A");
+        int quark2 = ss.getQuarkAbsoluteAndAdd("B");
+
+        ss.startBatch();
+        ss.modifyAttribute(10, 1, quark1);
+        ss.modifyAttribute(10, 2, quark2);
+        ss.modifyAttribute(20, 3, quark1);
+        /* Ongoing states are updated right away, intervals are kept */
+        assertEquals(3, ss.queryOngoing(quark1));
+        assertEquals(0, backend.getEndTime());
+
+        /* Queries see the kept intervals, without sending them */
+        ITmfStateInterval interval = ss.querySingleState(15, quark1);
+        assertEquals(10, interval.getStartTime());
+        assertEquals(19, interval.getEndTime());
+        assertEquals(1, interval.getValue());
+        List<ITmfStateInterval> fullState = ss.queryFullState(15);
+        assertEquals(19, fullState.get(quark1).getEndTime());
+        assertEquals(1, fullState.get(quark1).getValue());
+        assertEquals(2, fullState.get(quark2).getValue());
+        Iterable<ITmfStateInterval> intervals = ss.query2D(Collections.singleton(quark1), 0, 15);
+        assertTrue(Iterables.any(intervals, i -> i.getEndTime() == 19 && Objects.equals(i.getValue(), 1)));
+        assertEquals(0, backend.getEndTime());
+
+        ss.modifyAttribute(30, 4, quark2);
+        ss.commitBatch();
+        ss.modifyAttribute(40, 5, quark1);
+        interval = ss.querySingleState(35, quark1);
+        assertEquals(20, interval.getStartTime());
+        assertEquals(39, interval.getEndTime());
+        assertEquals(3, interval.getValue());
+
+        ss.closeHistory(50);
+        assertEquals(50, backend.getEndTime());
+        interval = ss.querySingleState(35, quark2);
+        assertEquals(30, interval.getStartTime());
+        assertEquals(50, interval.getEndTime());
+        assertEquals(4, interval.getValue());
+    }
+
+    /**
+     * Test that the intervals of a batch are not lost if the back-end fails to
+     * receive them
+     *
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed
+     * @throws IOException
+     *             If the history file cannot be created
+     */
+    @Test
+    public void testBatchSendFailure() throws StateSystemDisposedException, IOException {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        File file = File.createTempFile("StateSystemTest", ".ht");
+        IStateHistoryBackend backend = new HistoryTreeBackend("Test", file, 0, 0) {
+            @Override
+            public void insertPastStates(long[] startTimes, long[] endTimes, int[] quarks,
+                    @Nullable Object[] values, int count) {
+                if (fail.getAndSet(false)) {
+                    throw new IllegalStateException("Test failure");
+                }
+                super.insertPastStates(startTimes, endTimes, quarks, values, count);
+            }
+        };
+        ITmfStateSystemBuilder ss = new StateSystem(backend);
+        int quark = ss.getQuarkAbsoluteAndAdd("A");
+
+        /* Enough state changes to fill the batch a few times */
+        int nbChanges = 5000;
+        ss.startBatch();
+        for (int i = 0; i < nbChanges; i++) {
+            try {
+                ss.modifyAttribute(i * 10L, i, quark);
+            } catch (IllegalStateException e) {
+                /* The state change was not done, do it again */
+                ss.modifyAttribute(i * 10L, i, quark);
+            }
+        }
+        ss.commitBatch();
+        assertFalse(fail.get());
+        ss.closeHistory(nbChanges * 10L);
+
+        for (int i = 0; i < nbChanges; i++) {
+            ITmfStateInterval interval = ss.querySingleState(i * 10L + 5, quark);
+            assertEquals(i * 10L, interval.getStartTime());
+            assertEquals(i, interval.getValue());
+        }
+        ss.dispose();
+        backend.removeFiles();
+    }
 }
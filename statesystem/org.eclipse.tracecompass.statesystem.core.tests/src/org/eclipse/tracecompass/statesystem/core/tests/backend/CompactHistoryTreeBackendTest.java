@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the {@link HistoryTreeBackend} class when the nodes of the history
+ * files are written in the compact format.
+ */
+public class CompactHistoryTreeBackendTest extends HistoryTreeBackendTest {
+
+    private static final String COMPACT_NODES_PROPERTY = "org.eclipse.tracecompass.statesystem.htCompactNodes";
+
+    /**
+     * Constructor
+     *
+     * @param reOpen
+     *            True if the backend should be disposed and re-opened as a new
+     *            backend from the file, or false to use the backend as-is
+     */
+    public CompactHistoryTreeBackendTest(Boolean reOpen) {
+        super(reOpen);
+    }
+
+    /**
+     * Enable the compact nodes for this test class
+     */
+    @BeforeClass
+    public static void enableCompactNodes() {
+        System.setProperty(COMPACT_NODES_PROPERTY, Boolean.TRUE.toString());
+    }
+
+    /**
+     * Restore the default node format
+     */
+    @AfterClass
+    public static void disableCompactNodes() {
+        System.clearProperty(COMPACT_NODES_PROPERTY);
+    }
+
+    /**
+     * Test that a history with repeated strings and small values takes less
+     * space in the compact format, and that its values are read back as they
+     * were inserted
+     *
+     * @throws IOException
+     *             If the history files could not be created
+     * @throws StateSystemDisposedException
+     *             If the backend is disposed
+     */
+    @Test
+    public void testCompactFileSize() throws IOException, StateSystemDisposedException {
+        File compactFile = buildHistory();
+        System.clearProperty(COMPACT_NODES_PROPERTY);
+        File classicFile;
+        try {
+            classicFile = buildHistory();
+        } finally {
+            System.setProperty(COMPACT_NODES_PROPERTY, Boolean.TRUE.toString());
+        }
+        assertTrue(compactFile.length() * 2 < classicFile.length());
+
+        IStateHistoryBackend backend = new HistoryTreeBackend(SSID, compactFile, PROVIDER_VERSION);
+        fBackendMap.put(backend, compactFile);
+        for (int t = 1000; t < 11000; t += 997) {
+            for (int quark = 0; quark < 4; quark++) {
+                ITmfStateInterval interval = backend.doSingularQuery(t, quark);
+                assertEquals(t - t % 10, interval.getStartTime());
+                assertEquals(t - t % 10 + 9, interval.getEndTime());
+                assertEquals(getValue(interval.getStartTime(), quark), interval.getValue());
+            }
+        }
+    }
+
+    private File buildHistory() throws IOException {
+        File historyTreeFile = checkNotNull(File.createTempFile("CompactHistoryTreeBackendTest", ".ht"));
+        fHistoryTreeFiles.add(historyTreeFile);
+        IStateHistoryBackend backend = new HistoryTreeBackend(SSID, historyTreeFile, PROVIDER_VERSION, 1000, fBlockSize, fMaxChildren);
+        for (long start = 1000; start < 11000; start += 10) {
+            for (int quark = 0; quark < 4; quark++) {
+                backend.insertPastState(start, start + 9, quark, getValue(start, quark));
+            }
+        }
+        backend.finishedBuilding(11000);
+        backend.dispose();
+        return historyTreeFile;
+    }
+
+    private static Object getValue(long time, int quark) {
+        int i = (int) (time / 10);
+        switch (quark) {
+        case 0:
+            return "state" + (i % 3);
+        case 1:
+            return i % 100 - 50;
+        case 2:
+            return (long) i << 20;
+        default:
+            return (i % 2 == 0) ? null : i + 0.5;
+        }
+    }
+}
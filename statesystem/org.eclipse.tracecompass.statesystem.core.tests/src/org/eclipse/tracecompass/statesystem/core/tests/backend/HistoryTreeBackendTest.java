@@ -10,19 +10,30 @@
 package org.eclipse.tracecompass.statesystem.core.tests.backend;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.TimeRangeCondition;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
 import org.junit.After;
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
@@ -89,6 +100,28 @@ public class HistoryTreeBackendTest extends StateHistoryBackendTestBase {
         }
     }
 
+    /**
+     * Test that the parallel queries are refused once the backend is
+     * disposed, instead of starting a new query pool
+     *
+     * @throws StateSystemDisposedException
+     *             when the backend is disposed, as expected
+     */
+    @Test(expected = StateSystemDisposedException.class)
+    public void testParallelQuery2DAfterDispose() throws StateSystemDisposedException {
+        IStateHistoryBackend backend = prepareBackend(0, 100, Collections.singletonList(new TmfStateInterval(0, 100, 0, 1)));
+        assertNotNull(backend);
+        IntegerRangeCondition quarks = IntegerRangeCondition.forDiscreteRange(Collections.singleton(0));
+        TimeRangeCondition times = TimeRangeCondition.singleton(50);
+        Queue<ITmfStateInterval> intervals = new ConcurrentLinkedQueue<>();
+        backend.parallelQuery2D(quarks, times, intervals::add, null);
+        assertEquals(1, intervals.size());
+
+        fBackendMap.remove(backend);
+        backend.dispose();
+        backend.parallelQuery2D(quarks, times, intervals::add, null);
+    }
+
     @Override
     protected IStateHistoryBackend getBackendForBuilding(long startTime) throws IOException {
         File historyTreeFile = checkNotNull(File.createTempFile("HistoryTreeBackendTest", ".ht"));
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTInterval;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTSummaries;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.ThreadedHistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.StateAggregate;
+import org.eclipse.tracecompass.statesystem.core.tests.stubs.backend.HistoryTreeClassicStub;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the aggregate queries of history trees, with the summaries of their
+ * subtrees enabled.
+ */
+public class HistoryTreeSummariesTest {
+
+    private static final String SUMMARIES_PROPERTY = "org.eclipse.tracecompass.statesystem.htSummaries";
+    private static final String SSID = "test";
+    private static final int PROVIDER_VERSION = 0;
+    private static final int QUEUE_SIZE = 10;
+    private static final int NB_ATTRIBUTES = 4;
+    private static final long END_TIME = 20000;
+
+    private File fHistoryTreeFile;
+
+    /**
+     * Enable the summaries for this test class
+     */
+    @BeforeClass
+    public static void enableSummaries() {
+        System.setProperty(SUMMARIES_PROPERTY, Boolean.TRUE.toString());
+    }
+
+    /**
+     * Disable the summaries
+     */
+    @AfterClass
+    public static void disableSummaries() {
+        System.clearProperty(SUMMARIES_PROPERTY);
+    }
+
+    /**
+     * Create the history tree file
+     *
+     * @throws IOException
+     *             If the file could not be created
+     */
+    @Before
+    public void setup() throws IOException {
+        fHistoryTreeFile = File.createTempFile("HistoryTreeSummariesTest", ".ht");
+    }
+
+    /**
+     * Delete the history tree file and its summaries
+     */
+    @After
+    public void cleanup() {
+        fHistoryTreeFile.delete();
+        new File(fHistoryTreeFile.getPath() + ".summaries").delete();
+    }
+
+    /**
+     * Test the aggregates while the history is built and after it is opened
+     * again, against the aggregates computed from 2D queries
+     *
+     * @throws IOException
+     *             If the history file could not be read or written
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed
+     */
+    @Test
+    public void testQueryAggregate() throws IOException, StateSystemDisposedException {
+        IStateHistoryBackend backend = new ThreadedHistoryTreeBackend(SSID, fHistoryTreeFile, PROVIDER_VERSION, 0, QUEUE_SIZE, 4096, 3);
+        ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(backend);
+        for (int i = 0; i < NB_ATTRIBUTES; i++) {
+            ss.getQuarkAbsoluteAndAdd("attribute" + i);
+        }
+        for (long t = 0; t < END_TIME / 2; t += 5) {
+            modify(ss, t);
+        }
+        /* Query the history while it is built */
+        assertAggregates(ss, END_TIME / 2);
+
+        for (long t = END_TIME / 2; t < END_TIME; t += 5) {
+            modify(ss, t);
+        }
+        ss.closeHistory(END_TIME);
+        assertAggregates(ss, END_TIME);
+        ss.dispose();
+        assertTrue(new File(fHistoryTreeFile.getPath() + ".summaries").exists());
+
+        backend = StateHistoryBackendFactory.createHistoryTreeBackendExistingFile(SSID, fHistoryTreeFile, PROVIDER_VERSION);
+        ITmfStateSystem reopened = StateSystemFactory.newStateSystem(backend, false);
+        try {
+            assertAggregates(reopened, END_TIME);
+        } finally {
+            reopened.dispose();
+        }
+    }
+
+    /**
+     * Test that the summaries are deleted when a history is built without
+     * them, and that the aggregates are still correct
+     *
+     * @throws IOException
+     *             If the history file could not be read or written
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed
+     */
+    @Test
+    public void testWithoutSummaries() throws IOException, StateSystemDisposedException {
+        File summariesFile = new File(fHistoryTreeFile.getPath() + ".summaries");
+        assertTrue(summariesFile.createNewFile());
+        System.clearProperty(SUMMARIES_PROPERTY);
+        try {
+            IStateHistoryBackend backend = new ThreadedHistoryTreeBackend(SSID, fHistoryTreeFile, PROVIDER_VERSION, 0, QUEUE_SIZE, 4096, 3);
+            ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(backend);
+            for (int i = 0; i < NB_ATTRIBUTES; i++) {
+                ss.getQuarkAbsoluteAndAdd("attribute" + i);
+            }
+            for (long t = 0; t < END_TIME; t += 5) {
+                modify(ss, t);
+            }
+            ss.closeHistory(END_TIME);
+            assertFalse(summariesFile.exists());
+            assertAggregates(ss, END_TIME);
+            ss.dispose();
+        } finally {
+            System.setProperty(SUMMARIES_PROPERTY, Boolean.TRUE.toString());
+        }
+    }
+
+    /**
+     * Test that every node has a summary once the tree is closed, including
+     * the nodes of the latest branch, which are closed with the tree
+     *
+     * @throws IOException
+     *             If the history file could not be read or written
+     */
+    @Test
+    public void testLatestBranchSummaries() throws IOException {
+        HTConfig config = new HTConfig(fHistoryTreeFile, 4096, 3, PROVIDER_VERSION, 0);
+        HistoryTreeClassicStub ht = new HistoryTreeClassicStub(config);
+        for (long t = 0; t < END_TIME; t += 5) {
+            ht.insertInterval(new HTInterval(t, t + 4, (int) (t / 5) % NB_ATTRIBUTES, (int) t));
+        }
+        List<HTNode> latestBranch = ht.getLatestBranch();
+        assertTrue(latestBranch.size() > 1);
+        int rootSeq = latestBranch.get(0).getSequenceNumber();
+        ht.closeTree(END_TIME);
+        int nodeCount = ht.getNodeCount();
+        ht.closeFile();
+
+        HTSummaries summaries = HTSummaries.open(fHistoryTreeFile, nodeCount, 0, END_TIME, false);
+        assertNotNull(summaries);
+        try {
+            for (int seq = 0; seq < nodeCount; seq++) {
+                assertNotNull("node " + seq, summaries.getAggregate(seq, 0));
+            }
+            /* The root summarizes all the intervals of the attribute */
+            StateAggregate aggregate = summaries.getAggregate(rootSeq, 0);
+            assertNotNull(aggregate);
+            assertEquals(END_TIME / 5 / NB_ATTRIBUTES, aggregate.getCount());
+            assertEquals(END_TIME / NB_ATTRIBUTES, aggregate.getDuration());
+        } finally {
+            summaries.close();
+        }
+    }
+
+    private static void modify(ITmfStateSystemBuilder ss, long t) {
+        int i = (int) (t / 5);
+        /* Integers, longs, doubles and values that are not numbers */
+        ss.modifyAttribute(t, i % 97 - 40, 0);
+        if (i % 3 == 0) {
+            ss.modifyAttribute(t, (long) (i % 1000) << 20, 1);
+        }
+        ss.modifyAttribute(t, (i % 7 == 0) ? null : (i % 50) + 0.5, 2);
+        if (i % 11 == 0) {
+            ss.modifyAttribute(t, (i % 2 == 0) ? "string" + i : null, 3);
+        }
+    }
+
+    private static void assertAggregates(ITmfStateSystem ss, long end) throws StateSystemDisposedException {
+        long[][] ranges = {
+                { 0, end },
+                { 0, 0 },
+                { end, end },
+                { 1234, 5678 },
+                { end / 3, end - 1 },
+                { 12, 17 },
+                { end - 2000, end }
+        };
+        for (int quark = 0; quark < NB_ATTRIBUTES; quark++) {
+            for (long[] range : ranges) {
+                assertAggregate(ss, quark, range[0], range[1]);
+            }
+        }
+    }
+
+    private static void assertAggregate(ITmfStateSystem ss, int quark, long start, long end) throws StateSystemDisposedException {
+        long count = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        long duration = 0;
+        double weightedSum = 0;
+        for (ITmfStateInterval interval : ss.query2D(Collections.singleton(quark), start, end)) {
+            Object value = interval.getValue();
+            if (value instanceof Number) {
+                double number = ((Number) value).doubleValue();
+                long length = Math.min(end, interval.getEndTime()) - Math.max(start, interval.getStartTime()) + 1;
+                count++;
+                min = Math.min(min, number);
+                max = Math.max(max, number);
+                sum += number;
+                duration += length;
+                weightedSum += number * length;
+            }
+        }
+        StateAggregate aggregate = ss.queryAggregate(quark, start, end);
+        String message = "quark " + quark + " [" + start + ", " + end + "]";
+        assertEquals(message, count, aggregate.getCount());
+        assertEquals(message, min, aggregate.getMin(), 0);
+        assertEquals(message, max, aggregate.getMax(), 0);
+        assertEquals(message, sum, aggregate.getSum(), 0);
+        assertEquals(message, duration, aggregate.getDuration());
+        assertEquals(message, (duration == 0 ? Double.NaN : weightedSum / duration), aggregate.getAverage(), 1e-9);
+    }
+}
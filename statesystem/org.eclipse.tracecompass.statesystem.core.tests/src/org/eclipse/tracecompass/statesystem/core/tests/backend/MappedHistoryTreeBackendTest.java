@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+/**
+ * Test the {@link HistoryTreeBackend} class when the finished history files
+ * are read through a memory mapping.
+ */
+public class MappedHistoryTreeBackendTest extends HistoryTreeBackendTest {
+
+    private static final String MAPPED_READS_PROPERTY = "org.eclipse.tracecompass.statesystem.htMappedReads";
+
+    /**
+     * Constructor
+     *
+     * @param reOpen
+     *            True if the backend should be disposed and re-opened as a new
+     *            backend from the file, or false to use the backend as-is
+     */
+    public MappedHistoryTreeBackendTest(Boolean reOpen) {
+        super(reOpen);
+    }
+
+    /**
+     * Enable the mapped reads for this test class
+     */
+    @BeforeClass
+    public static void enableMappedReads() {
+        System.setProperty(MAPPED_READS_PROPERTY, Boolean.TRUE.toString());
+    }
+
+    /**
+     * Restore the default read mode
+     */
+    @AfterClass
+    public static void disableMappedReads() {
+        System.clearProperty(MAPPED_READS_PROPERTY);
+    }
+}
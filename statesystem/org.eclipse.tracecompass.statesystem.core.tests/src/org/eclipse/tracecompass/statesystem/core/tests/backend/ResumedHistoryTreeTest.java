@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.ThreadedHistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test resuming a history tree that was closed, to append the states after its
+ * end time.
+ */
+public class ResumedHistoryTreeTest {
+
+    private static final String SSID = "test";
+    private static final int PROVIDER_VERSION = 0;
+    private static final int QUEUE_SIZE = 10;
+
+    private File fHistoryTreeFile;
+
+    /**
+     * Create the history tree file
+     *
+     * @throws IOException
+     *             If the file could not be created
+     */
+    @Before
+    public void setup() throws IOException {
+        fHistoryTreeFile = File.createTempFile("ResumedHistoryTreeTest", ".ht");
+    }
+
+    /**
+     * Delete the history tree file
+     */
+    @After
+    public void cleanup() {
+        fHistoryTreeFile.delete();
+    }
+
+    /**
+     * Build a history, resume it to add states after its end and check the
+     * whole history can be queried when the file is opened again
+     *
+     * @throws IOException
+     *             If the history file could not be read or written
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed
+     * @throws AttributeNotFoundException
+     *             If an attribute is not found
+     */
+    @Test
+    public void testResume() throws IOException, StateSystemDisposedException, AttributeNotFoundException {
+        /* Build a first part of the history, with small nodes */
+        IStateHistoryBackend backend = new ThreadedHistoryTreeBackend(SSID, fHistoryTreeFile, PROVIDER_VERSION, 0, QUEUE_SIZE, 4096, 2);
+        ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(backend);
+        int quarkA = ss.getQuarkAbsoluteAndAdd("A");
+        int quarkB = ss.getQuarkAbsoluteAndAdd("B");
+        ss.modifyAttribute(0, "x", quarkB);
+        for (int t = 0; t < 1000; t++) {
+            ss.modifyAttribute(t, t, quarkA);
+        }
+        ss.closeHistory(1000);
+        ss.dispose();
+
+        /* Resume the history, the ongoing states are the ones at its end */
+        backend = StateHistoryBackendFactory.createHistoryTreeBackendResumedFile(SSID, fHistoryTreeFile, PROVIDER_VERSION, QUEUE_SIZE);
+        ss = StateSystemFactory.resumeStateSystem(backend);
+        assertEquals(1000, ss.getCurrentEndTime());
+        assertEquals(999, ss.queryOngoing(quarkA));
+        assertEquals("x", ss.queryOngoing(quarkB));
+        assertEquals(505, ss.querySingleState(505, quarkA).getValue());
+
+        int quarkC = ss.getQuarkAbsoluteAndAdd("C");
+        ss.modifyAttribute(1500, 1L, quarkC);
+        for (int t = 1010; t < 2000; t++) {
+            ss.modifyAttribute(t, t, quarkA);
+        }
+        ss.closeHistory(2000);
+        ss.dispose();
+
+        /* Open the complete history */
+        backend = StateHistoryBackendFactory.createHistoryTreeBackendExistingFile(SSID, fHistoryTreeFile, PROVIDER_VERSION);
+        ss = StateSystemFactory.newStateSystem(backend, false);
+        try {
+            assertEquals(0, ss.getStartTime());
+            assertEquals(2000, ss.getCurrentEndTime());
+            assertEquals(quarkC, ss.getQuarkAbsolute("C"));
+
+            assertInterval(505, 505, 505, ss.querySingleState(505, quarkA));
+            /* The interval ongoing when the history was suspended is split */
+            assertInterval(999, 1000, 999, ss.querySingleState(1000, quarkA));
+            assertInterval(1001, 1009, 999, ss.querySingleState(1001, quarkA));
+            assertInterval(1500, 1500, 1500, ss.querySingleState(1500, quarkA));
+            assertInterval(0, 1000, "x", ss.querySingleState(10, quarkB));
+            assertInterval(1001, 2000, "x", ss.querySingleState(2000, quarkB));
+            assertInterval(0, 1499, null, ss.querySingleState(100, quarkC));
+            assertInterval(1500, 2000, 1L, ss.querySingleState(1800, quarkC));
+
+            for (long t : new long[] { 0, 999, 1000, 1001, 1999, 2000 }) {
+                List<ITmfStateInterval> fullState = ss.queryFullState(t);
+                assertEquals(3, fullState.size());
+            }
+        } finally {
+            ss.dispose();
+        }
+    }
+
+    /**
+     * Test resuming a history to which nothing is added
+     *
+     * @throws IOException
+     *             If the history file could not be read or written
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed
+     */
+    @Test
+    public void testResumeNoChange() throws IOException, StateSystemDisposedException {
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(SSID, fHistoryTreeFile, PROVIDER_VERSION, 0, QUEUE_SIZE);
+        ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(backend);
+        int quark = ss.getQuarkAbsoluteAndAdd("A");
+        ss.modifyAttribute(10, 1, quark);
+        ss.closeHistory(100);
+        ss.dispose();
+
+        backend = StateHistoryBackendFactory.createHistoryTreeBackendResumedFile(SSID, fHistoryTreeFile, PROVIDER_VERSION, QUEUE_SIZE);
+        ss = StateSystemFactory.resumeStateSystem(backend);
+        ss.closeHistory(0);
+        ss.dispose();
+
+        backend = StateHistoryBackendFactory.createHistoryTreeBackendExistingFile(SSID, fHistoryTreeFile, PROVIDER_VERSION);
+        ss = StateSystemFactory.newStateSystem(backend, false);
+        try {
+            assertEquals(100, ss.getCurrentEndTime());
+            assertInterval(10, 100, 1, ss.querySingleState(100, quark));
+            assertNull(ss.querySingleState(5, quark).getValue());
+        } finally {
+            ss.dispose();
+        }
+    }
+
+    private static void assertInterval(long start, long end, Object value, ITmfStateInterval interval) {
+        assertEquals(start, interval.getStartTime());
+        assertEquals(end, interval.getEndTime());
+        assertEquals(value, interval.getValue());
+    }
+}
@@ -10,6 +10,7 @@
 package org.eclipse.tracecompass.statesystem.core.tests.backend;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -17,8 +18,14 @@ import static org.junit.Assert.fail;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.TimeRangeCondition;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
@@ -28,7 +35,9 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.tests.stubs.statevalues.CustomStateValueStub;
 import org.junit.Test;
 
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multiset;
 
 /**
  * Abstract class to test implementations of the {@link IStateHistoryBackend}
@@ -477,4 +486,53 @@ public abstract class StateHistoryBackendTestBase {
         assertEquals(-11L, poisonInterval.getValue());
     }
 
+    /**
+     * Test that the parallel 2D query sends the same intervals as the 2D
+     * query, and none when the monitor is canceled
+     *
+     * @throws StateSystemDisposedException
+     *             if the state system was disposed
+     */
+    @Test
+    public void testParallelQuery2D() throws StateSystemDisposedException {
+        final int nbAttr = 10;
+        final long duration = 10;
+        final long startTime = 0;
+        final long endTime = 5000;
+
+        List<ITmfStateInterval> intervals = new ArrayList<>();
+        for (long t = startTime + 1; t <= endTime + duration; t++) {
+            intervals.add(new TmfStateInterval(
+                    Math.max(startTime, t - duration),
+                    Math.min(endTime, t - 1),
+                    (int) t % nbAttr,
+                    t));
+        }
+        IStateHistoryBackend backend = prepareBackend(startTime, endTime, intervals);
+        assertNotNull(backend);
+
+        List<TimeRangeCondition> timeConditions = ImmutableList.of(
+                TimeRangeCondition.forContinuousRange(startTime, endTime),
+                TimeRangeCondition.forContinuousRange(1234, 3456),
+                TimeRangeCondition.forDiscreteRange(ImmutableList.of(0L, 999L, 2500L, 4321L, 5000L)));
+        List<IntegerRangeCondition> quarkConditions = ImmutableList.of(
+                IntegerRangeCondition.forDiscreteRange(ImmutableList.of(0, 5, 9)),
+                IntegerRangeCondition.forDiscreteRange(ImmutableList.of(3)));
+        for (TimeRangeCondition times : timeConditions) {
+            for (IntegerRangeCondition quarks : quarkConditions) {
+                Multiset<ITmfStateInterval> expected = HashMultiset.create(backend.query2D(quarks, times));
+                assertFalse(expected.isEmpty());
+                Queue<ITmfStateInterval> actual = new ConcurrentLinkedQueue<>();
+                backend.parallelQuery2D(quarks, times, actual::add, null);
+                assertEquals(expected, HashMultiset.create(actual));
+            }
+        }
+
+        IProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        Queue<ITmfStateInterval> actual = new ConcurrentLinkedQueue<>();
+        backend.parallelQuery2D(quarkConditions.get(0), timeConditions.get(0), actual::add, monitor);
+        assertTrue(actual.isEmpty());
+    }
+
 }
@@ -11,24 +11,34 @@ package org.eclipse.tracecompass.statesystem.core.tests.backend.historytree;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.TimeRangeCondition;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTInterval;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.IHistoryTree;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.tests.stubs.backend.HistoryTreeClassicStub;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
 /**
  * Tests the history tree
  *
@@ -320,4 +330,105 @@ public class HistoryTreeTest {
         assertEquals( 5, branch.get(2).getSequenceNumber());
         assertEquals( 4, branch.get(2).getParentSequenceNumber());
     }
+
+    /**
+     * Test that nodes written to the tree are served from the tree's node
+     * cache when read back
+     *
+     * @throws ClosedChannelException
+     *             If the file channel is closed
+     */
+    @Test
+    public void testNodeCache() throws ClosedChannelException {
+        HistoryTreeClassicStub ht = setupSmallTree();
+        long start = 1;
+        start = fillValues(ht, STRING_VALUE, 1, start);
+        start = fillNextLeafNode(ht, start);
+        start = fillValues(ht, STRING_VALUE, 1, start);
+        fillNextLeafNode(ht, start);
+        assertEquals(3, ht.getNodeCount());
+
+        /* Node 0 is not in the latest branch, it was written to the cache */
+        long hits = ht.getNodeCacheStats().hitCount();
+        long misses = ht.getNodeCacheStats().missCount();
+        HTNode node = ht.readNode(0);
+        assertEquals(0, node.getSequenceNumber());
+        assertEquals(hits + 1, ht.getNodeCacheStats().hitCount());
+        assertEquals(misses, ht.getNodeCacheStats().missCount());
+    }
+
+    /**
+     * Test that nodes are weighed in the node cache by the memory they use,
+     * not as a fixed number of bytes
+     */
+    @Test
+    public void testNodeSizeInMemory() {
+        HistoryTreeClassicStub ht = setupSmallTree();
+        HTNode node = ht.getLatestLeaf();
+        int emptySize = node.getSizeInMemory();
+        fillValues(ht, STRING_VALUE, 1, 1);
+        int oneSize = node.getSizeInMemory();
+        assertTrue(oneSize > emptySize);
+        fillValues(ht, STRING_VALUE, 1, 2);
+        assertTrue(node.getSizeInMemory() > oneSize);
+    }
+
+    /**
+     * Test that the queries on the nodes of a tree read from disk, whose
+     * intervals are decoded lazily, give the same results as the queries on
+     * the nodes that were written, and that the intervals that were already
+     * decoded are not decoded again
+     *
+     * @throws IOException
+     *             If the tree file cannot be read
+     */
+    @Test
+    public void testLazyDecoding() throws IOException {
+        HistoryTreeClassicStub ht = setupSmallTree();
+        TmfStateValue[] values = { STRING_VALUE, INT_VALUE, LONG_VALUE, TmfStateValue.nullValue() };
+        int nbQuarks = 4;
+        long end = 1;
+        for (int i = 1; i < 400; i++) {
+            long intervalEnd = i + i % 3;
+            ht.insertInterval(new HTInterval(i, intervalEnd, i % nbQuarks, values[i % values.length]));
+            end = Math.max(end, intervalEnd);
+        }
+        ht.closeTree(end);
+        assertTrue(ht.getNodeCount() > 1);
+
+        File file = fTempFile;
+        assertNotNull(file);
+        HistoryTreeClassicStub readHt = new HistoryTreeClassicStub(file, 1);
+        IntegerRangeCondition quarks = IntegerRangeCondition.forDiscreteRange(ImmutableList.of(0, 1, 2, 3));
+        try {
+            for (int seq = 0; seq < ht.getNodeCount(); seq++) {
+                HTNode expected = ht.readNode(seq);
+                HTNode actual = readHt.readNode(seq);
+                assertEquals(expected.getNodeStart(), actual.getNodeStart());
+                assertEquals(expected.getNodeEnd(), actual.getNodeEnd());
+
+                for (long t = expected.getNodeStart(); t <= expected.getNodeEnd(); t++) {
+                    List<ITmfStateInterval> expectedInfo = new ArrayList<>(Collections.nCopies(nbQuarks, (ITmfStateInterval) null));
+                    List<ITmfStateInterval> actualInfo = new ArrayList<>(Collections.nCopies(nbQuarks, (ITmfStateInterval) null));
+                    expected.writeInfoFromNode(expectedInfo, t);
+                    actual.writeInfoFromNode(actualInfo, t);
+                    assertEquals(expectedInfo, actualInfo);
+
+                    for (int quark = 0; quark < nbQuarks; quark++) {
+                        HTInterval interval = actual.getRelevantInterval(quark, t);
+                        assertEquals(expected.getRelevantInterval(quark, t), interval);
+                        if (interval != null) {
+                            assertSame(interval, actual.getRelevantInterval(quark, t));
+                        }
+                    }
+                }
+
+                TimeRangeCondition times = TimeRangeCondition.forContinuousRange(expected.getNodeStart(), expected.getNodeEnd());
+                assertEquals(Lists.newArrayList(expected.iterable2D(quarks, times)),
+                        Lists.newArrayList(actual.iterable2D(quarks, times)));
+            }
+        } finally {
+            readHt.closeFile();
+        }
+    }
 }
@@ -29,6 +29,7 @@ import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.Pa
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.classic.CoreNode;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.classic.HistoryTreeClassic;
 
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Iterables;
 
 /**
@@ -108,6 +109,15 @@ public class HistoryTreeClassicStub extends HistoryTreeClassic {
         return latest.get(pos);
     }
 
+    /**
+     * Get the statistics of the node cache of this tree
+     *
+     * @return The node cache statistics
+     */
+    public CacheStats getNodeCacheStats() {
+        return getTreeIO().getCacheStats();
+    }
+
     /**
      * Get the depth of the tree
      *
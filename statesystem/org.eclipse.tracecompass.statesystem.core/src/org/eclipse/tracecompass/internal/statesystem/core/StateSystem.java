@@ -23,9 +23,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
@@ -40,6 +42,8 @@ import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedE
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.StateAggregate;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue.Type;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
@@ -106,11 +110,20 @@ public class StateSystem implements ITmfStateSystemBuilder {
      */
     public StateSystem(@NonNull IStateHistoryBackend backend, boolean newFile)
             throws IOException {
+        this(backend, newFile, false);
+    }
+
+    private StateSystem(@NonNull IStateHistoryBackend backend, boolean newFile, boolean resume)
+            throws IOException {
         this.backend = backend;
         this.transState = new TransientState(backend);
 
         if (newFile) {
             attributeTree = new AttributeTree(this);
+        } else if (resume) {
+            /* We're appending to an existing file */
+            this.attributeTree = new AttributeTree(this, backend.supplyAttributeTreeReader());
+            resumeTransientState();
         } else {
             /* We're opening an existing file */
             this.attributeTree = new AttributeTree(this, backend.supplyAttributeTreeReader());
@@ -119,6 +132,45 @@ public class StateSystem implements ITmfStateSystemBuilder {
         }
     }
 
+    /**
+     * Resume constructor. Re-opens the history of a back-end that was resumed
+     * from an existing file, so that the state changes after the end of that
+     * history can be appended to it. The ongoing state is restored from the
+     * states at the end time of the history, new states can only be inserted
+     * after that time.
+     *
+     * The intervals that were ongoing when the history was closed are not
+     * extended: they end at the end time of the history, and a new interval
+     * with the same value starts right after it.
+     *
+     * @param backend
+     *            The back-end, resumed from an existing file
+     * @return The state system
+     * @throws IOException
+     *             If there was a problem reading the existing history
+     */
+    public static StateSystem resume(@NonNull IStateHistoryBackend backend) throws IOException {
+        return new StateSystem(backend, false, true);
+    }
+
+    private void resumeTransientState() throws IOException {
+        long endTime = backend.getEndTime();
+        int nbAttributes = attributeTree.getNbAttributes();
+        List<@Nullable ITmfStateInterval> endState = new ArrayList<>(Collections.nCopies(nbAttributes, null));
+        try {
+            backend.doQuery(endState, endTime);
+        } catch (StateSystemDisposedException e) {
+            throw new IOException(e);
+        }
+        List<@NonNull ITmfStateInterval> ongoingState = new ArrayList<>(nbAttributes);
+        for (int quark = 0; quark < nbAttributes; quark++) {
+            ITmfStateInterval interval = endState.get(quark);
+            Object value = (interval == null) ? null : interval.getValue();
+            ongoingState.add(new TmfStateInterval(endTime + 1, endTime + 1, quark, value));
+        }
+        transState.replaceOngoingState(ongoingState);
+    }
+
     @Override
     public String getSSID() {
         return backend.getSSID();
@@ -363,12 +415,30 @@ public class StateSystem implements ITmfStateSystemBuilder {
     // Methods related to insertions in the history
     // --------------------------------------------------------------------------
 
+    @Override
+    public void startBatch() {
+        transState.startBatch();
+    }
+
+    @Override
+    public void commitBatch() {
+        transState.commitBatch();
+    }
+
     @Override
     public void modifyAttribute(long t, Object value, int attributeQuark)
             throws TimeRangeException, StateValueTypeException {
         transState.processStateChange(t, value, attributeQuark);
     }
 
+    @Deprecated
+    @Override
+    public void modifyAttribute(long t, ITmfStateValue value, int attributeQuark)
+            throws TimeRangeException, StateValueTypeException {
+        /* Avoid boxing the primitive values */
+        transState.processStateValueChange(t, value, attributeQuark);
+    }
+
     @Override
     public void pushAttribute(long t, Object value, int attributeQuark)
             throws TimeRangeException, StateValueTypeException {
@@ -637,6 +707,74 @@ public class StateSystem implements ITmfStateSystemBuilder {
         return query2D(quarks, timeCondition);
     }
 
+    @Override
+    public void parallelQuery2D(Collection<@NonNull Integer> quarks, Collection<@NonNull Long> times,
+            Consumer<@NonNull ITmfStateInterval> consumer, @Nullable IProgressMonitor monitor)
+            throws StateSystemDisposedException, TimeRangeException, IndexOutOfBoundsException {
+        if (isDisposed) {
+            throw new StateSystemDisposedException();
+        }
+        if (times.isEmpty()) {
+            return;
+        }
+
+        TimeRangeCondition timeCondition = TimeRangeCondition.forDiscreteRange(times);
+        parallelQuery2D(quarks, timeCondition, consumer, monitor);
+    }
+
+    @Override
+    public void parallelQuery2D(Collection<@NonNull Integer> quarks, long start, long end,
+            Consumer<@NonNull ITmfStateInterval> consumer, @Nullable IProgressMonitor monitor)
+            throws StateSystemDisposedException, TimeRangeException, IndexOutOfBoundsException {
+        if (isDisposed) {
+            throw new StateSystemDisposedException();
+        }
+
+        TimeRangeCondition timeCondition = TimeRangeCondition.forContinuousRange(start, end);
+        parallelQuery2D(quarks, timeCondition, consumer, monitor);
+    }
+
+    private void parallelQuery2D(Collection<@NonNull Integer> quarks, TimeRangeCondition timeCondition,
+            Consumer<@NonNull ITmfStateInterval> consumer, @Nullable IProgressMonitor monitor)
+            throws StateSystemDisposedException, TimeRangeException, IndexOutOfBoundsException {
+        if (timeCondition.min() < getStartTime()) {
+            throw new TimeRangeException("Time conditions " + timeCondition.min() + " is lower than state system start time: " + getStartTime());  //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        if (quarks.isEmpty()) {
+            return;
+        }
+
+        IntegerRangeCondition quarkCondition = IntegerRangeCondition.forDiscreteRange(quarks);
+        if (quarkCondition.min() < 0 || quarkCondition.max() >= getNbAttributes()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        transState.query2D(quarks, timeCondition).forEach(consumer);
+        backend.parallelQuery2D(quarkCondition, timeCondition, consumer, monitor);
+    }
+
+    @Override
+    public StateAggregate queryAggregate(int quark, long start, long end)
+            throws StateSystemDisposedException, TimeRangeException, IndexOutOfBoundsException {
+        if (isDisposed) {
+            throw new StateSystemDisposedException();
+        }
+        if (start < getStartTime()) {
+            throw new TimeRangeException("Time " + start + " is lower than state system start time: " + getStartTime()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (quark < 0 || quark >= getNbAttributes()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        TimeRangeCondition timeCondition = TimeRangeCondition.forContinuousRange(start, end);
+        StateAggregate aggregate = StateAggregate.EMPTY;
+        for (ITmfStateInterval interval : transState.query2D(Collections.singleton(quark), timeCondition)) {
+            aggregate = aggregate.add(StateAggregate.of(interval, start, end));
+        }
+        return aggregate.add(backend.queryAggregate(quark, start, end));
+    }
+
     private Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<@NonNull Integer> quarks, TimeRangeCondition timeCondition)
             throws TimeRangeException, IndexOutOfBoundsException {
         if (timeCondition.min() < getStartTime()) {
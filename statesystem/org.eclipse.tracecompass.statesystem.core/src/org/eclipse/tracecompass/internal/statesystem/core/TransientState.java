@@ -17,10 +17,14 @@ package org.eclipse.tracecompass.internal.statesystem.core;
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -35,6 +39,7 @@ import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeExcept
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 
 /**
  * The Transient State is used to build intervals from punctual state changes.
@@ -46,6 +51,13 @@ import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
  * of the interval will be the recorded time we have here, and the "end time"
  * will be the timestamp of the new state-changing event we just read.
  *
+ * The ongoing states are kept in arrays of primitives, indexed by quark, so
+ * that state changes do not allocate any object: the integer, long and double
+ * values are stored in a long slot, identified by a type tag, and compared as
+ * primitives. Only the strings and custom state values need to be kept as
+ * objects. The values that were not set already boxed are boxed when they are
+ * read or sent to the back-end.
+ *
  * @author Alexandre Montplaisir
  */
 @NonNullByDefault
@@ -53,6 +65,21 @@ public class TransientState {
 
     private static final Logger LOGGER = TraceCompassLog.getLogger(TransientState.class);
 
+    /* Maximum number of intervals kept in a batch before sending them */
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    /* Maximum time the intervals of a batch are kept before sending them */
+    private static final long MAX_BATCH_DELAY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /* Type tags of the ongoing state values */
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_INTEGER = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_DOUBLE = 3;
+    private static final byte TYPE_OBJECT = 4;
+
     /* Indicates where to insert state changes that we generate */
     private final IStateHistoryBackend fBackend;
 
@@ -61,10 +88,36 @@ public class TransientState {
     private volatile boolean fIsActive;
     private volatile long fLatestTime;
 
-    /* A method accessing these arrays will have to go through the lock */
-    private List<@Nullable Object> fOngoingStateInfo;
-    private List<Long> fOngoingStateStartTimes;
-    private List<@Nullable Class<?>> fStateValueTypes;
+    /*
+     * A method accessing these arrays will have to go through the lock. They
+     * may be larger than the number of attributes.
+     */
+    private int fNbAttributes = 0;
+    private long[] fOngoingStateStartTimes;
+    private byte[] fOngoingStateTypes;
+    /* Integer and long values, and the bits of double values */
+    private long[] fOngoingStatePrimitives;
+    /*
+     * String and custom values. The primitive values are compared with the
+     * primitives only, but the boxed value they were set with is kept here too,
+     * if there is one, so that it does not need to be boxed again.
+     */
+    private @Nullable Object[] fOngoingStateObjects;
+    private @Nullable Class<?>[] fStateValueTypes;
+
+    /*
+     * Completed intervals not yet sent to the back-end. They are kept from one
+     * batch to the next, and only sent by the thread inserting the state
+     * changes, once there are enough of them or they are old enough. Queries
+     * read them with the read lock, they are modified with the write lock.
+     */
+    private boolean fInBatch = false;
+    private int fBatchSize = 0;
+    private long fBatchTime = 0;
+    private long @Nullable [] fBatchStartTimes = null;
+    private long @Nullable [] fBatchEndTimes = null;
+    private int @Nullable [] fBatchQuarks = null;
+    private @Nullable Object @Nullable [] fBatchValues = null;
 
     /**
      * Constructor
@@ -75,9 +128,11 @@ public class TransientState {
     public TransientState(IStateHistoryBackend backend) {
         fBackend = backend;
         fIsActive = true;
-        fOngoingStateInfo = new ArrayList<>();
-        fOngoingStateStartTimes = new ArrayList<>();
-        fStateValueTypes = new ArrayList<>();
+        fOngoingStateStartTimes = new long[INITIAL_CAPACITY];
+        fOngoingStateTypes = new byte[INITIAL_CAPACITY];
+        fOngoingStatePrimitives = new long[INITIAL_CAPACITY];
+        fOngoingStateObjects = new Object[INITIAL_CAPACITY];
+        fStateValueTypes = new Class<?>[INITIAL_CAPACITY];
 
         fLatestTime = backend.getStartTime();
     }
@@ -103,7 +158,8 @@ public class TransientState {
     public @Nullable Object getOngoingStateValue(int quark) {
         fRWLock.readLock().lock();
         try {
-            return fOngoingStateInfo.get(quark);
+            checkQuark(quark);
+            return getValue(quark);
         } finally {
             fRWLock.readLock().unlock();
         }
@@ -121,7 +177,8 @@ public class TransientState {
     public long getOngoingStartTime(int quark) {
         fRWLock.readLock().lock();
         try {
-            return fOngoingStateStartTimes.get(quark);
+            checkQuark(quark);
+            return fOngoingStateStartTimes[quark];
         } finally {
             fRWLock.readLock().unlock();
         }
@@ -141,7 +198,8 @@ public class TransientState {
     public void changeOngoingStateValue(int quark, @Nullable Object newValue) {
         fRWLock.writeLock().lock();
         try {
-            fOngoingStateInfo.set(quark, newValue);
+            checkQuark(quark);
+            setValue(quark, newValue);
         } finally {
             fRWLock.writeLock().unlock();
         }
@@ -161,8 +219,9 @@ public class TransientState {
     public ITmfStateInterval getOngoingInterval(int quark) {
         fRWLock.readLock().lock();
         try {
-            return new TmfStateInterval(fOngoingStateStartTimes.get(quark), fLatestTime,
-                    quark, fOngoingStateInfo.get(quark));
+            checkQuark(quark);
+            return new TmfStateInterval(fOngoingStateStartTimes[quark], fLatestTime,
+                    quark, getValue(quark));
         } finally {
             fRWLock.readLock().unlock();
         }
@@ -185,11 +244,12 @@ public class TransientState {
     public @Nullable ITmfStateInterval getIntervalAt(long time, int quark) {
         fRWLock.readLock().lock();
         try {
-            if (!isActive() || time < fOngoingStateStartTimes.get(quark)) {
+            if (!isActive()) {
                 return null;
             }
-            return new TmfStateInterval(fOngoingStateStartTimes.get(quark),
-                    fLatestTime, quark, fOngoingStateInfo.get(quark));
+            checkQuark(quark);
+            ITmfStateInterval interval = getOngoingIntervalAt(time, quark);
+            return (interval != null ? interval : getBatchIntervalAt(time, quark));
         } finally {
             fRWLock.readLock().unlock();
         }
@@ -211,16 +271,20 @@ public class TransientState {
 
         fRWLock.writeLock().lock();
         try {
-            fOngoingStateInfo = new ArrayList<>(size);
-            fOngoingStateStartTimes = new ArrayList<>(size);
-            fStateValueTypes = new ArrayList<>(size);
-
-            for (ITmfStateInterval interval : newStateIntervals) {
+            int capacity = Math.max(size, INITIAL_CAPACITY);
+            fOngoingStateStartTimes = new long[capacity];
+            fOngoingStateTypes = new byte[capacity];
+            fOngoingStatePrimitives = new long[capacity];
+            fOngoingStateObjects = new Object[capacity];
+            fStateValueTypes = new Class<?>[capacity];
+            fNbAttributes = size;
+
+            for (int quark = 0; quark < size; quark++) {
+                ITmfStateInterval interval = newStateIntervals.get(quark);
                 Object value = interval.getValue();
-                fOngoingStateInfo.add(value);
-                fOngoingStateStartTimes.add(interval.getStartTime());
-                Class<?> objectClass = value != null ? value.getClass() : null;
-                fStateValueTypes.add(objectClass);
+                setValue(quark, value);
+                fOngoingStateStartTimes[quark] = interval.getStartTime();
+                fStateValueTypes[quark] = value != null ? value.getClass() : null;
             }
         } finally {
             fRWLock.writeLock().unlock();
@@ -241,10 +305,19 @@ public class TransientState {
              * covering for all timestamps). A null interval will then get added
              * at the first state change.
              */
-            fOngoingStateInfo.add(null);
-            fStateValueTypes.add(null);
-
-            fOngoingStateStartTimes.add(fBackend.getStartTime());
+            int quark = fNbAttributes;
+            if (quark == fOngoingStateStartTimes.length) {
+                int capacity = quark * 2;
+                fOngoingStateStartTimes = Arrays.copyOf(fOngoingStateStartTimes, capacity);
+                fOngoingStateTypes = Arrays.copyOf(fOngoingStateTypes, capacity);
+                fOngoingStatePrimitives = Arrays.copyOf(fOngoingStatePrimitives, capacity);
+                fOngoingStateObjects = Arrays.copyOf(fOngoingStateObjects, capacity);
+                fStateValueTypes = Arrays.copyOf(fStateValueTypes, capacity);
+            }
+            setValue(quark, null);
+            fStateValueTypes[quark] = null;
+            fOngoingStateStartTimes[quark] = fBackend.getStartTime();
+            fNbAttributes = quark + 1;
         } finally {
             fRWLock.writeLock().unlock();
         }
@@ -269,13 +342,71 @@ public class TransientState {
      */
     public void processStateChange(long eventTime, @Nullable Object value, int quark)
             throws TimeRangeException, StateValueTypeException {
+        if (value == null) {
+            processStateChange(eventTime, TYPE_NULL, 0, null, quark);
+        } else if (value instanceof Integer) {
+            processStateChange(eventTime, TYPE_INTEGER, (Integer) value, value, quark);
+        } else if (value instanceof Long) {
+            processStateChange(eventTime, TYPE_LONG, (Long) value, value, quark);
+        } else if (value instanceof Double) {
+            processStateChange(eventTime, TYPE_DOUBLE, Double.doubleToLongBits((Double) value), value, quark);
+        } else {
+            processStateChange(eventTime, TYPE_OBJECT, 0, value, quark);
+        }
+    }
+
+    /**
+     * Process a state change to be inserted in the history, without boxing the
+     * primitive state values.
+     *
+     * @param eventTime
+     *            The timestamp associated with this state change
+     * @param value
+     *            The new state value associated to this attribute
+     * @param quark
+     *            The quark of the attribute that is being modified
+     * @throws TimeRangeException
+     *             If 'eventTime' is invalid
+     * @throws IndexOutOfBoundsException
+     *             If the quark is out of range
+     * @throws StateValueTypeException
+     *             If the state value to be inserted is of a different type of
+     *             what was inserted so far for this attribute.
+     */
+    public void processStateValueChange(long eventTime, ITmfStateValue value, int quark)
+            throws TimeRangeException, StateValueTypeException {
+        switch (value.getType()) {
+        case NULL:
+            processStateChange(eventTime, TYPE_NULL, 0, null, quark);
+            break;
+        case INTEGER:
+            processStateChange(eventTime, TYPE_INTEGER, value.unboxInt(), null, quark);
+            break;
+        case LONG:
+            processStateChange(eventTime, TYPE_LONG, value.unboxLong(), null, quark);
+            break;
+        case DOUBLE:
+            processStateChange(eventTime, TYPE_DOUBLE, Double.doubleToLongBits(value.unboxDouble()), null, quark);
+            break;
+        case STRING:
+        case CUSTOM:
+        default:
+            processStateChange(eventTime, TYPE_OBJECT, 0, value.unboxValue(), quark);
+            break;
+        }
+    }
+
+    private void processStateChange(long eventTime, byte type, long primitive, @Nullable Object object, int quark)
+            throws TimeRangeException, StateValueTypeException {
         if (!this.fIsActive) {
             return;
         }
 
         fRWLock.writeLock().lock();
         try {
-            Class<?> expectedSvType = fStateValueTypes.get(quark);
+            checkQuark(quark);
+            Class<?> expectedSvType = fStateValueTypes[quark];
+            Class<?> svType = getValueClass(type, object);
 
             /*
              * Make sure the state value type we're inserting is the same as the
@@ -286,17 +417,18 @@ public class TransientState {
                  * The value hasn't been used yet, set it to the value we're
                  * currently inserting (which might be null/-1 again).
                  */
-                fStateValueTypes.set(quark, value != null ? value.getClass() : null);
-            } else if ((value != null) && (value.getClass() != expectedSvType)) {
+                fStateValueTypes[quark] = svType;
+            } else if ((svType != null) && (svType != expectedSvType)) {
                 /*
                  * We authorize inserting null values in any type of attribute,
                  * but for every other types, it needs to match our
                  * expectations!
                  */
-                throw new StateValueTypeException(fBackend.getSSID() + " Quark:" + quark + ", Type:" + value.getClass() + ", Expected:" + expectedSvType); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                throw new StateValueTypeException(fBackend.getSSID() + " Quark:" + quark + ", Type:" + svType + ", Expected:" + expectedSvType); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
             }
 
-            if (Objects.equals(fOngoingStateInfo.get(quark),value)) {
+            if (fOngoingStateTypes[quark] == type && fOngoingStatePrimitives[quark] == primitive &&
+                    (type != TYPE_OBJECT || Objects.equals(fOngoingStateObjects[quark], object))) {
                 /*
                  * This is the case where the new value and the one already
                  * present in the Builder are the same. We do not need to create
@@ -305,19 +437,21 @@ public class TransientState {
                 return;
             }
 
-            if (fOngoingStateStartTimes.get(quark) < eventTime) {
+            if (fOngoingStateStartTimes[quark] < eventTime) {
                 /*
                  * These two conditions are necessary to create an interval and
                  * update ongoingStateInfo.
                  */
-                fBackend.insertPastState(fOngoingStateStartTimes.get(quark),
+                insertInterval(fOngoingStateStartTimes[quark],
                         eventTime - 1, /* End Time */
                         quark, /* attribute quark */
-                        fOngoingStateInfo.get(quark)); /* StateValue */
+                        getValue(quark)); /* StateValue */
 
-                fOngoingStateStartTimes.set(quark, eventTime);
+                fOngoingStateStartTimes[quark] = eventTime;
             }
-            fOngoingStateInfo.set(quark, value);
+            fOngoingStateTypes[quark] = type;
+            fOngoingStatePrimitives[quark] = primitive;
+            fOngoingStateObjects[quark] = object;
 
             /* Update the Transient State's lastestTime, if needed */
             if (fLatestTime < eventTime) {
@@ -329,6 +463,208 @@ public class TransientState {
         }
     }
 
+    // ------------------------------------------------------------------------
+    // Ongoing state values
+    // ------------------------------------------------------------------------
+
+    /* The lock must be held */
+    private void checkQuark(int quark) {
+        if (quark < 0 || quark >= fNbAttributes) {
+            throw new IndexOutOfBoundsException("Quark:" + quark + ", Size:" + fNbAttributes); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /* Box the ongoing value of an attribute. The lock must be held. */
+    private @Nullable Object getValue(int quark) {
+        Object object = fOngoingStateObjects[quark];
+        if (object != null) {
+            return object;
+        }
+        switch (fOngoingStateTypes[quark]) {
+        case TYPE_NULL:
+            return null;
+        case TYPE_INTEGER:
+            return (int) fOngoingStatePrimitives[quark];
+        case TYPE_LONG:
+            return fOngoingStatePrimitives[quark];
+        case TYPE_DOUBLE:
+            return Double.longBitsToDouble(fOngoingStatePrimitives[quark]);
+        case TYPE_OBJECT:
+        default:
+            return null;
+        }
+    }
+
+    /* Store the ongoing value of an attribute. The write lock must be held. */
+    private void setValue(int quark, @Nullable Object value) {
+        byte type;
+        long primitive = 0;
+        if (value == null) {
+            type = TYPE_NULL;
+        } else if (value instanceof Integer) {
+            type = TYPE_INTEGER;
+            primitive = (Integer) value;
+        } else if (value instanceof Long) {
+            type = TYPE_LONG;
+            primitive = (Long) value;
+        } else if (value instanceof Double) {
+            type = TYPE_DOUBLE;
+            primitive = Double.doubleToLongBits((Double) value);
+        } else {
+            type = TYPE_OBJECT;
+        }
+        fOngoingStateTypes[quark] = type;
+        fOngoingStatePrimitives[quark] = primitive;
+        fOngoingStateObjects[quark] = value;
+    }
+
+    private static @Nullable Class<?> getValueClass(byte type, @Nullable Object object) {
+        switch (type) {
+        case TYPE_INTEGER:
+            return Integer.class;
+        case TYPE_LONG:
+            return Long.class;
+        case TYPE_DOUBLE:
+            return Double.class;
+        case TYPE_NULL:
+        case TYPE_OBJECT:
+        default:
+            return object != null ? object.getClass() : null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Batches
+    // ------------------------------------------------------------------------
+
+    /**
+     * Start keeping the completed intervals, instead of inserting them one by
+     * one in the back-end. Does nothing if a batch is already started.
+     */
+    public void startBatch() {
+        fRWLock.writeLock().lock();
+        try {
+            allocateBatch();
+            fInBatch = true;
+        } finally {
+            fRWLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * End the batch started with {@link #startBatch()}. The kept intervals are
+     * sent to the back-end if they have been kept for long enough, otherwise
+     * they are sent with those of the next batches, when there are enough of
+     * them. They are visible to the queries in the meantime.
+     */
+    public void commitBatch() {
+        fRWLock.writeLock().lock();
+        try {
+            fInBatch = false;
+            if (fBatchSize > 0 && System.nanoTime() - fBatchTime >= MAX_BATCH_DELAY) {
+                sendBatch();
+            }
+        } finally {
+            fRWLock.writeLock().unlock();
+        }
+    }
+
+    /* The write lock must be held */
+    private void allocateBatch() {
+        if (fBatchStartTimes == null) {
+            fBatchStartTimes = new long[MAX_BATCH_SIZE];
+            fBatchEndTimes = new long[MAX_BATCH_SIZE];
+            fBatchQuarks = new int[MAX_BATCH_SIZE];
+            fBatchValues = new Object[MAX_BATCH_SIZE];
+        }
+    }
+
+    /*
+     * Insert a completed interval in the back-end, or keep it if a batch is
+     * started. Outside of a batch, it is still kept after the intervals that
+     * are not sent yet, so that the back-end receives them in order. The write
+     * lock must be held.
+     */
+    private void insertInterval(long start, long end, int quark, @Nullable Object value) {
+        long[] startTimes = fBatchStartTimes;
+        long[] endTimes = fBatchEndTimes;
+        int[] quarks = fBatchQuarks;
+        Object[] values = fBatchValues;
+        if ((!fInBatch && fBatchSize == 0) || startTimes == null || endTimes == null || quarks == null || values == null) {
+            fBackend.insertPastState(start, end, quark, value);
+            return;
+        }
+        int size = fBatchSize;
+        if (size == MAX_BATCH_SIZE) {
+            sendBatch();
+            size = 0;
+        }
+        if (size == 0) {
+            fBatchTime = System.nanoTime();
+        }
+        startTimes[size] = start;
+        endTimes[size] = end;
+        quarks[size] = quark;
+        values[size] = value;
+        fBatchSize = size + 1;
+        if (!fInBatch && System.nanoTime() - fBatchTime >= MAX_BATCH_DELAY) {
+            sendBatch();
+        }
+    }
+
+    /* The write lock must be held */
+    private void sendBatch() {
+        int size = fBatchSize;
+        long[] startTimes = fBatchStartTimes;
+        long[] endTimes = fBatchEndTimes;
+        int[] quarks = fBatchQuarks;
+        Object[] values = fBatchValues;
+        if (size == 0 || startTimes == null || endTimes == null || quarks == null || values == null) {
+            return;
+        }
+        fBackend.insertPastStates(startTimes, endTimes, quarks, values, size);
+        /*
+         * Only forget the intervals once the back-end has them, they are sent
+         * again with the next batch otherwise. Do not keep references to the
+         * sent values.
+         */
+        fBatchSize = 0;
+        Arrays.fill(values, 0, size, null);
+    }
+
+    /*
+     * Get the state interval valid for time/quark if it is the ongoing one, or
+     * null. The lock must be held.
+     */
+    private @Nullable ITmfStateInterval getOngoingIntervalAt(long time, int quark) {
+        if (time < fOngoingStateStartTimes[quark]) {
+            return null;
+        }
+        return new TmfStateInterval(fOngoingStateStartTimes[quark],
+                fLatestTime, quark, getValue(quark));
+    }
+
+    /*
+     * Get the state interval valid for time/quark if it is kept in the batch,
+     * or null. The lock must be held.
+     */
+    private @Nullable ITmfStateInterval getBatchIntervalAt(long time, int quark) {
+        long[] startTimes = fBatchStartTimes;
+        long[] endTimes = fBatchEndTimes;
+        int[] quarks = fBatchQuarks;
+        Object[] values = fBatchValues;
+        if (startTimes == null || endTimes == null || quarks == null || values == null) {
+            return null;
+        }
+        /* The most recent intervals are the most likely to be queried */
+        for (int i = fBatchSize - 1; i >= 0; i--) {
+            if (quarks[i] == quark && startTimes[i] <= time && time <= endTimes[i]) {
+                return new TmfStateInterval(startTimes[i], endTimes[i], quark, values[i]);
+            }
+        }
+        return null;
+    }
+
     /**
      * Run a "get state at time" query on the Transient State only.
      *
@@ -344,7 +680,7 @@ public class TransientState {
             if (!this.fIsActive) {
                 return;
             }
-            if (stateInfo.size() > fOngoingStateInfo.size()) {
+            if (stateInfo.size() > fNbAttributes) {
                 throw new IllegalArgumentException();
             }
 
@@ -354,11 +690,26 @@ public class TransientState {
                  * "current transient state end time" to put in the answer to
                  * the query.
                  */
-                final ITmfStateInterval interval = getIntervalAt(t, i);
+                final ITmfStateInterval interval = getOngoingIntervalAt(t, i);
                 if (interval != null) {
                     stateInfo.set(i, interval);
                 }
             }
+
+            /* The intervals kept in the batch are not in the back-end yet */
+            long[] startTimes = fBatchStartTimes;
+            long[] endTimes = fBatchEndTimes;
+            int[] quarks = fBatchQuarks;
+            Object[] values = fBatchValues;
+            if (startTimes == null || endTimes == null || quarks == null || values == null) {
+                return;
+            }
+            for (int i = 0; i < fBatchSize; i++) {
+                int quark = quarks[i];
+                if (quark < stateInfo.size() && startTimes[i] <= t && t <= endTimes[i]) {
+                    stateInfo.set(quark, new TmfStateInterval(startTimes[i], endTimes[i], quark, values[i]));
+                }
+            }
         } finally {
             fRWLock.readLock().unlock();
         }
@@ -387,11 +738,27 @@ public class TransientState {
             long end = timeCondition.max();
             Collection<ITmfStateInterval> iterable = new ArrayList<>();
             for (Integer quark : quarks) {
-                ITmfStateInterval interval = getIntervalAt(end, quark);
+                checkQuark(quark);
+                ITmfStateInterval interval = getOngoingIntervalAt(end, quark);
                 if (interval != null) {
                     iterable.add(interval);
                 }
             }
+
+            /* The intervals kept in the batch are not in the back-end yet */
+            long[] startTimes = fBatchStartTimes;
+            long[] endTimes = fBatchEndTimes;
+            int[] batchQuarks = fBatchQuarks;
+            Object[] values = fBatchValues;
+            if (fBatchSize == 0 || startTimes == null || endTimes == null || batchQuarks == null || values == null) {
+                return iterable;
+            }
+            Set<Integer> quarkSet = (quarks instanceof Set ? (Set<Integer>) quarks : new HashSet<>(quarks));
+            for (int i = 0; i < fBatchSize; i++) {
+                if (quarkSet.contains(batchQuarks[i]) && timeCondition.intersects(startTimes[i], endTimes[i])) {
+                    iterable.add(new TmfStateInterval(startTimes[i], endTimes[i], batchQuarks[i], values[i]));
+                }
+            }
             return iterable;
         } finally {
             fRWLock.readLock().unlock();
@@ -415,8 +782,11 @@ public class TransientState {
 
         fRWLock.writeLock().lock();
         try {
-            for (int i = 0; i < fOngoingStateInfo.size(); i++) {
-                if (fOngoingStateStartTimes.get(i) > endTime) {
+            /* Send the final intervals to the back-end in batches */
+            allocateBatch();
+            fInBatch = true;
+            for (int i = 0; i < fNbAttributes; i++) {
+                if (fOngoingStateStartTimes[i] > endTime) {
                     /*
                      * Handle the cases where trace end > timestamp of last
                      * state change. This can happen when inserting "future"
@@ -425,10 +795,10 @@ public class TransientState {
                     continue;
                 }
                 try {
-                    fBackend.insertPastState(fOngoingStateStartTimes.get(i),
+                    insertInterval(fOngoingStateStartTimes[i],
                             endTime, /* End Time */
                             i, /* attribute quark */
-                            fOngoingStateInfo.get(i)); /* StateValue */
+                            getValue(i)); /* StateValue */
 
                 } catch (TimeRangeException e) {
                     /*
@@ -438,9 +808,11 @@ public class TransientState {
                     throw new IllegalStateException(e);
                 }
             }
+            sendBatch();
+            fInBatch = false;
 
-            fOngoingStateInfo.clear();
-            fOngoingStateStartTimes.clear();
+            Arrays.fill(fOngoingStateObjects, 0, fNbAttributes, null);
+            fNbAttributes = 0;
             this.fIsActive = false;
 
         } finally {
@@ -480,10 +852,10 @@ public class TransientState {
             return;
         }
         writer.println("\nAttribute\tStateValue\tValid since time"); //$NON-NLS-1$
-        for (int i = 0; i < fOngoingStateInfo.size(); i++) {
+        for (int i = 0; i < fNbAttributes; i++) {
             writer.format("%d\t\t", i); //$NON-NLS-1$
-            writer.print(String.valueOf(fOngoingStateInfo.get(i)) + "\t\t"); //$NON-NLS-1$
-            writer.println(fOngoingStateStartTimes.get(i).toString());
+            writer.print(String.valueOf(getValue(i)) + "\t\t"); //$NON-NLS-1$
+            writer.println(fOngoingStateStartTimes[i]);
         }
         writer.println('\n');
         return;
@@ -0,0 +1,412 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.datastore.core.serialization.ISafeByteBufferReader;
+import org.eclipse.tracecompass.datastore.core.serialization.ISafeByteBufferWriter;
+import org.eclipse.tracecompass.datastore.core.serialization.SafeByteBufferFactory;
+import org.eclipse.tracecompass.internal.provisional.statesystem.core.statevalue.CustomStateValue;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+
+/**
+ * Compact serialization of the intervals of a node, used by the history trees
+ * configured with {@link HTConfig#isCompactNodeFormat()}.
+ *
+ * The layout of an interval is
+ * <ul>
+ * <li>start, relative to the start of the node (unsigned varint)</li>
+ * <li>duration, the end minus the start (unsigned varint)</li>
+ * <li>attribute (unsigned varint)</li>
+ * <li>sv type (1 byte)</li>
+ * <li>sv (0 bytes for null, a zigzag varint for int and long, 8 bytes for
+ * double, the length as a varint and the bytes for the first occurrence of a
+ * string in the node, 2 bytes for the index of that first occurrence for the
+ * following ones)</li>
+ * </ul>
+ *
+ * The strings of a node are numbered in the order their first occurrence is
+ * written, so the size of an interval depends on the strings already in its
+ * node, but not on their order.
+ */
+final class CompactIntervalFormat {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+    private static final String errMsg = "Invalid interval data. Maybe your file is corrupt?"; //$NON-NLS-1$
+
+    /*
+     * Maximum block size of a compact node. The strings of a node are
+     * referenced by an unsigned short and the smallest interval with a new
+     * string takes 5 bytes, so a node can hold at most 65535 strings.
+     */
+    static final int MAX_BLOCK_SIZE = 256 * 1024;
+
+    /* 'Byte' equivalent for state values types */
+    private static final byte TYPE_NULL = -1;
+    private static final byte TYPE_INTEGER = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_DOUBLE = 3;
+    private static final byte TYPE_STRING_REF = 4;
+    private static final byte TYPE_CUSTOM = 20;
+
+    private CompactIntervalFormat() {
+    }
+
+    /**
+     * Compute the size of an interval in a compact node
+     *
+     * @param interval
+     *            The interval
+     * @param nodeStart
+     *            The start time of the node
+     * @param strings
+     *            The strings already in the node
+     * @return The size of the interval, in bytes
+     */
+    static int getSize(HTInterval interval, long nodeStart, Set<String> strings) {
+        long start = interval.getStartTime();
+        int size = varLongSize(start - nodeStart)
+                + varLongSize(interval.getEndTime() - start)
+                + varIntSize(interval.getAttribute())
+                + Byte.BYTES;
+
+        Object sv = interval.getValue();
+        if (sv == null) {
+            return size;
+        } else if (sv instanceof Integer) {
+            return size + varIntSize(zigZag((int) sv));
+        } else if (sv instanceof Long) {
+            return size + varLongSize(zigZag((long) sv));
+        } else if (sv instanceof Double) {
+            return size + Double.BYTES;
+        } else if (sv instanceof String) {
+            if (strings.contains(sv)) {
+                return size + Short.BYTES;
+            }
+            int strLength = ((String) sv).getBytes(CHARSET).length;
+            return size + varIntSize(strLength) + strLength;
+        } else if (sv instanceof CustomStateValue) {
+            return size + Short.BYTES + ((CustomStateValue) sv).getSerializedSize();
+        }
+        throw new IllegalStateException("Type: " + sv.getClass() + " is not implemented in the state system"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Write an interval of a compact node
+     *
+     * @param interval
+     *            The interval to write
+     * @param buffer
+     *            The buffer of the node's block
+     * @param nodeStart
+     *            The start time of the node
+     * @param strings
+     *            The index of the strings already written in this node, the
+     *            string of this interval is added to it if it is new
+     */
+    static void write(HTInterval interval, ByteBuffer buffer, long nodeStart, Map<String, Integer> strings) {
+        long start = interval.getStartTime();
+        putVarLong(buffer, start - nodeStart);
+        putVarLong(buffer, interval.getEndTime() - start);
+        putVarInt(buffer, interval.getAttribute());
+
+        Object sv = interval.getValue();
+        if (sv == null) {
+            buffer.put(TYPE_NULL);
+            return;
+        }
+        @NonNull Object value = sv;
+        if (value instanceof Integer) {
+            buffer.put(TYPE_INTEGER);
+            putVarInt(buffer, zigZag((int) value));
+        } else if (value instanceof Long) {
+            buffer.put(TYPE_LONG);
+            putVarLong(buffer, zigZag((long) value));
+        } else if (value instanceof Double) {
+            buffer.put(TYPE_DOUBLE);
+            buffer.putDouble((double) value);
+        } else if (value instanceof String) {
+            Integer ref = strings.get(value);
+            if (ref != null) {
+                buffer.put(TYPE_STRING_REF);
+                buffer.putShort(ref.shortValue());
+            } else {
+                strings.put((String) value, strings.size());
+                byte[] strArray = ((String) value).getBytes(CHARSET);
+                buffer.put(TYPE_STRING);
+                putVarInt(buffer, strArray.length);
+                buffer.put(strArray);
+            }
+        } else if (value instanceof CustomStateValue) {
+            buffer.put(TYPE_CUSTOM);
+            int size = ((CustomStateValue) value).getSerializedSize();
+            buffer.putShort((short) size);
+            ISafeByteBufferWriter safeBuffer = SafeByteBufferFactory.wrapWriter(buffer, size);
+            ((CustomStateValue) value).serialize(safeBuffer);
+        } else {
+            throw new IllegalStateException("Type: " + value.getClass() + " is not implemented in the state system"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Read the start of an interval, relative to the start of its node
+     *
+     * @param buffer
+     *            The buffer, positioned at the start of the interval
+     * @return The start time offset
+     * @throws IOException
+     *             If the value is not a valid varint
+     */
+    static long readStartOffset(ByteBuffer buffer) throws IOException {
+        return getVarLong(buffer);
+    }
+
+    /**
+     * Read the duration of an interval
+     *
+     * @param buffer
+     *            The buffer, positioned after the start of the interval
+     * @return The duration
+     * @throws IOException
+     *             If the value is not a valid varint
+     */
+    static long readDuration(ByteBuffer buffer) throws IOException {
+        return getVarLong(buffer);
+    }
+
+    /**
+     * Read the attribute of an interval
+     *
+     * @param buffer
+     *            The buffer, positioned after the duration of the interval
+     * @return The attribute
+     * @throws IOException
+     *             If the value is not a valid varint
+     */
+    static int readAttribute(ByteBuffer buffer) throws IOException {
+        return getVarInt(buffer);
+    }
+
+    /**
+     * Skip the value of an interval, without decoding it. The start, duration
+     * and attribute must already have been read. If the value is the first
+     * occurrence of a string in the node, its position is returned, it is the
+     * one used by the following references to that string.
+     *
+     * @param buffer
+     *            The buffer, positioned at the type of the value
+     * @return The position of the new string, or -1 if the value is not a new
+     *         string
+     * @throws IOException
+     *             If the type of the value is unknown
+     */
+    static int skipValue(ByteBuffer buffer) throws IOException {
+        byte valueType = buffer.get();
+        int stringPosition = -1;
+        int valueSize;
+        switch (valueType) {
+        case TYPE_NULL:
+            valueSize = 0;
+            break;
+        case TYPE_INTEGER:
+            getVarInt(buffer);
+            valueSize = 0;
+            break;
+        case TYPE_LONG:
+            getVarLong(buffer);
+            valueSize = 0;
+            break;
+        case TYPE_DOUBLE:
+            valueSize = Double.BYTES;
+            break;
+        case TYPE_STRING:
+            stringPosition = buffer.position();
+            valueSize = getVarInt(buffer);
+            break;
+        case TYPE_STRING_REF:
+            valueSize = Short.BYTES;
+            break;
+        case TYPE_CUSTOM:
+            valueSize = buffer.getShort();
+            break;
+        default:
+            throw new IOException(errMsg);
+        }
+        if (valueSize < 0 || valueSize > buffer.remaining()) {
+            throw new IOException(errMsg);
+        }
+        buffer.position(buffer.position() + valueSize);
+        return stringPosition;
+    }
+
+    /**
+     * Read an interval of a compact node
+     *
+     * @param buffer
+     *            The buffer of the node's block, positioned at the start of
+     *            the interval
+     * @param nodeStart
+     *            The start time of the node
+     * @param stringPositions
+     *            The positions of the strings of the node, as returned by
+     *            {@link #skipValue}, in the order they were read
+     * @return The interval
+     * @throws IOException
+     *             If the interval could not be read
+     */
+    static HTInterval readFrom(ByteBuffer buffer, long nodeStart, int[] stringPositions) throws IOException {
+        long start = nodeStart + getVarLong(buffer);
+        long end = start + getVarLong(buffer);
+        int attribute = getVarInt(buffer);
+
+        Object value;
+        byte valueType = buffer.get();
+        switch (valueType) {
+        case TYPE_NULL:
+            value = null;
+            break;
+        case TYPE_INTEGER:
+            value = unZigZag(getVarInt(buffer));
+            break;
+        case TYPE_LONG:
+            value = unZigZag(getVarLong(buffer));
+            break;
+        case TYPE_DOUBLE:
+            value = buffer.getDouble();
+            break;
+        case TYPE_STRING:
+            value = readString(buffer, buffer.position());
+            break;
+        case TYPE_STRING_REF: {
+            int ref = Short.toUnsignedInt(buffer.getShort());
+            if (ref >= stringPositions.length) {
+                throw new IOException(errMsg);
+            }
+            value = readString(buffer.duplicate(), stringPositions[ref]);
+            break;
+        }
+        case TYPE_CUSTOM: {
+            short valueSize = buffer.getShort();
+            ISafeByteBufferReader safeBuffer = SafeByteBufferFactory.wrapReader(buffer, valueSize);
+            value = CustomStateValue.readSerializedValue(safeBuffer);
+            break;
+        }
+        default:
+            throw new IOException(errMsg);
+        }
+
+        try {
+            return new HTInterval(start, end, attribute, value);
+        } catch (TimeRangeException e) {
+            throw new IOException(errMsg);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, int position) throws IOException {
+        buffer.position(position);
+        int length = getVarInt(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException(errMsg);
+        }
+        byte[] array = new byte[length];
+        buffer.get(array);
+        return new String(array, CHARSET);
+    }
+
+    // ------------------------------------------------------------------------
+    // Variable-length integers, 7 bits per byte, least significant first
+    // ------------------------------------------------------------------------
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        int remaining = value >>> 7;
+        while (remaining != 0) {
+            size++;
+            remaining >>>= 7;
+        }
+        return size;
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        long remaining = value >>> 7;
+        while (remaining != 0) {
+            size++;
+            remaining >>>= 7;
+        }
+        return size;
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            buffer.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException(errMsg);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException(errMsg);
+    }
+}
@@ -24,11 +24,18 @@ public final class HTConfig {
     private static final int DEFAULT_BLOCKSIZE = 64 * 1024;
     private static final int DEFAULT_MAXCHILDREN = 50;
 
+    /**
+     * System property that makes new history files use the compact node
+     * format, when their block size allows it.
+     */
+    private static final String COMPACT_NODES_PROPERTY = "org.eclipse.tracecompass.statesystem.htCompactNodes"; //$NON-NLS-1$
+
     private final File stateFile;
     private final int blockSize;
     private final int maxChildren;
     private final int providerVersion;
     private final long treeStart;
+    private final boolean compactNodes;
 
     /**
      * Full constructor.
@@ -47,14 +54,49 @@ public final class HTConfig {
      *            uselessly.
      * @param startTime
      *            The start time of the history
+     * @param compactNodes
+     *            Whether the intervals of the nodes are written in the compact
+     *            format, with times relative to the node start, variable-length
+     *            integers and the repeated strings of a node written once. The
+     *            block size must then be at most 256 KiB.
      */
     public HTConfig(File newStateFile, int blockSize, int maxChildren,
-            int providerVersion, long startTime) {
+            int providerVersion, long startTime, boolean compactNodes) {
+        if (compactNodes && blockSize > CompactIntervalFormat.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size is too big for compact nodes: " + blockSize); //$NON-NLS-1$
+        }
         this.stateFile = newStateFile;
         this.blockSize = blockSize;
         this.maxChildren = maxChildren;
         this.providerVersion = providerVersion;
         this.treeStart = startTime;
+        this.compactNodes = compactNodes;
+    }
+
+    /**
+     * Version of the constructor using the node format set by the
+     * <code>org.eclipse.tracecompass.statesystem.htCompactNodes</code> system
+     * property, the classic one by default.
+     *
+     * @param newStateFile
+     *            The name of the history file
+     * @param blockSize
+     *            The size of each "block" on disk. One node will always fit in
+     *            one block.
+     * @param maxChildren
+     *            The maximum number of children allowed per core (non-leaf)
+     *            node.
+     * @param providerVersion
+     *            The version of the state provider. If a file already exists,
+     *            and their versions match, the history file will not be rebuilt
+     *            uselessly.
+     * @param startTime
+     *            The start time of the history
+     */
+    public HTConfig(File newStateFile, int blockSize, int maxChildren,
+            int providerVersion, long startTime) {
+        this(newStateFile, blockSize, maxChildren, providerVersion, startTime,
+                Boolean.getBoolean(COMPACT_NODES_PROPERTY) && blockSize <= CompactIntervalFormat.MAX_BLOCK_SIZE);
     }
 
     /**
@@ -122,4 +164,13 @@ public final class HTConfig {
     public long getTreeStart() {
         return treeStart;
     }
+
+    /**
+     * Get whether the nodes are written in the compact format
+     *
+     * @return <code>true</code> if the nodes use the compact format
+     */
+    public boolean isCompactNodeFormat() {
+        return compactNodes;
+    }
 }
@@ -234,6 +234,47 @@ public final class HTInterval implements ITmfStateInterval {
         }
     }
 
+    /**
+     * Skip the value of a serialized interval, without decoding it. The start,
+     * end and attribute of the interval must already have been read from the
+     * buffer, which is then positioned at the type of the value. After this
+     * call, the buffer is positioned at the start of the next interval.
+     *
+     * @param buffer
+     *            The ByteBuffer from which to skip the value
+     * @throws IOException
+     *             If the type of the value is unknown
+     */
+    public static final void skipValue(ByteBuffer buffer) throws IOException {
+        byte valueType = buffer.get();
+        int valueSize;
+        switch (valueType) {
+        case TYPE_NULL:
+            valueSize = 0;
+            break;
+        case TYPE_INTEGER:
+            valueSize = Integer.BYTES;
+            break;
+        case TYPE_LONG:
+        case TYPE_DOUBLE:
+            valueSize = Long.BYTES;
+            break;
+        case TYPE_STRING:
+            /* The size of the string, then the string and the 0'ed byte */
+            valueSize = buffer.getShort() + 1;
+            break;
+        case TYPE_CUSTOM:
+            valueSize = buffer.getShort();
+            break;
+        default:
+            throw new IOException(errMsg);
+        }
+        if (valueSize < 0 || valueSize > buffer.remaining()) {
+            throw new IOException(errMsg);
+        }
+        buffer.position(buffer.position() + valueSize);
+    }
+
     /**
      * Antagonist of the previous constructor, write the Data entry
      * corresponding to this interval in a ByteBuffer (mapped to a block in the
@@ -20,14 +20,21 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils;
 import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
@@ -114,6 +121,78 @@ public abstract class HTNode {
             + 3 * Integer.BYTES
             + 2 * Integer.BYTES;
 
+    /** Approximate size of the node object, its lock and its collections */
+    private static final int NODE_OVERHEAD = 256;
+
+    /**
+     * Approximate size of an interval object and of its reference, not
+     * counting the bytes of its value
+     */
+    private static final int INTERVAL_OVERHEAD = 48;
+
+    /**
+     * Compact index of the intervals of a node read from disk. It keeps the
+     * raw block of the node along with the start, end, attribute and offset of
+     * each interval, so that only the intervals that match a query need to be
+     * decoded. For compact nodes, it also keeps the position of the strings
+     * the intervals refer to. Decoded intervals are kept in their slot, so
+     * that each one is decoded at most once while the node is in memory.
+     */
+    private static final class IntervalIndex {
+
+        private final ByteBuffer fBlock;
+        private final long[] fStarts;
+        private final long[] fEnds;
+        private final int[] fQuarks;
+        private final int[] fOffsets;
+        private final boolean fCompact;
+        private final long fNodeStart;
+        private final @Nullable HTInterval[] fDecoded;
+        private int[] fStringPositions = new int[0];
+
+        public IntervalIndex(ByteBuffer block, int count, boolean compact, long nodeStart) {
+            fBlock = block;
+            fStarts = new long[count];
+            fEnds = new long[count];
+            fQuarks = new int[count];
+            fOffsets = new int[count];
+            fCompact = compact;
+            fNodeStart = nodeStart;
+            fDecoded = new HTInterval[count];
+        }
+
+        public int size() {
+            return fStarts.length;
+        }
+
+        public HTInterval decode(int index) {
+            /*
+             * Intervals are immutable, so concurrent readers may at worst both
+             * decode the same interval and keep either one.
+             */
+            HTInterval interval = fDecoded[index];
+            if (interval != null) {
+                return interval;
+            }
+            /* Duplicate the buffer, so concurrent readers don't interfere */
+            ByteBuffer buffer = fBlock.duplicate();
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(fOffsets[index]);
+            try {
+                if (fCompact) {
+                    interval = CompactIntervalFormat.readFrom(buffer, fNodeStart, fStringPositions);
+                } else {
+                    interval = HTInterval.readFrom(buffer);
+                }
+            } catch (IOException e) {
+                /* The interval headers were validated when the node was read */
+                throw new IllegalStateException(e);
+            }
+            fDecoded[index] = interval;
+            return interval;
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -140,6 +219,19 @@ public abstract class HTNode {
     /* Vector containing all the intervals contained in this node */
     private final List<HTInterval> fIntervals;
 
+    /*
+     * Strings of the intervals in fIntervals, for nodes in the compact format,
+     * where only the first occurrence of a string is written in full.
+     */
+    private final @Nullable Set<String> fStrings;
+
+    /*
+     * Index of the intervals of a node read from disk, null if the intervals
+     * are in fIntervals. The intervals are materialized in fIntervals only if
+     * the node is modified.
+     */
+    private @Nullable IntervalIndex fIntervalIndex = null;
+
     /* Lock used to protect the accesses to intervals, nodeEnd and such */
     private final ReentrantReadWriteLock fRwl = new ReentrantReadWriteLock(false);
 
@@ -171,6 +263,7 @@ public abstract class HTNode {
         fSizeOfIntervalSection = 0;
         fIsOnDisk = false;
         fIntervals = new ArrayList<>();
+        fStrings = config.isCompactNodeFormat() ? new HashSet<>() : null;
     }
 
     /**
@@ -190,8 +283,6 @@ public abstract class HTNode {
      */
     public static final @NonNull HTNode readNode(HTConfig config, FileChannel fc, IHistoryTree.IHTNodeFactory nodeFactory)
             throws IOException {
-        HTNode newNode = null;
-
         ByteBuffer buffer = ByteBuffer.allocate(config.getBlockSize());
         buffer.order(ByteOrder.LITTLE_ENDIAN);
         buffer.clear();
@@ -199,6 +290,27 @@ public abstract class HTNode {
         assert (res == config.getBlockSize());
         buffer.flip();
 
+        return readNode(config, buffer, nodeFactory);
+    }
+
+    /**
+     * Reader factory method. Build a Node object (of the right type) from a
+     * buffer containing the whole block of the node.
+     *
+     * @param config
+     *            Configuration of the History Tree
+     * @param buffer
+     *            Little-endian buffer positioned at the start of the node
+     * @param nodeFactory
+     *            The factory to create the nodes for this tree
+     * @return The node object
+     * @throws IOException
+     *             If the node type could not be recognized
+     */
+    public static final @NonNull HTNode readNode(HTConfig config, ByteBuffer buffer, IHistoryTree.IHTNodeFactory nodeFactory)
+            throws IOException {
+        HTNode newNode = null;
+
         /* Read the common header part */
         byte typeByte = buffer.get();
         NodeType type = NodeType.fromByte(typeByte);
@@ -231,13 +343,50 @@ public abstract class HTNode {
 
         /*
          * At this point, we should be done reading the header and 'buffer'
-         * should only have the intervals left
+         * should only have the intervals left. Only index them, their values
+         * will be decoded when a query needs them.
          */
-        for (int i = 0; i < intervalCount; i++) {
-            HTInterval interval = HTInterval.readFrom(buffer);
-            newNode.fIntervals.add(interval);
-            newNode.fSizeOfIntervalSection += interval.getSizeOnDisk();
+        boolean compact = config.isCompactNodeFormat();
+        IntervalIndex index = new IntervalIndex(buffer, intervalCount, compact, start);
+        int intervalSectionStart = buffer.position();
+        if (compact) {
+            int[] stringPositions = new int[16];
+            int nbStrings = 0;
+            for (int i = 0; i < intervalCount; i++) {
+                index.fOffsets[i] = buffer.position();
+                long intervalStart = start + CompactIntervalFormat.readStartOffset(buffer);
+                long intervalEnd = intervalStart + CompactIntervalFormat.readDuration(buffer);
+                if (intervalStart > intervalEnd) {
+                    throw new IOException("Invalid interval in node " + seqNb); //$NON-NLS-1$
+                }
+                index.fStarts[i] = intervalStart;
+                index.fEnds[i] = intervalEnd;
+                index.fQuarks[i] = CompactIntervalFormat.readAttribute(buffer);
+                int stringPosition = CompactIntervalFormat.skipValue(buffer);
+                if (stringPosition >= 0) {
+                    if (nbStrings == stringPositions.length) {
+                        stringPositions = Arrays.copyOf(stringPositions, nbStrings * 2);
+                    }
+                    stringPositions[nbStrings++] = stringPosition;
+                }
+            }
+            index.fStringPositions = Arrays.copyOf(stringPositions, nbStrings);
+        } else {
+            for (int i = 0; i < intervalCount; i++) {
+                index.fOffsets[i] = buffer.position();
+                long intervalStart = buffer.getLong();
+                long intervalEnd = buffer.getLong();
+                if (intervalStart > intervalEnd) {
+                    throw new IOException("Invalid interval in node " + seqNb); //$NON-NLS-1$
+                }
+                index.fStarts[i] = intervalStart;
+                index.fEnds[i] = intervalEnd;
+                index.fQuarks[i] = buffer.getInt();
+                HTInterval.skipValue(buffer);
+            }
         }
+        newNode.fIntervalIndex = index;
+        newNode.fSizeOfIntervalSection = buffer.position() - intervalSectionStart;
 
         /* Assign the node's other information we have read previously */
         newNode.fNodeEnd = end;
@@ -278,14 +427,21 @@ public abstract class HTNode {
             buffer.putInt(fMaxQuark);
             buffer.putInt(fSequenceNumber);
             buffer.putInt(fParentSequenceNumber);
-            buffer.putInt(fIntervals.size());
+            buffer.putInt(getIntervalCount());
 
             /* Now call the inner method to write the specific header part */
             writeSpecificHeader(buffer);
 
             /* Back to us, we write the intervals */
-            for (HTInterval interval : fIntervals) {
-                interval.writeInterval(buffer);
+            if (fConfig.isCompactNodeFormat()) {
+                Map<String, Integer> strings = new HashMap<>();
+                for (int i = 0; i < getIntervalCount(); i++) {
+                    CompactIntervalFormat.write(getInterval(i), buffer, fNodeStart, strings);
+                }
+            } else {
+                for (int i = 0; i < getIntervalCount(); i++) {
+                    getInterval(i).writeInterval(buffer);
+                }
             }
             if (blockSize - buffer.position() != getNodeFreeSpace()) {
                 throw new IllegalStateException("Wrong free space: Actual: " + (blockSize - buffer.position()) + ", Expected: " + getNodeFreeSpace()); //$NON-NLS-1$ //$NON-NLS-2$
@@ -393,8 +549,23 @@ public abstract class HTNode {
     public void addInterval(HTInterval newInterval) {
         fRwl.writeLock().lock();
         try {
+            /* The node is modified, decode all its intervals */
+            Set<String> strings = fStrings;
+            IntervalIndex intervalIndex = fIntervalIndex;
+            if (intervalIndex != null) {
+                for (int i = 0; i < intervalIndex.size(); i++) {
+                    HTInterval interval = intervalIndex.decode(i);
+                    fIntervals.add(interval);
+                    if (strings != null && interval.getValue() instanceof String) {
+                        strings.add((String) interval.getValue());
+                    }
+                }
+                fIntervalIndex = null;
+            }
+
             /* Just in case, should be checked before even calling this function */
-            assert (newInterval.getSizeOnDisk() <= getNodeFreeSpace());
+            int intervalSize = getIntervalSize(newInterval);
+            assert (intervalSize <= getNodeFreeSpace());
 
             /* Find the insert position to keep the list sorted */
             int index = 0;
@@ -415,7 +586,10 @@ public abstract class HTNode {
             fNodeEnd = Long.max(fNodeEnd, newInterval.getEndTime());
             fMinQuark = Integer.min(fMinQuark, newInterval.getAttribute());
             fMaxQuark = Integer.max(fMaxQuark, newInterval.getAttribute());
-            fSizeOfIntervalSection += newInterval.getSizeOnDisk();
+            fSizeOfIntervalSection += intervalSize;
+            if (strings != null && newInterval.getValue() instanceof String) {
+                strings.add((String) newInterval.getValue());
+            }
 
         } finally {
             fRwl.writeLock().unlock();
@@ -446,6 +620,20 @@ public abstract class HTNode {
         }
     }
 
+    /**
+     * Make a node of the latest branch of a closed tree writable again, so
+     * that new intervals can be added to it when the tree is resumed. Its end
+     * time will be set again when it is closed.
+     */
+    public void reopen() {
+        fRwl.writeLock().lock();
+        try {
+            fIsOnDisk = false;
+        } finally {
+            fRwl.writeLock().unlock();
+        }
+    }
+
     /**
      * The method to fill up the stateInfo (passed on from the Current State
      * Tree when it does a query on the SHT). We'll replace the data in that
@@ -464,7 +652,7 @@ public abstract class HTNode {
         /* This is from a state system query, we are "reading" this node */
         fRwl.readLock().lock();
         try {
-            for (int i = getStartIndexFor(t); i < fIntervals.size(); i++) {
+            for (int i = getStartIndexFor(t); i < getIntervalCount(); i++) {
                 /*
                  * Now we only have to compare the Start times, since we now the
                  * End times necessarily fit.
@@ -473,10 +661,10 @@ public abstract class HTNode {
                  * been created after stateInfo was instantiated (they would be
                  * null anyway).
                  */
-                ITmfStateInterval interval = fIntervals.get(i);
-                if (t >= interval.getStartTime() &&
-                        interval.getAttribute() < stateInfo.size()) {
-                    stateInfo.set(interval.getAttribute(), interval);
+                int quark = getIntervalQuark(i);
+                if (t >= getIntervalStart(i) &&
+                        quark < stateInfo.size()) {
+                    stateInfo.set(quark, getInterval(i));
                 }
             }
         } finally {
@@ -484,6 +672,23 @@ public abstract class HTNode {
         }
     }
 
+    /**
+     * Apply an action to each interval of this node
+     *
+     * @param action
+     *            The action to apply
+     */
+    public void forEachInterval(Consumer<HTInterval> action) {
+        fRwl.readLock().lock();
+        try {
+            for (int i = 0; i < getIntervalCount(); i++) {
+                action.accept(getInterval(i));
+            }
+        } finally {
+            fRwl.readLock().unlock();
+        }
+    }
+
     /**
      * Get a single Interval from the information in this node If the
      * key/timestamp pair cannot be found, we return null.
@@ -500,11 +705,10 @@ public abstract class HTNode {
     public HTInterval getRelevantInterval(int key, long t) throws TimeRangeException {
         fRwl.readLock().lock();
         try {
-            for (int i = getStartIndexFor(t); i < fIntervals.size(); i++) {
-                HTInterval curInterval = fIntervals.get(i);
-                if (curInterval.getAttribute() == key
-                        && curInterval.getStartTime() <= t) {
-                    return curInterval;
+            for (int i = getStartIndexFor(t); i < getIntervalCount(); i++) {
+                if (getIntervalQuark(i) == key
+                        && getIntervalStart(i) <= t) {
+                    return getInterval(i);
                 }
             }
 
@@ -532,10 +736,10 @@ public abstract class HTNode {
                 "quarks", quarks, //$NON-NLS-1$
                 "times", times)) { //$NON-NLS-1$
             List<HTInterval> intervals = new ArrayList<>();
-            for (HTInterval interval : fIntervals.subList(getStartIndexFor(times.min()), fIntervals.size())) {
-                if (quarks.test(interval.getAttribute())
-                        && times.intersects(interval.getStartTime(), interval.getEndTime())) {
-                    intervals.add(interval);
+            for (int i = getStartIndexFor(times.min()); i < getIntervalCount(); i++) {
+                if (quarks.test(getIntervalQuark(i))
+                        && times.intersects(getIntervalStart(i), getIntervalEnd(i))) {
+                    intervals.add(getInterval(i));
                 }
             }
             return intervals;
@@ -547,21 +751,52 @@ public abstract class HTNode {
     private int getStartIndexFor(long t) throws TimeRangeException {
         /* Should only be called by methods with the readLock taken */
 
-        if (fIntervals.isEmpty()) {
-            return 0;
-        }
-
         /*
          * Since the intervals are sorted by end time then by start time, we can
          * skip all the ones at the beginning whose end times are smaller than
-         * 't'. We search for a dummy interval from [Long.MIN_VALUE, t], which
-         * will return the first interval that ends with a time >= t.
+         * 't'. Search for the first interval that ends with a time >= t.
          */
-        HTInterval dummy = new HTInterval(Long.MIN_VALUE, t, 0, null);
-        int index = Collections.binarySearch(fIntervals, dummy, NODE_ORDER);
+        int low = 0;
+        int high = getIntervalCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getIntervalEnd(mid) < t) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Accessors to the intervals of this node, whether they are indexed or in
+     * the list. They should only be called with the readLock taken.
+     */
+
+    private int getIntervalCount() {
+        IntervalIndex intervalIndex = fIntervalIndex;
+        return (intervalIndex != null ? intervalIndex.size() : fIntervals.size());
+    }
+
+    private long getIntervalStart(int i) {
+        IntervalIndex intervalIndex = fIntervalIndex;
+        return (intervalIndex != null ? intervalIndex.fStarts[i] : fIntervals.get(i).getStartTime());
+    }
 
-        /* Handle negative binarySearch return */
-        return (index >= 0 ? index : -index - 1);
+    private long getIntervalEnd(int i) {
+        IntervalIndex intervalIndex = fIntervalIndex;
+        return (intervalIndex != null ? intervalIndex.fEnds[i] : fIntervals.get(i).getEndTime());
+    }
+
+    private int getIntervalQuark(int i) {
+        IntervalIndex intervalIndex = fIntervalIndex;
+        return (intervalIndex != null ? intervalIndex.fQuarks[i] : fIntervals.get(i).getAttribute());
+    }
+
+    private HTInterval getInterval(int i) {
+        IntervalIndex intervalIndex = fIntervalIndex;
+        return (intervalIndex != null ? intervalIndex.decode(i) : fIntervals.get(i));
     }
 
     /**
@@ -580,6 +815,28 @@ public abstract class HTNode {
         return getTotalHeaderSize() + fSizeOfIntervalSection;
     }
 
+    /**
+     * Get the number of bytes an interval would take in this node. In the
+     * compact format, it depends on the start of the node and on the strings
+     * already in it.
+     *
+     * @param interval
+     *            The interval
+     * @return The size of the interval in this node, in bytes
+     */
+    public int getIntervalSize(HTInterval interval) {
+        Set<String> strings = fStrings;
+        if (strings == null) {
+            return interval.getSizeOnDisk();
+        }
+        fRwl.readLock().lock();
+        try {
+            return CompactIntervalFormat.getSize(interval, fNodeStart, strings);
+        } finally {
+            fRwl.readLock().unlock();
+        }
+    }
+
     /**
      * Returns the free space in the node, which is simply put, the
      * stringSectionOffset - dataSectionOffset
@@ -616,6 +873,34 @@ public abstract class HTNode {
         }
     }
 
+    /**
+     * Get an estimate of the memory used by this node, in bytes. The intervals
+     * of a node read from disk are counted as if they were all decoded, since
+     * queries may decode any of them while the node is in memory. The block of
+     * the node is only counted if it is on the heap.
+     *
+     * @return The approximate size of this node in memory
+     */
+    public int getSizeInMemory() {
+        fRwl.readLock().lock();
+        try {
+            int count = getIntervalCount();
+            long size = NODE_OVERHEAD + getSpecificHeaderSize() + fSizeOfIntervalSection
+                    + (long) count * INTERVAL_OVERHEAD;
+            IntervalIndex intervalIndex = fIntervalIndex;
+            if (intervalIndex != null) {
+                size += (long) count * (2 * Long.BYTES + 2 * Integer.BYTES)
+                        + (long) intervalIndex.fStringPositions.length * Integer.BYTES;
+                if (!intervalIndex.fBlock.isDirect()) {
+                    size += intervalIndex.fBlock.capacity();
+                }
+            }
+            return (int) Math.min(size, Integer.MAX_VALUE);
+        } finally {
+            fRwl.readLock().unlock();
+        }
+    }
+
     /**
      * Getter for the minimum quark value for this node
      *
@@ -656,7 +941,7 @@ public abstract class HTNode {
                 fSequenceNumber,
                 (fParentSequenceNumber == -1) ? "Root" : "Parent #" + fParentSequenceNumber,
                 toStringSpecific(),
-                fIntervals.size(),
+                getIntervalCount(),
                 getNodeUsagePercent(),
                 fNodeStart,
                 (fIsOnDisk || fNodeEnd != 0) ? fNodeEnd : "...");
@@ -689,8 +974,8 @@ public abstract class HTNode {
 
         /* List of intervals in the node */
         writer.println("  Intervals contained:");
-        for (int i = 0; i < fIntervals.size(); i++) {
-            writer.println(fIntervals.get(i).toString());
+        for (int i = 0; i < getIntervalCount(); i++) {
+            writer.println(getInterval(i).toString());
         }
         writer.println('\n');
     }
@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.statesystem.core.Activator;
+import org.eclipse.tracecompass.statesystem.core.interval.StateAggregate;
+
+/**
+ * Aggregates of the numeric values of the subtree of each node of a history
+ * tree, per attribute. A parent node can then aggregate the values of its
+ * children whose time range is entirely within a query range without reading
+ * them.
+ *
+ * They are saved in a file next to the history file, where the summary of a
+ * node is appended when the node is closed. The file is valid once its header
+ * is written, when the tree is closed, and matches the tree it was written
+ * with. If a node is summarized again, as when a tree is resumed, the latest
+ * summary is used.
+ */
+public final class HTSummaries {
+
+    /**
+     * System property that enables the summaries for new history files.
+     */
+    private static final String SUMMARIES_PROPERTY = "org.eclipse.tracecompass.statesystem.htSummaries"; //$NON-NLS-1$
+
+    private static final String EXTENSION = ".summaries"; //$NON-NLS-1$
+    private static final int MAGIC_NUMBER = 0x05FFA950;
+    private static final int FILE_VERSION = 2;
+
+    /**
+     * <pre>
+     *  4 - int (magic number)
+     *  4 - int (file version)
+     *  4 - int (number of nodes of the tree)
+     * 16 - 2x long (tree start and end times)
+     * </pre>
+     */
+    private static final int HEADER_SIZE = 3 * Integer.BYTES + 2 * Long.BYTES;
+
+    /** Sequence number and number of attributes of a summary */
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+    /** Count, min, max, sum, duration and weighted sum of an attribute */
+    private static final int ENTRY_SIZE = 2 * Long.BYTES + 4 * Double.BYTES;
+
+    private final File fFile;
+    private final FileChannel fChannel;
+
+    /* Position of the latest summary of each node, by sequence number */
+    private long[] fPositions;
+    private long fEnd;
+
+    /**
+     * Aggregates of the values of a node's subtree, being computed
+     */
+    private static final class Builder {
+
+        private final Map<Integer, double[]> fAggregates = new HashMap<>();
+
+        public void add(HTInterval interval) {
+            Object value = interval.getValue();
+            if (value instanceof Integer || value instanceof Long || value instanceof Double) {
+                double number = ((Number) value).doubleValue();
+                long duration = interval.getEndTime() - interval.getStartTime() + 1;
+                add(interval.getAttribute(), 1, number, number, number, duration, number * duration);
+            }
+        }
+
+        private void add(int quark, long count, double min, double max, double sum, long duration, double weightedSum) {
+            double[] aggregate = fAggregates.get(quark);
+            if (aggregate == null) {
+                fAggregates.put(quark, new double[] { count, min, max, sum, duration, weightedSum });
+            } else {
+                aggregate[0] += count;
+                aggregate[1] = Math.min(aggregate[1], min);
+                aggregate[2] = Math.max(aggregate[2], max);
+                aggregate[3] += sum;
+                aggregate[4] += duration;
+                aggregate[5] += weightedSum;
+            }
+        }
+    }
+
+    private HTSummaries(File file, FileChannel channel, long[] positions, long end) {
+        fFile = file;
+        fChannel = channel;
+        fPositions = positions;
+        fEnd = end;
+    }
+
+    /**
+     * Get whether new history files should have summaries, as set by the
+     * <code>org.eclipse.tracecompass.statesystem.htSummaries</code> property
+     *
+     * @return Whether summaries are enabled
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(SUMMARIES_PROPERTY);
+    }
+
+    /**
+     * Create the summaries of a new history file, replacing existing ones
+     *
+     * @param htFile
+     *            The history file
+     * @return The summaries
+     * @throws IOException
+     *             If the file could not be created
+     */
+    public static HTSummaries create(File htFile) throws IOException {
+        File file = getFile(htFile);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+        FileChannel channel = raf.getChannel();
+        channel.truncate(0);
+        /* The header is written when the tree is closed */
+        channel.write(ByteBuffer.allocate(HEADER_SIZE), 0);
+        return new HTSummaries(file, channel, new long[0], HEADER_SIZE);
+    }
+
+    /**
+     * Open the summaries of an existing history file
+     *
+     * @param htFile
+     *            The history file
+     * @param nodeCount
+     *            The number of nodes of the tree
+     * @param treeStart
+     *            The start time of the tree
+     * @param treeEnd
+     *            The end time of the tree
+     * @param resume
+     *            Whether summaries will be added, because the tree is resumed
+     * @return The summaries, or null if there are none or they don't match
+     *         the tree
+     */
+    public static @Nullable HTSummaries open(File htFile, int nodeCount, long treeStart, long treeEnd, boolean resume) {
+        File file = getFile(htFile);
+        if (!file.exists()) {
+            return null;
+        }
+        FileChannel channel = null;
+        try {
+            channel = new RandomAccessFile(file, resume ? "rw" : "r").getChannel(); //$NON-NLS-1$ //$NON-NLS-2$
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC_NUMBER || header.getInt() != FILE_VERSION || header.getInt() != nodeCount
+                    || header.getLong() != treeStart || header.getLong() != treeEnd) {
+                channel.close();
+                return null;
+            }
+
+            /* Index the summaries */
+            long[] positions = new long[nodeCount];
+            Arrays.fill(positions, -1);
+            long position = HEADER_SIZE;
+            long size = channel.size();
+            while (position < size) {
+                ByteBuffer recordHeader = read(channel, position, RECORD_HEADER_SIZE);
+                int seq = recordHeader.getInt();
+                int nbEntries = recordHeader.getInt();
+                if (seq < 0 || seq >= nodeCount || nbEntries < 0) {
+                    throw new IOException("Invalid summary in " + file); //$NON-NLS-1$
+                }
+                positions[seq] = position;
+                position += getRecordSize(nbEntries);
+            }
+            if (position != size) {
+                throw new IOException("Truncated summary in " + file); //$NON-NLS-1$
+            }
+
+            if (resume) {
+                /* The summaries are not valid until the tree is closed again */
+                channel.write(ByteBuffer.allocate(HEADER_SIZE), 0);
+            }
+            return new HTSummaries(file, channel, positions, size);
+        } catch (IOException e) {
+            Activator.getDefault().logError("Error reading the summaries " + file, e); //$NON-NLS-1$
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e1) {
+                    /* Ignore */
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Delete the summaries of a history file, if any
+     *
+     * @param htFile
+     *            The history file
+     */
+    public static void delete(File htFile) {
+        try {
+            Files.deleteIfExists(getFile(htFile).toPath());
+        } catch (IOException e) {
+            Activator.getDefault().logError("Error deleting the summaries of " + htFile, e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Save the summary of a closed node: the aggregates of its own intervals
+     * and of the summaries of its children.
+     *
+     * @param node
+     *            The node, which must be closed
+     * @throws IOException
+     *             If the summary could not be written
+     */
+    public synchronized void writeSummary(HTNode node) throws IOException {
+        Builder builder = new Builder();
+        node.forEachInterval(builder::add);
+        if (node instanceof ParentNode) {
+            ParentNode parent = (ParentNode) node;
+            for (int i = 0; i < parent.getNbChildren(); i++) {
+                addSummary(builder, parent.getChild(i));
+            }
+        }
+
+        int[] quarks = builder.fAggregates.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        ByteBuffer buffer = ByteBuffer.allocate(getRecordSize(quarks.length));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(node.getSequenceNumber());
+        buffer.putInt(quarks.length);
+        for (int quark : quarks) {
+            buffer.putInt(quark);
+        }
+        for (int quark : quarks) {
+            double[] aggregate = builder.fAggregates.get(quark);
+            buffer.putLong((long) aggregate[0]);
+            buffer.putDouble(aggregate[1]);
+            buffer.putDouble(aggregate[2]);
+            buffer.putDouble(aggregate[3]);
+            buffer.putLong((long) aggregate[4]);
+            buffer.putDouble(aggregate[5]);
+        }
+        buffer.flip();
+        fChannel.write(buffer, fEnd);
+
+        int seq = node.getSequenceNumber();
+        if (seq >= fPositions.length) {
+            long[] positions = Arrays.copyOf(fPositions, Math.max(seq + 1, fPositions.length * 2));
+            Arrays.fill(positions, fPositions.length, positions.length, -1);
+            fPositions = positions;
+        }
+        fPositions[seq] = fEnd;
+        fEnd += buffer.limit();
+    }
+
+    /**
+     * Forget the summary of a node that is reopened, as when a tree is
+     * resumed. It is summarized again when it is closed.
+     *
+     * @param seq
+     *            The sequence number of the node
+     */
+    public synchronized void removeSummary(int seq) {
+        if (seq < fPositions.length) {
+            fPositions[seq] = -1;
+        }
+    }
+
+    private void addSummary(Builder builder, int seq) throws IOException {
+        long position = getPosition(seq);
+        if (position < 0) {
+            throw new IOException("Missing summary of node " + seq + " in " + fFile); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        int nbEntries = read(fChannel, position + Integer.BYTES, Integer.BYTES).getInt();
+        ByteBuffer record = read(fChannel, position + RECORD_HEADER_SIZE, getRecordSize(nbEntries) - RECORD_HEADER_SIZE);
+        int[] quarks = new int[nbEntries];
+        for (int i = 0; i < nbEntries; i++) {
+            quarks[i] = record.getInt();
+        }
+        for (int i = 0; i < nbEntries; i++) {
+            builder.add(quarks[i], record.getLong(), record.getDouble(), record.getDouble(), record.getDouble(), record.getLong(), record.getDouble());
+        }
+    }
+
+    /**
+     * Get the aggregate of an attribute in the subtree of a node
+     *
+     * @param seq
+     *            The sequence number of the node
+     * @param quark
+     *            The attribute
+     * @return The aggregate, {@link StateAggregate#EMPTY} if the attribute has
+     *         no numeric value in this subtree, or null if the node has no
+     *         summary
+     * @throws IOException
+     *             If the summary could not be read
+     */
+    public synchronized @Nullable StateAggregate getAggregate(int seq, int quark) throws IOException {
+        long position = getPosition(seq);
+        if (position < 0) {
+            return null;
+        }
+        int nbEntries = read(fChannel, position + Integer.BYTES, Integer.BYTES).getInt();
+        ByteBuffer quarks = read(fChannel, position + RECORD_HEADER_SIZE, nbEntries * Integer.BYTES);
+        int low = 0;
+        int high = nbEntries - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midQuark = quarks.getInt(mid * Integer.BYTES);
+            if (midQuark < quark) {
+                low = mid + 1;
+            } else if (midQuark > quark) {
+                high = mid - 1;
+            } else {
+                long entryPosition = position + RECORD_HEADER_SIZE + (long) nbEntries * Integer.BYTES + (long) mid * ENTRY_SIZE;
+                ByteBuffer entry = read(fChannel, entryPosition, ENTRY_SIZE);
+                return new StateAggregate(entry.getLong(), entry.getDouble(), entry.getDouble(), entry.getDouble(), entry.getLong(), entry.getDouble());
+            }
+        }
+        return StateAggregate.EMPTY;
+    }
+
+    /**
+     * Write the header of the summaries when the tree is closed, which makes
+     * them valid for this tree
+     *
+     * @param nodeCount
+     *            The number of nodes of the tree
+     * @param treeStart
+     *            The start time of the tree
+     * @param treeEnd
+     *            The end time of the tree
+     * @throws IOException
+     *             If the header could not be written
+     */
+    public synchronized void finish(int nodeCount, long treeStart, long treeEnd) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC_NUMBER);
+        header.putInt(FILE_VERSION);
+        header.putInt(nodeCount);
+        header.putLong(treeStart);
+        header.putLong(treeEnd);
+        header.flip();
+        fChannel.write(header, 0);
+        fChannel.force(false);
+    }
+
+    /**
+     * Close the summaries file
+     */
+    public synchronized void close() {
+        try {
+            fChannel.close();
+        } catch (IOException e) {
+            Activator.getDefault().logError("Error closing the summaries " + fFile, e); //$NON-NLS-1$
+        }
+    }
+
+    private long getPosition(int seq) {
+        return (seq < fPositions.length ? fPositions[seq] : -1);
+    }
+
+    private static int getRecordSize(int nbEntries) {
+        return RECORD_HEADER_SIZE + nbEntries * (Integer.BYTES + ENTRY_SIZE);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the summaries"); //$NON-NLS-1$
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static File getFile(File htFile) {
+        return new File(htFile.getPath() + EXTENSION);
+    }
+}
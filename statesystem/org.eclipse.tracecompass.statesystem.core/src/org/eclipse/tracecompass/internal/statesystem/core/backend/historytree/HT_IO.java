@@ -14,14 +14,19 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,7 +39,9 @@ import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.IH
 
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalNotification;
 
 /**
  * This class abstracts inputs/outputs of the HistoryTree nodes.
@@ -60,7 +67,7 @@ public class HT_IO {
         public final HT_IO fStateHistory;
         public final int fSeqNumber;
 
-        public CacheKey(HT_IO stateHistory,  int seqNumber) {
+        public CacheKey(HT_IO stateHistory, int seqNumber) {
             fStateHistory = stateHistory;
             fSeqNumber = seqNumber;
         }
@@ -87,7 +94,26 @@ public class HT_IO {
         }
     }
 
-    private static final int CACHE_SIZE = 256;
+    /**
+     * System property that can be used to override the size, in bytes, of the
+     * node cache shared by all the history trees.
+     */
+    private static final String CACHE_SIZE_PROPERTY = "org.eclipse.tracecompass.statesystem.htCacheSize"; //$NON-NLS-1$
+
+    /** Default size of the node cache, in bytes */
+    private static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Get the maximum amount of bytes the nodes of all the trees may occupy in
+     * the cache.
+     */
+    private static long getCacheSizeInBytes() {
+        Long size = Long.getLong(CACHE_SIZE_PROPERTY);
+        if (size != null && size > 0) {
+            return size;
+        }
+        return DEFAULT_CACHE_SIZE;
+    }
 
     private static final CacheLoader<CacheKey, HTNode> NODE_LOADER = new CacheLoader<CacheKey, HTNode>() {
         @Override
@@ -96,17 +122,81 @@ public class HT_IO {
             int seqNb = key.fSeqNumber;
 
             TraceCompassLogUtils.traceInstant(LOGGER, Level.FINEST, "Ht_Io:CacheMiss", "seqNum", seqNb); //$NON-NLS-1$ //$NON-NLS-2$
-
-            synchronized (io) {
-                io.seekFCToNodePos(io.fFileChannelIn, seqNb);
-                return HTNode.readNode(io.fConfig, io.fFileChannelIn, key.fStateHistory.fNodeFactory);
-            }
+            io.fMissCount.increment();
+            return io.loadNode(seqNb);
         }
     };
 
+    /*
+     * Cache of the nodes of all the trees. It has one budget in bytes for all
+     * of them, and nodes are weighed by the memory they use, so a tree with
+     * small nodes does not count as much as one with big nodes.
+     */
     private static final LoadingCache<CacheKey, HTNode> NODE_CACHE = CacheBuilder.newBuilder()
-            .maximumSize(CACHE_SIZE).build(NODE_LOADER);
+            .maximumWeight(getCacheSizeInBytes())
+            .weigher((CacheKey key, HTNode node) -> node.getSizeInMemory())
+            .removalListener((RemovalNotification<CacheKey, HTNode> notification) -> {
+                CacheKey key = notification.getKey();
+                if (key != null && notification.wasEvicted()) {
+                    key.fStateHistory.fEvictionCount.increment();
+                }
+            })
+            .build(NODE_LOADER);
 
+    /**
+     * System property that enables reading the nodes of finished history files
+     * through a read-only memory mapping instead of file channel reads.
+     */
+    private static final String MAPPED_READS_PROPERTY = "org.eclipse.tracecompass.statesystem.htMappedReads"; //$NON-NLS-1$
+
+    /**
+     * Maximum size of one mapped region. A mapped buffer is indexed by an int,
+     * so bigger files are mapped in multiple chunks of whole nodes.
+     */
+    private static final int MAX_CHUNK_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * Get whether finished history files should be read through a memory
+     * mapping.
+     *
+     * @return <code>true</code> if the nodes of finished files should be
+     *         mapped in memory
+     */
+    public static boolean isMappedReadEnabled() {
+        return Boolean.getBoolean(MAPPED_READS_PROPERTY);
+    }
+
+    /**
+     * Read-only mapping of the node section of a finished history file
+     */
+    private static final class MappedNodes {
+
+        private final MappedByteBuffer[] fChunks;
+        private final int fNodesPerChunk;
+        private final int fNodeCount;
+
+        public MappedNodes(MappedByteBuffer[] chunks, int nodesPerChunk, int nodeCount) {
+            fChunks = chunks;
+            fNodesPerChunk = nodesPerChunk;
+            fNodeCount = nodeCount;
+        }
+
+        /**
+         * Get a little-endian view of the block of the given node, or null if
+         * that node is not covered by the mapping.
+         */
+        public @Nullable ByteBuffer getNodeBuffer(int seqNumber, int blockSize) {
+            if (seqNumber < 0 || seqNumber >= fNodeCount) {
+                return null;
+            }
+            int offset = (seqNumber % fNodesPerChunk) * blockSize;
+            ByteBuffer buffer = fChunks[seqNumber / fNodesPerChunk].duplicate();
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.limit(offset + blockSize);
+            buffer.position(offset);
+            return buffer;
+        }
+    }
 
     // ------------------------------------------------------------------------
     // Instance fields
@@ -117,12 +207,20 @@ public class HT_IO {
 
     /* Fields related to the file I/O */
     private final FileInputStream fFileInputStream;
-    private final FileOutputStream fFileOutputStream;
+    private final RandomAccessFile fFileOutput;
     private final FileChannel fFileChannelIn;
     private final FileChannel fFileChannelOut;
 
     private final IHTNodeFactory fNodeFactory;
 
+    /* Statistics of this tree's lookups in the node cache */
+    private final LongAdder fHitCount = new LongAdder();
+    private final LongAdder fMissCount = new LongAdder();
+    private final LongAdder fEvictionCount = new LongAdder();
+
+    /* Mapping of the nodes once the file is finished, null if not mapped */
+    private volatile @Nullable MappedNodes fMappedNodes = null;
+
     // ------------------------------------------------------------------------
     // Methods
     // ------------------------------------------------------------------------
@@ -159,20 +257,53 @@ public class HT_IO {
                         historyTreeFile.getName());
             }
             fFileInputStream = new FileInputStream(historyTreeFile);
-            fFileOutputStream = new FileOutputStream(historyTreeFile, false);
+            fFileOutput = new RandomAccessFile(historyTreeFile, "rw"); //$NON-NLS-1$
         } else {
             /*
              * We want to open an existing file, make sure we don't squash the
-             * existing content when opening the fos!
+             * existing content. The file is not opened in append mode, so that
+             * the nodes of a resumed tree can be written back at their
+             * position.
              */
             fFileInputStream = new FileInputStream(historyTreeFile);
-            fFileOutputStream = new FileOutputStream(historyTreeFile, true);
+            fFileOutput = new RandomAccessFile(historyTreeFile, "rw"); //$NON-NLS-1$
         }
         fFileChannelIn = fFileInputStream.getChannel();
-        fFileChannelOut = fFileOutputStream.getChannel();
+        fFileChannelOut = fFileOutput.getChannel();
         fNodeFactory = nodeFactory;
     }
 
+    /**
+     * Read a node from disk, bypassing the cache. This uses positional reads
+     * on the input channel, so different nodes of the same file can be loaded
+     * concurrently without locking.
+     */
+    private HTNode loadNode(int seqNumber) throws IOException {
+        MappedNodes mappedNodes = fMappedNodes;
+        if (mappedNodes != null) {
+            if (!fFileChannelIn.isOpen()) {
+                throw new ClosedChannelException();
+            }
+            /* Decode the node directly from the mapped file */
+            ByteBuffer mapped = mappedNodes.getNodeBuffer(seqNumber, fConfig.getBlockSize());
+            if (mapped != null) {
+                return HTNode.readNode(fConfig, mapped, fNodeFactory);
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(fConfig.getBlockSize());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        long position = getNodePosition(seqNumber);
+        while (buffer.hasRemaining()) {
+            int res = fFileChannelIn.read(buffer, position + buffer.position());
+            if (res < 0) {
+                throw new IOException("Unexpected end of file while reading node " + seqNumber); //$NON-NLS-1$
+            }
+        }
+        buffer.flip();
+        return HTNode.readNode(fConfig, buffer, fNodeFactory);
+    }
+
     /**
      * Read a node from the file on disk.
      *
@@ -188,6 +319,11 @@ public class HT_IO {
         /* Do a cache lookup. If it's not present it will be loaded from disk */
         TraceCompassLogUtils.traceInstant(LOGGER, Level.FINEST, "Ht_Io:CacheLookup", "seqNum", seqNumber); //$NON-NLS-1$ //$NON-NLS-2$
         CacheKey key = new CacheKey(this, seqNumber);
+        HTNode node = NODE_CACHE.getIfPresent(key);
+        if (node != null) {
+            fHitCount.increment();
+            return node;
+        }
         try {
             return Objects.requireNonNull(NODE_CACHE.get(key));
 
@@ -224,9 +360,9 @@ public class HT_IO {
         Iterator<Integer> iterator = queue.iterator();
         while (iterator.hasNext()) {
             Integer seqNumber = iterator.next();
-            CacheKey key = new CacheKey(this, seqNumber);
-            HTNode node = NODE_CACHE.getIfPresent(key);
+            HTNode node = NODE_CACHE.getIfPresent(new CacheKey(this, seqNumber));
             if (node != null) {
+                fHitCount.increment();
                 iterator.remove();
                 return node;
             }
@@ -246,8 +382,7 @@ public class HT_IO {
             int seqNumber = node.getSequenceNumber();
 
             /* "Write-back" the node into the cache */
-            CacheKey key = new CacheKey(this, seqNumber);
-            NODE_CACHE.put(key, node);
+            NODE_CACHE.put(new CacheKey(this, seqNumber), node);
 
             /* Position ourselves at the start of the node and write it */
             synchronized (this) {
@@ -260,6 +395,58 @@ public class HT_IO {
         }
     }
 
+    /**
+     * Map the node section of the history file in memory, so that subsequent
+     * node reads are decoded directly from the mapping instead of going
+     * through the file channel. This must only be called once the nodes of the
+     * file are final, ie the tree is closed or was opened from an existing
+     * file.
+     *
+     * @param nodeCount
+     *            The number of nodes in the file
+     * @return <code>true</code> if the file is mapped, <code>false</code> if
+     *         the mapping failed and reads will use the file channel
+     */
+    public synchronized boolean mapNodes(int nodeCount) {
+        if (fMappedNodes != null) {
+            return true;
+        }
+        if (nodeCount <= 0) {
+            return false;
+        }
+        final int blockSize = fConfig.getBlockSize();
+        int nodesPerChunk = Math.max(1, MAX_CHUNK_SIZE / blockSize);
+        int nbChunks = (nodeCount + nodesPerChunk - 1) / nodesPerChunk;
+        MappedByteBuffer[] chunks = new MappedByteBuffer[nbChunks];
+        try {
+            for (int i = 0; i < nbChunks; i++) {
+                long firstNode = (long) i * nodesPerChunk;
+                long nbNodes = Math.min(nodesPerChunk, nodeCount - firstNode);
+                chunks[i] = fFileChannelIn.map(MapMode.READ_ONLY, getNodePosition(firstNode), nbNodes * blockSize);
+            }
+        } catch (IOException e) {
+            Activator.getDefault().logError(e.getMessage(), e);
+            return false;
+        }
+        TraceCompassLogUtils.traceInstant(LOGGER, Level.FINE, "Ht_Io:MappedNodes", "nodeCount", nodeCount, "chunks", nbChunks); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        fMappedNodes = new MappedNodes(chunks, nodesPerChunk, nodeCount);
+        return true;
+    }
+
+    /**
+     * Cut the file right after its node section, to remove the attribute tree
+     * that was saved after the nodes when a resumed tree was previously
+     * closed. The attribute tree is written again after the nodes.
+     *
+     * @param nodeCount
+     *            The number of nodes in the file
+     * @throws IOException
+     *             If the file could not be truncated
+     */
+    public synchronized void truncateNodes(int nodeCount) throws IOException {
+        fFileChannelOut.truncate(getNodePosition(nodeCount));
+    }
+
     /**
      * Get the output file channel, used for writing.
      *
@@ -290,13 +477,31 @@ public class HT_IO {
         return fFileInputStream;
     }
 
+    /**
+     * Get the statistics (hits, misses and evictions) of the lookups of this
+     * tree in the node cache.
+     *
+     * @return The node cache statistics
+     */
+    public CacheStats getCacheStats() {
+        long misses = fMissCount.sum();
+        return new CacheStats(fHitCount.sum(), misses, misses, 0, 0, fEvictionCount.sum());
+    }
+
     /**
      * Close all file channels and streams.
      */
     public synchronized void closeFile() {
+        TraceCompassLogUtils.traceCounter(LOGGER, Level.FINE, "Ht_Io:NodeCache", //$NON-NLS-1$
+                "hits", fHitCount.sum(), //$NON-NLS-1$
+                "misses", fMissCount.sum(), //$NON-NLS-1$
+                "evictions", fEvictionCount.sum()); //$NON-NLS-1$
+        /* Release the budget used by the nodes of this tree */
+        NODE_CACHE.asMap().keySet().removeIf(key -> key.fStateHistory == this);
+        fMappedNodes = null;
         try {
             fFileInputStream.close();
-            fFileOutputStream.close();
+            fFileOutput.close();
         } catch (IOException e) {
             Activator.getDefault().logError(e.getMessage(), e);
         }
@@ -328,8 +533,19 @@ public class HT_IO {
      */
     private void seekFCToNodePos(FileChannel fc, long seqNumber)
             throws IOException {
-        fc.position(IHistoryTree.TREE_HEADER_SIZE
-                + seqNumber * fConfig.getBlockSize());
+        fc.position(getNodePosition(seqNumber));
+    }
+
+    /**
+     * Get the position in the file of the node that has seqNumber
+     *
+     * @param seqNumber
+     *            the node sequence number
+     * @return the offset of the start of the node in the file
+     */
+    private long getNodePosition(long seqNumber) {
+        return IHistoryTree.TREE_HEADER_SIZE
+                + seqNumber * fConfig.getBlockSize();
     }
 
 }
@@ -18,16 +18,25 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils;
 import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
@@ -37,6 +46,8 @@ import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.StateAggregate;
+
 import com.google.common.annotations.VisibleForTesting;
 
 /**
@@ -49,6 +60,9 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
 
     private static final @NonNull Logger LOGGER = TraceCompassLog.getLogger(HistoryTreeBackend.class);
 
+    /** Maximum number of threads reading the nodes of a parallel query */
+    private static final int MAX_QUERY_THREADS = 4;
+
     private final @NonNull String fSsid;
 
     /**
@@ -59,6 +73,14 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
     /** Indicates if the history tree construction is done */
     private volatile boolean fFinishedBuilding = false;
 
+    /**
+     * Pool of the parallel queries, created on the first one. The tasks block
+     * on the reads of the nodes, so they do not use the common pool. Both
+     * fields are guarded by this backend's lock.
+     */
+    private @Nullable ForkJoinPool fQueryPool = null;
+    private boolean fQueryPoolShutdown = false;
+
     /**
      * Indicates if the history tree construction is done
      *
@@ -154,9 +176,36 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
      */
     public HistoryTreeBackend(@NonNull String ssid, @NonNull File existingStateFile, int providerVersion)
             throws IOException {
+        this(ssid, existingStateFile, providerVersion, false);
+    }
+
+    /**
+     * Existing history constructor, that can also resume the history. A
+     * resumed history is not finished building: intervals ending after its
+     * current end time can be inserted, until it is closed again.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param existingStateFile
+     *            Filename/location of the history we want to load
+     * @param providerVersion
+     *            Expected version of of the state provider plugin.
+     * @param resume
+     *            Whether the history should be re-opened for writing
+     * @throws IOException
+     *             If we can't read the file, if it doesn't exist, is not
+     *             recognized, or if the version of the file does not match the
+     *             expected providerVersion.
+     */
+    public HistoryTreeBackend(@NonNull String ssid, @NonNull File existingStateFile, int providerVersion, boolean resume)
+            throws IOException {
         fSsid = ssid;
-        fSht = initializeSHT(existingStateFile, providerVersion);
-        fFinishedBuilding = true;
+        if (resume) {
+            fSht = HistoryTreeFactory.resumeFromFile(existingStateFile.toPath(), providerVersion);
+        } else {
+            fSht = initializeSHT(existingStateFile, providerVersion);
+        }
+        fFinishedBuilding = !resume;
     }
 
     /**
@@ -258,6 +307,7 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
 
     @Override
     public void dispose() {
+        shutdownQueryPool();
         if (fFinishedBuilding) {
             TraceCompassLogUtils.traceInstant(LOGGER, Level.FINE, "HistoryTreeBackend:ClosingFile", "size", getSHT().getFileSize()); //$NON-NLS-1$ //$NON-NLS-2$
             TraceCompassLogUtils.traceObjectDestruction(LOGGER, Level.FINER, this);
@@ -401,6 +451,125 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         }
     }
 
+    @Override
+    public void parallelQuery2D(IntegerRangeCondition quarks, TimeRangeCondition times,
+            Consumer<ITmfStateInterval> consumer, @Nullable IProgressMonitor monitor)
+            throws TimeRangeException, StateSystemDisposedException {
+        try (TraceCompassLogUtils.ScopeLog log = new TraceCompassLogUtils.ScopeLog(LOGGER, Level.FINER, "HistoryTreeBackend:parallelQuery2D", //$NON-NLS-1$
+                "ssid", getSSID(), //$NON-NLS-1$
+                "quarks", quarks, //$NON-NLS-1$
+                "timeCondition", times)) { //$NON-NLS-1$
+            int rootSeqNumber = getSHT().getRootNode().getSequenceNumber();
+            getQueryPool().invoke(new Query2DTask(rootSeqNumber, quarks, times, consumer, monitor));
+        } catch (UncheckedIOException e) {
+            throw new StateSystemDisposedException(e.getCause());
+        } catch (RejectedExecutionException e) {
+            throw new StateSystemDisposedException(e);
+        }
+    }
+
+    private synchronized ForkJoinPool getQueryPool() throws StateSystemDisposedException {
+        if (fQueryPoolShutdown) {
+            /* Do not create a pool that would never be shut down */
+            throw new StateSystemDisposedException();
+        }
+        ForkJoinPool pool = fQueryPool;
+        if (pool == null) {
+            int parallelism = Math.min(MAX_QUERY_THREADS, Runtime.getRuntime().availableProcessors());
+            pool = new ForkJoinPool(parallelism, p -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("HistoryTreeBackend query: " + getSSID()); //$NON-NLS-1$
+                return thread;
+            }, null, false);
+            fQueryPool = pool;
+        }
+        return pool;
+    }
+
+    private synchronized void shutdownQueryPool() {
+        fQueryPoolShutdown = true;
+        ForkJoinPool pool = fQueryPool;
+        fQueryPool = null;
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Task of a parallel 2D query, which sends the intervals of a node and
+     * forks a task for each of its children that may contain intervals for the
+     * query.
+     */
+    private final class Query2DTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -2245470370391406497L;
+
+        private final int fSeqNumber;
+        private final transient IntegerRangeCondition fQuarks;
+        private final transient TimeRangeCondition fTimes;
+        private final transient Consumer<ITmfStateInterval> fConsumer;
+        private final transient @Nullable IProgressMonitor fMonitor;
+
+        public Query2DTask(int seqNumber, IntegerRangeCondition quarks, TimeRangeCondition times,
+                Consumer<ITmfStateInterval> consumer, @Nullable IProgressMonitor monitor) {
+            fSeqNumber = seqNumber;
+            fQuarks = quarks;
+            fTimes = times;
+            fConsumer = consumer;
+            fMonitor = monitor;
+        }
+
+        @Override
+        protected void compute() {
+            IProgressMonitor monitor = fMonitor;
+            if (monitor != null && monitor.isCanceled()) {
+                return;
+            }
+            HTNode node;
+            try {
+                node = getSHT().readNode(fSeqNumber);
+            } catch (ClosedChannelException e) {
+                throw new UncheckedIOException(e);
+            }
+            /*
+             * During the SHT construction, the bounds of the children are not
+             * final, so the node may not overlap the query.
+             */
+            TimeRangeCondition subTimes = fTimes.subCondition(node.getNodeStart(), node.getNodeEnd());
+            if (subTimes == null || !fQuarks.intersects(node.getMinQuark(), node.getMaxQuark())) {
+                return;
+            }
+
+            List<Query2DTask> subTasks = new ArrayList<>();
+            if (node.getNodeType() == HTNode.NodeType.CORE) {
+                List<Integer> children = new ArrayList<>();
+                ((ParentNode) node).queueNextChildren2D(fQuarks, subTimes, children);
+                for (int child : children) {
+                    Query2DTask subTask = new Query2DTask(child, fQuarks, subTimes, fConsumer, monitor);
+                    subTask.fork();
+                    subTasks.add(subTask);
+                }
+            }
+            for (HTInterval interval : node.iterable2D(fQuarks, subTimes)) {
+                fConsumer.accept(interval);
+            }
+            /* Join the tasks in the reverse order they were forked */
+            for (int i = subTasks.size() - 1; i >= 0; i--) {
+                subTasks.get(i).join();
+            }
+        }
+    }
+
+    @Override
+    public StateAggregate queryAggregate(int quark, long start, long end)
+            throws TimeRangeException, StateSystemDisposedException {
+        try {
+            return getSHT().queryAggregate(quark, start, end);
+        } catch (ClosedChannelException e) {
+            throw new StateSystemDisposedException(e);
+        }
+    }
+
     /**
      * Return the size of the tree history file
      *
@@ -59,6 +59,28 @@ public final class HistoryTreeFactory {
      *             If an error happens reading the file
      */
     public static IHistoryTree createFromFile(Path existingStateFile, int expectedProviderVersion) throws IOException {
+        return openFile(existingStateFile, expectedProviderVersion, false);
+    }
+
+    /**
+     * "Resume" factory : re-open a closed SHTree from an existing tree file on
+     * disk, so that intervals ending after its current end time can be added
+     * to it. The attribute tree at the end of the file is replaced by the one
+     * written when the tree is closed again.
+     *
+     * @param existingStateFile
+     *            Path/filename of the history-file we are to resume
+     * @param expectedProviderVersion
+     *            The expected version of the state provider
+     * @return The history tree
+     * @throws IOException
+     *             If an error happens reading the file
+     */
+    public static IHistoryTree resumeFromFile(Path existingStateFile, int expectedProviderVersion) throws IOException {
+        return openFile(existingStateFile, expectedProviderVersion, true);
+    }
+
+    private static IHistoryTree openFile(Path existingStateFile, int expectedProviderVersion, boolean resume) throws IOException {
         /*
          * Check the file exists and has a positive length. These verifications
          * will also be done in the HT's constructor.
@@ -85,7 +107,7 @@ public final class HistoryTreeFactory {
         int magicNumber = buffer.getInt();
         switch (magicNumber) {
         case HistoryTreeClassic.HISTORY_FILE_MAGIC_NUMBER:
-            return new HistoryTreeClassic(existingStateFile.toFile(), expectedProviderVersion);
+            return new HistoryTreeClassic(existingStateFile.toFile(), expectedProviderVersion, resume);
         default:
             throw new IOException("Not a known history tree file"); //$NON-NLS-1$
         }
@@ -16,6 +16,7 @@ import java.nio.channels.ClosedChannelException;
 import java.util.Deque;
 
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.StateAggregate;
 
 /**
  * Meta-container for the History Tree. This structure contains all the
@@ -202,6 +203,23 @@ public interface IHistoryTree {
      */
     void insertInterval(HTInterval interval) throws TimeRangeException;
 
+    /**
+     * Aggregate the numeric values of the intervals of an attribute that
+     * intersect a time range. The subtrees entirely within the range are
+     * aggregated from their summary, if the tree has summaries.
+     *
+     * @param quark
+     *            The attribute
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @return The aggregate of the values
+     * @throws ClosedChannelException
+     *             If the tree IO is unavailable
+     */
+    StateAggregate queryAggregate(int quark, long start, long end) throws ClosedChannelException;
+
     /**
      * Get the current size of the history file.
      *
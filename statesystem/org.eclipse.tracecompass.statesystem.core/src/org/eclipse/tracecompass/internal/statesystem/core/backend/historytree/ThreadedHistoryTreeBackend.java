@@ -16,11 +16,15 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.collect.BufferedBlockingQueue;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils;
@@ -30,6 +34,7 @@ import org.eclipse.tracecompass.internal.statesystem.core.Activator;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.StateAggregate;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 
 import com.google.common.collect.Iterables;
@@ -48,6 +53,8 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
     private static final int CHUNK_SIZE = 127;
     private final @NonNull BufferedBlockingQueue<HTInterval> intervalQueue;
     private final @NonNull Thread shtThread;
+    /* Reused to queue the batches of intervals */
+    private final List<HTInterval> fBatch = new ArrayList<>();
     /**
      * The backend tracks its end time separately from the tree, to take into
      * consideration intervals in the queue.
@@ -132,13 +139,38 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         shtThread.start();
     }
 
-    /*
-     * The Threaded version does not specify an "existing file" constructor,
-     * since the history is already built (and we only use the other thread
-     * during building). Just use a plain HistoryTreeProvider in this case.
+    /**
+     * Resumed state history constructor. The history in the existing file is
+     * re-opened, and the intervals inserted after its end time are appended
+     * to it. To only read an existing history, use a plain
+     * {@link HistoryTreeBackend} instead.
      *
-     * TODO but what about streaming??
+     * @param ssid
+     *            The state system's id
+     * @param existingStateFile
+     *            The history file to resume
+     * @param providerVersion
+     *            Expected version of of the state provider plugin.
+     * @param queueSize
+     *            The size of the interval insertion queue. 2000 - 10000 usually
+     *            works well
+     * @throws IOException
+     *             If the file could not be opened for writing, or if the
+     *             version of the file does not match the expected
+     *             providerVersion.
      */
+    public ThreadedHistoryTreeBackend(@NonNull String ssid,
+            @NonNull File existingStateFile,
+            int providerVersion,
+            int queueSize)
+                    throws IOException {
+        super(ssid, existingStateFile, providerVersion, true);
+        fEndTime = getSHT().getTreeEnd();
+
+        intervalQueue = new BufferedBlockingQueue<>(queueSize / CHUNK_SIZE, CHUNK_SIZE);
+        shtThread = new Thread(this, "History Tree Thread"); //$NON-NLS-1$
+        shtThread.start();
+    }
 
     @Override
     public void insertPastState(long stateStartTime, long stateEndTime,
@@ -154,6 +186,28 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         fEndTime = Math.max(fEndTime, stateEndTime);
     }
 
+    @Override
+    public void insertPastStates(long[] startTimes, long[] endTimes, int[] quarks,
+            @Nullable Object[] values, int count) throws TimeRangeException {
+        /*
+         * Queue the whole batch with a single lock on the queue. Batches are
+         * only sent by the thread inserting the state changes, so the list can
+         * be reused.
+         */
+        List<HTInterval> intervals = fBatch;
+        try {
+            long endTime = fEndTime;
+            for (int i = 0; i < count; i++) {
+                intervals.add(new HTInterval(startTimes[i], endTimes[i], quarks[i], values[i]));
+                endTime = Math.max(endTime, endTimes[i]);
+            }
+            intervalQueue.putAll(intervals);
+            fEndTime = endTime;
+        } finally {
+            intervals.clear();
+        }
+    }
+
     @Override
     public long getEndTime() {
         return fEndTime;
@@ -316,4 +370,34 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
             return Iterables.concat(super.query2D(quarks, times), queuedIntervals);
         }
     }
+
+    @Override
+    public void parallelQuery2D(IntegerRangeCondition quarks, TimeRangeCondition times,
+            Consumer<ITmfStateInterval> consumer, @Nullable IProgressMonitor monitor)
+            throws TimeRangeException, StateSystemDisposedException {
+        super.parallelQuery2D(quarks, times, consumer, monitor);
+        /* Send the intervals that are still in the queue */
+        for (HTInterval interval : intervalQueue) {
+            if ((monitor != null && monitor.isCanceled()) || isFinishedBuilding()) {
+                return;
+            }
+            if (quarks.test(interval.getAttribute()) && times.intersects(interval.getStartTime(), interval.getEndTime())) {
+                consumer.accept(interval);
+            }
+        }
+    }
+
+    @Override
+    public StateAggregate queryAggregate(int quark, long start, long end)
+            throws TimeRangeException, StateSystemDisposedException {
+        StateAggregate aggregate = super.queryAggregate(quark, start, end);
+        /* Add the intervals that are still in the queue */
+        for (HTInterval interval : intervalQueue) {
+            if (!isFinishedBuilding() && interval.getAttribute() == quark
+                    && interval.getStartTime() <= end && interval.getEndTime() >= start) {
+                aggregate = aggregate.add(StateAggregate.of(interval, start, end));
+            }
+        }
+        return aggregate;
+    }
 }
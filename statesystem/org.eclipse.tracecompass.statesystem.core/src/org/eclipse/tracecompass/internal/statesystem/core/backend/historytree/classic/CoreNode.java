@@ -200,6 +200,25 @@ public final class CoreNode extends ParentNode {
         }
     }
 
+    /**
+     * Get whether the subtree of a child may contain intervals of an
+     * attribute, according to its range of attributes
+     *
+     * @param index
+     *            The index of the child
+     * @param quark
+     *            The attribute
+     * @return False if the subtree has no interval of this attribute
+     */
+    public boolean childMayContain(int index, int quark) {
+        rwl.readLock().lock();
+        try {
+            return (quark >= fChildMin[index] && quark <= fChildMax[index]);
+        } finally {
+            rwl.readLock().unlock();
+        }
+    }
+
     /**
      * Updates the end time for child node in header when closing branch
      *
@@ -221,6 +240,22 @@ public final class CoreNode extends ParentNode {
         return -1;
     }
 
+    /**
+     * Reset the bounds of the latest child, which is reopened when a closed
+     * tree is resumed. They will be set again when the child is closed.
+     */
+    public void reopenLatestChild() {
+        rwl.writeLock().lock();
+        try {
+            int i = fNbChildren - 1;
+            fChildEnd[i] = Long.MAX_VALUE;
+            fChildMin[i] = 0;
+            fChildMax[i] = Integer.MAX_VALUE;
+        } finally {
+            rwl.writeLock().unlock();
+        }
+    }
+
     @Override
     public void linkNewChild(HTNode childNode) {
         rwl.writeLock().lock();
@@ -21,21 +21,28 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.TimeRangeCondition;
+import org.eclipse.tracecompass.internal.statesystem.core.Activator;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTInterval;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTSummaries;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HT_IO;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.IHistoryTree;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.LeafNode;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.ParentNode;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.StateAggregate;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
@@ -56,6 +63,9 @@ public class HistoryTreeClassic implements IHistoryTree {
     /** File format version. Increment when breaking compatibility. */
     private static final int FILE_VERSION = 10;
 
+    /** File format version of the trees whose nodes use the compact format */
+    private static final int COMPACT_FILE_VERSION = 11;
+
     private static final IHTNodeFactory CLASSIC_NODE_FACTORY = new IHTNodeFactory() {
 
         @Override
@@ -93,6 +103,9 @@ public class HistoryTreeClassic implements IHistoryTree {
     /** "Cache" to keep the active nodes in memory */
     private final @NonNull List<@NonNull HTNode> fLatestBranch;
 
+    /** Aggregates of the subtree of each node, null if there are none */
+    private volatile @Nullable HTSummaries fSummaries;
+
     // ------------------------------------------------------------------------
     // Constructors/"Destructors"
     // ------------------------------------------------------------------------
@@ -124,6 +137,12 @@ public class HistoryTreeClassic implements IHistoryTree {
         /* Prepare the IO object */
         fTreeIO = new HT_IO(fConfig, true, CLASSIC_NODE_FACTORY);
 
+        if (HTSummaries.isEnabled()) {
+            fSummaries = HTSummaries.create(conf.getStateFile());
+        } else {
+            HTSummaries.delete(conf.getStateFile());
+        }
+
         /* Add the first node to the tree */
         LeafNode firstNode = initNewLeafNode(-1, conf.getTreeStart());
         fLatestBranch.add(firstNode);
@@ -141,6 +160,24 @@ public class HistoryTreeClassic implements IHistoryTree {
      *             If an error happens reading the file
      */
     public HistoryTreeClassic(File existingStateFile, int expProviderVersion) throws IOException {
+        this(existingStateFile, expProviderVersion, false);
+    }
+
+    /**
+     * Instantiate a SHTree from an existing tree file on disk, optionally
+     * resuming it. A resumed tree has its latest branch re-opened, so that
+     * intervals can be appended to it until it is closed again.
+     *
+     * @param existingStateFile
+     *            Path/filename of the history-file we are to open
+     * @param expProviderVersion
+     *            The expected version of the state provider
+     * @param resume
+     *            Whether the tree should be re-opened for writing
+     * @throws IOException
+     *             If an error happens reading the file
+     */
+    public HistoryTreeClassic(File existingStateFile, int expProviderVersion, boolean resume) throws IOException {
         /*
          * Open the file ourselves, get the tree header information we need,
          * then pass on the descriptor to the TreeIO object.
@@ -181,7 +218,8 @@ public class HistoryTreeClassic implements IHistoryTree {
             }
 
             res = buffer.getInt(); /* File format version number */
-            if (res != FILE_VERSION) {
+            boolean compactNodes = (res == COMPACT_FILE_VERSION);
+            if (res != FILE_VERSION && !compactNodes) {
                 throw new IOException("Mismatching History Tree file format versions"); //$NON-NLS-1$
             }
 
@@ -205,7 +243,7 @@ public class HistoryTreeClassic implements IHistoryTree {
             rootNodeSeqNb = buffer.getInt();
             startTime = buffer.getLong();
 
-            fConfig = new HTConfig(existingStateFile, bs, maxc, expProviderVersion, startTime);
+            fConfig = new HTConfig(existingStateFile, bs, maxc, expProviderVersion, startTime, compactNodes);
         }
 
         /*
@@ -226,6 +264,15 @@ public class HistoryTreeClassic implements IHistoryTree {
             throw new IOException("Inconsistent start times in the" + //$NON-NLS-1$
                     "history file, it might be corrupted."); //$NON-NLS-1$
         }
+
+        fSummaries = HTSummaries.open(existingStateFile, fNodeCount, startTime, fTreeEnd, resume);
+
+        if (resume) {
+            reopenLatestBranch();
+        } else if (HT_IO.isMappedReadEnabled()) {
+            /* The file is complete, its nodes will not change anymore */
+            fTreeIO.mapNodes(fNodeCount);
+        }
     }
 
     /**
@@ -252,6 +299,26 @@ public class HistoryTreeClassic implements IHistoryTree {
         return Collections.synchronizedList(list);
     }
 
+    /**
+     * Re-open the nodes of the latest branch that were closed with the tree,
+     * so that they accept new intervals again.
+     */
+    private void reopenLatestBranch() {
+        synchronized (fLatestBranch) {
+            HTSummaries summaries = fSummaries;
+            for (int i = 0; i < fLatestBranch.size(); i++) {
+                fLatestBranch.get(i).reopen();
+                /* Its summary will change, it is written again when it closes */
+                if (summaries != null) {
+                    summaries.removeSummary(fLatestBranch.get(i).getSequenceNumber());
+                }
+                if (i > 0) {
+                    ((CoreNode) fLatestBranch.get(i - 1)).reopenLatestChild();
+                }
+            }
+        }
+    }
+
     @Override
     public void closeTree(long requestedEndTime) {
         /* This is an important operation, queries can wait */
@@ -266,9 +333,17 @@ public class HistoryTreeClassic implements IHistoryTree {
              */
             fTreeEnd = requestedEndTime;
 
+            /* This also writes the summaries of the latest branch */
             closeBranch(0, requestedEndTime);
 
             try (FileChannel fc = fTreeIO.getFcOut();) {
+                /*
+                 * A resumed tree still has its previous attribute tree after
+                 * the nodes, remove it. The attribute tree is written again
+                 * after the nodes.
+                 */
+                fTreeIO.truncateNodes(fNodeCount);
+
                 ByteBuffer buffer = ByteBuffer.allocate(TREE_HEADER_SIZE);
                 buffer.order(ByteOrder.LITTLE_ENDIAN);
                 buffer.clear();
@@ -278,7 +353,7 @@ public class HistoryTreeClassic implements IHistoryTree {
 
                 buffer.putInt(HISTORY_FILE_MAGIC_NUMBER);
 
-                buffer.putInt(FILE_VERSION);
+                buffer.putInt(fConfig.isCompactNodeFormat() ? COMPACT_FILE_VERSION : FILE_VERSION);
                 buffer.putInt(fConfig.getProviderVersion());
 
                 buffer.putInt(fConfig.getBlockSize());
@@ -304,6 +379,20 @@ public class HistoryTreeClassic implements IHistoryTree {
                  */
                 throw new RuntimeException("State system write error"); //$NON-NLS-1$
             }
+
+            HTSummaries summaries = fSummaries;
+            if (summaries != null) {
+                try {
+                    summaries.finish(fNodeCount, getTreeStart(), fTreeEnd);
+                } catch (IOException e) {
+                    discardSummaries(summaries, e);
+                }
+            }
+
+            /* All the nodes are now written, they will not change anymore */
+            if (HT_IO.isMappedReadEnabled()) {
+                fTreeIO.mapNodes(fNodeCount);
+            }
         }
     }
 
@@ -430,11 +519,20 @@ public class HistoryTreeClassic implements IHistoryTree {
     @Override
     public void closeFile() {
         fTreeIO.closeFile();
+        HTSummaries summaries = fSummaries;
+        if (summaries != null) {
+            summaries.close();
+        }
     }
 
     @Override
     public void deleteFile() {
         fTreeIO.deleteFile();
+        HTSummaries summaries = fSummaries;
+        if (summaries != null) {
+            summaries.close();
+        }
+        HTSummaries.delete(fConfig.getStateFile());
     }
 
     // ------------------------------------------------------------------------
@@ -462,7 +560,7 @@ public class HistoryTreeClassic implements IHistoryTree {
         HTNode targetNode = fLatestBranch.get(indexOfNode);
 
         /* Verify if there is enough room in this node to store this interval */
-        if (interval.getSizeOnDisk() > targetNode.getNodeFreeSpace()) {
+        if (targetNode.getIntervalSize(interval) > targetNode.getNodeFreeSpace()) {
             /* Nope, not enough room. Insert in a new sibling instead. */
             addSiblingNode(indexOfNode, interval.getStartTime());
             tryInsertAtNode(interval, fLatestBranch.size() - 1);
@@ -562,6 +660,15 @@ public class HistoryTreeClassic implements IHistoryTree {
             closeNode.closeThisNode(splitTime);
             fTreeIO.writeNode(closeNode);
 
+            HTSummaries summaries = fSummaries;
+            if (summaries != null) {
+                try {
+                    summaries.writeSummary(closeNode);
+                } catch (IOException e) {
+                    discardSummaries(summaries, e);
+                }
+            }
+
             if (i > 0) {
                 CoreNode prevNode = (CoreNode) fLatestBranch.get(i - 1);
                 prevNode.closeChild(closeNode);
@@ -569,6 +676,66 @@ public class HistoryTreeClassic implements IHistoryTree {
         }
     }
 
+    /**
+     * Stop writing the summaries of the nodes after an error, the tree will be
+     * queried without them.
+     */
+    private void discardSummaries(HTSummaries summaries, IOException e) {
+        Activator.getDefault().logError("Error writing the summaries of " + fConfig.getStateFile(), e); //$NON-NLS-1$
+        fSummaries = null;
+        summaries.close();
+        HTSummaries.delete(fConfig.getStateFile());
+    }
+
+    @Override
+    public StateAggregate queryAggregate(int quark, long start, long end) throws ClosedChannelException {
+        IntegerRangeCondition quarks = IntegerRangeCondition.forDiscreteRange(Collections.singleton(quark));
+        TimeRangeCondition times = TimeRangeCondition.forContinuousRange(start, end);
+        HTSummaries summaries = fSummaries;
+
+        StateAggregate aggregate = StateAggregate.EMPTY;
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(getRootNode().getSequenceNumber());
+        while (!queue.isEmpty()) {
+            HTNode node = readNode(queue);
+            for (HTInterval interval : node.iterable2D(quarks, times)) {
+                aggregate = aggregate.add(StateAggregate.of(interval, start, end));
+            }
+            if (node.getNodeType() != HTNode.NodeType.CORE) {
+                continue;
+            }
+
+            /*
+             * The intervals of a child's subtree are within its time range, so
+             * a child that is entirely within the range is aggregated with its
+             * summary, the others are read.
+             */
+            CoreNode coreNode = (CoreNode) node;
+            for (int i = 0; i < coreNode.getNbChildren(); i++) {
+                long childStart = coreNode.getChildStart(i);
+                long childEnd = coreNode.getChildEnd(i);
+                if (!times.intersects(childStart, childEnd) || !coreNode.childMayContain(i, quark)) {
+                    continue;
+                }
+                int child = coreNode.getChild(i);
+                StateAggregate childAggregate = null;
+                if (summaries != null && start <= childStart && childEnd <= end) {
+                    try {
+                        childAggregate = summaries.getAggregate(child, quark);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                if (childAggregate != null) {
+                    aggregate = aggregate.add(childAggregate);
+                } else {
+                    queue.add(child);
+                }
+            }
+        }
+        return aggregate;
+    }
+
     /**
      * Similar to the previous method, except here we rebuild a completely new
      * latestBranch
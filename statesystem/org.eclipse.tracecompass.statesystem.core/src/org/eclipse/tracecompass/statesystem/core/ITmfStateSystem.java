@@ -13,14 +13,18 @@
 package org.eclipse.tracecompass.statesystem.core;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.StateAggregate;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 
 
@@ -505,4 +509,114 @@ public interface ITmfStateSystem {
      */
     Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<Integer> quarks,
             long start, long end) throws StateSystemDisposedException, IndexOutOfBoundsException, TimeRangeException;
+
+    /**
+     * Multiple attribute and multiple times query that sends the intervals to
+     * a consumer. Unlike {@link #query2D(Collection, Collection)}, the state
+     * system can read different parts of its history in parallel, so the
+     * consumer may be called from several threads at once and must be
+     * thread-safe. The intervals are sent in no guaranteed order and there may
+     * be duplicates during State System construction.
+     *
+     * @param quarks
+     *            a collection of quarks for which we want information
+     * @param times
+     *            the timestamps at which we want the states
+     * @param consumer
+     *            the consumer of the queried intervals
+     * @param monitor
+     *            the progress monitor to cancel the query, if any. When it is
+     *            canceled, the query returns without sending the remaining
+     *            intervals.
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     * @throws IndexOutOfBoundsException
+     *             If the smallest attribute is <0 or if the largest is >= to
+     *             the number of attributes.
+     * @throws TimeRangeException
+     *             If the smallest time is before the state system start time.
+     * @since 4.0
+     */
+    default void parallelQuery2D(@NonNull Collection<Integer> quarks, @NonNull Collection<Long> times,
+            @NonNull Consumer<@NonNull ITmfStateInterval> consumer, @Nullable IProgressMonitor monitor)
+            throws StateSystemDisposedException, IndexOutOfBoundsException, TimeRangeException {
+        for (ITmfStateInterval interval : query2D(quarks, times)) {
+            if (monitor != null && monitor.isCanceled()) {
+                return;
+            }
+            consumer.accept(interval);
+        }
+    }
+
+    /**
+     * Multiple attribute and time range query that sends the intervals to a
+     * consumer. Unlike {@link #query2D(Collection, long, long)}, the state
+     * system can read different parts of its history in parallel, so the
+     * consumer may be called from several threads at once and must be
+     * thread-safe. The intervals are sent in no guaranteed order and there may
+     * be duplicates during State System construction.
+     *
+     * @param quarks
+     *            a collection of quarks for which we want information
+     * @param start
+     *            lower bound for the query
+     * @param end
+     *            upper bound for the query
+     * @param consumer
+     *            the consumer of the queried intervals
+     * @param monitor
+     *            the progress monitor to cancel the query, if any. When it is
+     *            canceled, the query returns without sending the remaining
+     *            intervals.
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     * @throws IndexOutOfBoundsException
+     *             If the smallest attribute is <0 or if the largest is >= to
+     *             the number of attributes.
+     * @throws TimeRangeException
+     *             If the smallest time is before the state system start time.
+     * @since 4.0
+     */
+    default void parallelQuery2D(@NonNull Collection<Integer> quarks, long start, long end,
+            @NonNull Consumer<@NonNull ITmfStateInterval> consumer, @Nullable IProgressMonitor monitor)
+            throws StateSystemDisposedException, IndexOutOfBoundsException, TimeRangeException {
+        for (ITmfStateInterval interval : query2D(quarks, start, end)) {
+            if (monitor != null && monitor.isCanceled()) {
+                return;
+            }
+            consumer.accept(interval);
+        }
+    }
+
+    /**
+     * Aggregate the numeric values of the intervals of an attribute that
+     * intersect a time range: the number of intervals with a numeric value,
+     * the minimum, maximum and sum of those values, and their average over the
+     * part of the range they cover. Backends that keep aggregates of their
+     * subtrees answer without reading all the intervals.
+     *
+     * @param quark
+     *            The attribute
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @return The aggregate of the values
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been
+     *             disposed
+     * @throws IndexOutOfBoundsException
+     *             If the attribute does not exist
+     * @throws TimeRangeException
+     *             If the start time is before the state system start time
+     * @since 4.0
+     */
+    default StateAggregate queryAggregate(int quark, long start, long end)
+            throws StateSystemDisposedException, IndexOutOfBoundsException, TimeRangeException {
+        StateAggregate aggregate = StateAggregate.EMPTY;
+        for (ITmfStateInterval interval : query2D(Collections.singleton(quark), start, end)) {
+            aggregate = aggregate.add(StateAggregate.of(interval, start, end));
+        }
+        return aggregate;
+    }
 }
\ No newline at end of file
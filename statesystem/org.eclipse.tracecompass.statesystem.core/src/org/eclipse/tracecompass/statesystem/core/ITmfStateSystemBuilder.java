@@ -302,6 +302,37 @@ public interface ITmfStateSystemBuilder extends ITmfStateSystem {
      */
     void removeAttribute(long t, int attributeQuark);
 
+    /**
+     * Start a batch of state changes, for example all the changes caused by
+     * one event. The intervals that are completed by the state changes of a
+     * batch are kept by the state system and then sent to the history back-end
+     * many at once, instead of one by one. This reduces the synchronization
+     * cost for providers that do many state changes per event. The kept
+     * intervals may span several batches: they are sent once there are enough
+     * of them, or after a short delay.
+     *
+     * Ongoing states are updated right away, and queries still see all the
+     * completed intervals. Batches are not nested: starting a batch while one
+     * is open has no effect. The default implementation does not batch.
+     *
+     * @since 4.0
+     */
+    default void startBatch() {
+        // Do nothing by default
+    }
+
+    /**
+     * End the batch started with {@link #startBatch()}. The intervals it
+     * completed are sent to the history back-end with those of the next
+     * batches, or when the history is closed. Does nothing if there is no batch
+     * open.
+     *
+     * @since 4.0
+     */
+    default void commitBatch() {
+        // Do nothing by default
+    }
+
     /**
      * Method to close off the History Provider. This happens for example when
      * we are done reading an off-line trace. First we close the TransientState,
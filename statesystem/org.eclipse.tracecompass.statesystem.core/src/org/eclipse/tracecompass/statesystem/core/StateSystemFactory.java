@@ -64,4 +64,23 @@ public final class StateSystemFactory {
         return new StateSystem(backend, newFile);
     }
 
+    /**
+     * Resume factory method. Re-opens the history of a back-end that was
+     * resumed from an existing file, so that new state changes can be inserted
+     * after the end time of that history. The state system must then be
+     * closed with {@link ITmfStateSystemBuilder#closeHistory(long)} as a new
+     * one would be.
+     *
+     * @param backend
+     *            The back-end, resumed from an existing file, see
+     *            {@link org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory#createHistoryTreeBackendResumedFile}
+     * @return The resumed state system
+     * @throws IOException
+     *             If there was a problem reading the existing history
+     * @since 4.0
+     */
+    public static ITmfStateSystemBuilder resumeStateSystem(IStateHistoryBackend backend) throws IOException {
+        return StateSystem.resume(backend);
+    }
+
 }
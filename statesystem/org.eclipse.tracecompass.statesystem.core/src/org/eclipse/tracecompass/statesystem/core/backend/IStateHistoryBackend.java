@@ -14,8 +14,11 @@ package org.eclipse.tracecompass.statesystem.core.backend;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
@@ -23,6 +26,7 @@ import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.Ti
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.StateAggregate;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 
 /**
@@ -84,6 +88,35 @@ public interface IStateHistoryBackend {
         insertPastState(stateStartTime, stateEndTime, quark, TmfStateValue.newValue(value));
     }
 
+    /**
+     * Insert a batch of state intervals into the history. The intervals are
+     * described by parallel arrays, the same index in each array representing
+     * one interval, and are inserted in array order. Back-ends with a costly
+     * insertion path, like a synchronized queue, can override this to insert
+     * them all at once.
+     *
+     * @param startTimes
+     *            The start times of the intervals
+     * @param endTimes
+     *            The end times of the intervals
+     * @param quarks
+     *            The quarks of the attributes the intervals refer to
+     * @param values
+     *            The values of the intervals
+     * @param count
+     *            The number of intervals to insert, from the beginning of the
+     *            arrays
+     * @throws TimeRangeException
+     *             If the start or end time of an interval is invalid
+     * @since 4.0
+     */
+    default void insertPastStates(long[] startTimes, long[] endTimes, int[] quarks,
+            @Nullable Object[] values, int count) throws TimeRangeException {
+        for (int i = 0; i < count; i++) {
+            insertPastState(startTimes[i], endTimes[i], quarks[i], values[i]);
+        }
+    }
+
     /**
      * Indicate to the provider that we are done building the history (so it can
      * close off, stop threads, etc.)
@@ -202,4 +235,69 @@ public interface IStateHistoryBackend {
             throws TimeRangeException {
         throw new UnsupportedOperationException("This backend does not support 2D queries"); //$NON-NLS-1$
     }
+
+    /**
+     * 2D query method that sends the matching intervals to a consumer instead
+     * of returning an iterable. Backends can read different parts of their
+     * history in parallel, in which case the consumer is called from several
+     * threads at once and must be thread-safe. The intervals are sent in no
+     * guaranteed order. By default, the intervals of
+     * {@link #query2D(IntegerRangeCondition, TimeRangeCondition)} are sent on
+     * the calling thread.
+     *
+     * @param quarkCondition
+     *            Condition on the quarks for returned intervals.
+     * @param timeCondition
+     *            Condition on the times for returned intervals
+     * @param consumer
+     *            The consumer of the intervals
+     * @param monitor
+     *            The progress monitor to cancel the query, if any. When it is
+     *            canceled, the query returns without sending the remaining
+     *            intervals.
+     * @throws TimeRangeException
+     *             if the time bounds are outside the range of the HistoryTree
+     * @throws StateSystemDisposedException
+     *             If the backend is disposed while the query is ongoing
+     * @since 4.0
+     */
+    default void parallelQuery2D(IntegerRangeCondition quarkCondition, TimeRangeCondition timeCondition,
+            Consumer<ITmfStateInterval> consumer, @Nullable IProgressMonitor monitor)
+            throws TimeRangeException, StateSystemDisposedException {
+        for (ITmfStateInterval interval : query2D(quarkCondition, timeCondition)) {
+            if (monitor != null && monitor.isCanceled()) {
+                return;
+            }
+            consumer.accept(interval);
+        }
+    }
+
+    /**
+     * Aggregate the numeric values of the intervals of an attribute that
+     * intersect a time range. By default, the intervals are read with a 2D
+     * query, backends that keep aggregates of their intervals can do it
+     * without reading them all.
+     *
+     * @param quark
+     *            The attribute
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @return The aggregate of the values
+     * @throws TimeRangeException
+     *             If the time range is outside the range of the backend
+     * @throws StateSystemDisposedException
+     *             If the backend is disposed
+     * @since 4.0
+     */
+    default StateAggregate queryAggregate(int quark, long start, long end)
+            throws TimeRangeException, StateSystemDisposedException {
+        StateAggregate aggregate = StateAggregate.EMPTY;
+        IntegerRangeCondition quarks = IntegerRangeCondition.forDiscreteRange(Collections.singleton(quark));
+        for (ITmfStateInterval interval : query2D(quarks, TimeRangeCondition.forContinuousRange(start, end))) {
+            aggregate = aggregate.add(StateAggregate.of(interval, start, end));
+        }
+        return aggregate;
+    }
 }
@@ -115,4 +115,36 @@ public final class StateHistoryBackendFactory {
             int providerVersion) throws IOException {
         return new HistoryTreeBackend(ssid, stateFile, providerVersion);
     }
+
+    /**
+     * Create a History Tree backend that resumes the history of an existing
+     * file on disk, so that the intervals after its end time can be appended
+     * to it. The file must have been completely built and closed before. If
+     * the file cannot be found or recognized, an IOException will be thrown.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param stateFile
+     *            Filename/location of the history we want to resume
+     * @param providerVersion
+     *            Expected version of of the state provider plugin.
+     * @param queueSize
+     *            The size of the interval insertion queue between the receiver
+     *            and writer threads. 2000 - 10000 usually works well. If 0 is
+     *            specified, no queue is used and the writes happen in the same
+     *            thread.
+     * @return The state system backend
+     * @throws IOException
+     *             If we can't read or write the file, if it doesn't exist, is
+     *             not recognized, or if the version of the file does not match
+     *             the expected providerVersion.
+     * @since 4.0
+     */
+    public static IStateHistoryBackend createHistoryTreeBackendResumedFile(String ssid, File stateFile,
+            int providerVersion, int queueSize) throws IOException {
+        if (queueSize > 0) {
+            return new ThreadedHistoryTreeBackend(ssid, stateFile, providerVersion, queueSize);
+        }
+        return new HistoryTreeBackend(ssid, stateFile, providerVersion, true);
+    }
 }
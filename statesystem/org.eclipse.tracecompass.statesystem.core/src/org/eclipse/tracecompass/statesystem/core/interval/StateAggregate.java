@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.interval;
+
+/**
+ * Aggregate of the numeric values of the intervals of an attribute over a time
+ * range: the number of intervals with an integer, long or double value, the
+ * minimum, maximum and sum of those values, and the time during which the
+ * attribute had a numeric value. Intervals with a null or string value are not
+ * counted.
+ *
+ * @since 4.0
+ */
+public final class StateAggregate {
+
+    /** Aggregate of no value */
+    public static final StateAggregate EMPTY = new StateAggregate(0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0, 0, 0);
+
+    private final long fCount;
+    private final double fMin;
+    private final double fMax;
+    private final double fSum;
+    private final long fDuration;
+    private final double fWeightedSum;
+
+    /**
+     * Constructor
+     *
+     * @param count
+     *            The number of values
+     * @param min
+     *            The minimum value
+     * @param max
+     *            The maximum value
+     * @param sum
+     *            The sum of the values
+     * @param duration
+     *            The total duration of the values
+     * @param weightedSum
+     *            The sum of the values multiplied by their duration
+     */
+    public StateAggregate(long count, double min, double max, double sum, long duration, double weightedSum) {
+        fCount = count;
+        fMin = min;
+        fMax = max;
+        fSum = sum;
+        fDuration = duration;
+        fWeightedSum = weightedSum;
+    }
+
+    /**
+     * Get the aggregate of the value of an interval within a time range. The
+     * value weighs the part of the interval that is within the range.
+     *
+     * @param interval
+     *            The interval, which must intersect the range
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @return The aggregate of this value, or {@link #EMPTY} if it is not a
+     *         number
+     */
+    public static StateAggregate of(ITmfStateInterval interval, long start, long end) {
+        Object value = interval.getValue();
+        if (value instanceof Integer || value instanceof Long || value instanceof Double) {
+            double number = ((Number) value).doubleValue();
+            long duration = Math.min(end, interval.getEndTime()) - Math.max(start, interval.getStartTime()) + 1;
+            return new StateAggregate(1, number, number, number, duration, number * duration);
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Combine this aggregate with another one
+     *
+     * @param other
+     *            The other aggregate
+     * @return The aggregate of the values of both
+     */
+    public StateAggregate add(StateAggregate other) {
+        if (other.fCount == 0) {
+            return this;
+        }
+        if (fCount == 0) {
+            return other;
+        }
+        return new StateAggregate(fCount + other.fCount, Math.min(fMin, other.fMin), Math.max(fMax, other.fMax),
+                fSum + other.fSum, fDuration + other.fDuration, fWeightedSum + other.fWeightedSum);
+    }
+
+    /**
+     * Get the number of values
+     *
+     * @return The number of values
+     */
+    public long getCount() {
+        return fCount;
+    }
+
+    /**
+     * Get the minimum value
+     *
+     * @return The minimum value, positive infinity if there is no value
+     */
+    public double getMin() {
+        return fMin;
+    }
+
+    /**
+     * Get the maximum value
+     *
+     * @return The maximum value, negative infinity if there is no value
+     */
+    public double getMax() {
+        return fMax;
+    }
+
+    /**
+     * Get the sum of the values
+     *
+     * @return The sum of the values
+     */
+    public double getSum() {
+        return fSum;
+    }
+
+    /**
+     * Get the time during which the attribute had a numeric value in the range
+     *
+     * @return The total duration of the values
+     */
+    public long getDuration() {
+        return fDuration;
+    }
+
+    /**
+     * Get the average of the values over time. Each value weighs the time it
+     * was held within the range, the times without a numeric value are not
+     * counted.
+     *
+     * @return The average, or NaN if there is no value
+     */
+    public double getAverage() {
+        return (fDuration == 0 ? Double.NaN : fWeightedSum / fDuration);
+    }
+
+    @Override
+    public String toString() {
+        /* Only for debug, should not be externalized */
+        return "count = " + fCount + ", min = " + fMin + ", max = " + fMax + ", sum = " + fSum + ", average = " + getAverage(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    }
+}
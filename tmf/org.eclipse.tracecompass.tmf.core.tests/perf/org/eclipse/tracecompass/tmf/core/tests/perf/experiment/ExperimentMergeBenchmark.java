@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.perf.experiment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
+import org.junit.Test;
+
+/**
+ * Benchmark of the merge of the events of the traces of an experiment, with a
+ * synthetic experiment of many small traces whose events are interleaved, read
+ * with one context, or with several contexts at once.
+ */
+public class ExperimentMergeBenchmark {
+
+    private static final String TEST_ID = "org.eclipse.linuxtools#Experiment merge#";
+    private static final String TEST_SUMMARY = "Experiment merge: ";
+
+    private static final int NB_TRACES = 500;
+    private static final int NB_EVENTS_PER_TRACE = 200;
+    private static final int NB_READERS = 4;
+    private static final int LOOP_COUNT = 10;
+
+    /**
+     * Benchmark reading the whole experiment with one context
+     */
+    @Test
+    public void testMerge() {
+        runMerge(NB_TRACES + " traces", 1);
+    }
+
+    /**
+     * Benchmark reading the whole experiment with several contexts, each in
+     * its own thread
+     */
+    @Test
+    public void testConcurrentMerge() {
+        runMerge(NB_TRACES + " traces, " + NB_READERS + " readers", NB_READERS);
+    }
+
+    private static void runMerge(String testName, int nbReaders) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + testName);
+        perf.tagAsSummary(pm, TEST_SUMMARY + testName, Dimension.CPU_TIME);
+
+        ExecutorService executor = Executors.newFixedThreadPool(nbReaders);
+        try {
+            for (int loop = 0; loop < LOOP_COUNT; loop++) {
+                TmfExperiment experiment = createExperiment();
+                try {
+                    List<Future<Long>> readers = new ArrayList<>();
+                    pm.start();
+                    for (int i = 0; i < nbReaders; i++) {
+                        readers.add(executor.submit(() -> readAll(experiment)));
+                    }
+                    for (Future<Long> reader : readers) {
+                        assertEquals((long) NB_TRACES * NB_EVENTS_PER_TRACE, reader.get().longValue());
+                    }
+                    pm.stop();
+                } finally {
+                    experiment.dispose();
+                }
+            }
+        } catch (TmfTraceException | InterruptedException | ExecutionException e) {
+            fail(e.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+        pm.commit();
+    }
+
+    private static long readAll(TmfExperiment experiment) {
+        ITmfContext context = experiment.seekEvent((ITmfLocation) null);
+        long nbEvents = 0;
+        long previous = Long.MIN_VALUE;
+        ITmfEvent event = experiment.getNext(context);
+        while (event != null) {
+            long timestamp = event.getTimestamp().getValue();
+            if (timestamp < previous) {
+                fail("Events out of order at " + timestamp);
+            }
+            previous = timestamp;
+            nbEvents++;
+            event = experiment.getNext(context);
+        }
+        context.dispose();
+        return nbEvents;
+    }
+
+    private static TmfExperiment createExperiment() throws TmfTraceException {
+        ITmfTrace[] traces = new ITmfTrace[NB_TRACES];
+        for (int i = 0; i < NB_TRACES; i++) {
+            traces[i] = new SyntheticTrace(i);
+        }
+        return new TmfExperiment(ITmfEvent.class, "synthetic-experiment", traces, TmfExperiment.DEFAULT_INDEX_PAGE_SIZE, null);
+    }
+
+    /**
+     * Trace of NB_EVENTS_PER_TRACE events, generated in memory, whose events
+     * are interleaved with the events of the other traces of the experiment
+     */
+    private static class SyntheticTrace extends TmfTrace {
+
+        private final int fTraceIndex;
+
+        public SyntheticTrace(int traceIndex) throws TmfTraceException {
+            fTraceIndex = traceIndex;
+            initTrace(null, "synthetic-" + traceIndex, ITmfEvent.class);
+        }
+
+        @Override
+        public IStatus validate(IProject project, String path) {
+            return Status.OK_STATUS;
+        }
+
+        @Override
+        public ITmfLocation getCurrentLocation() {
+            return null;
+        }
+
+        @Override
+        public double getLocationRatio(ITmfLocation location) {
+            return (double) getRank(location) / NB_EVENTS_PER_TRACE;
+        }
+
+        @Override
+        public ITmfContext seekEvent(ITmfLocation location) {
+            long rank = getRank(location);
+            return new TmfContext(new TmfLongLocation(rank), rank);
+        }
+
+        @Override
+        public ITmfContext seekEvent(double ratio) {
+            return seekEvent(new TmfLongLocation(Math.round(ratio * NB_EVENTS_PER_TRACE)));
+        }
+
+        @Override
+        public ITmfEvent parseEvent(ITmfContext context) {
+            long rank = getRank(context.getLocation());
+            if (rank >= NB_EVENTS_PER_TRACE) {
+                return null;
+            }
+            return new TmfEvent(this, rank, TmfTimestamp.fromNanos(rank * NB_TRACES + fTraceIndex), null, null);
+        }
+
+        /*
+         * The location is kept in the context, each context can be read
+         * independently
+         */
+        @Override
+        public ITmfEvent getNext(ITmfContext context) {
+            ITmfEvent event = parseEvent(context);
+            if (event != null) {
+                context.setLocation(new TmfLongLocation(event.getRank() + 1));
+                context.increaseRank();
+            }
+            return event;
+        }
+
+        private static long getRank(ITmfLocation location) {
+            if (location instanceof TmfLongLocation) {
+                return ((TmfLongLocation) location).getLocationInfo();
+            }
+            return 0;
+        }
+    }
+}
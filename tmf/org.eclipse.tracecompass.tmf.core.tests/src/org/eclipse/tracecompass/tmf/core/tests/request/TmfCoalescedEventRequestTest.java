@@ -18,13 +18,16 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.IllformedLocaleException;
+import java.util.List;
 import java.util.Vector;
 
 import org.eclipse.tracecompass.internal.tmf.core.component.TmfProviderManager;
 import org.eclipse.tracecompass.internal.tmf.core.request.TmfCoalescedEventRequest;
 import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
@@ -40,6 +43,8 @@ import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * Test suite for the TmfCoalescedEventRequest class.
  */
@@ -232,6 +237,54 @@ public class TmfCoalescedEventRequestTest {
         assertEquals("addRequest", 2147483647, coalescedRequest.getNbRequested());
     }
 
+    // ------------------------------------------------------------------------
+    // handleData
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testHandleDataBlock() {
+        TmfTraceStub trace = new TmfTraceStub();
+        try {
+            TmfCoalescedEventRequest request = new TmfCoalescedEventRequest(ITmfEvent.class, range1, 0, TmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND, 0);
+            List<Long> ranks1 = new ArrayList<>();
+            List<Long> ranks2 = new ArrayList<>();
+            List<Long> ranks3 = new ArrayList<>();
+            TmfEventRequest subRequest1 = newRankRequest(range1, 0, TmfEventRequest.ALL_DATA, ranks1);
+            TmfEventRequest subRequest2 = newRankRequest(range1, 3, 4, ranks2);
+            TmfEventRequest subRequest3 = newRankRequest(new TmfTimeRange(TmfTimestamp.fromNanos(5), TmfTimestamp.fromNanos(9)), 0, TmfEventRequest.ALL_DATA, ranks3);
+            for (TmfEventRequest subRequest : new TmfEventRequest[] { subRequest1, subRequest2, subRequest3 }) {
+                subRequest.setProviderFilter(trace);
+                request.addRequest(subRequest);
+            }
+
+            /* Blocks that cover the requests completely, partly, or not at all */
+            for (int block = 0; block < 3; block++) {
+                List<ITmfEvent> events = new ArrayList<>();
+                for (long rank = block * 8; rank < (block + 1) * 8; rank++) {
+                    events.add(new TmfEvent(trace, rank, TmfTimestamp.fromNanos(rank), null, null));
+                }
+                request.handleData(events);
+            }
+
+            assertEquals(24, request.getNbRead());
+            assertEquals(24, ranks1.size());
+            assertEquals(ImmutableList.of(3L, 4L, 5L, 6L), ranks2);
+            assertEquals(ImmutableList.of(5L, 6L, 7L, 8L, 9L), ranks3);
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    private static TmfEventRequest newRankRequest(TmfTimeRange range, long index, int nbRequested, List<Long> ranks) {
+        return new TmfEventRequest(ITmfEvent.class, range, index, nbRequested, ExecutionType.BACKGROUND) {
+            @Override
+            public void handleData(ITmfEvent event) {
+                super.handleData(event);
+                ranks.add(event.getRank());
+            }
+        };
+    }
+
     // ------------------------------------------------------------------------
     // done
     // ------------------------------------------------------------------------
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.tracecompass.tmf.core.component.TmfEventProvider;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventReadPipeline;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+/**
+ * Test suite for the TmfEventReadPipeline class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfEventReadPipelineTest {
+
+    @Rule
+    public TestRule globalTimeout = new Timeout(20, TimeUnit.SECONDS);
+
+    private static final int NB_EVENTS = 1000;
+
+    private SyntheticProvider fProvider;
+
+    @Before
+    public void setUp() {
+        fProvider = new SyntheticProvider();
+        fProvider.init("synthetic", ITmfEvent.class);
+    }
+
+    @After
+    public void tearDown() {
+        fProvider.dispose();
+    }
+
+    // ------------------------------------------------------------------------
+    // Tests
+    // ------------------------------------------------------------------------
+
+    /**
+     * Test that the consumers, on the thread of the read or on their own
+     * thread, all get the events of a single read
+     */
+    @Test
+    public void testSingleRead() throws InterruptedException {
+        TmfEventReadPipeline pipeline = new TmfEventReadPipeline(fProvider, 0);
+        TmfEventRequest request1 = newRequest(TmfTimeRange.ETERNITY);
+        TmfEventRequest request2 = newRequest(new TmfTimeRange(TmfTimestamp.fromNanos(0), TmfTimestamp.fromNanos(NB_EVENTS / 2 - 1)));
+        TmfEventRequest request3 = newRequest(TmfTimeRange.ETERNITY);
+        pipeline.addConsumer(request1);
+        pipeline.addConsumer(request2);
+        pipeline.addConsumer(request3, 10);
+        pipeline.start();
+
+        request1.waitForCompletion();
+        request2.waitForCompletion();
+        request3.waitForCompletion();
+        assertEquals(NB_EVENTS, request1.getNbRead());
+        assertEquals(NB_EVENTS / 2, request2.getNbRead());
+        assertEquals(NB_EVENTS, request3.getNbRead());
+        /* The events were read once, with the read of the end */
+        assertEquals(NB_EVENTS + 1, fProvider.getNbReads());
+    }
+
+    /**
+     * Test that the read waits for a consumer whose queue is full
+     */
+    @Test
+    public void testBackpressure() throws InterruptedException {
+        TmfEventReadPipeline pipeline = new TmfEventReadPipeline(fProvider, 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TmfEventRequest slow = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND) {
+            @Override
+            public void handleData(ITmfEvent event) {
+                super.handleData(event);
+                if (getNbRead() == 1) {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        TmfEventRequest fast = newRequest(TmfTimeRange.ETERNITY);
+        pipeline.addConsumer(slow);
+        pipeline.addConsumer(fast, 0);
+        pipeline.start();
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        /* The event being handled, the queued events, and the one waiting */
+        assertTrue(fProvider.getNbReads() <= 4);
+        assertFalse(fast.isCompleted());
+
+        release.countDown();
+        slow.waitForCompletion();
+        fast.waitForCompletion();
+        assertEquals(NB_EVENTS, slow.getNbRead());
+        assertEquals(NB_EVENTS, fast.getNbRead());
+    }
+
+    /**
+     * Test that the background requests sent to the provider join its open
+     * pipeline, and the other requests do not
+     */
+    @Test
+    public void testJoin() throws InterruptedException {
+        TmfEventReadPipeline pipeline = new TmfEventReadPipeline(fProvider, 0);
+        pipeline.openRegistration(TimeUnit.MINUTES.toMillis(1));
+
+        TmfEventRequest background1 = newRequest(TmfTimeRange.ETERNITY);
+        TmfEventRequest background2 = newRequest(TmfTimeRange.ETERNITY);
+        TmfEventRequest foreground = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, ITmfEventRequest.ALL_DATA, ExecutionType.FOREGROUND) {
+        };
+        fProvider.sendRequest(background1);
+        fProvider.sendRequest(background2);
+        fProvider.sendRequest(foreground);
+        assertEquals(2, pipeline.getNbConsumers());
+
+        foreground.waitForCompletion();
+        assertEquals(NB_EVENTS, foreground.getNbRead());
+        assertFalse(background1.isCompleted());
+
+        pipeline.start();
+        assertNotNull(pipeline.getRequest());
+        background1.waitForCompletion();
+        background2.waitForCompletion();
+        assertEquals(NB_EVENTS, background1.getNbRead());
+        assertEquals(NB_EVENTS, background2.getNbRead());
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private static TmfEventRequest newRequest(TmfTimeRange range) {
+        return new TmfEventRequest(ITmfEvent.class, range, 0, ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND) {
+        };
+    }
+
+    /**
+     * Provider of NB_EVENTS events, that counts its reads
+     */
+    private static class SyntheticProvider extends TmfEventProvider {
+        private final AtomicInteger fNbReads = new AtomicInteger();
+
+        public int getNbReads() {
+            return fNbReads.get();
+        }
+
+        @Override
+        public ITmfContext armRequest(ITmfEventRequest request) {
+            return new TmfContext(null, 0);
+        }
+
+        @Override
+        public ITmfEvent getNext(ITmfContext context) {
+            fNbReads.incrementAndGet();
+            long rank = context.getRank();
+            if (rank >= NB_EVENTS) {
+                return null;
+            }
+            context.increaseRank();
+            return new TmfEvent(null, rank, TmfTimestamp.fromNanos(rank), null, null);
+        }
+    }
+}
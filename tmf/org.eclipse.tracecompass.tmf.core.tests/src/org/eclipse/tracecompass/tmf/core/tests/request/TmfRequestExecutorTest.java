@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
+import org.eclipse.tracecompass.internal.tmf.core.request.TmfRequestExecutor;
+import org.eclipse.tracecompass.tmf.core.component.TmfEventProvider;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+/**
+ * Test suite for the lanes of the TmfRequestExecutor class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfRequestExecutorTest {
+
+    @Rule
+    public TestRule globalTimeout = new Timeout(20, TimeUnit.SECONDS);
+
+    private static final int NB_EVENTS = 1000;
+    private static final long WAIT_SECONDS = 10;
+
+    private final TmfEventProvider fProvider = new SyntheticProvider();
+    private TmfRequestExecutor fExecutor;
+
+    @After
+    public void tearDown() {
+        if (fExecutor != null) {
+            fExecutor.stop();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Tests
+    // ------------------------------------------------------------------------
+
+    /**
+     * Test that the background requests run concurrently in their lanes
+     */
+    @Test
+    public void testConcurrentLanes() throws InterruptedException {
+        fExecutor = new TmfRequestExecutor(1, 2);
+        fExecutor.init();
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingRequest request1 = new BlockingRequest(ExecutionType.BACKGROUND, started, release);
+        BlockingRequest request2 = new BlockingRequest(ExecutionType.BACKGROUND, started, release);
+        execute(request1, request2);
+
+        /* Both requests are in the middle of their first event */
+        assertTrue(started.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(2, fExecutor.getNbActiveTasks(ExecutionType.BACKGROUND));
+        assertEquals(0, fExecutor.getQueueDepth(ExecutionType.BACKGROUND));
+
+        release.countDown();
+        request1.waitForCompletion();
+        request2.waitForCompletion();
+        assertEquals(NB_EVENTS, request1.getNbRead());
+        assertEquals(NB_EVENTS, request2.getNbRead());
+    }
+
+    /**
+     * Test that a foreground request takes back its lane from a background
+     * request, and completes while the background requests are busy
+     */
+    @Test
+    public void testForegroundLaneTakenBack() throws InterruptedException {
+        fExecutor = new TmfRequestExecutor(1, 1);
+        fExecutor.init();
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingRequest background1 = new BlockingRequest(ExecutionType.BACKGROUND, started, release);
+        BlockingRequest background2 = new BlockingRequest(ExecutionType.BACKGROUND, started, release);
+        execute(background1, background2);
+
+        /* The second background request borrowed the foreground lane */
+        assertTrue(started.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(2, fExecutor.getNbActiveTasks(ExecutionType.BACKGROUND));
+
+        TmfEventRequest foreground = newRequest(ExecutionType.FOREGROUND);
+        execute(foreground);
+        foreground.waitForCompletion();
+        assertEquals(NB_EVENTS, foreground.getNbRead());
+        assertFalse(background1.isCompleted());
+        assertFalse(background2.isCompleted());
+
+        release.countDown();
+        background1.waitForCompletion();
+        background2.waitForCompletion();
+        assertEquals(NB_EVENTS, background1.getNbRead());
+        assertEquals(NB_EVENTS, background2.getNbRead());
+    }
+
+    /**
+     * Test that the requests that are queued are all run, none is cancelled
+     * when many requests wait for a lane
+     */
+    @Test
+    public void testManyQueuedRequests() throws InterruptedException {
+        /* Not initialized, there are no time slices to change the queues */
+        fExecutor = new TmfRequestExecutor(1, 1);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingRequest blocking1 = new BlockingRequest(ExecutionType.BACKGROUND, started, release);
+        BlockingRequest blocking2 = new BlockingRequest(ExecutionType.BACKGROUND, started, release);
+        execute(blocking1, blocking2);
+        assertTrue(started.await(WAIT_SECONDS, TimeUnit.SECONDS));
+
+        List<TmfEventRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            TmfEventRequest request = newRequest(ExecutionType.BACKGROUND);
+            requests.add(request);
+            execute(request);
+        }
+        assertEquals(20, fExecutor.getQueueDepth(ExecutionType.BACKGROUND));
+
+        release.countDown();
+        for (TmfEventRequest request : requests) {
+            request.waitForCompletion();
+            assertFalse(request.isCancelled());
+            assertEquals(NB_EVENTS, request.getNbRead());
+        }
+        assertTrue(fExecutor.getMaxWaitTime(ExecutionType.BACKGROUND) > 0);
+        assertTrue(fExecutor.getAverageWaitTime(ExecutionType.BACKGROUND) <= fExecutor.getMaxWaitTime(ExecutionType.BACKGROUND));
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private static TmfEventRequest newRequest(ExecutionType type) {
+        return new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, ITmfEventRequest.ALL_DATA, type) {
+        };
+    }
+
+    private void execute(ITmfEventRequest... requests) {
+        for (ITmfEventRequest request : requests) {
+            fExecutor.execute(new TmfEventThread(fProvider, request));
+        }
+    }
+
+    /**
+     * Request that blocks in its first event until it is released
+     */
+    private static class BlockingRequest extends TmfEventRequest {
+        private final CountDownLatch fStarted;
+        private final CountDownLatch fRelease;
+
+        public BlockingRequest(ExecutionType type, CountDownLatch started, CountDownLatch release) {
+            super(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, ITmfEventRequest.ALL_DATA, type);
+            fStarted = started;
+            fRelease = release;
+        }
+
+        @Override
+        public void handleData(ITmfEvent event) {
+            super.handleData(event);
+            if (getNbRead() == 1) {
+                fStarted.countDown();
+                try {
+                    fRelease.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Provider of NB_EVENTS events, with one context per request
+     */
+    private static class SyntheticProvider extends TmfEventProvider {
+        @Override
+        public ITmfContext armRequest(ITmfEventRequest request) {
+            return new TmfContext(null, 0);
+        }
+
+        @Override
+        public ITmfEvent getNext(ITmfContext context) {
+            long rank = context.getRank();
+            if (rank >= NB_EVENTS) {
+                return null;
+            }
+            context.increaseRank();
+            return new TmfEvent(null, rank, TmfTimestamp.fromNanos(rank), null, null);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.statesystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partitioned.PartitionRecorderBackend;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partitioned.PartitionStateSystem;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partitioned.PartitionedStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link PartitionedStateSystem} class, that merges the histories of
+ * time partitions built independently
+ */
+public class PartitionedStateSystemTest {
+
+    private static final String SSID = "test"; //$NON-NLS-1$
+
+    private final List<File> fFiles = new ArrayList<>();
+    private PartitionedStateSystem fStateSystem;
+
+    /**
+     * Create the merged state system
+     */
+    @Before
+    public void setUp() {
+        fStateSystem = new PartitionedStateSystem(StateHistoryBackendFactory.createInMemoryBackend(SSID, 0));
+    }
+
+    /**
+     * Clean-up
+     */
+    @After
+    public void tearDown() {
+        fStateSystem.dispose();
+        for (File file : fFiles) {
+            file.delete();
+        }
+    }
+
+    private PartitionStateSystem newPartition(long start) throws IOException {
+        File file = File.createTempFile("partition", "." + fFiles.size()); //$NON-NLS-1$ //$NON-NLS-2$
+        fFiles.add(file);
+        return new PartitionStateSystem(new PartitionRecorderBackend(SSID, start, file));
+    }
+
+    /**
+     * Test merging two partitions, where the second one continues, replaces
+     * and adds states
+     *
+     * @throws IOException
+     *             If the partitions cannot be read
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed
+     */
+    @Test
+    public void testMerge() throws IOException, StateSystemDisposedException {
+        PartitionStateSystem partition0 = newPartition(0);
+        int a = partition0.getQuarkAbsoluteAndAdd("A"); //$NON-NLS-1$
+        int b = partition0.getQuarkAbsoluteAndAdd("B"); //$NON-NLS-1$
+        partition0.modifyAttribute(10, 1, a);
+        partition0.modifyAttribute(20, "x", b); //$NON-NLS-1$
+        partition0.modifyAttribute(50, (Object) null, b);
+        partition0.closeHistory(99);
+
+        /* The second partition adds its attributes in a different order */
+        PartitionStateSystem partition1 = newPartition(100);
+        int c = partition1.getQuarkAbsoluteAndAdd("C", "D"); //$NON-NLS-1$ //$NON-NLS-2$
+        b = partition1.getQuarkAbsoluteAndAdd("B"); //$NON-NLS-1$
+        a = partition1.getQuarkAbsoluteAndAdd("A"); //$NON-NLS-1$
+        partition1.modifyAttribute(150, 2L, a);
+        partition1.modifyAttribute(100, "y", b); //$NON-NLS-1$
+        partition1.modifyAttribute(120, 5.0, c);
+        partition1.closeHistory(199);
+
+        fStateSystem.mergePartition(partition0);
+        fStateSystem.mergePartition(partition1);
+        fStateSystem.closeMerge();
+
+        assertEquals(199, fStateSystem.getCurrentEndTime());
+
+        /* The unknown start of A in the second partition continues its state */
+        a = fStateSystem.optQuarkAbsolute("A"); //$NON-NLS-1$
+        assertInterval(0, 9, null, fStateSystem.querySingleState(5, a));
+        assertInterval(10, 149, 1, fStateSystem.querySingleState(100, a));
+        assertInterval(150, 199, 2L, fStateSystem.querySingleState(199, a));
+
+        /* A known value at the start of the partition replaces it */
+        b = fStateSystem.optQuarkAbsolute("B"); //$NON-NLS-1$
+        assertInterval(20, 49, "x", fStateSystem.querySingleState(20, b)); //$NON-NLS-1$
+        assertInterval(50, 99, null, fStateSystem.querySingleState(99, b));
+        assertInterval(100, 199, "y", fStateSystem.querySingleState(100, b)); //$NON-NLS-1$
+
+        /* Attributes that only appear later were null since the start */
+        c = fStateSystem.optQuarkAbsolute("C"); //$NON-NLS-1$
+        assertInterval(0, 199, null, fStateSystem.querySingleState(50, c));
+        int d = fStateSystem.optQuarkAbsolute("C", "D"); //$NON-NLS-1$ //$NON-NLS-2$
+        assertInterval(0, 119, null, fStateSystem.querySingleState(50, d));
+        assertInterval(120, 199, 5.0, fStateSystem.querySingleState(120, d));
+    }
+
+    /**
+     * Test that a null set explicitly by a partition replaces the state of the
+     * previous partition, while the unknown null state before it does not
+     *
+     * @throws IOException
+     *             If the partitions cannot be read
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed
+     */
+    @Test
+    public void testExplicitNull() throws IOException, StateSystemDisposedException {
+        PartitionStateSystem partition0 = newPartition(0);
+        int a = partition0.getQuarkAbsoluteAndAdd("A"); //$NON-NLS-1$
+        int b = partition0.getQuarkAbsoluteAndAdd("B"); //$NON-NLS-1$
+        partition0.modifyAttribute(10, 1, a);
+        partition0.modifyAttribute(10, 1, b);
+        partition0.closeHistory(99);
+
+        PartitionStateSystem partition1 = newPartition(100);
+        a = partition1.getQuarkAbsoluteAndAdd("A"); //$NON-NLS-1$
+        b = partition1.getQuarkAbsoluteAndAdd("B"); //$NON-NLS-1$
+        partition1.modifyAttribute(120, (Object) null, a);
+        partition1.modifyAttribute(150, 2, a);
+        partition1.modifyAttribute(100, (Object) null, b);
+        partition1.closeHistory(199);
+
+        fStateSystem.mergePartition(partition0);
+        fStateSystem.mergePartition(partition1);
+        fStateSystem.closeMerge();
+
+        a = fStateSystem.optQuarkAbsolute("A"); //$NON-NLS-1$
+        assertInterval(10, 119, 1, fStateSystem.querySingleState(110, a));
+        assertInterval(120, 149, null, fStateSystem.querySingleState(120, a));
+        assertInterval(150, 199, 2, fStateSystem.querySingleState(150, a));
+
+        b = fStateSystem.optQuarkAbsolute("B"); //$NON-NLS-1$
+        assertInterval(10, 99, 1, fStateSystem.querySingleState(99, b));
+        assertInterval(100, 199, null, fStateSystem.querySingleState(100, b));
+    }
+
+    /**
+     * Test that merging partitions gives the same history as building it
+     * sequentially, for state changes that do not depend on the previous
+     * states
+     *
+     * @throws IOException
+     *             If the partitions cannot be read
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed
+     */
+    @Test
+    public void testSameAsSequential() throws IOException, StateSystemDisposedException {
+        String[][] paths = { { "A" }, { "B" }, { "C", "D" } }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        Object[][] values = { { null, 1, 2 }, { null, "x", "y" }, { null, 1L, 2L } }; //$NON-NLS-1$ //$NON-NLS-2$
+        long[] partitionStarts = { 0, 100, 200 };
+        long end = 299;
+
+        ITmfStateSystemBuilder sequential = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend(SSID, 0));
+        List<PartitionStateSystem> partitions = new ArrayList<>();
+        for (long start : partitionStarts) {
+            partitions.add(newPartition(start));
+        }
+
+        Random random = new Random(42);
+        for (long t = 0; t <= end; t++) {
+            int attribute = random.nextInt(paths.length);
+            if (attribute == 2 && t >= 100 && t < 200) {
+                /* The middle partition never sets this attribute */
+                attribute = random.nextInt(2);
+            }
+            Object value = values[attribute][random.nextInt(values[attribute].length)];
+            sequential.modifyAttribute(t, value, sequential.getQuarkAbsoluteAndAdd(paths[attribute]));
+
+            PartitionStateSystem partition = partitions.get((int) (t / 100));
+            partition.modifyAttribute(t, value, partition.getQuarkAbsoluteAndAdd(paths[attribute]));
+        }
+        sequential.closeHistory(end);
+        for (int i = 0; i < partitions.size(); i++) {
+            partitions.get(i).closeHistory(i + 1 < partitionStarts.length ? partitionStarts[i + 1] - 1 : end);
+        }
+
+        for (PartitionStateSystem partition : partitions) {
+            fStateSystem.mergePartition(partition);
+        }
+        fStateSystem.closeMerge();
+
+        try {
+            assertEquals(sequential.getNbAttributes(), fStateSystem.getNbAttributes());
+            for (int quark = 0; quark < sequential.getNbAttributes(); quark++) {
+                int mergedQuark = fStateSystem.optQuarkAbsolute(sequential.getFullAttributePathArray(quark));
+                for (long t = 0; t <= end; t++) {
+                    ITmfStateInterval expected = sequential.querySingleState(t, quark);
+                    assertInterval(expected.getStartTime(), expected.getEndTime(), expected.getValue(), fStateSystem.querySingleState(t, mergedQuark));
+                }
+            }
+        } finally {
+            sequential.dispose();
+        }
+    }
+
+    /**
+     * Test that a partition's file is removed with its back-end
+     *
+     * @throws IOException
+     *             If the partition cannot be written
+     */
+    @Test
+    public void testRemoveFiles() throws IOException {
+        PartitionRecorderBackend recorder = newPartition(0).getRecorder();
+        recorder.insertPastState(0, 10, 0, "value"); //$NON-NLS-1$
+        recorder.finishedBuilding(10);
+        assertEquals(1, recorder.getNbIntervals());
+        recorder.removeFiles();
+        assertFalse(Files.exists(fFiles.get(0).toPath()));
+    }
+
+    private static void assertInterval(long start, long end, @Nullable Object value, ITmfStateInterval interval) {
+        assertEquals(start, interval.getStartTime());
+        assertEquals(end, interval.getEndTime());
+        assertEquals(value, interval.getValue());
+    }
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.trace.indexer.checkpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the TmfExperimentIndexer class, that indexes the traces of an
+ * experiment in parallel instead of reading the merged events.
+ */
+@SuppressWarnings("javadoc")
+public class TmfExperimentIndexerTest {
+
+    // ------------------------------------------------------------------------
+    // Attributes
+    // ------------------------------------------------------------------------
+
+    private static final String EXPERIMENT = "MyExperiment";
+    private static final String INDEXED_EXPERIMENT = "MyIndexedExperiment";
+    private static final TmfTestTrace TEST_TRACE1 = TmfTestTrace.O_TEST_10K;
+    private static final TmfTestTrace TEST_TRACE2 = TmfTestTrace.E_TEST_10K;
+    private static final int NB_EVENTS = 20000;
+    private static final int BLOCK_SIZE = 1000;
+
+    private ITmfTrace[] fTestTraces;
+    private TmfExperiment fExperiment;
+
+    // ------------------------------------------------------------------------
+    // Housekeeping
+    // ------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws TmfTraceException {
+        fTestTraces = new ITmfTrace[2];
+        fTestTraces[0] = new TmfTraceStub(TEST_TRACE1.getFullPath(), 0, false, null);
+        fTestTraces[1] = new TmfTraceStub(TEST_TRACE2.getFullPath(), 0, false, null);
+        fExperiment = new TmfExperiment(ITmfEvent.class, EXPERIMENT, fTestTraces, BLOCK_SIZE, null);
+        fExperiment.indexTrace(true);
+    }
+
+    @After
+    public void tearDown() {
+        fExperiment.dispose();
+        for (ITmfTrace trace : fTestTraces) {
+            trace.dispose();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Tests
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testTraceAttributes() {
+        assertEquals("getNbEvents", NB_EVENTS, fExperiment.getNbEvents());
+        assertEquals("getStartTime", 1, fExperiment.getStartTime().getValue());
+        assertEquals("getEndTime", NB_EVENTS, fExperiment.getEndTime().getValue());
+        for (ITmfTrace trace : fTestTraces) {
+            assertEquals("getNbEvents", NB_EVENTS / 2, trace.getNbEvents());
+        }
+    }
+
+    @Test
+    public void testSeekRank() {
+        long[] ranks = { 0, 1, BLOCK_SIZE - 1, BLOCK_SIZE, 4321, 10000, 15001, NB_EVENTS - 1 };
+        for (long rank : ranks) {
+            ITmfContext context = fExperiment.seekEvent(rank);
+            assertEquals("Context rank", rank, context.getRank());
+            ITmfEvent event = fExperiment.getNext(context);
+            assertNotNull(event);
+            assertEquals("Event timestamp", rank + 1, event.getTimestamp().getValue());
+            assertEquals("Context rank", rank + 1, context.getRank());
+            context.dispose();
+        }
+    }
+
+    @Test
+    public void testSeekRankBackwards() {
+        for (long rank = NB_EVENTS - 1; rank >= 0; rank -= 1777) {
+            ITmfContext context = fExperiment.seekEvent(rank);
+            ITmfEvent event = fExperiment.getNext(context);
+            assertNotNull(event);
+            assertEquals("Event timestamp", rank + 1, event.getTimestamp().getValue());
+            context.dispose();
+        }
+    }
+
+    @Test
+    public void testSeekTimestamp() {
+        long[] timestamps = { 1, 2, 1000, 1001, 7777, 20000 };
+        for (long timestamp : timestamps) {
+            ITmfContext context = fExperiment.seekEvent(TmfTimestamp.create(timestamp, -3));
+            assertEquals("Context rank", timestamp - 1, context.getRank());
+            ITmfEvent event = fExperiment.getNext(context);
+            assertNotNull(event);
+            assertEquals("Event timestamp", timestamp, event.getTimestamp().getValue());
+            context.dispose();
+        }
+    }
+
+    @Test
+    public void testSeekPastEnd() {
+        ITmfContext context = fExperiment.seekEvent(NB_EVENTS);
+        assertNull(fExperiment.getNext(context));
+        context.dispose();
+    }
+
+    /**
+     * Test that an experiment of traces that are already indexed is indexed
+     * from the checkpoints of the traces, without reading the traces from the
+     * start, both when its index is computed and when it is restored
+     */
+    @Test
+    public void testIndexedTraces() throws TmfTraceException {
+        CountingTraceStub[] traces = new CountingTraceStub[] {
+                new CountingTraceStub(TEST_TRACE1.getFullPath()),
+                new CountingTraceStub(TEST_TRACE2.getFullPath())
+        };
+        try {
+            for (CountingTraceStub trace : traces) {
+                trace.indexTrace(true);
+            }
+            for (int i = 0; i < 2; i++) {
+                for (CountingTraceStub trace : traces) {
+                    trace.fNbParsed.set(0);
+                }
+                TmfExperiment experiment = new TmfExperiment(ITmfEvent.class, INDEXED_EXPERIMENT, traces, BLOCK_SIZE, null);
+                try {
+                    experiment.indexTrace(true);
+                    for (CountingTraceStub trace : traces) {
+                        assertTrue("Events read", trace.fNbParsed.get() < NB_EVENTS / 4);
+                    }
+                    assertEquals("getNbEvents", NB_EVENTS, experiment.getNbEvents());
+
+                    long[] ranks = { 0, BLOCK_SIZE, 4321, 15001, NB_EVENTS - 1 };
+                    for (long rank : ranks) {
+                        ITmfContext context = experiment.seekEvent(rank);
+                        assertEquals("Context rank", rank, context.getRank());
+                        ITmfEvent event = experiment.getNext(context);
+                        assertNotNull(event);
+                        assertEquals("Event timestamp", rank + 1, event.getTimestamp().getValue());
+                        context.dispose();
+                    }
+                } finally {
+                    experiment.dispose();
+                }
+            }
+        } finally {
+            for (ITmfTrace trace : traces) {
+                trace.dispose();
+            }
+        }
+    }
+
+    /**
+     * Trace stub that counts the events it parses
+     */
+    private static class CountingTraceStub extends TmfTraceStub {
+        private final AtomicInteger fNbParsed = new AtomicInteger();
+
+        public CountingTraceStub(String path) throws TmfTraceException {
+            super(path, BLOCK_SIZE, false, null);
+        }
+
+        @Override
+        public ITmfEvent parseEvent(ITmfContext context) {
+            fNbParsed.incrementAndGet();
+            return super.parseEvent(context);
+        }
+    }
+}
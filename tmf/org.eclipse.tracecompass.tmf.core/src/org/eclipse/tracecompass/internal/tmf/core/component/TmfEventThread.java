@@ -14,8 +14,11 @@
 
 package org.eclipse.tracecompass.internal.tmf.core.component;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
+import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
@@ -181,16 +184,45 @@ public class TmfEventThread implements Runnable {
                 return;
             }
 
-            // Get the ordered events
-            ITmfEvent event = fProvider.getNext(context);
-            TmfCoreTracer.traceRequest(fRequest.getRequestId(), "read first event"); //$NON-NLS-1$
-
-            while (event != null && !fProvider.isCompleted(fRequest, event, nbRead)) {
+            /*
+             * Get the ordered events, in blocks that grow up to the maximum
+             * size, so that the first events are handled without delay
+             */
+            List<@NonNull ITmfEvent> block = new ArrayList<>();
+            Class<? extends ITmfEvent> dataType = fRequest.getDataType();
+            int blockSize = 1;
+            boolean isLastBlock = false;
+
+            while (!isLastBlock && nbRead < nbRequested) {
+                block.clear();
+                if (fProvider.getNext(context, block, Math.min(blockSize, nbRequested - nbRead)) == 0) {
+                    break;
+                }
+                if (nbRead == 0) {
+                    TmfCoreTracer.traceRequest(fRequest.getRequestId(), "read first event"); //$NON-NLS-1$
+                }
 
-                TmfCoreTracer.traceEvent(fProvider, fRequest, event);
-                if (fRequest.getDataType().isInstance(event)) {
-                    fRequest.handleData(event);
+                // Keep the events up to the end of the request
+                int nbEvents = 0;
+                boolean isSameType = true;
+                for (ITmfEvent event : block) {
+                    if (fProvider.isCompleted(fRequest, event, nbRead + nbEvents)) {
+                        isLastBlock = true;
+                        break;
+                    }
+                    TmfCoreTracer.traceEvent(fProvider, fRequest, event);
+                    isSameType &= dataType.isInstance(event);
+                    nbEvents++;
                 }
+                List<@NonNull ITmfEvent> events = block.subList(0, nbEvents);
+                if (!isSameType) {
+                    events = new ArrayList<>(events);
+                    events.removeIf(event -> !dataType.isInstance(event));
+                }
+                if (!events.isEmpty()) {
+                    fRequest.handleData(events);
+                }
+                nbRead += nbEvents;
 
                 // Pause execution if requested
                 while (fIsPaused) {
@@ -198,10 +230,7 @@ public class TmfEventThread implements Runnable {
                     latch.await();
                 }
 
-                // To avoid an unnecessary read passed the last event requested
-                if (++nbRead < nbRequested) {
-                    event = fProvider.getNext(context);
-                }
+                blockSize = Math.min(blockSize * 2, ITmfEventProvider.EVENT_BLOCK_SIZE);
             }
 
             isCompleted = true;
@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -28,6 +29,7 @@ import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 /**
  * The TMF coalesced event request
@@ -54,6 +56,18 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
      */
     private Map<String, Set<ITmfEventRequest>> fRequestsCache = new HashMap<>();
 
+    /**
+     * The union of the fields needed by the sub-requests, null if one of them
+     * needs all the fields.
+     */
+    private @Nullable Map<String, Set<String>> fEventFields = new HashMap<>();
+
+    /**
+     * The union of the events handled by the sub-requests, null if one of
+     * them handles all the events.
+     */
+    private @Nullable Set<String> fEventTypes = new HashSet<>();
+
     // ------------------------------------------------------------------------
     // Constructor
     // ------------------------------------------------------------------------
@@ -106,6 +120,16 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         return fRange;
     }
 
+    @Override
+    public @Nullable Map<String, Set<String>> getEventFields() {
+        return fEventFields;
+    }
+
+    @Override
+    public @Nullable Set<String> getEventTypes() {
+        return fEventTypes;
+    }
+
     // ------------------------------------------------------------------------
     // Management
     // ------------------------------------------------------------------------
@@ -188,6 +212,24 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         if (!fRange.contains(endTime) && fRange.getEndTime().compareTo(endTime) < 0) {
             fRange = new TmfTimeRange(fRange.getStartTime(), endTime);
         }
+
+        Map<String, Set<String>> eventFields = fEventFields;
+        Map<String, Set<String>> requestFields = request.getEventFields();
+        if (requestFields == null) {
+            fEventFields = null;
+        } else if (eventFields != null) {
+            for (Map.Entry<String, Set<String>> entry : requestFields.entrySet()) {
+                eventFields.computeIfAbsent(entry.getKey(), name -> new HashSet<>()).addAll(entry.getValue());
+            }
+        }
+
+        Set<String> eventTypes = fEventTypes;
+        Set<String> requestTypes = request.getEventTypes();
+        if (requestTypes == null) {
+            fEventTypes = null;
+        } else if (eventTypes != null) {
+            eventTypes.addAll(requestTypes);
+        }
     }
 
     /**
@@ -216,22 +258,8 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
 
         long index = getIndex() + getNbRead() - 1;
 
-        String traceName = data.getTrace().getName();
-        Set<ITmfEventRequest> requests = fRequestsCache.get(traceName);
-
-        if (requests == null) {
-            // Populate requests cache
-            requests = new HashSet<>();
-            for (ITmfEventRequest myRequest : fRequests) {
-                if (myRequest.getProviderFilter().matches(data)) {
-                    requests.add(myRequest);
-                }
-            }
-            fRequestsCache.put(traceName, requests);
-        }
-
         // dispatch event to relevant requests
-        for (ITmfEventRequest request : requests) {
+        for (ITmfEventRequest request : getRequests(data)) {
             long start = request.getIndex();
             if (!request.isCompleted() && index >= start && request.getNbRead() < request.getNbRequested()) {
                 ITmfTimestamp ts = data.getTimestamp();
@@ -257,6 +285,93 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         }
     }
 
+    /**
+     * Dispatch a block of events to the relevant requests. The consecutive
+     * events of a same trace are dispatched together, and the range, index and
+     * number of events of each request are checked once for all of them,
+     * unless the request covers only a part of them.
+     */
+    @Override
+    public void handleData(List<ITmfEvent> events) {
+        long firstIndex = getIndex() + getNbRead();
+        for (ITmfEvent event : events) {
+            super.handleData(event);
+        }
+
+        int runStart = 0;
+        while (runStart < events.size()) {
+            ITmfTrace trace = events.get(runStart).getTrace();
+            int runEnd = runStart + 1;
+            while (runEnd < events.size() && events.get(runEnd).getTrace() == trace) {
+                runEnd++;
+            }
+            dispatch(events.subList(runStart, runEnd), firstIndex + runStart);
+            runStart = runEnd;
+        }
+    }
+
+    private void dispatch(List<ITmfEvent> events, long firstIndex) {
+        ITmfTimestamp firstTime = events.get(0).getTimestamp();
+        ITmfTimestamp lastTime = events.get(events.size() - 1).getTimestamp();
+
+        for (ITmfEventRequest request : getRequests(events.get(0))) {
+            if (request.isCompleted()) {
+                continue;
+            }
+            TmfTimeRange range = request.getRange();
+            if (range.getEndTime().compareTo(firstTime) < 0 || range.getStartTime().compareTo(lastTime) > 0) {
+                continue;
+            }
+            long from = Math.max(0, request.getIndex() - firstIndex);
+            int remaining = request.getNbRequested() - request.getNbRead();
+            if (from >= events.size() || remaining <= 0) {
+                continue;
+            }
+
+            List<ITmfEvent> selected = events.subList((int) from, events.size());
+            Class<? extends ITmfEvent> dataType = request.getDataType();
+            boolean inRange = range.contains(firstTime) && range.contains(lastTime);
+            if (!inRange || !ITmfEvent.class.equals(dataType)) {
+                selected = new ArrayList<>(selected);
+                selected.removeIf(event -> !range.contains(event.getTimestamp()) || !dataType.isInstance(event));
+                if (selected.isEmpty()) {
+                    continue;
+                }
+            }
+            if (selected.size() > remaining) {
+                selected = selected.subList(0, remaining);
+            }
+
+            try {
+                request.handleData(selected);
+            } catch (Exception e) {
+                /* See handleData(ITmfEvent) */
+                Activator.logError("An uncaught exception happened on request " + request + ": " + e.getMessage());  //$NON-NLS-1$//$NON-NLS-2$
+                request.fail(e);
+            }
+        }
+    }
+
+    /**
+     * Get the sub-requests for the events of the trace of an event
+     */
+    private Set<ITmfEventRequest> getRequests(ITmfEvent data) {
+        String traceName = data.getTrace().getName();
+        Set<ITmfEventRequest> requests = fRequestsCache.get(traceName);
+
+        if (requests == null) {
+            // Populate requests cache
+            requests = new HashSet<>();
+            for (ITmfEventRequest myRequest : fRequests) {
+                if (myRequest.getProviderFilter().matches(data)) {
+                    requests.add(myRequest);
+                }
+            }
+            fRequestsCache.put(traceName, requests);
+        }
+        return requests;
+    }
+
     @Override
     public synchronized void start() {
         for (ITmfEventRequest request : fRequests) {
@@ -16,10 +16,16 @@ package org.eclipse.tracecompass.internal.tmf.core.request;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.util.Queue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -36,16 +42,24 @@ import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 
 /**
- * The request scheduler works with 5 slots with a specific time. It has 4 slots
- * for foreground requests and 1 slot for background requests, and it passes
- * through all the slots (foreground first and background after).
+ * The request scheduler runs the requests in lanes. Each priority (foreground
+ * and background) has its own number of lanes, so the requests of the UI never
+ * wait behind the analyses and the analyses are never starved by the UI. Each
+ * request reads the events with its own context, so the requests in different
+ * lanes run concurrently.
  *
- * Example: if we have one foreground and one background request, the foreground
- * request will be executed four times more often than the background request.
+ * The lanes of a priority that are idle are lent to the requests of the other
+ * priority, and given back as soon as a request of their priority is waiting.
+ * When there are more requests of a priority than lanes, the requests of that
+ * priority share the lanes with time slices: the request that has been running
+ * for the longest time is suspended and put back in the queue.
+ *
+ * The number of lanes can be set with the system properties
+ * {@value #FOREGROUND_LANES_PROPERTY} and {@value #BACKGROUND_LANES_PROPERTY}.
  *
  * @author Francois Chouinard
  * @author Simon Delisle
- * @version 1.1
+ * @version 1.2
  */
 public class TmfRequestExecutor implements Executor {
 
@@ -56,8 +70,18 @@ public class TmfRequestExecutor implements Executor {
     // Constants
     // ------------------------------------------------------------------------
 
+    /** System property for the number of lanes of the foreground requests */
+    public static final String FOREGROUND_LANES_PROPERTY = "org.eclipse.tracecompass.tmf.core.request.foregroundLanes"; //$NON-NLS-1$
+
+    /** System property for the number of lanes of the background requests */
+    public static final String BACKGROUND_LANES_PROPERTY = "org.eclipse.tracecompass.tmf.core.request.backgroundLanes"; //$NON-NLS-1$
+
     private static final long REQUEST_TIME = 100;
-    private static final int FOREGROUND_SLOT = 4;
+    private static final int DEFAULT_FOREGROUND_LANES = 1;
+    private static final int MAX_DEFAULT_BACKGROUND_LANES = 4;
+
+    // The priorities, in the order in which free lanes are given
+    private static final ExecutionType[] PRIORITIES = { ExecutionType.FOREGROUND, ExecutionType.BACKGROUND };
 
     // ------------------------------------------------------------------------
     // Attributes
@@ -67,26 +91,54 @@ public class TmfRequestExecutor implements Executor {
     private final ExecutorService fExecutor = Executors.newCachedThreadPool();
     private final String fExecutorName;
 
+    // The number of lanes per priority
+    private final int fForegroundLanes;
+    private final int fBackgroundLanes;
+
     // The request queues
-    private final Queue<TmfEventThread> fForegroundTasks = new ArrayBlockingQueue<>(10);
-    private final Queue<TmfEventThread> fBackgroundTasks = new ArrayBlockingQueue<>(10);
+    private final Deque<TmfEventThread> fForegroundTasks = new ArrayDeque<>();
+    private final Deque<TmfEventThread> fBackgroundTasks = new ArrayDeque<>();
 
-    // The tasks
-    private TmfEventThread fActiveTask;
+    // The running tasks, the ones that were started first are first
+    private final List<TmfEventThread> fActiveTasks = new ArrayList<>();
+
+    // The time at which the queued tasks were queued, and the wait statistics
+    private final Map<TmfEventThread, Long> fQueuedTimes = new IdentityHashMap<>();
+    private final Map<ExecutionType, WaitStatistics> fWaitStatistics = new EnumMap<>(ExecutionType.class);
 
     private Timer fTimer;
     private TimerTask fTimerTask;
 
-    private int fForegroundCycle = 0;
-
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
 
     /**
-     * Default constructor
+     * Default constructor, the number of lanes is read from the system
+     * properties, by default there is one foreground lane and one background
+     * lane per two processors, up to 4.
      */
     public TmfRequestExecutor() {
+        this(Integer.getInteger(FOREGROUND_LANES_PROPERTY, DEFAULT_FOREGROUND_LANES),
+                Integer.getInteger(BACKGROUND_LANES_PROPERTY, Math.min(MAX_DEFAULT_BACKGROUND_LANES, Runtime.getRuntime().availableProcessors() / 2)));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param foregroundLanes
+     *            The number of foreground requests that can run concurrently,
+     *            at least 1
+     * @param backgroundLanes
+     *            The number of background requests that can run concurrently,
+     *            at least 1
+     */
+    public TmfRequestExecutor(int foregroundLanes, int backgroundLanes) {
+        fForegroundLanes = Math.max(1, foregroundLanes);
+        fBackgroundLanes = Math.max(1, backgroundLanes);
+        for (ExecutionType type : PRIORITIES) {
+            fWaitStatistics.put(type, new WaitStatistics());
+        }
         // We know the canonical name is not null because we use ExecutorService
         // only
         String canonicalName = checkNotNull(fExecutor.getClass().getCanonicalName());
@@ -114,6 +166,55 @@ public class TmfRequestExecutor implements Executor {
         return fExecutor.isTerminated();
     }
 
+    /**
+     * @param type
+     *            the priority
+     * @return the number of lanes of the requests of this priority
+     */
+    public int getNbLanes(ExecutionType type) {
+        return (type == ExecutionType.FOREGROUND) ? fForegroundLanes : fBackgroundLanes;
+    }
+
+    /**
+     * @param type
+     *            the priority
+     * @return the number of requests of this priority that are waiting for a
+     *         lane, including the suspended ones
+     */
+    public synchronized int getQueueDepth(ExecutionType type) {
+        return getQueue(type).size();
+    }
+
+    /**
+     * @param type
+     *            the priority
+     * @return the number of requests of this priority that are running
+     */
+    public synchronized int getNbActiveTasks(ExecutionType type) {
+        return getNbActive(type);
+    }
+
+    /**
+     * @param type
+     *            the priority
+     * @return the average time, in nanoseconds, that the requests of this
+     *         priority waited in the queue before being started or resumed
+     */
+    public synchronized long getAverageWaitTime(ExecutionType type) {
+        WaitStatistics statistics = checkNotNull(fWaitStatistics.get(type));
+        return (statistics.fNbWaits == 0) ? 0 : statistics.fTotalWaitTime / statistics.fNbWaits;
+    }
+
+    /**
+     * @param type
+     *            the priority
+     * @return the longest time, in nanoseconds, that a request of this priority
+     *         waited in the queue before being started or resumed
+     */
+    public synchronized long getMaxWaitTime(ExecutionType type) {
+        return checkNotNull(fWaitStatistics.get(type)).fMaxWaitTime;
+    }
+
     // ------------------------------------------------------------------------
     // Operations
     // ------------------------------------------------------------------------
@@ -154,17 +255,11 @@ public class TmfRequestExecutor implements Executor {
                 }
             };
 
-            // Add the thread to the appropriate queue
-            ExecutionType priority = thread.getExecType();
-
-            if (priority == ExecutionType.FOREGROUND) {
-                if (!fForegroundTasks.offer(wrapper)) {
-                    wrapper.cancel();
-                }
-            } else {
-                if (!fBackgroundTasks.offer(wrapper)) {
-                    wrapper.cancel();
-                }
+            // Add the thread to the appropriate queue, and start it right away
+            // if a lane is free
+            enqueue(wrapper);
+            if (!isShutdown()) {
+                schedule(false);
             }
         }
     }
@@ -179,47 +274,25 @@ public class TmfRequestExecutor implements Executor {
 
         @Override
         public void run() {
-            scheduleNext();
+            rotate();
         }
     }
 
     /**
-     * Executes the next pending request, if applicable.
+     * Executes the next pending requests, if lanes are free.
      */
     protected synchronized void scheduleNext() {
         if (!isShutdown()) {
-            if (fActiveTask == null) {
-                schedule();
-            } else if (fActiveTask.getExecType() == ExecutionType.FOREGROUND) {
-                if (fActiveTask.getThread().isCompleted()) {
-                    fActiveTask = null;
-                    schedule();
-                } else {
-                    if (hasTasks()) {
-                        fActiveTask.getThread().suspend();
-                        if (!fForegroundTasks.offer(fActiveTask)) {
-                            fActiveTask.cancel();
-                            fActiveTask = null;
-                        }
-                        schedule();
-                    }
-                }
+            schedule(false);
+        }
+    }
 
-            } else if (fActiveTask.getExecType() == ExecutionType.BACKGROUND) {
-                if (fActiveTask.getThread().isCompleted()) {
-                    fActiveTask = null;
-                    schedule();
-                } else {
-                    if (hasTasks()) {
-                        fActiveTask.getThread().suspend();
-                        if (!fBackgroundTasks.offer(fActiveTask)) {
-                            fActiveTask.cancel();
-                            fActiveTask = null;
-                        }
-                        schedule();
-                    }
-                }
-            }
+    /**
+     * Gives the lanes to the next pending requests, at the end of a time slice.
+     */
+    private synchronized void rotate() {
+        if (!isShutdown()) {
+            schedule(true);
         }
     }
 
@@ -235,16 +308,19 @@ public class TmfRequestExecutor implements Executor {
             fTimer.cancel();
         }
 
-        if (fActiveTask != null) {
-            fActiveTask.cancel();
+        for (TmfEventThread task : fActiveTasks) {
+            task.cancel();
         }
+        fActiveTasks.clear();
 
-        while ((fActiveTask = fForegroundTasks.poll()) != null) {
-            fActiveTask.cancel();
+        TmfEventThread task;
+        while ((task = fForegroundTasks.poll()) != null) {
+            task.cancel();
         }
-        while ((fActiveTask = fBackgroundTasks.poll()) != null) {
-            fActiveTask.cancel();
+        while ((task = fBackgroundTasks.poll()) != null) {
+            task.cancel();
         }
+        fQueuedTimes.clear();
 
         fExecutor.shutdown();
         if (TmfCoreTracer.isComponentTraced()) {
@@ -257,58 +333,137 @@ public class TmfRequestExecutor implements Executor {
     // ------------------------------------------------------------------------
 
     /**
-     * Determine which type of request (foreground or background) we schedule
-     * next
+     * Give the free lanes to the pending requests
+     *
+     * @param endOfSlice
+     *            true if the time slice of the running requests is over, so
+     *            they are suspended if requests of their priority are waiting
      */
-    private void schedule() {
-        if (!fForegroundTasks.isEmpty()) {
-            scheduleNextForeground();
-        } else {
-            scheduleNextBackground();
+    private void schedule(boolean endOfSlice) {
+        removeCompletedTasks();
+
+        /*
+         * Take back the lanes that were lent to the other priority, and at the
+         * end of a time slice, suspend one running request of each priority
+         * that has requests waiting.
+         */
+        for (ExecutionType type : PRIORITIES) {
+            if (getQueue(type).isEmpty()) {
+                continue;
+            }
+            ExecutionType other = (type == ExecutionType.FOREGROUND) ? ExecutionType.BACKGROUND : ExecutionType.FOREGROUND;
+            int nbActive = getNbActive(type);
+            int nbBorrowed = getNbActive(other) - getNbLanes(other);
+            if (fActiveTasks.size() < getNbLanes()) {
+                continue;
+            }
+            if (nbActive < getNbLanes(type) && nbBorrowed > 0) {
+                suspend(other);
+            } else if (endOfSlice && nbActive >= getNbLanes(type)) {
+                suspend(type);
+            }
+        }
+
+        /* Start the requests of each priority in their own lanes */
+        for (ExecutionType type : PRIORITIES) {
+            Deque<TmfEventThread> queue = getQueue(type);
+            while (!queue.isEmpty() && getNbActive(type) < getNbLanes(type) && fActiveTasks.size() < getNbLanes()) {
+                start(checkNotNull(queue.poll()));
+            }
+        }
+
+        /* Lend the lanes that are still free, the foreground requests first */
+        for (ExecutionType type : PRIORITIES) {
+            Deque<TmfEventThread> queue = getQueue(type);
+            while (!queue.isEmpty() && fActiveTasks.size() < getNbLanes()) {
+                start(checkNotNull(queue.poll()));
+            }
         }
+
+        TraceCompassLogUtils.traceCounter(LOGGER, Level.FINER, "RequestExecutor:Queues", //$NON-NLS-1$
+                "foreground", fForegroundTasks.size(), "background", fBackgroundTasks.size(), "active", fActiveTasks.size()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
     }
 
     /**
-     * Schedule the next foreground request
+     * Remove the completed tasks from the running tasks and from the queues,
+     * a task that was suspended may have completed before being paused
      */
-    private void scheduleNextForeground() {
-        if (fForegroundCycle < FOREGROUND_SLOT || fBackgroundTasks.isEmpty()) {
-            ++fForegroundCycle;
-            fActiveTask = fForegroundTasks.poll();
-            executefActiveTask();
-        } else {
-            fActiveTask = null;
-            scheduleNextBackground();
+    private void removeCompletedTasks() {
+        fActiveTasks.removeIf(task -> task.getThread().isCompleted());
+        for (ExecutionType type : PRIORITIES) {
+            Iterator<TmfEventThread> iter = getQueue(type).iterator();
+            while (iter.hasNext()) {
+                TmfEventThread task = iter.next();
+                if (task.getThread().isCompleted()) {
+                    iter.remove();
+                    fQueuedTimes.remove(task);
+                }
+            }
         }
     }
 
     /**
-     * Schedule the next background request
+     * Suspend the request of a priority that has been running for the longest
+     * time, and put it back in its queue
      */
-    private void scheduleNextBackground() {
-        fForegroundCycle = 0;
-        if (!fBackgroundTasks.isEmpty()) {
-            fActiveTask = fBackgroundTasks.poll();
-            executefActiveTask();
+    private void suspend(ExecutionType type) {
+        for (TmfEventThread task : fActiveTasks) {
+            if (task.getExecType() == type) {
+                fActiveTasks.remove(task);
+                task.getThread().suspend();
+                enqueue(task);
+                return;
+            }
         }
     }
 
     /**
-     * Execute or resume the active task
+     * Execute or resume a task
      */
-    private void executefActiveTask() {
-        if (fActiveTask.getThread().isPaused()) {
-            fActiveTask.getThread().resume();
+    private void start(TmfEventThread task) {
+        Long queuedTime = fQueuedTimes.remove(task);
+        if (queuedTime != null) {
+            long waitTime = System.nanoTime() - queuedTime;
+            WaitStatistics statistics = checkNotNull(fWaitStatistics.get(task.getExecType()));
+            statistics.fNbWaits++;
+            statistics.fTotalWaitTime += waitTime;
+            statistics.fMaxWaitTime = Math.max(statistics.fMaxWaitTime, waitTime);
+        }
+        fActiveTasks.add(task);
+        if (task.getThread().isPaused()) {
+            task.getThread().resume();
         } else {
-            fExecutor.execute(fActiveTask);
+            fExecutor.execute(task);
         }
     }
 
-    /**
-     * Check if the scheduler has tasks
-     */
-    private boolean hasTasks() {
-        return !(fForegroundTasks.isEmpty() && fBackgroundTasks.isEmpty());
+    private void enqueue(TmfEventThread task) {
+        getQueue(task.getExecType()).offer(task);
+        fQueuedTimes.put(task, System.nanoTime());
+    }
+
+    private Deque<TmfEventThread> getQueue(ExecutionType type) {
+        return (type == ExecutionType.FOREGROUND) ? fForegroundTasks : fBackgroundTasks;
+    }
+
+    private int getNbActive(ExecutionType type) {
+        int count = 0;
+        for (TmfEventThread task : fActiveTasks) {
+            if (task.getExecType() == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int getNbLanes() {
+        return fForegroundLanes + fBackgroundLanes;
+    }
+
+    private static final class WaitStatistics {
+        private long fNbWaits = 0;
+        private long fTotalWaitTime = 0;
+        private long fMaxWaitTime = 0;
     }
 
     // ------------------------------------------------------------------------
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partitioned;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.TimeRangeCondition;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+
+/**
+ * State history back-end used for one time partition of a partitioned build.
+ * It does not answer any past query, it only appends the intervals it receives
+ * to a temporary file, so that they can be replayed, in the order in which they
+ * were inserted, once the previous partitions have been merged in the real
+ * history.
+ *
+ * Only the state values written by the standard state providers (null,
+ * integers, longs, doubles and strings) can be recorded.
+ */
+public class PartitionRecorderBackend implements IStateHistoryBackend {
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_INTEGER = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_DOUBLE = 3;
+    private static final byte TYPE_STRING = 4;
+
+    /**
+     * Listener for the intervals read back from a recorder's file
+     */
+    @FunctionalInterface
+    public interface IRecordedIntervalListener {
+
+        /**
+         * Called for each recorded interval, in insertion order
+         *
+         * @param start
+         *            The start time of the interval
+         * @param end
+         *            The end time of the interval
+         * @param quark
+         *            The quark of the attribute, in the partition's state system
+         * @param value
+         *            The value of the interval
+         */
+        void interval(long start, long end, int quark, @Nullable Object value);
+    }
+
+    private final @NonNull String fSsid;
+    private final long fStartTime;
+    private final File fFile;
+    private final DataOutputStream fOutput;
+
+    private long fEndTime;
+    private long fNbIntervals = 0;
+    private boolean fClosed = false;
+
+    /**
+     * Constructor
+     *
+     * @param ssid
+     *            The state system's id
+     * @param startTime
+     *            The start time of this partition
+     * @param file
+     *            The temporary file where to record the intervals. It will be
+     *            overwritten.
+     * @throws IOException
+     *             If the file cannot be opened for writing
+     */
+    public PartitionRecorderBackend(@NonNull String ssid, long startTime, File file) throws IOException {
+        fSsid = ssid;
+        fStartTime = startTime;
+        fEndTime = startTime;
+        fFile = file;
+        fOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, false)));
+    }
+
+    @Override
+    public String getSSID() {
+        return fSsid;
+    }
+
+    @Override
+    public long getStartTime() {
+        return fStartTime;
+    }
+
+    @Override
+    public long getEndTime() {
+        return fEndTime;
+    }
+
+    /**
+     * Get the number of intervals recorded so far
+     *
+     * @return The number of intervals
+     */
+    public long getNbIntervals() {
+        return fNbIntervals;
+    }
+
+    @Override
+    public void insertPastState(long stateStartTime, long stateEndTime, int quark, @Nullable Object value) {
+        try {
+            fOutput.writeLong(stateStartTime);
+            fOutput.writeLong(stateEndTime);
+            fOutput.writeInt(quark);
+            writeValue(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fNbIntervals++;
+        fEndTime = Math.max(fEndTime, stateEndTime);
+    }
+
+    private void writeValue(@Nullable Object value) throws IOException {
+        if (value == null) {
+            fOutput.writeByte(TYPE_NULL);
+        } else if (value instanceof Integer) {
+            fOutput.writeByte(TYPE_INTEGER);
+            fOutput.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            fOutput.writeByte(TYPE_LONG);
+            fOutput.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            fOutput.writeByte(TYPE_DOUBLE);
+            fOutput.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            fOutput.writeByte(TYPE_STRING);
+            fOutput.writeInt(bytes.length);
+            fOutput.write(bytes);
+        } else {
+            throw new IllegalStateException("Value of type " + value.getClass() + " cannot be recorded for a partitioned build"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    @Override
+    public void finishedBuilding(long endTime) {
+        fEndTime = Math.max(fEndTime, endTime);
+        close();
+    }
+
+    private void close() {
+        if (fClosed) {
+            return;
+        }
+        fClosed = true;
+        try {
+            fOutput.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read back all the intervals recorded in this partition, in the order in
+     * which they were inserted. The history must be finished building.
+     *
+     * @param listener
+     *            The listener to call for each interval
+     * @throws IOException
+     *             If the file cannot be read
+     */
+    public void replay(IRecordedIntervalListener listener) throws IOException {
+        if (!fClosed) {
+            throw new IllegalStateException("Partition " + fSsid + " is still being built"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(fFile)))) {
+            for (long i = 0; i < fNbIntervals; i++) {
+                long start = input.readLong();
+                long end = input.readLong();
+                int quark = input.readInt();
+                listener.interval(start, end, quark, readValue(input));
+            }
+        }
+    }
+
+    private static @Nullable Object readValue(DataInputStream input) throws IOException {
+        byte type = input.readByte();
+        switch (type) {
+        case TYPE_NULL:
+            return null;
+        case TYPE_INTEGER:
+            return input.readInt();
+        case TYPE_LONG:
+            return input.readLong();
+        case TYPE_DOUBLE:
+            return input.readDouble();
+        case TYPE_STRING:
+            byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        default:
+            throw new IOException("Unknown value type in partition file: " + type); //$NON-NLS-1$
+        }
+    }
+
+    @Override
+    public @Nullable FileInputStream supplyAttributeTreeReader() {
+        return null;
+    }
+
+    @Override
+    public @Nullable File supplyAttributeTreeWriterFile() {
+        return null;
+    }
+
+    @Override
+    public long supplyAttributeTreeWriterFilePosition() {
+        return -1;
+    }
+
+    @Override
+    public void removeFiles() {
+        close();
+        try {
+            Files.deleteIfExists(fFile.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        removeFiles();
+    }
+
+    /**
+     * Partition back-ends cannot run queries. Nothing will be put in
+     * currentStateInfo.
+     */
+    @Override
+    public void doQuery(@NonNull List<@Nullable ITmfStateInterval> currentStateInfo, long t) {
+        /* Cannot do past queries */
+    }
+
+    /**
+     * Partition back-ends cannot run queries. 'null' will be returned.
+     *
+     * @return Always returns null.
+     */
+    @Override
+    public @Nullable ITmfStateInterval doSingularQuery(long t, int attributeQuark) {
+        /* Cannot do past queries */
+        return null;
+    }
+
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(IntegerRangeCondition quarks,
+            TimeRangeCondition times) throws TimeRangeException {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partitioned;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+
+/**
+ * State system of one time partition of a partitioned build. Its attributes
+ * start with a null state, but that state is unknown: it is whatever state the
+ * attribute had at the end of the previous partition. This state system
+ * records when the provider first sets each attribute, so that an explicit
+ * null can be told apart from that unknown state when the partition is merged.
+ */
+@SuppressWarnings("restriction")
+public class PartitionStateSystem extends StateSystem {
+
+    /** First change time of the attributes the provider never set */
+    private static final long NOT_SET = Long.MAX_VALUE;
+
+    private final PartitionRecorderBackend fRecorder;
+    private long[] fFirstChangeTimes = new long[0];
+
+    /**
+     * Constructor
+     *
+     * @param recorder
+     *            The back-end that records the intervals of this partition
+     */
+    public PartitionStateSystem(@NonNull PartitionRecorderBackend recorder) {
+        super(recorder);
+        fRecorder = recorder;
+    }
+
+    /**
+     * Get the back-end that records the intervals of this partition
+     *
+     * @return The recorder back-end
+     */
+    public PartitionRecorderBackend getRecorder() {
+        return fRecorder;
+    }
+
+    /**
+     * Get the time at which the provider first set the state of an attribute
+     * in this partition. Until then, the state of the attribute is unknown.
+     *
+     * @param quark
+     *            The quark of the attribute, in this state system
+     * @return The first time the attribute was set, or {@link Long#MAX_VALUE}
+     *         if it never was
+     */
+    public long getFirstChangeTime(int quark) {
+        return (quark < fFirstChangeTimes.length ? fFirstChangeTimes[quark] : NOT_SET);
+    }
+
+    private void setChanged(long t, int quark) {
+        if (quark >= fFirstChangeTimes.length) {
+            int length = fFirstChangeTimes.length;
+            fFirstChangeTimes = Arrays.copyOf(fFirstChangeTimes, Math.max(quark + 1, length * 2));
+            Arrays.fill(fFirstChangeTimes, length, fFirstChangeTimes.length, NOT_SET);
+        }
+        if (t < fFirstChangeTimes[quark]) {
+            fFirstChangeTimes[quark] = t;
+        }
+    }
+
+    @Override
+    public void modifyAttribute(long t, Object value, int attributeQuark)
+            throws TimeRangeException, StateValueTypeException {
+        setChanged(t, attributeQuark);
+        super.modifyAttribute(t, value, attributeQuark);
+    }
+
+    @Deprecated
+    @Override
+    public void modifyAttribute(long t, ITmfStateValue value, int attributeQuark)
+            throws TimeRangeException, StateValueTypeException {
+        setChanged(t, attributeQuark);
+        super.modifyAttribute(t, value, attributeQuark);
+    }
+
+    @Override
+    public void removeAttribute(long t, int attributeQuark)
+            throws TimeRangeException {
+        setChanged(t, attributeQuark);
+        super.removeAttribute(t, attributeQuark);
+    }
+
+    @Override
+    public void updateOngoingState(ITmfStateValue newValue, int attributeQuark) {
+        /* The new value applies since the start of the ongoing state */
+        setChanged(getOngoingStartTime(attributeQuark), attributeQuark);
+        super.updateOngoingState(newValue, attributeQuark);
+    }
+
+    @Override
+    public void updateOngoingState(Object newValue, int attributeQuark) {
+        setChanged(getOngoingStartTime(attributeQuark), attributeQuark);
+        super.updateOngoingState(newValue, attributeQuark);
+    }
+}
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partitioned;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
+import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils.ScopeLog;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * Builds a state history by splitting the trace's time range in consecutive
+ * partitions. Each partition is read and handled by its own instance of the
+ * state provider, obtained with {@link ITmfStateProvider#getNewInstance()}, in
+ * its own thread, and records its intervals with a
+ * {@link PartitionRecorderBackend}. The partitions are then merged, in order,
+ * in a {@link PartitionedStateSystem} as soon as they are done.
+ *
+ * Only the first partition can be seeded with an initial state. The other ones
+ * start from an unknown state, so this is only used for providers that support
+ * it, see {@link ITmfStateProvider#supportsPartitionedBuild()}.
+ */
+public class PartitionedHistoryBuilder {
+
+    /**
+     * System property to set the number of partitions in which to build the
+     * state histories that support it. Partitioned builds are disabled if it
+     * is not set or lower than 2.
+     */
+    public static final String PARTITIONS_PROPERTY = "org.eclipse.tracecompass.tmf.core.statesystem.buildPartitions"; //$NON-NLS-1$
+
+    private static final Logger LOGGER = TraceCompassLog.getLogger(PartitionedHistoryBuilder.class);
+
+    private static final String PARTITION_EXTENSION = ".partition"; //$NON-NLS-1$
+
+    private final @NonNull String fId;
+    private final ITmfStateProvider fProvider;
+    private final PartitionedStateSystem fStateSystem;
+    private final File fHtFile;
+    private final int fNbPartitions;
+
+    private static final class Partition {
+        private final long fStart;
+        private final long fEnd;
+        private final ITmfStateProvider fProvider;
+        private final PartitionRecorderBackend fRecorder;
+        private final PartitionStateSystem fStateSystem;
+
+        public Partition(long start, long end, ITmfStateProvider provider, PartitionRecorderBackend recorder) {
+            fStart = start;
+            fEnd = end;
+            fProvider = provider;
+            fRecorder = recorder;
+            fStateSystem = new PartitionStateSystem(recorder);
+            provider.assignTargetStateSystem(fStateSystem);
+        }
+    }
+
+    /**
+     * Get the number of partitions set by the {@link #PARTITIONS_PROPERTY}
+     * property
+     *
+     * @return The number of partitions, 1 if partitioned builds are disabled
+     */
+    public static int getNbPartitions() {
+        return Math.max(1, Integer.getInteger(PARTITIONS_PROPERTY, 1));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param id
+     *            The ID of the state system
+     * @param provider
+     *            The state provider, used to get the provider instance of each
+     *            partition. It is not assigned a state system itself.
+     * @param stateSystem
+     *            The state system in which to merge the partitions
+     * @param htFile
+     *            The history file, next to which the partitions' temporary
+     *            files are written
+     * @param nbPartitions
+     *            The number of partitions
+     */
+    public PartitionedHistoryBuilder(@NonNull String id, ITmfStateProvider provider, PartitionedStateSystem stateSystem, File htFile, int nbPartitions) {
+        fId = id;
+        fProvider = provider;
+        fStateSystem = stateSystem;
+        fHtFile = htFile;
+        fNbPartitions = nbPartitions;
+    }
+
+    /**
+     * Build the history of the whole trace. When this returns normally, the
+     * state system's history is closed.
+     *
+     * @param monitor
+     *            The progress monitor, to cancel the build
+     * @param initialState
+     *            Callback to load the initial state in the state system of the
+     *            first partition
+     * @return True if the history was built, false if it was cancelled
+     * @throws ExecutionException
+     *             If one of the partitions failed
+     */
+    public boolean build(IProgressMonitor monitor, Consumer<ITmfStateSystemBuilder> initialState) throws ExecutionException {
+        ITmfTrace trace = fProvider.getTrace();
+        long start = trace.getStartTime().toNanos();
+        long end = Math.max(start, trace.getEndTime().toNanos());
+        int nbPartitions = (int) Math.max(1, Math.min(fNbPartitions, end - start + 1));
+        /* Spread the remainder of the division on the first partitions */
+        long step = (end - start + 1) / nbPartitions;
+        long remainder = (end - start + 1) % nbPartitions;
+
+        List<Partition> partitions = new ArrayList<>(nbPartitions);
+        List<Future<?>> results = new ArrayList<>(nbPartitions);
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(nbPartitions, r -> {
+            Thread thread = new Thread(r, fId + " Partition Builder " + threadIndex.getAndIncrement()); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ScopeLog log = new ScopeLog(LOGGER, Level.FINE, "PartitionedHistoryBuilder:build", "id", fId, "partitions", nbPartitions)) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            long partitionStart = start;
+            for (int i = 0; i < nbPartitions; i++) {
+                long partitionEnd = partitionStart + step - (i < remainder ? 0 : 1);
+                File file = new File(fHtFile.getPath() + PARTITION_EXTENSION + i);
+                Partition partition = new Partition(partitionStart, partitionEnd, fProvider.getNewInstance(), new PartitionRecorderBackend(fId, partitionStart, file));
+                partitions.add(partition);
+                partitionStart = partitionEnd + 1;
+            }
+            initialState.accept(partitions.get(0).fStateSystem);
+
+            for (Partition partition : partitions) {
+                results.add(executor.submit(() -> readPartition(trace, partition, monitor)));
+            }
+
+            /* Merge the partitions in order, while the next ones are still running */
+            for (int i = 0; i < nbPartitions; i++) {
+                results.get(i).get();
+                Partition partition = partitions.get(i);
+                Throwable failureCause = partition.fProvider.getFailureCause();
+                if (failureCause != null) {
+                    throw new ExecutionException(failureCause);
+                }
+                if (monitor.isCanceled()) {
+                    return false;
+                }
+                fStateSystem.mergePartition(partition.fStateSystem);
+                partition.fRecorder.removeFiles();
+            }
+            fStateSystem.closeMerge();
+            return true;
+        } catch (IOException e) {
+            throw new ExecutionException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(e);
+        } finally {
+            /* Stop the partitions that are still running if the build failed */
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (int i = 0; i < partitions.size(); i++) {
+                Partition partition = partitions.get(i);
+                if (i >= results.size()) {
+                    /* This partition's provider was never run */
+                    partition.fProvider.dispose();
+                }
+                partition.fRecorder.removeFiles();
+            }
+        }
+    }
+
+    private static void readPartition(ITmfTrace trace, Partition partition, IProgressMonitor monitor) {
+        try (ScopeLog log = new ScopeLog(LOGGER, Level.FINE, "PartitionedHistoryBuilder:readPartition", "start", partition.fStart, "end", partition.fEnd)) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            ITmfContext context = trace.seekEvent(TmfTimestamp.fromNanos(partition.fStart));
+            try {
+                ITmfEvent event = trace.getNext(context);
+                while (event != null && event.getTimestamp().toNanos() <= partition.fEnd &&
+                        !monitor.isCanceled() && !Thread.currentThread().isInterrupted()) {
+                    partition.fProvider.processEvent(event);
+                    event = trace.getNext(context);
+                }
+            } finally {
+                context.dispose();
+                /* Clear the interruption, the provider must still be stopped */
+                Thread.interrupted();
+                /* Waits for the provider's events to be handled and closes the partition's history */
+                partition.fProvider.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partitioned;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
+
+/**
+ * State system that is built by merging, in time order, the histories of
+ * consecutive time partitions that were built independently.
+ *
+ * Each partition's state system starts without knowing the state at its start
+ * time, so all its attributes begin with a null interval. When a partition is
+ * merged, the state an attribute had at the end of the previous partition
+ * continues until the partition first sets that attribute, see
+ * {@link PartitionStateSystem#getFirstChangeTime(int)}. An explicit null is
+ * therefore kept, while the unknown null state before it is not. A first value
+ * equal to the previous state extends it. Attribute quarks of the partitions
+ * are mapped to this state system's quarks by their full path.
+ *
+ * Intervals still ongoing at the end of a partition are kept in memory until
+ * the next partition tells where they end. Those still ongoing after the last
+ * partition are closed by {@link #closeMerge()}.
+ */
+@SuppressWarnings("restriction")
+public class PartitionedStateSystem extends StateSystem {
+
+    private static final class OpenInterval {
+        private final long fStart;
+        private final @Nullable Object fValue;
+
+        public OpenInterval(long start, @Nullable Object value) {
+            fStart = start;
+            fValue = value;
+        }
+    }
+
+    private final IStateHistoryBackend fBackend;
+    private final List<@Nullable OpenInterval> fOpenIntervals = new ArrayList<>();
+    private long fEndTime;
+
+    /**
+     * Constructor
+     *
+     * @param backend
+     *            The back-end in which to write the merged history
+     */
+    public PartitionedStateSystem(@NonNull IStateHistoryBackend backend) {
+        super(backend);
+        fBackend = backend;
+        fEndTime = backend.getStartTime();
+    }
+
+    /**
+     * Merge the next partition into this state system. Partitions must be
+     * merged in time order, and the partition's history must be finished
+     * building.
+     *
+     * @param partition
+     *            The state system of the partition, used to resolve the paths of
+     *            its attributes and to know when it first set them
+     * @throws IOException
+     *             If the partition's intervals cannot be read back
+     */
+    public void mergePartition(PartitionStateSystem partition) throws IOException {
+        PartitionRecorderBackend recorder = partition.getRecorder();
+        final long partitionStart = recorder.getStartTime();
+        final long partitionEnd = recorder.getEndTime();
+        if (partitionStart < fEndTime) {
+            throw new IllegalArgumentException("Partitions must be merged in time order"); //$NON-NLS-1$
+        }
+
+        int[] quarks = new int[partition.getNbAttributes()];
+        Arrays.fill(quarks, -1);
+
+        recorder.replay((start, end, partitionQuark, value) -> {
+            int quark = quarks[partitionQuark];
+            if (quark < 0) {
+                quark = getQuark(partition.getFullAttributePathArray(partitionQuark));
+                quarks[partitionQuark] = quark;
+            }
+
+            long realStart = start;
+            OpenInterval open = fOpenIntervals.get(quark);
+            if (open != null) {
+                if (start == partitionStart && value == null) {
+                    /*
+                     * The attribute's first interval in this partition, its
+                     * state is unknown until the partition first sets it.
+                     */
+                    long firstChange = partition.getFirstChangeTime(partitionQuark);
+                    if (firstChange > end) {
+                        /* The previous state goes on */
+                        return;
+                    }
+                    /* Explicitly set to null from there */
+                    realStart = firstChange;
+                }
+                fOpenIntervals.set(quark, null);
+                if (Objects.equals(value, open.fValue)) {
+                    /* Same state as before, extend it */
+                    realStart = open.fStart;
+                } else if (realStart > open.fStart) {
+                    fBackend.insertPastState(open.fStart, realStart - 1, quark, open.fValue);
+                }
+            }
+
+            if (end >= partitionEnd) {
+                fOpenIntervals.set(quark, new OpenInterval(realStart, value));
+            } else {
+                fBackend.insertPastState(realStart, end, quark, value);
+            }
+        });
+        fEndTime = Math.max(fEndTime, partitionEnd);
+    }
+
+    private int getQuark(String[] path) {
+        int quark = getQuarkAbsoluteAndAdd(path);
+        /*
+         * New attributes, and the parents that were added with them, did not
+         * exist in the previous partitions, so they were null since the
+         * beginning.
+         */
+        long startTime = getStartTime();
+        while (fOpenIntervals.size() < getNbAttributes()) {
+            fOpenIntervals.add(new OpenInterval(startTime, null));
+        }
+        return quark;
+    }
+
+    /**
+     * Close the history after the last partition was merged. The intervals
+     * that are still ongoing end at the end time of the last partition.
+     */
+    public void closeMerge() {
+        List<@NonNull ITmfStateInterval> ongoing = new ArrayList<>(fOpenIntervals.size());
+        for (int quark = 0; quark < fOpenIntervals.size(); quark++) {
+            OpenInterval open = Objects.requireNonNull(fOpenIntervals.get(quark));
+            ongoing.add(new TmfStateInterval(open.fStart, fEndTime, quark, open.fValue));
+        }
+        fOpenIntervals.clear();
+        replaceOngoingState(ongoing);
+        closeHistory(fEndTime);
+    }
+}
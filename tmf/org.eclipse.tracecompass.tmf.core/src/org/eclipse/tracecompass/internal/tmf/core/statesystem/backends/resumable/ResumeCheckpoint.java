@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.resumable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * The position in the trace up to which a full state history was built, saved
+ * in a small file next to the history file. It allows to resume the history
+ * when the trace has grown since, for example a live trace that was closed
+ * before the end of the session, instead of rebuilding it from the start.
+ *
+ * The position is the number of events read, which is the rank of the first
+ * event to read when resuming. This assumes that the trace only grows by
+ * appending events in time order: the saved timestamp of the last event read
+ * is compared with the trace's, and the events appended must be after the end
+ * of the history, otherwise the history is rebuilt.
+ */
+public final class ResumeCheckpoint {
+
+    /**
+     * System property that enables saving the position of full state
+     * histories, to resume them when the trace grows. Histories are only
+     * resumed for state providers that support it.
+     */
+    public static final String RESUME_PROPERTY = "org.eclipse.tracecompass.tmf.core.statesystem.resumeHistories"; //$NON-NLS-1$
+
+    private static final String EXTENSION = ".resume"; //$NON-NLS-1$
+    private static final String TEMP_EXTENSION = ".tmp"; //$NON-NLS-1$
+    private static final int MAGIC_NUMBER = 0x05FFE5C7;
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * How the trace compares with the position of a checkpoint
+     */
+    public enum TraceStatus {
+        /** The trace has no events after the checkpoint */
+        UP_TO_DATE,
+        /** Events were appended to the trace after the checkpoint */
+        APPENDED,
+        /** The trace does not match the checkpoint, it must be read again */
+        MODIFIED
+    }
+
+    private final long fNbEvents;
+    private final long fLastEventTime;
+    private final long fHistoryEndTime;
+
+    /**
+     * Constructor
+     *
+     * @param nbEvents
+     *            The number of events read to build the history
+     * @param lastEventTime
+     *            The timestamp of the last event read, in nanoseconds
+     * @param historyEndTime
+     *            The end time of the history
+     */
+    public ResumeCheckpoint(long nbEvents, long lastEventTime, long historyEndTime) {
+        fNbEvents = nbEvents;
+        fLastEventTime = lastEventTime;
+        fHistoryEndTime = historyEndTime;
+    }
+
+    /**
+     * Get whether histories should be resumed, as set by the
+     * {@link #RESUME_PROPERTY} property
+     *
+     * @return Whether histories should be resumed
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(RESUME_PROPERTY);
+    }
+
+    /**
+     * Get the number of events read to build the history, which is the rank
+     * of the first event to read when resuming it
+     *
+     * @return The number of events
+     */
+    public long getNbEvents() {
+        return fNbEvents;
+    }
+
+    /**
+     * Get the timestamp of the last event read
+     *
+     * @return The timestamp, in nanoseconds
+     */
+    public long getLastEventTime() {
+        return fLastEventTime;
+    }
+
+    /**
+     * Get the end time of the history
+     *
+     * @return The end time of the history
+     */
+    public long getHistoryEndTime() {
+        return fHistoryEndTime;
+    }
+
+    /**
+     * Compare the trace with this checkpoint. The event at the checkpoint's
+     * last position must have the same timestamp as the event read then, and
+     * the following event, if any, must be after the end of the history.
+     *
+     * @param trace
+     *            The trace
+     * @return How the trace compares with this checkpoint
+     */
+    public TraceStatus compareTo(ITmfTrace trace) {
+        if (fNbEvents <= 0) {
+            return TraceStatus.MODIFIED;
+        }
+        ITmfContext context = trace.seekEvent(fNbEvents - 1);
+        try {
+            ITmfEvent last = trace.getNext(context);
+            if (last == null || last.getTimestamp().toNanos() != fLastEventTime) {
+                return TraceStatus.MODIFIED;
+            }
+            ITmfEvent next = trace.getNext(context);
+            if (next == null) {
+                return TraceStatus.UP_TO_DATE;
+            }
+            long nextTime = next.getTimestamp().toNanos();
+            return (nextTime > fLastEventTime && nextTime > fHistoryEndTime) ? TraceStatus.APPENDED : TraceStatus.MODIFIED;
+        } finally {
+            context.dispose();
+        }
+    }
+
+    /**
+     * Read the checkpoint of a history file
+     *
+     * @param htFile
+     *            The history file
+     * @return The checkpoint, or null if there is none or it cannot be read
+     */
+    public static @Nullable ResumeCheckpoint read(File htFile) {
+        Path path = getPath(htFile);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            if (in.readInt() != MAGIC_NUMBER || in.readInt() != FILE_VERSION) {
+                return null;
+            }
+            return new ResumeCheckpoint(in.readLong(), in.readLong(), in.readLong());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Save this checkpoint next to a history file. It is written to a
+     * temporary file first, so that an interrupted write does not leave a
+     * partial checkpoint.
+     *
+     * @param htFile
+     *            The history file
+     */
+    public void write(File htFile) {
+        Path path = getPath(htFile);
+        Path tempPath = path.resolveSibling(path.getFileName() + TEMP_EXTENSION);
+        try {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tempPath))) {
+                out.writeInt(MAGIC_NUMBER);
+                out.writeInt(FILE_VERSION);
+                out.writeLong(fNbEvents);
+                out.writeLong(fLastEventTime);
+                out.writeLong(fHistoryEndTime);
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Activator.logError("Error saving the checkpoint of history " + htFile, e); //$NON-NLS-1$
+            delete(htFile);
+        }
+    }
+
+    /**
+     * Delete the checkpoint of a history file, if any
+     *
+     * @param htFile
+     *            The history file
+     */
+    public static void delete(File htFile) {
+        Path path = getPath(htFile);
+        try {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(path.resolveSibling(path.getFileName() + TEMP_EXTENSION));
+        } catch (IOException e) {
+            Activator.logError("Error deleting the checkpoint of history " + htFile, e); //$NON-NLS-1$
+        }
+    }
+
+    private static Path getPath(File htFile) {
+        return new File(htFile.getPath() + EXTENSION).toPath();
+    }
+}
@@ -18,9 +18,11 @@ import java.util.Arrays;
 import java.util.PriorityQueue;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 
 import com.google.common.annotations.VisibleForTesting;
 
@@ -35,6 +37,10 @@ import com.google.common.annotations.VisibleForTesting;
  * <p>
  * The last trace refers to the trace from which the last event was "consumed"
  * at the experiment level.
+ * <p>
+ * The location of the context is updated in place as the events are read, and
+ * the experiment location is only created when it is requested, for instance
+ * for a checkpoint of the index.
  */
 public final class TmfExperimentContext extends TmfContext {
 
@@ -106,6 +112,16 @@ public final class TmfExperimentContext extends TmfContext {
      */
     private final PriorityQueue<ContextTuple> fPriority;
 
+    /**
+     * The locations and ranks of the traces, updated in place, or null if they
+     * were not updated since the location was set
+     */
+    private ITmfLocation @Nullable [] fLocations = null;
+    private long @Nullable [] fRanks = null;
+
+    /** Whether the location must be created from the updated arrays */
+    private boolean fLocationChanged = false;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -166,6 +182,59 @@ public final class TmfExperimentContext extends TmfContext {
         return fPriority.poll();
     }
 
+    @Override
+    public @Nullable ITmfLocation getLocation() {
+        ITmfLocation[] locations = fLocations;
+        long[] ranks = fRanks;
+        if (fLocationChanged && locations != null && ranks != null) {
+            super.setLocation(new TmfExperimentLocation(new TmfLocationArray(locations, ranks)));
+            fLocationChanged = false;
+        }
+        return super.getLocation();
+    }
+
+    @Override
+    public void setLocation(@Nullable ITmfLocation location) {
+        super.setLocation(location);
+        fLocations = null;
+        fRanks = null;
+        fLocationChanged = false;
+    }
+
+    /**
+     * Update the location of a trace in the experiment location, after an event
+     * of the trace was read. The experiment location itself is only created
+     * when it is requested.
+     *
+     * @param traceIndex
+     *            The index of the trace in the experiment
+     * @param location
+     *            The new location of the trace
+     * @param rank
+     *            The new rank of the trace
+     * @return true if the location was updated, false if the context has no
+     *         experiment location
+     */
+    public boolean updateLocation(int traceIndex, @Nullable ITmfLocation location, long rank) {
+        ITmfLocation[] locations = fLocations;
+        long[] ranks = fRanks;
+        if (locations == null || ranks == null) {
+            ITmfLocation current = super.getLocation();
+            if (!(current instanceof TmfExperimentLocation)) {
+                return false;
+            }
+            TmfLocationArray locationArray = ((TmfExperimentLocation) current).getLocationInfo();
+            locations = locationArray.getLocations();
+            ranks = locationArray.getRanks();
+            fLocations = locations;
+            fRanks = ranks;
+        }
+        locations[traceIndex] = location;
+        ranks[traceIndex] = rank;
+        fLocationChanged = true;
+        return true;
+    }
+
     /**
      * Getter for the sub contexts of this experiment context.
      *
@@ -190,6 +259,11 @@ public final class TmfExperimentContext extends TmfContext {
         if (this == other) {
             return true;
         }
+        if (other instanceof TmfExperimentContext) {
+            /* Create the locations that are pending, to compare them */
+            getLocation();
+            ((TmfExperimentContext) other).getLocation();
+        }
         if (!super.equals(other)) {
             return false;
         }
@@ -0,0 +1,443 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.trace.experiment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.BTree;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.FlatArray;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.TmfMemoryIndex;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceUpdatedSignal;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndex;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpointIndex;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+
+/**
+ * Indexer of an experiment that does not read the merged events of the
+ * experiment. The traces of the experiment are indexed each with their own
+ * indexer, in parallel, then the checkpoints of the experiment are computed
+ * once, just after the times of the checkpoints of the traces.
+ *
+ * A checkpoint at a time t positions each trace at its first event at or after
+ * t, so its rank is the sum of the ranks of the traces at t. A trace is
+ * positioned with its own index, by timestamp, so only the events from its
+ * checkpoint before t to t are read. The checkpoints are kept in a persistent
+ * index when the traces support it, so that they are restored when the
+ * experiment is opened again.
+ */
+public class TmfExperimentIndexer implements ITmfTraceIndexer {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final TmfExperiment fExperiment;
+
+    /** The checkpoints, the rank of a checkpoint is its position */
+    private ITmfCheckpointIndex fCheckpoints;
+
+    private volatile boolean fIsIndexing = false;
+    private boolean fIsBuilt = false;
+    private Job fIndexingJob = null;
+
+    /**
+     * Constructor
+     *
+     * @param experiment
+     *            the experiment to index. Its checkpoints are computed from the
+     *            checkpoints of its traces, which are every cache size of the
+     *            trace.
+     */
+    public TmfExperimentIndexer(TmfExperiment experiment) {
+        fExperiment = experiment;
+        fCheckpoints = createIndex(experiment);
+    }
+
+    /**
+     * Create the index of the checkpoints, which is stored in the
+     * supplementary files of the experiment if its traces have persistent
+     * locations
+     */
+    private static ITmfCheckpointIndex createIndex(TmfExperiment experiment) {
+        if (experiment.getCheckpointSize() > 0) {
+            return new TmfBTreeTraceIndex(experiment);
+        }
+        return new TmfMemoryIndex(experiment);
+    }
+
+    @Override
+    public synchronized void dispose() {
+        if (fIndexingJob != null) {
+            fIndexingJob.cancel();
+        }
+        fCheckpoints.dispose();
+    }
+
+    @Override
+    public boolean isIndexing() {
+        return fIsIndexing;
+    }
+
+    // ------------------------------------------------------------------------
+    // ITmfTraceIndexer - buildIndex
+    // ------------------------------------------------------------------------
+
+    @Override
+    public void buildIndex(long offset, TmfTimeRange range, boolean waitForCompletion) {
+        Job job;
+        synchronized (this) {
+            // The traces index their new events themselves
+            if (fIsIndexing || fIsBuilt) {
+                return;
+            }
+            fIsIndexing = true;
+            job = new Job("Indexing " + fExperiment.getName() + "...") { //$NON-NLS-1$ //$NON-NLS-2$
+                @Override
+                protected IStatus run(IProgressMonitor monitor) {
+                    try {
+                        indexTraces(monitor);
+                        return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return Status.CANCEL_STATUS;
+                    } catch (ExecutionException e) {
+                        return new Status(IStatus.ERROR, Activator.PLUGIN_ID, e.getMessage(), e.getCause());
+                    } finally {
+                        fIsIndexing = false;
+                    }
+                }
+            };
+            fIndexingJob = job;
+        }
+        job.schedule();
+        if (waitForCompletion) {
+            try {
+                job.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Index the traces of the experiment in parallel, each with its own
+     * indexer, which restores its persisted index if it has one, compute or
+     * restore the checkpoints of the experiment, then set the attributes of
+     * the experiment from the attributes of its traces.
+     */
+    private void indexTraces(IProgressMonitor monitor) throws InterruptedException, ExecutionException {
+        List<ITmfTrace> traces = fExperiment.getChildren(ITmfTrace.class);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(traces.size(), Runtime.getRuntime().availableProcessors())), r -> {
+            Thread thread = new Thread(r, "Experiment Indexer " + THREAD_COUNT.incrementAndGet()); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        });
+        long nbEvents = 0;
+        ITmfTimestamp startTime = TmfTimestamp.BIG_CRUNCH;
+        ITmfTimestamp endTime = TmfTimestamp.BIG_BANG;
+        try {
+            List<Future<long[]>> indexings = new ArrayList<>();
+            for (ITmfTrace trace : traces) {
+                indexings.add(executor.submit(() -> {
+                    trace.indexTrace(true);
+                    return getCheckpointTimes(trace);
+                }));
+            }
+            List<long[]> traceTimes = new ArrayList<>();
+            for (Future<long[]> indexing : indexings) {
+                traceTimes.add(indexing.get());
+            }
+            if (monitor.isCanceled()) {
+                return;
+            }
+
+            for (ITmfTrace trace : traces) {
+                if (trace.getNbEvents() > 0) {
+                    nbEvents += trace.getNbEvents();
+                    if (trace.getStartTime().compareTo(startTime) < 0) {
+                        startTime = trace.getStartTime();
+                    }
+                    if (trace.getEndTime().compareTo(endTime) > 0) {
+                        endTime = trace.getEndTime();
+                    }
+                }
+            }
+
+            if (!restoreIndex(nbEvents, startTime, endTime)) {
+                long[] times = mergeTimes(traceTimes);
+                List<Future<TracePositions>> positionings = new ArrayList<>();
+                for (int i = 0; i < traces.size(); i++) {
+                    ITmfTrace trace = traces.get(i);
+                    long[] ownTimes = traceTimes.get(i);
+                    positionings.add(executor.submit(() -> positionTrace(trace, ownTimes, times, monitor)));
+                }
+                List<TracePositions> positions = new ArrayList<>();
+                for (Future<TracePositions> positioning : positionings) {
+                    positions.add(positioning.get());
+                }
+                addCheckpoints(times, positions, nbEvents, new TmfTimeRange(startTime, endTime), monitor);
+                if (monitor.isCanceled()) {
+                    return;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        synchronized (this) {
+            fIsBuilt = true;
+        }
+        TmfCoreTracer.traceIndexer("Experiment index built from " + traces.size() + " traces. nbEvents: " + nbEvents + ", nbCheckpoints: " + fCheckpoints.size()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        if (nbEvents > 0) {
+            fExperiment.broadcast(new TmfTraceUpdatedSignal(this, fExperiment, new TmfTimeRange(startTime, endTime), nbEvents));
+        }
+    }
+
+    /**
+     * Keep the checkpoints restored from the persisted index if they were
+     * computed for the same traces, otherwise delete them.
+     *
+     * @return true if the checkpoints were restored
+     */
+    private synchronized boolean restoreIndex(long nbEvents, ITmfTimestamp startTime, ITmfTimestamp endTime) {
+        if (fCheckpoints.isCreatedFromScratch()) {
+            return false;
+        }
+        TmfTimeRange timeRange = fCheckpoints.getTimeRange();
+        if (fCheckpoints.getNbEvents() == nbEvents && !fCheckpoints.isEmpty() &&
+                timeRange.getStartTime().compareTo(startTime) == 0 &&
+                timeRange.getEndTime().compareTo(endTime) == 0) {
+            TmfCoreTracer.traceIndexer("Restoring experiment index. nbEvents: " + nbEvents + " time range: " + timeRange); //$NON-NLS-1$ //$NON-NLS-2$
+            return true;
+        }
+        fCheckpoints.dispose();
+        String directory = TmfTraceManager.getSupplementaryFileDir(fExperiment);
+        new File(directory + BTree.INDEX_FILE_NAME).delete();
+        new File(directory + FlatArray.INDEX_FILE_NAME).delete();
+        fCheckpoints = createIndex(fExperiment);
+        return false;
+    }
+
+    // ------------------------------------------------------------------------
+    // ITmfTraceIndexer - updateIndex
+    // ------------------------------------------------------------------------
+
+    @Override
+    public void updateIndex(ITmfContext context, ITmfTimestamp timestamp) {
+        // The checkpoints are computed from the traces when they are indexed
+    }
+
+    // ------------------------------------------------------------------------
+    // ITmfTraceIndexer - seekIndex
+    // ------------------------------------------------------------------------
+
+    @Override
+    public synchronized ITmfContext seekIndex(ITmfTimestamp timestamp) {
+        if (timestamp == null || fCheckpoints.isEmpty()) {
+            return seekStart();
+        }
+        // The searched checkpoint has no location, so it is never found, the
+        // previous checkpoint is before the timestamp
+        long index = fCheckpoints.binarySearch(new TmfCheckpoint(timestamp, null, 0));
+        index = -(index + 2);
+        return (index >= 0) ? restore(fCheckpoints.get(index)) : seekStart();
+    }
+
+    @Override
+    public synchronized ITmfContext seekIndex(long rank) {
+        // Find the last checkpoint at or before the rank
+        long low = 0;
+        long high = fCheckpoints.size() - 1;
+        long index = -1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            if (getRank(fCheckpoints.get(middle)) <= rank) {
+                index = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return (index >= 0) ? restore(fCheckpoints.get(index)) : seekStart();
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the times of the checkpoints of an indexed trace, which are the
+     * times of its events at every cache size of the trace, so that each of
+     * them is read right after seeking its checkpoint
+     */
+    private static long[] getCheckpointTimes(ITmfTrace trace) {
+        int interval = Math.max(trace.getCacheSize(), 1);
+        long nbEvents = trace.getNbEvents();
+        int nbCheckpoints = (int) ((nbEvents + interval - 1) / interval);
+        long[] times = new long[nbCheckpoints];
+        for (int i = 0; i < nbCheckpoints; i++) {
+            ITmfContext context = trace.seekEvent((long) i * interval);
+            ITmfEvent event = trace.getNext(context);
+            context.dispose();
+            if (event == null) {
+                return Arrays.copyOf(times, i);
+            }
+            times[i] = event.getTimestamp().toNanos();
+        }
+        return times;
+    }
+
+    /**
+     * Merge the checkpoint times of the traces in one sorted array without
+     * duplicates. The times of the experiment are one nanosecond after the
+     * times of the traces, so that the trace of a checkpoint is positioned
+     * from that checkpoint, after its events at the same time.
+     */
+    private static long[] mergeTimes(List<long[]> traceTimes) {
+        return traceTimes.stream().flatMapToLong(Arrays::stream).map(time -> time + 1).sorted().distinct().toArray();
+    }
+
+    /**
+     * Find the position of a trace at each of the checkpoint times, which is
+     * its first event at or after the time. The trace is seeked by timestamp
+     * when its own checkpoint before the time is ahead of its current
+     * position, otherwise it is read forward, so at most the events of one
+     * interval of the trace are read for a checkpoint time.
+     *
+     * @param ownTimes
+     *            the times of the checkpoints of the trace
+     * @param times
+     *            the checkpoint times of the experiment
+     */
+    private static TracePositions positionTrace(ITmfTrace trace, long[] ownTimes, long[] times, IProgressMonitor monitor) {
+        int interval = Math.max(trace.getCacheSize(), 1);
+        TracePositions positions = new TracePositions(times.length);
+        ITmfContext context = trace.seekEvent((ITmfLocation) null);
+        ITmfLocation location = context.getLocation();
+        long rank = 0;
+        ITmfEvent event = trace.getNext(context);
+        int checkpoint = 0;
+        for (int i = 0; i < times.length && !monitor.isCanceled(); i++) {
+            // Find the last checkpoint of the trace before the time
+            while (checkpoint < ownTimes.length && ownTimes[checkpoint] < times[i]) {
+                checkpoint++;
+            }
+            if (event != null && (long) (checkpoint - 1) * interval > rank) {
+                context.dispose();
+                context = trace.seekEvent(TmfTimestamp.fromNanos(times[i]));
+                if (context.getLocation() == null) {
+                    // The trace ends before the time
+                    context.dispose();
+                    context = trace.seekEvent(trace.getNbEvents());
+                }
+                location = context.getLocation();
+                rank = context.getRank();
+                event = trace.getNext(context);
+            }
+            while (event != null && event.getTimestamp().toNanos() < times[i]) {
+                location = context.getLocation();
+                rank++;
+                event = trace.getNext(context);
+            }
+            positions.fLocations[i] = location;
+            positions.fRanks[i] = rank;
+        }
+        context.dispose();
+        return positions;
+    }
+
+    /**
+     * Add the checkpoints of the experiment at the checkpoint times, skipping
+     * the times with no event since the previous checkpoint, then store the
+     * attributes of the experiment with them
+     */
+    private synchronized void addCheckpoints(long[] times, List<TracePositions> positions, long nbEvents, TmfTimeRange timeRange, IProgressMonitor monitor) {
+        if (monitor.isCanceled()) {
+            return;
+        }
+        long previousRank = -1;
+        for (int i = 0; i < times.length; i++) {
+            ITmfLocation[] locations = new ITmfLocation[positions.size()];
+            long[] ranks = new long[positions.size()];
+            long rank = 0;
+            for (int j = 0; j < positions.size(); j++) {
+                locations[j] = positions.get(j).fLocations[i];
+                ranks[j] = positions.get(j).fRanks[i];
+                rank += ranks[j];
+            }
+            if (rank != previousRank) {
+                fCheckpoints.insert(new TmfCheckpoint(TmfTimestamp.fromNanos(times[i]), new TmfExperimentLocation(new TmfLocationArray(locations, ranks)), fCheckpoints.size()));
+                previousRank = rank;
+            }
+        }
+        fCheckpoints.setNbEvents(nbEvents);
+        fCheckpoints.setTimeRange(timeRange);
+    }
+
+    /**
+     * Get the rank in the experiment of a checkpoint, which is the sum of the
+     * ranks of the traces at its location
+     */
+    private static long getRank(ITmfCheckpoint checkpoint) {
+        long rank = 0;
+        for (long traceRank : ((TmfExperimentLocation) checkpoint.getLocation()).getLocationInfo().getRanks()) {
+            rank += traceRank;
+        }
+        return rank;
+    }
+
+    private ITmfContext seekStart() {
+        ITmfContext context = fExperiment.seekEvent((ITmfLocation) null);
+        context.setRank(0);
+        return context;
+    }
+
+    private ITmfContext restore(ITmfCheckpoint checkpoint) {
+        ITmfContext context = fExperiment.seekEvent(checkpoint.getLocation());
+        context.setRank(getRank(checkpoint));
+        return context;
+    }
+
+    /**
+     * The positions of a trace at the checkpoint times of the experiment
+     */
+    private static final class TracePositions {
+        private final ITmfLocation[] fLocations;
+        private final long[] fRanks;
+
+        private TracePositions(int size) {
+            fLocations = new ITmfLocation[size];
+            fRanks = new long[size];
+        }
+    }
+}
@@ -31,6 +31,14 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
  */
 public interface ITmfEventProvider extends ITmfComponent {
 
+    /**
+     * The maximum number of events that are read in one block for a request,
+     * see {@link #getNext(ITmfContext, List, int)}
+     *
+     * @since 4.0
+     */
+    static final int EVENT_BLOCK_SIZE = 64;
+
     /**
      * Queue the request for processing.
      *
@@ -66,6 +74,37 @@ public interface ITmfEventProvider extends ITmfComponent {
      */
     ITmfEvent getNext(ITmfContext context);
 
+    /**
+     * Read a block of the next events based on the context supplied. The
+     * context will be updated for the subsequent read.
+     * <p>
+     * The default implementation reads the events one by one with
+     * {@link #getNext(ITmfContext)}. Providers that can read several events at
+     * once, for instance under a single lock, should override it.
+     *
+     * @param context
+     *            the trace read context (updated)
+     * @param events
+     *            the list to which the events that are read are added
+     * @param maxEvents
+     *            the maximum number of events to read
+     * @return the number of events that were read, 0 when there are no more
+     *         events to read
+     * @since 4.0
+     */
+    default int getNext(ITmfContext context, List<@NonNull ITmfEvent> events, int maxEvents) {
+        int nbEvents = 0;
+        while (nbEvents < maxEvents) {
+            ITmfEvent event = getNext(context);
+            if (event == null) {
+                break;
+            }
+            events.add(event);
+            nbEvents++;
+        }
+        return nbEvents;
+    }
+
     /**
      * Gets the parent event provider.
      *
@@ -36,6 +36,7 @@ import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventReadPipeline;
 import org.eclipse.tracecompass.tmf.core.signal.TmfEndSynchSignal;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
 import org.eclipse.tracecompass.tmf.core.signal.TmfStartSynchSignal;
@@ -193,6 +194,10 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
                 request.setProviderFilter(this);
             }
 
+            if (TmfEventReadPipeline.join(this, request)) {
+                return;
+            }
+
             if (sendWithParent(request)) {
                 return;
             }
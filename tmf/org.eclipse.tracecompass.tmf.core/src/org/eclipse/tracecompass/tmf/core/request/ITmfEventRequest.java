@@ -13,6 +13,10 @@
 
 package org.eclipse.tracecompass.tmf.core.request;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -79,6 +83,43 @@ public interface ITmfEventRequest {
         return 0;
     }
 
+    /**
+     * Gets the fields of the events that this request needs. The keys are
+     * event names, or event name prefixes when they end with <code>*</code>,
+     * and the values are the names of the needed top-level fields of these
+     * events, or <code>*</code> for all of them.
+     *
+     * Traces that can decode only some of the fields of their events use this
+     * to skip the others. All the events are still passed to
+     * {@link #handleData(ITmfEvent)}, but the events that are not part of the
+     * map may have no field, and the others may only have the requested
+     * fields.
+     *
+     * @return The needed fields per event, or null if all the fields of all
+     *         the events are needed, which is the default
+     * @since 4.0
+     */
+    default @Nullable Map<String, Set<String>> getEventFields() {
+        return null;
+    }
+
+    /**
+     * Gets the names of the events that this request handles. Traces that
+     * know which events are in parts of the trace may skip the parts without
+     * any of these events, so some of the other events may not be passed to
+     * {@link #handleData(ITmfEvent)}, and the ranks of the events that are
+     * passed may not be known.
+     *
+     * A request should only declare this if it ignores the other events.
+     *
+     * @return The names of the handled events, or null if the request
+     *         handles all the events, which is the default
+     * @since 4.0
+     */
+    default @Nullable Set<String> getEventTypes() {
+        return null;
+    }
+
     /**
      * @return the index of the first event requested
      */
@@ -156,6 +197,30 @@ public interface ITmfEventRequest {
      */
     void handleData(@NonNull ITmfEvent event);
 
+    /**
+     * Process a block of events, in the order in which they were read. The
+     * events of the block are all of the requested data type, and within the
+     * range and the number of events of the request.
+     * <p>
+     * The default implementation passes the events one by one to
+     * {@link #handleData(ITmfEvent)}, until the request is completed. Requests
+     * that can process a whole block more efficiently should override it. The
+     * list must not be kept, it is reused for the next block, but its events
+     * can be.
+     *
+     * @param events
+     *            The trace events to process
+     * @since 4.0
+     */
+    default void handleData(@NonNull List<@NonNull ITmfEvent> events) {
+        for (ITmfEvent event : events) {
+            if (isCompleted()) {
+                return;
+            }
+            handleData(event);
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Request notifications
     // ------------------------------------------------------------------------
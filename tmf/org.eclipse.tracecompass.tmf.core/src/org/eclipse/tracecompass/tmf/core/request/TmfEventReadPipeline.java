@@ -0,0 +1,561 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.request;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
+import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * A single sequential read of the events of a provider, shared by several
+ * consumers. The consumers are event requests, they are registered before the
+ * read starts, then each event is read and decoded once and dispatched to
+ * every consumer that wants it.
+ *
+ * A consumer can be given its own thread, the events are then passed to it
+ * through a bounded queue. When the queue of a slow consumer is full, the read
+ * waits for it, so the other consumers are slowed down instead of the events
+ * being read a second time.
+ *
+ * The analyses of a trace use a pipeline when the system property
+ * {@value #READ_PIPELINE_PROPERTY} is set: when the trace is opened, the
+ * background requests that read the trace from its beginning join the
+ * pipeline, which starts once no request joined it for
+ * {@value #REGISTRATION_WINDOW} ms. The size of the queues of the consumers is
+ * set by the system property {@value #QUEUE_SIZE_PROPERTY}, the events are
+ * dispatched on the thread of the read by default.
+ *
+ * @since 4.0
+ */
+public class TmfEventReadPipeline {
+
+    // ------------------------------------------------------------------------
+    // Constants
+    // ------------------------------------------------------------------------
+
+    /** System property to read the trace once for the analyses at opening */
+    public static final String READ_PIPELINE_PROPERTY = "org.eclipse.tracecompass.tmf.core.request.readPipeline"; //$NON-NLS-1$
+
+    /** System property for the size of the queue of each consumer */
+    public static final String QUEUE_SIZE_PROPERTY = "org.eclipse.tracecompass.tmf.core.request.readPipelineQueueSize"; //$NON-NLS-1$
+
+    /** Time without new consumer after which a pipeline starts, in ms */
+    public static final long REGISTRATION_WINDOW = 1000;
+
+    /** The pipelines accepting the requests sent to their provider */
+    private static final Map<ITmfEventProvider, TmfEventReadPipeline> OPEN_PIPELINES = new IdentityHashMap<>();
+
+    /** Marks the end of the events in the queue of a consumer */
+    private static final ITmfEvent END_OF_EVENTS = new TmfEvent();
+
+    // ------------------------------------------------------------------------
+    // Attributes
+    // ------------------------------------------------------------------------
+
+    private final ITmfEventProvider fProvider;
+    private final int fQueueSize;
+    private final List<Consumer> fConsumers = new ArrayList<>();
+
+    private @Nullable Timer fTimer;
+    private @Nullable TimerTask fStartTask;
+    private @Nullable PipelineRequest fRequest;
+
+    // ------------------------------------------------------------------------
+    // Constructor
+    // ------------------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param provider
+     *            The provider of the events
+     * @param queueSize
+     *            The size of the queue of the consumers added with
+     *            {@link #addConsumer(ITmfEventRequest)}, 0 to dispatch their
+     *            events on the thread of the read
+     */
+    public TmfEventReadPipeline(ITmfEventProvider provider, int queueSize) {
+        fProvider = provider;
+        fQueueSize = Math.max(0, queueSize);
+    }
+
+    /**
+     * Open a pipeline for the requests of the analyses that are about to be
+     * scheduled on a provider, if enabled by the system property
+     * {@value #READ_PIPELINE_PROPERTY}.
+     *
+     * @param provider
+     *            The provider of the events, usually a trace being opened
+     */
+    public static void openForAnalyses(ITmfEventProvider provider) {
+        if (!Boolean.getBoolean(READ_PIPELINE_PROPERTY)) {
+            return;
+        }
+        new TmfEventReadPipeline(provider, Integer.getInteger(QUEUE_SIZE_PROPERTY, 0)).openRegistration(REGISTRATION_WINDOW);
+    }
+
+    /**
+     * Add a request sent to a provider to the pipeline open for this provider,
+     * if there is one and the request can be served by it: a background
+     * request that reads from the beginning of the provider.
+     *
+     * @param provider
+     *            The provider the request is sent to
+     * @param request
+     *            The request
+     * @return true if the request joined a pipeline, and must not be queued
+     *         by the provider
+     */
+    public static boolean join(ITmfEventProvider provider, ITmfEventRequest request) {
+        TmfEventReadPipeline pipeline;
+        synchronized (OPEN_PIPELINES) {
+            pipeline = OPEN_PIPELINES.get(provider);
+        }
+        if (pipeline == null || request instanceof PipelineRequest ||
+                request.getExecType() != ExecutionType.BACKGROUND ||
+                request.getIndex() != 0 || !startsAtBeginning(provider, request)) {
+            return false;
+        }
+        return pipeline.tryAdd(request);
+    }
+
+    private static boolean startsAtBeginning(ITmfEventProvider provider, ITmfEventRequest request) {
+        ITmfTimestamp start = request.getRange().getStartTime();
+        if (provider instanceof ITmfTrace) {
+            return start.compareTo(((ITmfTrace) provider).getStartTime()) <= 0;
+        }
+        return start.equals(TmfTimestamp.BIG_BANG);
+    }
+
+    // ------------------------------------------------------------------------
+    // Operations
+    // ------------------------------------------------------------------------
+
+    /**
+     * Add a consumer to the pipeline, with the queue size of the pipeline
+     *
+     * @param request
+     *            The request consuming the events
+     * @throws IllegalStateException
+     *             If the pipeline was started
+     */
+    public void addConsumer(ITmfEventRequest request) {
+        addConsumer(request, fQueueSize);
+    }
+
+    /**
+     * Add a consumer to the pipeline
+     *
+     * @param request
+     *            The request consuming the events
+     * @param queueSize
+     *            The size of the queue of events of this consumer, the events
+     *            are dispatched on its own thread, or 0 to dispatch them on the
+     *            thread of the read
+     * @throws IllegalStateException
+     *             If the pipeline was started
+     */
+    public void addConsumer(ITmfEventRequest request, int queueSize) {
+        if (!tryAdd(request, queueSize)) {
+            throw new IllegalStateException("The pipeline was already started"); //$NON-NLS-1$
+        }
+    }
+
+    private boolean tryAdd(ITmfEventRequest request) {
+        return tryAdd(request, fQueueSize);
+    }
+
+    private synchronized boolean tryAdd(ITmfEventRequest request, int queueSize) {
+        if (fRequest != null) {
+            return false;
+        }
+        if (request.getProviderFilter() == null && fProvider instanceof ITmfFilter) {
+            request.setProviderFilter((ITmfFilter) fProvider);
+        }
+        fConsumers.add(new Consumer(request, queueSize));
+        if (TmfCoreTracer.isRequestTraced()) {
+            TmfCoreTracer.traceRequest(request.getRequestId(), "JOINED read pipeline of " + fProvider.getName()); //$NON-NLS-1$
+        }
+        /* Wait for the other consumers again */
+        Timer timer = fTimer;
+        if (timer != null) {
+            scheduleStart(timer, REGISTRATION_WINDOW);
+        }
+        return true;
+    }
+
+    /**
+     * Accept the requests sent to the provider, until no request was sent for
+     * a given time, then start the read.
+     *
+     * @param window
+     *            The time without new request after which the read starts, in
+     *            ms
+     */
+    public synchronized void openRegistration(long window) {
+        if (fRequest != null || fTimer != null) {
+            return;
+        }
+        synchronized (OPEN_PIPELINES) {
+            if (OPEN_PIPELINES.containsKey(fProvider)) {
+                return;
+            }
+            OPEN_PIPELINES.put(fProvider, this);
+        }
+        Timer timer = new Timer("Event read pipeline", true); //$NON-NLS-1$
+        fTimer = timer;
+        scheduleStart(timer, window);
+    }
+
+    private void scheduleStart(Timer timer, long delay) {
+        TimerTask task = fStartTask;
+        if (task != null) {
+            task.cancel();
+        }
+        task = new TimerTask() {
+            @Override
+            public void run() {
+                start();
+            }
+        };
+        fStartTask = task;
+        timer.schedule(task, delay);
+    }
+
+    /**
+     * Start the read, the consumers cannot be added anymore. Nothing is read
+     * if there are no consumers.
+     */
+    public void start() {
+        PipelineRequest request;
+        synchronized (this) {
+            if (fRequest != null) {
+                return;
+            }
+            synchronized (OPEN_PIPELINES) {
+                if (OPEN_PIPELINES.get(fProvider) == this) {
+                    OPEN_PIPELINES.remove(fProvider);
+                }
+            }
+            Timer timer = fTimer;
+            if (timer != null) {
+                timer.cancel();
+            }
+            request = new PipelineRequest(fConsumers);
+            fRequest = request;
+        }
+        if (fConsumers.isEmpty()) {
+            return;
+        }
+        if (TmfCoreTracer.isRequestTraced()) {
+            TmfCoreTracer.traceRequest(request.getRequestId(), "SHARED by " + fConsumers.size() + " consumers"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        fProvider.sendRequest(request);
+    }
+
+    /**
+     * @return the number of consumers of the pipeline
+     */
+    public synchronized int getNbConsumers() {
+        return fConsumers.size();
+    }
+
+    /**
+     * @return the request reading the events, or null if the pipeline was not
+     *         started
+     */
+    public synchronized @Nullable ITmfEventRequest getRequest() {
+        return fRequest;
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper classes
+    // ------------------------------------------------------------------------
+
+    /**
+     * A consumer of the events, with its queue and thread if it has one
+     */
+    private static final class Consumer {
+        private final ITmfEventRequest fConsumerRequest;
+        private final @Nullable BlockingQueue<ITmfEvent> fQueue;
+        private @Nullable Thread fThread;
+        private volatile boolean fReadDone = false;
+        private boolean fEnded = false;
+
+        public Consumer(ITmfEventRequest request, int queueSize) {
+            fConsumerRequest = request;
+            fQueue = (queueSize > 0) ? new ArrayBlockingQueue<>(queueSize) : null;
+        }
+
+        /**
+         * Whether the event at an index of the read is wanted by the consumer
+         */
+        private boolean wants(ITmfEvent event, long index) {
+            ITmfEventRequest request = fConsumerRequest;
+            if (request.isCompleted() || index < request.getIndex() || request.getNbRead() >= request.getNbRequested()) {
+                return false;
+            }
+            ITmfFilter filter = request.getProviderFilter();
+            return request.getRange().contains(event.getTimestamp()) &&
+                    request.getDataType().isInstance(event) &&
+                    (filter == null || filter.matches(event));
+        }
+
+        public void start() {
+            if (!fConsumerRequest.isCompleted()) {
+                fConsumerRequest.start();
+            }
+            BlockingQueue<ITmfEvent> queue = fQueue;
+            if (queue != null) {
+                Thread thread = new Thread(() -> consume(queue), "Event read pipeline consumer " + fConsumerRequest.getRequestId()); //$NON-NLS-1$
+                thread.setDaemon(true);
+                fThread = thread;
+                thread.start();
+            }
+        }
+
+        /**
+         * Pass an event to the consumer, waits if its queue is full
+         */
+        public void offer(ITmfEvent event, long index) {
+            if (!wants(event, index)) {
+                return;
+            }
+            BlockingQueue<ITmfEvent> queue = fQueue;
+            if (queue == null) {
+                handle(event);
+                return;
+            }
+            try {
+                queue.put(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fConsumerRequest.fail(e);
+            }
+        }
+
+        private void consume(BlockingQueue<ITmfEvent> queue) {
+            try {
+                while (true) {
+                    ITmfEvent event = queue.take();
+                    if (event == END_OF_EVENTS) {
+                        break;
+                    }
+                    ITmfEventRequest request = fConsumerRequest;
+                    if (!request.isCompleted() && request.getNbRead() < request.getNbRequested()) {
+                        handle(event);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fConsumerRequest.fail(e);
+                return;
+            }
+            if (fReadDone && !fConsumerRequest.isCompleted()) {
+                fConsumerRequest.done();
+            }
+        }
+
+        private void handle(@NonNull ITmfEvent event) {
+            try {
+                fConsumerRequest.handleData(event);
+            } catch (Exception e) {
+                /* Do not stop the read for the other consumers */
+                Activator.logError("An uncaught exception happened on request " + fConsumerRequest + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+                fConsumerRequest.fail(e);
+            }
+        }
+
+        /**
+         * End of the read, the consumer is done once it handled its events
+         */
+        public void done() {
+            fReadDone = true;
+            if (!end() && !fConsumerRequest.isCompleted()) {
+                fConsumerRequest.done();
+            }
+        }
+
+        /**
+         * Stop the consumer without handling its remaining events
+         */
+        public void stop() {
+            BlockingQueue<ITmfEvent> queue = fQueue;
+            if (queue != null) {
+                queue.clear();
+            }
+            end();
+        }
+
+        /**
+         * Put the end marker in the queue
+         *
+         * @return true if the consumer has a thread that will consume it
+         */
+        private synchronized boolean end() {
+            BlockingQueue<ITmfEvent> queue = fQueue;
+            if (queue == null || fThread == null) {
+                return false;
+            }
+            if (fEnded) {
+                return true;
+            }
+            fEnded = true;
+            try {
+                queue.put(END_OF_EVENTS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The request reading the events for all the consumers
+     */
+    private static final class PipelineRequest extends TmfEventRequest {
+
+        private final List<Consumer> fPipelineConsumers;
+        private final TmfTimeRange fPipelineRange;
+        private final @Nullable Map<String, Set<String>> fEventFields;
+        private final @Nullable Set<String> fEventTypes;
+
+        public PipelineRequest(List<Consumer> consumers) {
+            super(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, ALL_DATA, ExecutionType.BACKGROUND);
+            fPipelineConsumers = consumers;
+
+            ITmfTimestamp end = TmfTimestamp.BIG_BANG;
+            Map<String, Set<String>> eventFields = new HashMap<>();
+            Set<String> eventTypes = new HashSet<>();
+            boolean allFields = false;
+            boolean allTypes = false;
+            for (Consumer consumer : consumers) {
+                ITmfEventRequest request = consumer.fConsumerRequest;
+                ITmfTimestamp requestEnd = request.getRange().getEndTime();
+                if (requestEnd.compareTo(end) > 0) {
+                    end = requestEnd;
+                }
+                Map<String, Set<String>> requestFields = request.getEventFields();
+                if (requestFields == null) {
+                    allFields = true;
+                } else {
+                    for (Map.Entry<String, Set<String>> entry : requestFields.entrySet()) {
+                        eventFields.computeIfAbsent(entry.getKey(), name -> new HashSet<>()).addAll(entry.getValue());
+                    }
+                }
+                Set<String> requestTypes = request.getEventTypes();
+                if (requestTypes == null) {
+                    allTypes = true;
+                } else {
+                    eventTypes.addAll(requestTypes);
+                }
+            }
+            fPipelineRange = new TmfTimeRange(TmfTimestamp.BIG_BANG, end);
+            fEventFields = allFields ? null : eventFields;
+            fEventTypes = allTypes ? null : eventTypes;
+        }
+
+        @Override
+        public TmfTimeRange getRange() {
+            return fPipelineRange;
+        }
+
+        @Override
+        public @Nullable Map<String, Set<String>> getEventFields() {
+            return fEventFields;
+        }
+
+        @Override
+        public @Nullable Set<String> getEventTypes() {
+            return fEventTypes;
+        }
+
+        @Override
+        public void handleData(ITmfEvent event) {
+            super.handleData(event);
+            long index = getNbRead() - 1;
+            for (Consumer consumer : fPipelineConsumers) {
+                consumer.offer(event, index);
+            }
+        }
+
+        @Override
+        public synchronized void start() {
+            for (Consumer consumer : fPipelineConsumers) {
+                consumer.start();
+            }
+            super.start();
+        }
+
+        @Override
+        public synchronized void done() {
+            for (Consumer consumer : fPipelineConsumers) {
+                consumer.done();
+            }
+            super.done();
+        }
+
+        @Override
+        public void fail(Exception e) {
+            for (Consumer consumer : fPipelineConsumers) {
+                consumer.stop();
+                consumer.fConsumerRequest.fail(e);
+            }
+            super.fail(e);
+        }
+
+        @Override
+        public void cancel() {
+            for (Consumer consumer : fPipelineConsumers) {
+                consumer.stop();
+                if (!consumer.fConsumerRequest.isCompleted()) {
+                    consumer.fConsumerRequest.cancel();
+                }
+            }
+            super.cancel();
+        }
+
+        @Override
+        public synchronized boolean isCompleted() {
+            if (super.isCompleted()) {
+                return true;
+            }
+            /* The read stops when no consumer wants more events */
+            for (Consumer consumer : fPipelineConsumers) {
+                if (!consumer.fConsumerRequest.isCompleted()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
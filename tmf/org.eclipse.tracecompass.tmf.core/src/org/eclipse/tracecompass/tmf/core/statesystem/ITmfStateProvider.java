@@ -12,10 +12,14 @@
 
 package org.eclipse.tracecompass.tmf.core.statesystem;
 
+import java.util.Map;
+import java.util.Set;
+
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 /**
@@ -138,4 +142,60 @@ public interface ITmfStateProvider {
     default @Nullable Throwable getFailureCause() {
         return null;
     }
+
+    /**
+     * Whether the state system of this provider can be built by splitting the
+     * trace in time partitions that are handled concurrently by different
+     * instances of this provider (see {@link #getNewInstance()}). Each
+     * instance except the first one starts without knowing the state at the
+     * beginning of its partition. Each attribute keeps the state it had at the
+     * end of the previous partition until the instance first sets it, and a
+     * null set explicitly replaces that state like any other value.
+     *
+     * A provider can only support this if the states it sets do not depend on
+     * previous states that it did not set itself, or if the approximations
+     * around the partition boundaries are acceptable. Its state values must
+     * also be null, integers, longs, doubles or strings.
+     *
+     * @return Whether partitioned builds are supported, false by default
+     * @since 4.0
+     */
+    default boolean supportsPartitionedBuild() {
+        return false;
+    }
+
+    /**
+     * Whether the state system of this provider can be resumed from the end
+     * of a history built previously, to only read the events appended to the
+     * trace since. The provider then starts with the ongoing state at the end
+     * of that history.
+     *
+     * A provider can only support this if all the information it needs to
+     * handle the next events is in the state system, and not only in its own
+     * fields.
+     *
+     * @return Whether resumed builds are supported, false by default
+     * @since 4.0
+     */
+    default boolean supportsResumedBuild() {
+        return false;
+    }
+
+    /**
+     * Get the fields of the events that this provider handles, so that the
+     * trace can skip decoding the others. See
+     * {@link ITmfEventRequest#getEventFields()} for the format.
+     *
+     * A provider should only declare this if it ignores the content of the
+     * events it did not declare, and the fields it did not declare of the
+     * events it handles.
+     *
+     * @return The fields of the events handled by this provider, or null if
+     *         it needs all the events with all their fields, which is the
+     *         default
+     * @since 4.0
+     */
+    default @Nullable Map<String, Set<String>> getEventFields() {
+        return null;
+    }
 }
@@ -20,7 +20,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,6 +37,10 @@ import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils.ScopeLog;
 import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialHistoryBackend;
 import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialStateSystem;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partitioned.PartitionedHistoryBuilder;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partitioned.PartitionedStateSystem;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.resumable.ResumeCheckpoint;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.resumable.ResumeCheckpoint.TraceStatus;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
@@ -88,6 +94,17 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
     private int fNbRead = 0;
     private boolean fInitializationSucceeded;
 
+    /*
+     * The history file whose position is saved when the provider is disposed
+     * without deleting it, null if the history is not resumable. The position
+     * is the rank of the next event to read and the time of the last event
+     * read, the requests publish it when they end.
+     */
+    private @Nullable File fResumableHtFile = null;
+    private volatile long fNbProcessed = 0;
+    private volatile long fResumeRank = 0;
+    private volatile long fLastEventTime = 0;
+
     private volatile @Nullable ITmfStateProvider fStateProvider;
     private @Nullable Integer fProviderVersion = null;
 
@@ -274,7 +291,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
                 if (htFile == null) {
                     return false;
                 }
-                createFullHistory(id, provider, htFile);
+                createFullHistory(id, provider, htFile, mon);
                 break;
             case PARTIAL:
                 htFile = getSsFile();
@@ -322,7 +339,20 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
 
     @Override
     public void dispose() {
+        if (fResumableHtFile != null) {
+            /* Do not start new requests if the trace grows from now on */
+            synchronized (fRequestSyncObj) {
+                fTimeRange = null;
+            }
+        }
         super.dispose();
+        if (fResumableHtFile != null && fStateProvider != null) {
+            /*
+             * The trace is not complete and all its events were read, save
+             * its history to resume it when the trace is opened again.
+             */
+            disposeProvider(fNbProcessed == 0);
+        }
         if (fStateSystem != null) {
             fStateSystem.dispose();
         }
@@ -336,7 +366,28 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
      * Load the history file matching the target trace. If the file already exists,
      * it will be opened directly. If not, it will be created from scratch.
      */
-    private void createFullHistory(String id, ITmfStateProvider provider, File htFile) throws TmfTraceException {
+    private void createFullHistory(String id, ITmfStateProvider provider, File htFile, IProgressMonitor monitor) throws TmfTraceException {
+
+        /* Size of the blocking queue to use when building a state history */
+        final int QUEUE_SIZE = 10000;
+
+        boolean resumable = ResumeCheckpoint.isEnabled() && provider.supportsResumedBuild();
+        ResumeCheckpoint checkpoint = htFile.exists() ? ResumeCheckpoint.read(htFile) : null;
+        if (checkpoint != null) {
+            /*
+             * The history was saved at some position in the trace, it may be
+             * incomplete if the trace has grown since.
+             */
+            TraceStatus status = checkpoint.compareTo(provider.getTrace());
+            boolean resume = status == TraceStatus.APPENDED ||
+                    (status == TraceStatus.UP_TO_DATE && !isCompleteTrace(provider.getTrace()));
+            if (resumable && resume && resumeFullHistory(id, provider, htFile, checkpoint, QUEUE_SIZE)) {
+                return;
+            }
+            if (status != TraceStatus.UP_TO_DATE) {
+                FileUtils.deleteQuietly(htFile);
+            }
+        }
 
         /* If the target file already exists, do not rebuild it uselessly */
         // TODO for now we assume it's complete. Might be a good idea to check
@@ -360,14 +411,22 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
             }
         }
 
-        /* Size of the blocking queue to use when building a state history */
-        final int QUEUE_SIZE = 10000;
+        ResumeCheckpoint.delete(htFile);
+        int nbPartitions = PartitionedHistoryBuilder.getNbPartitions();
+        boolean partitioned = nbPartitions > 1 && provider.supportsPartitionedBuild() && isCompleteTrace(provider.getTrace());
 
         try {
             IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(
                     id, htFile, provider.getVersion(), provider.getStartTime(), QUEUE_SIZE);
+            if (partitioned) {
+                buildPartitioned(id, provider, new PartitionedStateSystem(backend), htFile, nbPartitions, monitor);
+                return;
+            }
             fStateSystem = StateSystemFactory.newStateSystem(backend);
             provider.assignTargetStateSystem(fStateSystem);
+            if (resumable) {
+                fResumableHtFile = htFile;
+            }
             build(provider);
         } catch (IOException e) {
             /*
@@ -378,6 +437,69 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         }
     }
 
+    /*
+     * Resume the history saved at a checkpoint, reading the trace from the
+     * event following that checkpoint. Returns false if the history could not
+     * be resumed, it should then be rebuilt.
+     */
+    private boolean resumeFullHistory(String id, ITmfStateProvider provider, File htFile, ResumeCheckpoint checkpoint, int queueSize) {
+        if (checkpoint.getNbEvents() > Integer.MAX_VALUE) {
+            /* Requests cannot start at that rank */
+            return false;
+        }
+        IStateHistoryBackend backend;
+        try {
+            backend = StateHistoryBackendFactory.createHistoryTreeBackendResumedFile(id, htFile, provider.getVersion(), queueSize);
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            fStateSystem = StateSystemFactory.resumeStateSystem(backend);
+        } catch (IOException e) {
+            backend.dispose();
+            return false;
+        }
+        ResumeCheckpoint.delete(htFile);
+        fNbRead = (int) checkpoint.getNbEvents();
+        fNbProcessed = checkpoint.getNbEvents();
+        fResumeRank = checkpoint.getNbEvents();
+        fLastEventTime = checkpoint.getLastEventTime();
+        fResumableHtFile = htFile;
+        provider.assignTargetStateSystem(fStateSystem);
+        /* The initial state was loaded when the history was first built */
+        build(provider, false);
+        return true;
+    }
+
+    /*
+     * Build a full history by splitting the trace in time partitions that are
+     * read by different instances of the provider at the same time. The state
+     * system is only made available once it is completely built.
+     */
+    private void buildPartitioned(String id, ITmfStateProvider provider, PartitionedStateSystem stateSystem, File htFile, int nbPartitions, IProgressMonitor monitor) {
+        fStateSystem = stateSystem;
+        PartitionedHistoryBuilder builder = new PartitionedHistoryBuilder(id, provider, stateSystem, htFile, nbPartitions);
+        boolean deleteFiles = true;
+        try {
+            deleteFiles = !builder.build(monitor, ssb -> loadInitialState(provider, ssb));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            fail(cause != null ? cause : e);
+        } finally {
+            /* The partitions have their own instances of the provider */
+            provider.dispose();
+        }
+        if (deleteFiles) {
+            stateSystem.removeFiles();
+        } else {
+            analysisReady(true);
+        }
+        completingBuild(deleteFiles);
+        if (fInitialized.getCount() > 0) {
+            analysisReady(false);
+        }
+    }
+
     /*
      * Create a new state system backed with a partial history. A partial history is
      * similar to a "full" one (which you get with {@link #newFullHistory}), except
@@ -487,6 +609,12 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
                 fail(failureCause);
                 shouldDeleteFiles = true;
             }
+            File htFile = fResumableHtFile;
+            ITmfStateSystemBuilder stateSystem = fStateSystem;
+            if (!shouldDeleteFiles && htFile != null && stateSystem != null && fNbProcessed > 0) {
+                /* The history is closed, save the position it was built up to */
+                new ResumeCheckpoint(fResumeRank, fLastEventTime, stateSystem.getCurrentEndTime()).write(htFile);
+            }
         }
         fStateProvider = null;
         if (shouldDeleteFiles && (fStateSystem != null)) {
@@ -511,6 +639,10 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
     }
 
     private void build(ITmfStateProvider provider) {
+        build(provider, true);
+    }
+
+    private void build(ITmfStateProvider provider, boolean initialState) {
         if (fStateSystem == null) {
             throw new IllegalArgumentException();
         }
@@ -520,7 +652,9 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
          * signal listener below will start sending real trace events through the state
          * provider.
          */
-        loadInitialState(provider);
+        if (initialState) {
+            loadInitialState(provider);
+        }
 
         /* Continue on initializing the event request to read trace events. */
         ITmfEventRequest request = fRequest;
@@ -571,35 +705,40 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
      * Batch-load the initial state, if there is any.
      */
     private void loadInitialState(ITmfStateProvider provider) {
+        for (ITmfStateSystem ss : getStateSystems()) {
+            if (ss instanceof ITmfStateSystemBuilder) {
+                loadInitialState(provider, (ITmfStateSystemBuilder) ss);
+            }
+        }
+    }
+
+    /**
+     * Batch-load the initial state of one state system, if there is any.
+     */
+    private static void loadInitialState(ITmfStateProvider provider, ITmfStateSystemBuilder ssb) {
         final ITmfTrace trace = provider.getTrace();
         File path = new File(trace.getPath());
         path = path.isDirectory() ? path : path.getParentFile();
         if (path == null) {
             return;
         }
-        for (ITmfStateSystem ss : getStateSystems()) {
-            if (ss instanceof ITmfStateSystemBuilder) {
-                ITmfStateSystemBuilder ssb = (ITmfStateSystemBuilder) ss;
-                StateSnapshot snapshot = StateSnapshot.read(path.toPath(), ss.getSSID());
-                if (snapshot == null || provider.getVersion() != snapshot.getVersion()) {
-                    /*
-                     * No statedump found, nothing to pre-load or Do not load the statedump if its
-                     * version does not match the current provider.
-                     */
-
-                    continue;
-                }
+        StateSnapshot snapshot = StateSnapshot.read(path.toPath(), ssb.getSSID());
+        if (snapshot == null || provider.getVersion() != snapshot.getVersion()) {
+            /*
+             * No statedump found, nothing to pre-load or Do not load the statedump if its
+             * version does not match the current provider.
+             */
+            return;
+        }
 
-                /* Load the statedump into the statesystem */
-                for (Entry<List<String>, ITmfStateInterval> attributeSnapshot : snapshot.getStates().entrySet()) {
-                    List<String> attributePath = Objects.requireNonNull(attributeSnapshot.getKey());
-                    int quark = ssb.getQuarkAbsoluteAndAdd(attributePath.toArray(new String[attributePath.size()]));
-                    ITmfStateInterval interval = Objects.requireNonNull(attributeSnapshot.getValue());
-                    Object initialState = interval.getValue();
+        /* Load the statedump into the statesystem */
+        for (Entry<List<String>, ITmfStateInterval> attributeSnapshot : snapshot.getStates().entrySet()) {
+            List<String> attributePath = Objects.requireNonNull(attributeSnapshot.getKey());
+            int quark = ssb.getQuarkAbsoluteAndAdd(attributePath.toArray(new String[attributePath.size()]));
+            ITmfStateInterval interval = Objects.requireNonNull(attributeSnapshot.getValue());
+            Object initialState = interval.getValue();
 
-                    ssb.modifyAttribute(Math.max(interval.getStartTime(), ssb.getStartTime()), initialState, quark);
-                }
-            }
+            ssb.modifyAttribute(Math.max(interval.getStartTime(), ssb.getStartTime()), initialState, quark);
         }
     }
 
@@ -614,6 +753,10 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         private final ITmfStateProvider sci;
         private final ITmfTrace trace;
 
+        /* Only used by the request thread, published when the request ends */
+        private long fRequestNbProcessed = 0;
+        private long fRequestLastEventTime = 0;
+
         /**
          * Constructor
          *
@@ -636,11 +779,25 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
 
         }
 
+        @Override
+        public @Nullable Map<String, Set<String>> getEventFields() {
+            return sci.getEventFields();
+        }
+
         @Override
         public void handleData(final ITmfEvent event) {
+            /*
+             * A cancelled request may still receive events, ignore them so
+             * that the events counted are the ones that were processed.
+             */
+            if (isCancelled()) {
+                return;
+            }
             super.handleData(event);
+            fRequestLastEventTime = event.getTimestamp().toNanos();
             if (event.getTrace() == trace) {
                 sci.processEvent(event);
+                fRequestNbProcessed++;
             } else if (trace instanceof TmfExperiment) {
                 /*
                  * If the request is for an experiment, check if the event is from one of the
@@ -649,13 +806,27 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
                 for (ITmfTrace childTrace : ((TmfExperiment) trace).getTraces()) {
                     if (childTrace == event.getTrace()) {
                         sci.processEvent(event);
+                        fRequestNbProcessed++;
                     }
                 }
             }
         }
 
+        /*
+         * Publish the position reached by this request, for the history to be
+         * resumed from there
+         */
+        private void publishPosition() {
+            fNbProcessed += fRequestNbProcessed;
+            if (getNbRead() > 0) {
+                fResumeRank = getIndex() + getNbRead();
+                fLastEventTime = fRequestLastEventTime;
+            }
+        }
+
         @Override
         public void handleSuccess() {
+            publishPosition();
             super.handleSuccess();
             if (isCompleteTrace(trace)) {
                 disposeProvider(false);
@@ -672,8 +843,13 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
 
         @Override
         public void handleCancel() {
+            publishPosition();
             super.handleCancel();
-            disposeProvider(true);
+            /*
+             * A resumable history is kept, the build will resume from the
+             * events that were not read.
+             */
+            disposeProvider(fResumableHtFile == null || fNbProcessed == 0);
         }
 
         @Override
@@ -46,6 +46,7 @@ import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventReadPipeline;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalManager;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
@@ -302,7 +303,11 @@ public abstract class TmfTrace extends TmfEventProvider implements ITmfTrace, IT
             }
         }
 
-        /* Once all modules are initialized, automatic modules are executed */
+        /*
+         * Once all modules are initialized, automatic modules are executed. The
+         * requests they send to read the trace may share a single read.
+         */
+        TmfEventReadPipeline.openForAnalyses(this);
         for (IAnalysisModule module : getAnalysisModules()) {
             if (module.isAutomatic()) {
                 status.add(module.schedule());
@@ -43,6 +43,7 @@ import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.synchronization.TmfTimestampTransform;
 import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentContext;
 import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentContext.ContextTuple;
+import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentIndexer;
 import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentLocation;
 import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfLocationArray;
 import org.eclipse.tracecompass.tmf.core.TmfCommonConstants;
@@ -114,6 +115,14 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
      */
     private static final long CLOCK_OFFSET_THRESHOLD_NS = 500000;
 
+    /**
+     * System property to index the experiment by reading its merged events,
+     * instead of indexing its traces in parallel
+     *
+     * @since 4.0
+     */
+    public static final String MERGED_INDEX_PROPERTY = "org.eclipse.tracecompass.tmf.core.experiment.mergedIndex"; //$NON-NLS-1$
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -173,6 +182,15 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
 
     @Override
     protected ITmfTraceIndexer createIndexer(int interval) {
+        /*
+         * The checkpoints of a streaming experiment are added as its traces
+         * grow, which the merged index does as it reads the new events. The
+         * experiment indexer stores its checkpoints in the same BTree index
+         * when the traces have persistent locations.
+         */
+        if (getStreamingInterval() == 0 && !Boolean.getBoolean(MERGED_INDEX_PROPERTY)) {
+            return new TmfExperimentIndexer(this);
+        }
         if (getCheckpointSize() > 0) {
             return new TmfBTreeTraceIndexer(this, interval);
         }
@@ -461,8 +479,15 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
         return event;
     }
 
+    /**
+     * Read the next event of the experiment, the earliest of the next events of
+     * its traces. The experiment is not locked: each context has its own
+     * contexts in the traces, which lock themselves while they read. The
+     * experiment location of the context is only created when it is
+     * requested.
+     */
     @Override
-    public synchronized ITmfEvent getNext(ITmfContext context) {
+    public ITmfEvent getNext(ITmfContext context) {
 
         // Make sure that we have something to read from
         if (getNbChildren() == 0) {
@@ -485,14 +510,9 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
             experimentContext.increaseRank();
 
             // Update the experiment location
-            ITmfLocation location = experimentContext.getLocation();
-            if (location instanceof TmfExperimentLocation) {
-                int trace = next.getIndex();
-                ITmfContext traceContext = next.getContext();
-                TmfLocationArray locationArray = new TmfLocationArray(
-                        ((TmfExperimentLocation) location).getLocationInfo(),
-                        trace, traceContext.getLocation(), traceContext.getRank());
-                experimentContext.setLocation(new TmfExperimentLocation(locationArray));
+            int trace = next.getIndex();
+            ITmfContext traceContext = next.getContext();
+            if (experimentContext.updateLocation(trace, traceContext.getLocation(), traceContext.getRank())) {
                 // queue the next event
                 ITmfEvent nextEvent = ((ITmfTrace) getChild(trace)).getNext(traceContext);
                 experimentContext.setContent(trace, traceContext, nextEvent);
@@ -177,6 +177,10 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
             // Set some trace attributes that depends on indexing
             TmfTraceUpdatedSignal signal = new TmfTraceUpdatedSignal(this, fTrace, new TmfTimeRange(fTraceIndex.getTimeRange().getStartTime(), fTraceIndex.getTimeRange().getEndTime()), indexingOffset);
             fTrace.broadcast(signal);
+        } else if (fBuiltOnce && offset == 0 && fTraceIndex.getNbEvents() > 0) {
+            // The events indexed by the previous build are not read again
+            indexingOffset = fTraceIndex.getNbEvents();
+            indexingTimeRange = new TmfTimeRange(fTraceIndex.getTimeRange().getStartTime(), TmfTimestamp.BIG_CRUNCH);
         }
 
         TmfCoreTracer.traceIndexer("buildIndex. offset: " + indexingOffset + " (requested " + offset + ")" + " time range: " + range); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$